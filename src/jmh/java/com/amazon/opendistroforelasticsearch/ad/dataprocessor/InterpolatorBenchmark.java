@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.dataprocessor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+
+/**
+ * Measures interpolation of cold-start samples at the max sample stride.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpolatorBenchmark {
+
+    @Param({"1", "5"})
+    public int numFeatures;
+
+    private LinearUniformInterpolator interpolator;
+    private double[][] samples;
+    private int numInterpolants;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        interpolator = new LinearUniformInterpolator(new IntegerSensitiveSingleFeatureLinearUniformInterpolator());
+        Random random = new Random(0);
+        samples = new double[numFeatures][];
+        for (int i = 0; i < numFeatures; i++) {
+            samples[i] = random.doubles(AnomalyDetectorSettings.MAX_TRAIN_SAMPLE).toArray();
+        }
+        numInterpolants = (AnomalyDetectorSettings.MAX_TRAIN_SAMPLE - 1) * AnomalyDetectorSettings.MAX_SAMPLE_STRIDE + 1;
+    }
+
+    @Benchmark
+    public double[][] interpolate() {
+        return interpolator.interpolate(samples, numInterpolants);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+
+/**
+ * Measures shingling of training data and shingle filling of the current data point.
+ *
+ * The shingle buffer has a missing data point so filling exercises the neighbor search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureProcessingBenchmark {
+
+    private static final long INTERVAL_MILLIS = 60_000L;
+
+    @Param({"1", "5"})
+    public int dimensions;
+
+    private int shingleSize;
+    private FeatureManager featureManager;
+    private double[][] trainingPoints;
+    private ShingleBuffer shingleBuffer;
+    private long endTime;
+    private double[] shingle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        shingleSize = AnomalyDetectorSettings.SHINGLE_SIZE;
+        featureManager = new FeatureManager(null, null, Clock.systemUTC(), AnomalyDetectorSettings.MAX_TRAIN_SAMPLE,
+            AnomalyDetectorSettings.MAX_SAMPLE_STRIDE, shingleSize, AnomalyDetectorSettings.MAX_MISSING_POINTS,
+            AnomalyDetectorSettings.MAX_NEIGHBOR_DISTANCE, AnomalyDetectorSettings.MAX_PREVIEW_SAMPLES, Duration.ofHours(1));
+
+        Random random = new Random(0);
+        int numTrainingPoints = (AnomalyDetectorSettings.MAX_TRAIN_SAMPLE - 1) * AnomalyDetectorSettings.MAX_SAMPLE_STRIDE + 1;
+        trainingPoints = new double[numTrainingPoints][];
+        for (int i = 0; i < numTrainingPoints; i++) {
+            trainingPoints[i] = random.doubles(dimensions).toArray();
+        }
+
+        shingleBuffer = new ShingleBuffer(shingleSize);
+        for (int i = 1; i <= shingleSize; i++) {
+            if (i != shingleSize / 2) {
+                shingleBuffer.add(i * INTERVAL_MILLIS, random.doubles(dimensions).toArray());
+            }
+        }
+        endTime = shingleSize * INTERVAL_MILLIS;
+        shingle = new double[shingleSize * dimensions];
+    }
+
+    @Benchmark
+    public double[][] batchShingle() {
+        return featureManager.batchShingle(trainingPoints, shingleSize);
+    }
+
+    @Benchmark
+    public double[] fillShingle() {
+        shingleBuffer.fillShingle(endTime, INTERVAL_MILLIS, AnomalyDetectorSettings.MAX_NEIGHBOR_DISTANCE, shingle);
+        return shingle;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.dataprocessor.LinearUniformInterpolator;
+import com.amazon.opendistroforelasticsearch.ad.dataprocessor.SingleFeatureLinearUniformInterpolator;
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+
+/**
+ * Compares FeatureManager.getCurrentFeatures on the ring buffer shingle with the previous
+ * queue of boxed entries and its tree map based filling.
+ *
+ * Every invocation adds the data point of the next interval, as the detection hot path does.
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShingleBenchmark {
+
+    @Param({"1", "5"})
+    public int dimensions;
+
+    private int shingleSize;
+    private long intervalMillis;
+    private AnomalyDetector detector;
+    private double[] point;
+    private FeatureManager featureManager;
+    private ArrayDeque<Entry<Long, double[]>> queue;
+    private long endTime;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        shingleSize = AnomalyDetectorSettings.SHINGLE_SIZE;
+        IntervalTimeConfiguration interval = new IntervalTimeConfiguration(1, ChronoUnit.MINUTES);
+        intervalMillis = interval.toDuration().toMillis();
+        detector = new AnomalyDetector("id", 1L, "name", "description", "timestamp", Arrays.asList("index"),
+            Collections.emptyList(), QueryBuilders.matchAllQuery(), interval, interval, null, 1, Instant.now());
+        point = new Random(0).doubles(dimensions).toArray();
+
+        SearchFeatureDao searchFeatureDao = new SearchFeatureDao(null, null, null, null, null) {
+            @Override
+            public void getFeaturesForPeriod(AnomalyDetector detector, long startTime, long endTime,
+                ActionListener<Optional<double[]>> listener) {
+                listener.onResponse(Optional.of(point));
+            }
+        };
+        featureManager = new FeatureManager(searchFeatureDao,
+            new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator()), Clock.systemUTC(),
+            AnomalyDetectorSettings.MAX_TRAIN_SAMPLE, AnomalyDetectorSettings.MAX_SAMPLE_STRIDE, shingleSize,
+            AnomalyDetectorSettings.MAX_MISSING_POINTS, AnomalyDetectorSettings.MAX_NEIGHBOR_DISTANCE,
+            AnomalyDetectorSettings.MAX_PREVIEW_SAMPLES, Duration.ofHours(1));
+        queue = new ArrayDeque<>(shingleSize);
+        endTime = 0;
+    }
+
+    @Benchmark
+    public SinglePointFeatures getCurrentFeatures() {
+        endTime += intervalMillis;
+        SinglePointFeatures[] result = new SinglePointFeatures[1];
+        featureManager.getCurrentFeatures(detector, endTime - intervalMillis, endTime,
+            ActionListener.wrap(features -> result[0] = features, e -> { throw new IllegalStateException(e); }));
+        return result[0];
+    }
+
+    @Benchmark
+    public SinglePointFeatures getCurrentFeaturesOnQueue() {
+        endTime += intervalMillis;
+        if (queue.size() == shingleSize) {
+            queue.remove();
+        }
+        queue.add(new SimpleImmutableEntry<>(endTime, point));
+        double[][] currentPoints = filterAndFillQueue(endTime);
+        Optional<double[]> currentPoint = Optional.ofNullable(queue.peekLast().getValue());
+        return Optional.ofNullable(currentPoints)
+            .map(points -> new SinglePointFeatures(currentPoint, Optional.of(featureManager.batchShingle(points, shingleSize)[0])))
+            .orElse(new SinglePointFeatures(currentPoint, Optional.empty()));
+    }
+
+    private double[][] filterAndFillQueue(long endTime) {
+        double[][] result = null;
+        int maxNeighborDistance = AnomalyDetectorSettings.MAX_NEIGHBOR_DISTANCE;
+        if (queue.size() >= shingleSize - AnomalyDetectorSettings.MAX_MISSING_POINTS) {
+            TreeMap<Long, double[]> search = new TreeMap<>(queue.stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue)));
+            result = IntStream.rangeClosed(1, shingleSize).mapToLong(i -> endTime - (shingleSize - i) * intervalMillis)
+                .mapToObj(t -> {
+                    Optional<Entry<Long, double[]>> after = Optional.ofNullable(search.ceilingEntry(t));
+                    Optional<Entry<Long, double[]>> before = Optional.ofNullable(search.floorEntry(t));
+                    return after.filter(a -> Math.abs(t - a.getKey()) <= before.map(b -> Math.abs(t - b.getKey())).orElse(Long.MAX_VALUE))
+                        .map(Optional::of).orElse(before)
+                        .filter(e -> Math.abs(t - e.getKey()) < intervalMillis * maxNeighborDistance)
+                        .map(Entry::getValue).orElse(null); })
+                .filter(d -> d != null)
+                .toArray(double[][]::new);
+            if (result.length < shingleSize) {
+                result = null;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.randomcutforest.RandomCutForest;
+import com.amazon.randomcutforest.serialize.RandomCutForestSerDe;
+
+/**
+ * Compares checkpoint size and serialization/deserialization time of the json and binary formats.
+ *
+ * Checkpoint sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckpointSerDeBenchmark {
+
+    @Param({"json", "binary", "binary_deflate"})
+    public String format;
+
+    @Param({"8"})
+    public int dimensions;
+
+    private RandomCutForestSerDe rcfSerde;
+    private BinaryCheckpointSerDe binarySerde;
+    private Gson gson;
+
+    private RandomCutForest rcf;
+    private HybridThresholdingModel threshold;
+    private String rcfCheckpoint;
+    private String thresholdCheckpoint;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        gson = new Gson();
+        rcfSerde = new RandomCutForestSerDe();
+        binarySerde = new BinaryCheckpointSerDe(gson, "binary_deflate".equals(format));
+
+        Random random = new Random(0);
+        rcf = RandomCutForest.builder().dimensions(dimensions).sampleSize(AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE)
+            .numberOfTrees(AnomalyDetectorSettings.NUM_TREES).lambda(AnomalyDetectorSettings.TIME_DECAY)
+            .outputAfter(AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE).parallelExecutionEnabled(false).build();
+        for (int i = 0; i < 10 * AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE; i++) {
+            rcf.update(random.doubles(dimensions).toArray());
+        }
+        threshold = new HybridThresholdingModel(AnomalyDetectorSettings.THRESHOLD_MIN_PVALUE,
+            AnomalyDetectorSettings.THRESHOLD_MAX_RANK_ERROR, AnomalyDetectorSettings.THRESHOLD_MAX_SCORE,
+            AnomalyDetectorSettings.THRESHOLD_NUM_LOGNORMAL_QUANTILES, AnomalyDetectorSettings.THRESHOLD_DOWNSAMPLES,
+            AnomalyDetectorSettings.THRESHOLD_MAX_SAMPLES);
+        threshold.train(random.doubles(10_000, 0.1, 3.9).toArray());
+
+        rcfCheckpoint = serializeRcf();
+        thresholdCheckpoint = serializeThreshold();
+        System.out.println(String.format("%n%s checkpoint bytes: rcf %d, threshold %d", format, rcfCheckpoint.length(),
+            thresholdCheckpoint.length()));
+    }
+
+    @Benchmark
+    public String serializeRcf() {
+        return "json".equals(format) ? rcfSerde.toJson(rcf) : binarySerde.toCheckpoint(rcf);
+    }
+
+    @Benchmark
+    public RandomCutForest deserializeRcf() {
+        return "json".equals(format) ? rcfSerde.fromJson(rcfCheckpoint) : binarySerde.toRcf(rcfCheckpoint);
+    }
+
+    @Benchmark
+    public String serializeThreshold() {
+        return "json".equals(format) ? gson.toJson(threshold) : binarySerde.toCheckpoint(threshold);
+    }
+
+    @Benchmark
+    public ThresholdingModel deserializeThreshold() {
+        return "json".equals(format) ? gson.fromJson(thresholdCheckpoint, HybridThresholdingModel.class)
+            : binarySerde.toThreshold(thresholdCheckpoint, HybridThresholdingModel.class);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.gson.Gson;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.monitor.jvm.JvmService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.constant.CommonName;
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.randomcutforest.RandomCutForest;
+import com.amazon.randomcutforest.serialize.RandomCutForestSerDe;
+
+/**
+ * Measures RCF scoring and update through ModelManager.getRcfResult and combining partition results.
+ *
+ * The model is restored from an in-memory checkpoint during setup, so invocations measure the hosted model path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelManagerBenchmark {
+
+    private static final String DETECTOR_ID = "detector";
+    private static final int NUM_POINTS = 1024;
+
+    // number of features times shingle size
+    @Param({"8", "40"})
+    public int dimensions;
+
+    @Param({"1", "10"})
+    public int partitions;
+
+    private ModelManager modelManager;
+    private String modelId;
+    private double[][] points;
+    private int next;
+    private List<RcfResult> rcfResults;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+        RandomCutForest rcf = RandomCutForest.builder().dimensions(dimensions).sampleSize(AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE)
+            .numberOfTrees(AnomalyDetectorSettings.NUM_TREES).lambda(AnomalyDetectorSettings.TIME_DECAY)
+            .outputAfter(AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE).parallelExecutionEnabled(false).build();
+        for (int i = 0; i < 10 * AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE; i++) {
+            rcf.update(random.doubles(dimensions).toArray());
+        }
+
+        Gson gson = new Gson();
+        BinaryCheckpointSerDe binaryCheckpointSerde = new BinaryCheckpointSerDe(gson, true);
+        String checkpoint = binaryCheckpointSerde.toCheckpoint(rcf);
+        CheckpointDao checkpointDao = new CheckpointDao(null, null, CommonName.CHECKPOINT_INDEX_NAME) {
+            @Override
+            public Optional<String> getModelCheckpoint(String modelId) {
+                return Optional.of(checkpoint);
+            }
+        };
+        ADStats adStats = new ADStats();
+        // no models are kept off-heap, so that every load reads the checkpoint
+        OffHeapModelCache warmModels = new OffHeapModelCache(0, adStats);
+        modelManager = new ModelManager(null, new JvmService(Settings.EMPTY), new RandomCutForestSerDe(), checkpointDao, null, gson,
+            binaryCheckpointSerde, warmModels, Clock.systemUTC(), adStats, EsExecutors.newDirectExecutorService(),
+            EsExecutors.newDirectExecutorService(),
+            AnomalyDetectorSettings.DESIRED_MODEL_SIZE_PERCENTAGE, AnomalyDetectorSettings.MODEL_MAX_SIZE_PERCENTAGE,
+            AnomalyDetectorSettings.NUM_TREES, AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE, AnomalyDetectorSettings.TIME_DECAY,
+            AnomalyDetectorSettings.THRESHOLD_MIN_PVALUE, AnomalyDetectorSettings.THRESHOLD_MAX_RANK_ERROR,
+            AnomalyDetectorSettings.THRESHOLD_MAX_SCORE, AnomalyDetectorSettings.THRESHOLD_NUM_LOGNORMAL_QUANTILES,
+            AnomalyDetectorSettings.THRESHOLD_DOWNSAMPLES, AnomalyDetectorSettings.THRESHOLD_MAX_SAMPLES,
+            HybridThresholdingModel.class, AnomalyDetectorSettings.MIN_PREVIEW_SIZE,
+            Duration.ofHours(1), Duration.ofHours(1), true, AnomalyDetectorSettings.MAX_DELTA_CHECKPOINT_RATIO,
+            AnomalyDetectorSettings.MAX_CHECKPOINT_BASE_AGE, AnomalyDetectorSettings.MODEL_TRANSFER_TIMEOUT);
+        modelId = modelManager.getRcfModelId(DETECTOR_ID, 0);
+
+        points = new double[NUM_POINTS][];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            points[i] = random.doubles(dimensions).toArray();
+        }
+        modelManager.getRcfResult(DETECTOR_ID, modelId, points[0]);
+
+        rcfResults = IntStream.range(0, partitions)
+            .mapToObj(i -> new RcfResult(random.nextDouble(), random.nextDouble(), AnomalyDetectorSettings.NUM_TREES / partitions))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public RcfResult getRcfResult() {
+        next = (next + 1) % NUM_POINTS;
+        return modelManager.getRcfResult(DETECTOR_ID, modelId, points[next]);
+    }
+
+    @Benchmark
+    public CombinedRcfResult combineRcfResults() {
+        return modelManager.combineRcfResults(rcfResults);
+    }
+}
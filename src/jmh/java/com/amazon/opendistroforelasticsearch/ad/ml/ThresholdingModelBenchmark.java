@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+
+/**
+ * Measures grading and updating of HybridThresholdingModel, and the downsampling an update triggers at max samples.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThresholdingModelBenchmark {
+
+    private static final int NUM_SCORES = 1024;
+
+    /**
+     * A trained model and scores to grade and update with.
+     */
+    @State(Scope.Benchmark)
+    public static class TrainedModel {
+        private HybridThresholdingModel model;
+        private double[] scores;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(0);
+            model = newModel();
+            model.train(random.doubles(10_000, 0.1, 3.9).toArray());
+            scores = random.doubles(NUM_SCORES, 0.1, 3.9).toArray();
+        }
+
+        private double nextScore() {
+            next = (next + 1) % NUM_SCORES;
+            return scores[next];
+        }
+    }
+
+    /**
+     * A model one update away from downsampling, restored before every invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class FullModel {
+        private Gson gson;
+        private String json;
+        private HybridThresholdingModel model;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            Random random = new Random(0);
+            HybridThresholdingModel fullModel = newModel();
+            for (long i = 1; i < AnomalyDetectorSettings.THRESHOLD_MAX_SAMPLES; i++) {
+                fullModel.update(0.1 + 3.8 * random.nextDouble());
+            }
+            gson = new Gson();
+            json = gson.toJson(fullModel);
+        }
+
+        @Setup(Level.Invocation)
+        public void setupInvocation() {
+            model = gson.fromJson(json, HybridThresholdingModel.class);
+        }
+    }
+
+    @Benchmark
+    public double grade(TrainedModel state) {
+        return state.model.grade(state.nextScore());
+    }
+
+    @Benchmark
+    public HybridThresholdingModel update(TrainedModel state) {
+        state.model.update(state.nextScore());
+        return state.model;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 50)
+    @Warmup(iterations = 10)
+    public HybridThresholdingModel downsample(FullModel state) {
+        state.model.update(1.0);
+        return state.model;
+    }
+
+    private static HybridThresholdingModel newModel() {
+        return new HybridThresholdingModel(AnomalyDetectorSettings.THRESHOLD_MIN_PVALUE,
+            AnomalyDetectorSettings.THRESHOLD_MAX_RANK_ERROR, AnomalyDetectorSettings.THRESHOLD_MAX_SCORE,
+            AnomalyDetectorSettings.THRESHOLD_NUM_LOGNORMAL_QUANTILES, AnomalyDetectorSettings.THRESHOLD_DOWNSAMPLES,
+            AnomalyDetectorSettings.THRESHOLD_MAX_SAMPLES);
+    }
+}
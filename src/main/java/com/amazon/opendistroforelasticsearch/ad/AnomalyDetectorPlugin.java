@@ -26,11 +26,18 @@ import com.amazon.opendistroforelasticsearch.ad.cluster.MasterEventListener;
 import com.amazon.opendistroforelasticsearch.ad.constant.CommonName;
 import com.amazon.opendistroforelasticsearch.ad.dataprocessor.Interpolator;
 import com.amazon.opendistroforelasticsearch.ad.feature.FeatureManager;
+import com.amazon.opendistroforelasticsearch.ad.feature.FeatureQueryCache;
+import com.amazon.opendistroforelasticsearch.ad.feature.FeatureQueryCoalescer;
+import com.amazon.opendistroforelasticsearch.ad.feature.HistoricalFeatureCache;
 import com.amazon.opendistroforelasticsearch.ad.feature.SearchFeatureDao;
+import com.amazon.opendistroforelasticsearch.ad.feature.ShardRequestCachePolicy;
 import com.amazon.opendistroforelasticsearch.ad.indices.AnomalyDetectionIndices;
+import com.amazon.opendistroforelasticsearch.ad.ml.BinaryCheckpointSerDe;
+import com.amazon.opendistroforelasticsearch.ad.ml.CheckpointBulkWriter;
 import com.amazon.opendistroforelasticsearch.ad.ml.CheckpointDao;
 import com.amazon.opendistroforelasticsearch.ad.ml.HybridThresholdingModel;
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.ml.OffHeapModelCache;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.rest.RestGetAnomalyDetectorAction;
 import com.amazon.opendistroforelasticsearch.ad.rest.RestIndexAnomalyDetectorAction;
@@ -39,12 +46,19 @@ import com.amazon.opendistroforelasticsearch.ad.rest.RestDeleteAnomalyDetectorAc
 import com.amazon.opendistroforelasticsearch.ad.rest.RestExecuteAnomalyDetectorAction;
 
 import com.amazon.opendistroforelasticsearch.ad.rest.RestSearchAnomalyResultAction;
+import com.amazon.opendistroforelasticsearch.ad.rest.RestStatsAnomalyDetectorAction;
 import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
 
 
 import com.amazon.opendistroforelasticsearch.ad.transport.ADStateManager;
+import com.amazon.opendistroforelasticsearch.ad.transport.AnomalyResultBulkWriter;
+import com.amazon.opendistroforelasticsearch.ad.transport.ADStatsAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ADStatsTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.DeleteModelAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.DeleteDetectorAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.RCFBatchResultAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.RCFBatchResultTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.RCFResultAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.StopDetectorAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.StopDetectorTransportAction;
@@ -53,8 +67,14 @@ import com.amazon.opendistroforelasticsearch.ad.transport.AnomalyResultAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.CronAction;
 
 import com.amazon.opendistroforelasticsearch.ad.transport.DeleteModelTransportAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadTransportAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.DeleteDetectorTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.RCFResultTransportAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.RCFThresholdResultAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.RCFThresholdResultTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.ThresholdResultTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.AnomalyResultTransportAction;
 import com.amazon.opendistroforelasticsearch.ad.transport.CronTransportAction;
@@ -85,9 +105,11 @@ import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.monitor.jvm.JvmService;
 import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.Plugin;
@@ -95,6 +117,8 @@ import org.elasticsearch.plugins.ScriptPlugin;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestHandler;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.watcher.ResourceWatcherService;
 
@@ -112,10 +136,14 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
 
     public static final String AD_BASE_URI = "/_opendistro/_anomaly_detection";
     public static final String AD_BASE_DETECTORS_URI = AD_BASE_URI + "/detectors";
+    public static final String AD_MODEL_LOAD_THREAD_POOL_NAME = "ad-model-load";
     private static Gson gson;
     private AnomalyDetectionIndices anomalyDetectionIndices;
     private AnomalyDetectorRunner anomalyDetectorRunner;
     private ClusterService clusterService;
+    private OffHeapModelCache warmModels;
+    private FeatureQueryCache featureQueryCache;
+    private AnomalyResultBulkWriter resultWriter;
 
     static {
         SpecialPermission.check();
@@ -138,7 +166,7 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
         RestGetAnomalyDetectorAction restGetAnomalyDetectorAction = new RestGetAnomalyDetectorAction(settings,
                 restController);
         RestIndexAnomalyDetectorAction restIndexAnomalyDetectorAction = new RestIndexAnomalyDetectorAction(settings,
-                restController, clusterService, anomalyDetectionIndices);
+                restController, clusterService, anomalyDetectionIndices, featureQueryCache);
         RestSearchAnomalyDetectorAction searchAnomalyDetectorAction = new RestSearchAnomalyDetectorAction(settings,
                 restController);
         RestSearchAnomalyResultAction searchAnomalyResultAction = new RestSearchAnomalyResultAction(settings,
@@ -147,13 +175,16 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
                 restController, clusterService);
         RestExecuteAnomalyDetectorAction executeAnomalyDetectorAction = new RestExecuteAnomalyDetectorAction(settings,
             restController, clusterService, anomalyDetectorRunner);
+        RestStatsAnomalyDetectorAction statsAnomalyDetectorAction = new RestStatsAnomalyDetectorAction(settings,
+            restController);
 
         return ImmutableList.of(restGetAnomalyDetectorAction,
                 restIndexAnomalyDetectorAction,
                 searchAnomalyDetectorAction,
                 searchAnomalyResultAction,
                 deleteAnomalyDetectorAction,
-                executeAnomalyDetectorAction);
+                executeAnomalyDetectorAction,
+                statsAnomalyDetectorAction);
     }
 
     private static Void initGson() {
@@ -176,15 +207,37 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
         SingleFeatureLinearUniformInterpolator singleFeatureLinearUniformInterpolator =
                 new IntegerSensitiveSingleFeatureLinearUniformInterpolator();
         Interpolator interpolator = new LinearUniformInterpolator(singleFeatureLinearUniformInterpolator);
-        SearchFeatureDao searchFeatureDao = new SearchFeatureDao(client, scriptService, xContentRegistry, interpolator,
-                clientUtil);
 
         JvmService jvmService = new JvmService(environment.settings());
         RandomCutForestSerDe rcfSerde = new RandomCutForestSerDe();
         CheckpointDao checkpoint = new CheckpointDao(client, clientUtil, CommonName.CHECKPOINT_INDEX_NAME);
+        BinaryCheckpointSerDe binaryCheckpointSerde = new BinaryCheckpointSerDe(gson,
+                AnomalyDetectorSettings.CHECKPOINT_COMPRESSION_ENABLED);
         Clock clock = Clock.systemUTC();
+        ADStats adStats = new ADStats();
+        warmModels = new OffHeapModelCache((long) (jvmService.info().getMem().getHeapMax().getBytes()
+                * AnomalyDetectorSettings.WARM_MODEL_MAX_SIZE_PERCENTAGE), adStats);
+        resultWriter = new AnomalyResultBulkWriter(client, threadPool, settings, adStats,
+                AnomalyDetectorSettings.RESULT_BULK_SIZE, AnomalyDetectorSettings.MAX_BUFFERED_RESULTS,
+                AnomalyDetectorSettings.RESULT_FLUSH_INTERVAL);
+        FeatureQueryCoalescer featureQueryCoalescer = new FeatureQueryCoalescer(client, threadPool,
+                AnomalyDetectorSettings.FEATURE_QUERY_BATCH_WINDOW, AnomalyDetectorSettings.FEATURE_QUERY_MAX_BATCH_SIZE, adStats);
+        featureQueryCache = new FeatureQueryCache(xContentRegistry);
+        ShardRequestCachePolicy requestCachePolicy = AnomalyDetectorSettings.FEATURE_QUERY_REQUEST_CACHE_ENABLED.get(settings)
+                ? new ShardRequestCachePolicy(AnomalyDetectorSettings.FEATURE_QUERY_MAX_TRACKED_REQUESTS, adStats) : null;
+        HistoricalFeatureCache historicalFeatureCache = new HistoricalFeatureCache(
+                AnomalyDetectorSettings.FEATURE_CACHE_SIZE.get(settings).getBytes(), clock, adStats);
+        SearchFeatureDao searchFeatureDao = new SearchFeatureDao(client, scriptService, xContentRegistry, interpolator,
+                clientUtil, featureQueryCoalescer, featureQueryCache, requestCachePolicy, historicalFeatureCache);
 
-        ModelManager modelManager = new ModelManager(clusterService, jvmService, rcfSerde, checkpoint, gson, clock,
+        ColdStartRunner runner = new ColdStartRunner(AnomalyDetectorSettings.MAX_CONCURRENT_COLD_STARTS.get(settings),
+                AnomalyDetectorSettings.MAX_TRAINING_PARALLELISM.get(settings), adStats);
+        CheckpointBulkWriter checkpointWriter = new CheckpointBulkWriter(client, threadPool, settings, adStats,
+                AnomalyDetectorSettings.CHECKPOINT_BULK_SIZE, AnomalyDetectorSettings.CHECKPOINT_MAX_BYTES_PER_SECOND,
+                AnomalyDetectorSettings.CHECKPOINT_FLUSH_WINDOW);
+        ModelManager modelManager = new ModelManager(clusterService, jvmService, rcfSerde, checkpoint, checkpointWriter, gson,
+                binaryCheckpointSerde, warmModels, clock, adStats, runner.getTrainingExecutor(),
+                threadPool.executor(AD_MODEL_LOAD_THREAD_POOL_NAME),
                 AnomalyDetectorSettings.DESIRED_MODEL_SIZE_PERCENTAGE,
                 AnomalyDetectorSettings.MODEL_MAX_SIZE_PERCENTAGE, AnomalyDetectorSettings.NUM_TREES,
                 AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE, AnomalyDetectorSettings.TIME_DECAY,
@@ -192,16 +245,18 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
                 AnomalyDetectorSettings.THRESHOLD_MAX_SCORE, AnomalyDetectorSettings.THRESHOLD_NUM_LOGNORMAL_QUANTILES,
                 AnomalyDetectorSettings.THRESHOLD_DOWNSAMPLES, AnomalyDetectorSettings.THRESHOLD_MAX_SAMPLES,
                 HybridThresholdingModel.class, AnomalyDetectorSettings.MIN_PREVIEW_SIZE,
-                AnomalyDetectorSettings.HOURLY_MAINTENANCE, AnomalyDetectorSettings.HOURLY_MAINTENANCE);
+                AnomalyDetectorSettings.HOURLY_MAINTENANCE, AnomalyDetectorSettings.HOURLY_MAINTENANCE,
+                AnomalyDetectorSettings.BINARY_CHECKPOINT_ENABLED, AnomalyDetectorSettings.MAX_DELTA_CHECKPOINT_RATIO,
+                AnomalyDetectorSettings.MAX_CHECKPOINT_BASE_AGE, AnomalyDetectorSettings.MODEL_TRANSFER_TIMEOUT);
 
         HashRing hashRing = new HashRing(clusterService, clock, settings);
         ADStateManager stateManager = new ADStateManager(client, xContentRegistry, modelManager, settings, clientUtil,
                 clock, AnomalyDetectorSettings.HOURLY_MAINTENANCE);
-        ColdStartRunner runner = new ColdStartRunner();
         FeatureManager featureManager = new FeatureManager(searchFeatureDao, interpolator, clock,
                 AnomalyDetectorSettings.MAX_TRAIN_SAMPLE, AnomalyDetectorSettings.MAX_SAMPLE_STRIDE, AnomalyDetectorSettings.SHINGLE_SIZE,
                 AnomalyDetectorSettings.MAX_MISSING_POINTS, AnomalyDetectorSettings.MAX_NEIGHBOR_DISTANCE,
-                AnomalyDetectorSettings.MAX_PREVIEW_SAMPLES, AnomalyDetectorSettings.HOURLY_MAINTENANCE);
+                AnomalyDetectorSettings.MAX_PREVIEW_SAMPLES, AnomalyDetectorSettings.HOURLY_MAINTENANCE,
+                AnomalyDetectorSettings.FULL_RESOLUTION_PREVIEW);
         anomalyDetectorRunner = new AnomalyDetectorRunner(modelManager, featureManager);
 
         DeleteDetector deleteUtil = new DeleteDetector(clusterService, clock);
@@ -211,13 +266,49 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
 
         return ImmutableList.of(anomalyDetectionIndices, anomalyDetectorRunner, searchFeatureDao,
                 singleFeatureLinearUniformInterpolator, interpolator, gson, jvmService, hashRing, featureManager,
-                modelManager, clock, stateManager, runner,
-                new ADClusterEventListener(clusterService, hashRing, modelManager),
+                modelManager, clock, stateManager, runner, adStats, resultWriter,
+                new ADClusterEventListener(clusterService, hashRing, modelManager, client, threadPool, settings,
+                        AnomalyDetectorSettings.MODEL_TRANSFER_CHUNK_SIZE),
                 deleteUtil, dailyCron, hourlyCron,
                 new MasterEventListener(clusterService, threadPool, deleteUtil, client, clock)
                 );
     }
 
+    /**
+     * Publishes the model memory budget of the node as a node attribute, so that
+     * models are placed on nodes in proportion to their capacity.
+     */
+    @Override
+    public Settings additionalSettings() {
+        long modelMemoryBudget = (long) (JvmInfo.jvmInfo().getMem().getHeapMax().getBytes()
+                * AnomalyDetectorSettings.MODEL_MAX_SIZE_PERCENTAGE);
+        return Settings.builder().put("node.attr." + HashRing.MODEL_MEMORY_BUDGET_ATTR, modelMemoryBudget).build();
+    }
+
+    /**
+     * Adds the thread pool loading models from checkpoints, so that slow loads do not block
+     * transport threads or other requests.
+     */
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+        return ImmutableList.of(new FixedExecutorBuilder(settings, AD_MODEL_LOAD_THREAD_POOL_NAME,
+                Math.max(1, EsExecutors.numberOfProcessors(settings) / 2), AnomalyDetectorSettings.MODEL_LOAD_QUEUE_SIZE,
+                "ml.anomaly_detectors." + AD_MODEL_LOAD_THREAD_POOL_NAME));
+    }
+
+    /**
+     * Sends buffered anomaly results and releases the direct memory of models kept off-heap.
+     */
+    @Override
+    public void close() {
+        if (resultWriter != null) {
+            resultWriter.close();
+        }
+        if (warmModels != null) {
+            warmModels.clear();
+        }
+    }
+
     @Override
     public List<Setting<?>> getSettings() {
         return ImmutableList.of(
@@ -232,6 +323,13 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
                 AnomalyDetectorSettings.AD_RESULT_ROLLOVER_PERIOD,
                 AnomalyDetectorSettings.MAX_RETRY_FOR_UNRESPONSIVE_NODE,
                 AnomalyDetectorSettings.COOLDOWN_MINUTES,
+                AnomalyDetectorSettings.COLOCATE_THRESHOLD_MODEL,
+                AnomalyDetectorSettings.LOCAL_MODEL_SHORT_CIRCUIT,
+                AnomalyDetectorSettings.DIRECT_MODEL_TRANSFER,
+                AnomalyDetectorSettings.FEATURE_QUERY_REQUEST_CACHE_ENABLED,
+                AnomalyDetectorSettings.FEATURE_CACHE_SIZE,
+                AnomalyDetectorSettings.MAX_CONCURRENT_COLD_STARTS,
+                AnomalyDetectorSettings.MAX_TRAINING_PARALLELISM,
                 AnomalyDetectorSettings.BACKOFF_MINUTES,
                 AnomalyDetectorSettings.BACKOFF_INITIAL_DELAY,
                 AnomalyDetectorSettings.MAX_RETRY_FOR_BACKOFF
@@ -259,12 +357,17 @@ public class AnomalyDetectorPlugin extends Plugin implements ActionPlugin, Scrip
     public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
         return Arrays.asList(
                 new ActionHandler<>(DeleteModelAction.INSTANCE, DeleteModelTransportAction.class),
+                new ActionHandler<>(ModelPreloadAction.INSTANCE, ModelPreloadTransportAction.class),
+                new ActionHandler<>(ModelTransferAction.INSTANCE, ModelTransferTransportAction.class),
                 new ActionHandler<>(DeleteDetectorAction.INSTANCE, DeleteDetectorTransportAction.class),
                 new ActionHandler<>(StopDetectorAction.INSTANCE, StopDetectorTransportAction.class),
                 new ActionHandler<>(RCFResultAction.INSTANCE, RCFResultTransportAction.class),
+                new ActionHandler<>(RCFBatchResultAction.INSTANCE, RCFBatchResultTransportAction.class),
                 new ActionHandler<>(ThresholdResultAction.INSTANCE, ThresholdResultTransportAction.class),
+                new ActionHandler<>(RCFThresholdResultAction.INSTANCE, RCFThresholdResultTransportAction.class),
                 new ActionHandler<>(AnomalyResultAction.INSTANCE, AnomalyResultTransportAction.class),
-                new ActionHandler<>(CronAction.INSTANCE, CronTransportAction.class)
+                new ActionHandler<>(CronAction.INSTANCE, CronTransportAction.class),
+                new ActionHandler<>(ADStatsAction.INSTANCE, ADStatsTransportAction.class)
         );
     }
 }
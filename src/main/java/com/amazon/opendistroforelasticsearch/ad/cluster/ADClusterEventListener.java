@@ -15,20 +15,41 @@
 
 package com.amazon.opendistroforelasticsearch.ad.cluster;
 
+import static com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings.DIRECT_MODEL_TRANSFER;
+import static com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings.REQUEST_TIMEOUT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadRequest;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferRequest;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes.Delta;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.gateway.GatewayService;
+import org.elasticsearch.threadpool.ThreadPool;
 
 public class ADClusterEventListener implements ClusterStateListener {
     private static final Logger LOG = LogManager.getLogger(ADClusterEventListener.class);
@@ -38,19 +59,36 @@ public class ADClusterEventListener implements ClusterStateListener {
     static final String REMOVE_MODEL_MSG = "Remove model";
     static final String NODE_ADDED_MSG = "Data node added ";
     static final String NODE_REMOVED_MSG = "Data node removed ";
+    static final String HANDOFF_FAILURE_MSG = "Failed to hand off model";
+    static final String PRELOAD_FAILURE_MSG = "Failed to ask new owners to preload models";
+    static final String TRANSFER_FAILURE_MSG = "Failed to transfer model, falling back to checkpoint";
 
     private final Semaphore inProgress;
     private HashRing hashRing;
     private ModelManager modelManager;
     private final ClusterService clusterService;
+    private final Client client;
+    private final ThreadPool threadPool;
+    // models being checkpointed for their new owners, so a quick second ring change does not hand them off twice
+    private final Set<String> handoffInProgress;
+    private final boolean directTransfer;
+    private final TimeValue requestTimeout;
+    private final int transferChunkSize;
 
     @Inject
-    public ADClusterEventListener(ClusterService clusterService, HashRing hashRing, ModelManager modelManager) {
+    public ADClusterEventListener(ClusterService clusterService, HashRing hashRing, ModelManager modelManager,
+            Client client, ThreadPool threadPool, Settings settings, int transferChunkSize) {
         this.clusterService = clusterService;
         this.clusterService.addListener(this);
         this.hashRing = hashRing;
         this.modelManager = modelManager;
+        this.client = client;
+        this.threadPool = threadPool;
         this.inProgress = new Semaphore(1);
+        this.handoffInProgress = ConcurrentHashMap.newKeySet();
+        this.directTransfer = DIRECT_MODEL_TRANSFER.get(settings);
+        this.requestTimeout = REQUEST_TIMEOUT.get(settings);
+        this.transferChunkSize = transferChunkSize;
     }
 
     @Override
@@ -102,16 +140,25 @@ public class ADClusterEventListener implements ClusterStateListener {
                 rebuiltDone = hashRing.build();
             }
 
-            if (dataNodeAdded && rebuiltDone) {
+            // a removed node can move models between the remaining nodes as well, and a stale copy left
+            // behind would overwrite the new owner's checkpoints
+            if (rebuiltDone) {
                 String localNodeId = event.state().nodes().getLocalNode().getId();
-                Set<String> modelIds = modelManager.getAllModelIds();
+                Set<String> modelIds = new HashSet<>(modelManager.getAllModelIds());
+                // models kept off-heap are handed off as well, so that their new owners do not load older checkpoints
+                modelIds.addAll(modelManager.getWarmModelIds());
+                Map<String, List<String>> movedModels = new HashMap<>();
                 for (String modelId : modelIds) {
                     Optional<DiscoveryNode> node = hashRing.getOwningNode(modelId);
                     if (node.isPresent() && !node.get().getId().equals(localNodeId)) {
                         LOG.info(REMOVE_MODEL_MSG + " {}", modelId);
-                        modelManager.stopModel(modelManager.getDetectorIdForModelId(modelId), modelId);
+                        movedModels.computeIfAbsent(node.get().getId(), id -> new ArrayList<>()).add(modelId);
                     }
                 }
+                if (!movedModels.isEmpty()) {
+                    // checkpointing blocks on index writes, which must not happen on the cluster state applier thread
+                    threadPool.generic().execute(() -> handoff(movedModels));
+                }
             }
         } catch (Exception ex) {
             // One possible exception is ElasticsearchTimeoutException thrown when we fail
@@ -122,4 +169,74 @@ public class ADClusterEventListener implements ClusterStateListener {
         }
 
     }
+
+    /**
+     * Sends the models moved to other nodes straight to the new owners. Models that cannot be
+     * sent are checkpointed instead and the new owners are asked to load them, so that their
+     * next requests do not wait for the checkpoints.
+     *
+     * @param movedModels new owning node id to ids of the models it takes over
+     */
+    void handoff(Map<String, List<String>> movedModels) {
+        Map<String, List<String>> handedOff = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : movedModels.entrySet()) {
+            for (String modelId : entry.getValue()) {
+                if (!handoffInProgress.add(modelId)) {
+                    continue;
+                }
+                try {
+                    String detectorId = modelManager.getDetectorIdForModelId(modelId);
+                    if (directTransfer && transfer(entry.getKey(), detectorId, modelId)) {
+                        modelManager.releaseModel(detectorId, modelId);
+                        continue;
+                    }
+                    modelManager.handoffModel(detectorId, modelId);
+                    handedOff.computeIfAbsent(entry.getKey(), id -> new ArrayList<>()).add(modelId);
+                } catch (Exception e) {
+                    LOG.error(new ParameterizedMessage(HANDOFF_FAILURE_MSG + " {}", modelId), e);
+                } finally {
+                    handoffInProgress.remove(modelId);
+                }
+            }
+        }
+        if (handedOff.isEmpty()) {
+            return;
+        }
+        client.execute(ModelPreloadAction.INSTANCE, new ModelPreloadRequest(handedOff), ActionListener.wrap(
+            response -> LOG.info("Preloaded models on {} nodes, {} failures", response.getNodes().size(), response.failures().size()),
+            exception -> LOG.warn(PRELOAD_FAILURE_MSG, exception)));
+    }
+
+    /**
+     * Sends the serialized model to its new owner one chunk at a time.
+     *
+     * @param nodeId id of the node taking the model over
+     * @param detectorId ID of the detector
+     * @param modelId ID of the model
+     * @return whether the new owner hosts the model now
+     */
+    private boolean transfer(String nodeId, String detectorId, String modelId) {
+        Optional<byte[]> state = modelManager.exportModel(modelId);
+        if (!state.isPresent()) {
+            return false;
+        }
+        byte[] bytes = state.get();
+        int totalChunks = Math.max(1, (bytes.length + transferChunkSize - 1) / transferChunkSize);
+        try {
+            for (int chunk = 0; chunk < totalChunks; chunk++) {
+                int from = chunk * transferChunkSize;
+                byte[] data = Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + transferChunkSize));
+                ModelTransferResponse response = client.execute(ModelTransferAction.INSTANCE,
+                    new ModelTransferRequest(nodeId, detectorId, modelId, chunk, totalChunks, data)).actionGet(requestTimeout);
+                if (response.hasFailures() || response.getNodes().isEmpty()) {
+                    LOG.warn(TRANSFER_FAILURE_MSG + " {}", modelId);
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            LOG.warn(new ParameterizedMessage(TRANSFER_FAILURE_MSG + " {}", modelId), e);
+            return false;
+        }
+    }
 }
@@ -15,12 +15,17 @@
 
 package com.amazon.opendistroforelasticsearch.ad.cluster;
 
+import static com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings.COLOCATE_THRESHOLD_MODEL;
 import static com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings.COOLDOWN_MINUTES;
 
 import java.time.Clock;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -41,25 +46,36 @@ public class HashRing {
     // Hash ring doesn't respond to more than 1 cluster membership changes within the
     // cool-down period.
     static final String COOLDOWN_MSG = "Hash ring doesn't respond to cluster state change within the cooldown period.";
+    static final String UNCHANGED_MSG = "Data nodes are unchanged, keep hash ring.";
+    // node attribute holding the bytes a node can spend on AD models
+    public static final String MODEL_MEMORY_BUDGET_ATTR = "ad.model_memory_budget";
+    // budget worth VIRTUAL_NODE_COUNT virtual nodes, also assumed for nodes that do not publish a budget
+    static final long MODEL_MEMORY_BUDGET_UNIT = 1L << 30;
+    // a thresholding model <detectorId>_model_threshold is placed with RCF model <detectorId>_model_rcf_0, see ModelManager
+    private static final String THRESHOLD_MODEL_ID_SUFFIX = "_model_threshold";
+    private static final String COLOCATED_RCF_MODEL_ID_SUFFIX = "_model_rcf_0";
 
     private final int VIRTUAL_NODE_COUNT = 100;
     private final ClusterService clusterService;
-    private TreeMap<Integer, DiscoveryNode> circle;
+    // immutable snapshot of the ring, replaced as a whole on rebuild
+    private volatile Ring ring;
     private Semaphore inProgress;
     // the UTC epoch milliseconds of the most recent successful update
-    private long lastUpdate;
+    private volatile long lastUpdate;
     private final TimeValue coolDownPeriod;
     private final Clock clock;
     private AtomicBoolean membershipChangeRequied;
+    private final boolean colocateThresholdModel;
 
     public HashRing(ClusterService clusterService, Clock clock, Settings settings) {
-        this.circle = new TreeMap<Integer, DiscoveryNode>();
+        this.ring = Ring.EMPTY;
         this.clusterService = clusterService;
         this.inProgress = new Semaphore(1);
         this.clock = clock;
         this.coolDownPeriod = COOLDOWN_MINUTES.get(settings);
         this.lastUpdate = 0;
         this.membershipChangeRequied = new AtomicBoolean(false);
+        this.colocateThresholdModel = COLOCATE_THRESHOLD_MODEL.get(settings);
     }
 
     /**
@@ -73,7 +89,7 @@ public class HashRing {
         // to false and we can skip of the following checks.
         // Hash ring can be empty because we cannot build the ring in constructor. The constructor
         // is called when the plugin is being loaded. At that time, cluster state is empty.
-        if (!membershipChangeRequied.get() && !circle.isEmpty()) {
+        if (!membershipChangeRequied.get() && !ring.isEmpty()) {
             return false;
         }
 
@@ -89,20 +105,25 @@ public class HashRing {
             return false;
         }
 
-        LOG.info(REBUILD_MSG);
-        TreeMap<Integer, DiscoveryNode> newCircle = new TreeMap<>();
-
         try {
+            List<DiscoveryNode> dataNodes = new ArrayList<>();
             for (ObjectCursor<DiscoveryNode> cursor : clusterService.state().nodes().getDataNodes().values()) {
-                DiscoveryNode curNode = cursor.value;
-                for (int i = 0; i < VIRTUAL_NODE_COUNT; i++) {
-                    newCircle.put(Murmur3HashFunction.hash(curNode.getId() + i), curNode);
-                }
+                dataNodes.add(cursor.value);
             }
-            circle = newCircle;
-            lastUpdate = clock.millis();
+
+            // any cluster state change records a membership change, so keep the ring
+            // when the data nodes are the same
             membershipChangeRequied.set(false);
+            if (!ring.isEmpty() && ring.hasSameNodes(dataNodes)) {
+                LOG.info(UNCHANGED_MSG);
+                return false;
+            }
+
+            LOG.info(REBUILD_MSG);
+            ring = Ring.build(dataNodes, VIRTUAL_NODE_COUNT);
+            lastUpdate = clock.millis();
         } catch (Exception ex) {
+            membershipChangeRequied.set(true);
             LOG.error("Hash ring cannot be rebuilt", ex);
             return false;
         } finally {
@@ -112,25 +133,159 @@ public class HashRing {
     }
 
     /**
-     * Compute the owning node of modelID using consistent hashing
+     * Compute the owning node of modelID using consistent hashing.
+     * When co-location is enabled, a threshold model is owned by the node of RCF model partition 0.
+     *
+     * Nodes get virtual nodes in proportion to their model memory budget, so a node's
+     * share of models follows its share of the cluster's budget. The owner only
+     * depends on the data nodes and their budgets in the cluster state, so every node
+     * resolves a model to the same owner.
+     *
+     * The ring is only rebuilt after a membership change is recorded, so a lookup
+     * on an up-to-date ring is a volatile read plus a binary search.
+     *
      * @param modelId example: http-latency-rcf-1
      * @return the owning node of the modeID
      */
     public Optional<DiscoveryNode> getOwningNode(String modelId) {
-        build();
-
-        int modelHash = Murmur3HashFunction.hash(modelId);
-        Map.Entry<Integer, DiscoveryNode> entry = circle.higherEntry(modelHash);
+        Ring current = ring;
+        if (current.isEmpty() || membershipChangeRequied.get()) {
+            build();
+            current = ring;
+        }
 
         // The method can return an empty Optional. Say two concurrent getOwningNode requests to
         // the hash ring before it's been built. The first one starts building it,
         // turning on inProgress. The second one returns from build and continues on to
         // the rest of hashing and look up while the ring is still being built and thus empty.
         // The second getOwningNode request returns an empty Optional in this case.
-        return Optional.ofNullable(Optional.ofNullable(entry).orElse(circle.firstEntry())).map(x -> x.getValue());
+        return current.getOwningNode(modelId, colocateThresholdModel);
     }
 
     public void recordMembershipChange() {
         membershipChangeRequied.set(true);
     }
+
+    /**
+     * Immutable consistent hashing ring. Virtual node hashes are kept in a sorted
+     * array, and the owner of a hash is the node of the next larger virtual node
+     * hash, wrapping around to the first one.
+     */
+    static final class Ring {
+        static final Ring EMPTY = new Ring(new int[0], new int[0], new DiscoveryNode[0]);
+
+        // sorted virtual node hashes
+        private final int[] hashes;
+        // owners[i] is the index in nodes of the node owning hashes[i]
+        private final int[] owners;
+        private final DiscoveryNode[] nodes;
+
+        private Ring(int[] hashes, int[] owners, DiscoveryNode[] nodes) {
+            this.hashes = hashes;
+            this.owners = owners;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Builds a ring from data nodes. Nodes are ordered by id so that every node
+         * of the cluster resolves virtual node hash collisions the same way.
+         *
+         * A node gets virtualNodeCount virtual nodes per MODEL_MEMORY_BUDGET_UNIT of its model memory
+         * budget, at least one. The count depends on the node's own budget only, so a node joining or
+         * leaving does not move models between the other nodes.
+         */
+        static Ring build(List<DiscoveryNode> dataNodes, int virtualNodeCount) {
+            DiscoveryNode[] nodes = dataNodes.toArray(new DiscoveryNode[0]);
+            Arrays.sort(nodes, Comparator.comparing(DiscoveryNode::getId));
+
+            int[] virtualNodeCounts = new int[nodes.length];
+            int total = 0;
+            for (int n = 0; n < nodes.length; n++) {
+                long budget = getModelMemoryBudget(nodes[n]);
+                virtualNodeCounts[n] = (int) Math.max(1, Math.round((double) virtualNodeCount * budget / MODEL_MEMORY_BUDGET_UNIT));
+                total += virtualNodeCounts[n];
+            }
+
+            // hash in the high bits and node index in the low bits, so sorting orders by hash
+            long[] virtualNodes = new long[total];
+            int count = 0;
+            for (int n = 0; n < nodes.length; n++) {
+                for (int i = 0; i < virtualNodeCounts[n]; i++) {
+                    long hash = Murmur3HashFunction.hash(nodes[n].getId() + i);
+                    virtualNodes[count++] = (hash << 32) | n;
+                }
+            }
+            Arrays.sort(virtualNodes);
+
+            int[] hashes = new int[virtualNodes.length];
+            int[] owners = new int[virtualNodes.length];
+            int size = 0;
+            for (long virtualNode : virtualNodes) {
+                int hash = (int) (virtualNode >> 32);
+                if (size > 0 && hashes[size - 1] == hash) {
+                    continue;
+                }
+                hashes[size] = hash;
+                owners[size] = (int) virtualNode;
+                size++;
+            }
+            return new Ring(Arrays.copyOf(hashes, size), Arrays.copyOf(owners, size), nodes);
+        }
+
+        private static long getModelMemoryBudget(DiscoveryNode node) {
+            String budget = node.getAttributes().get(MODEL_MEMORY_BUDGET_ATTR);
+            if (budget == null) {
+                return MODEL_MEMORY_BUDGET_UNIT;
+            }
+            try {
+                long bytes = Long.parseLong(budget);
+                if (bytes > 0) {
+                    return bytes;
+                }
+            } catch (NumberFormatException e) {
+                // warned below
+            }
+            LOG.warn("Invalid model memory budget {}", budget);
+            return MODEL_MEMORY_BUDGET_UNIT;
+        }
+
+        boolean isEmpty() {
+            return hashes.length == 0;
+        }
+
+        boolean hasSameNodes(List<DiscoveryNode> dataNodes) {
+            if (dataNodes.size() != nodes.length) {
+                return false;
+            }
+            // a restarted node has a new ephemeral id and possibly a new model memory budget
+            Set<String> nodeIds = new HashSet<>();
+            for (DiscoveryNode node : nodes) {
+                nodeIds.add(node.getEphemeralId());
+            }
+            for (DiscoveryNode node : dataNodes) {
+                if (!nodeIds.contains(node.getEphemeralId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Optional<DiscoveryNode> getOwningNode(String modelId, boolean colocateThresholdModel) {
+            if (isEmpty()) {
+                return Optional.empty();
+            }
+            String placementId = modelId;
+            if (colocateThresholdModel && modelId.endsWith(THRESHOLD_MODEL_ID_SUFFIX)) {
+                placementId = modelId.substring(0, modelId.length() - THRESHOLD_MODEL_ID_SUFFIX.length()) + COLOCATED_RCF_MODEL_ID_SUFFIX;
+            }
+            return Optional.of(nodes[owners[higherIndex(Murmur3HashFunction.hash(placementId))]]);
+        }
+
+        // index of the smallest hash larger than the given hash, wrapping around to 0
+        private int higherIndex(int hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            index = index >= 0 ? index + 1 : -(index + 1);
+            return index == hashes.length ? 0 : index;
+        }
+    }
 }
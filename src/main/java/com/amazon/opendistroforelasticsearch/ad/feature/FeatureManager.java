@@ -20,14 +20,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -52,8 +49,8 @@ public class FeatureManager {
 
     private static final Logger logger = LogManager.getLogger(FeatureManager.class);
 
-    // Each anomaly detector has a queue of data points with timestamps (in epoch milliseconds).
-    private final Map<String, ArrayDeque<Entry<Long, double[]>>> detectorIdsToTimeShingles;
+    // Each anomaly detector has a buffer of data points with timestamps (in epoch milliseconds).
+    private final Map<String, ShingleBuffer> detectorIdsToTimeShingles;
 
     private final SearchFeatureDao searchFeatureDao;
     private final Interpolator interpolator;
@@ -66,6 +63,7 @@ public class FeatureManager {
     private final int maxNeighborDistance;
     private final int maxPreviewSamples;
     private final Duration featureBufferTtl;
+    private final boolean fullResolutionPreview;
 
     /**
      * Constructor with dependencies and configuration.
@@ -84,6 +82,28 @@ public class FeatureManager {
     public FeatureManager(SearchFeatureDao searchFeatureDao, Interpolator interpolator, Clock clock,
         int maxTrainSamples, int maxSampleStride, int shingleSize, int maxMissingPoints, int maxNeighborDistance,
         int maxPreviewSamples, Duration featureBufferTtl) {
+        this(searchFeatureDao, interpolator, clock, maxTrainSamples, maxSampleStride, shingleSize, maxMissingPoints,
+            maxNeighborDistance, maxPreviewSamples, featureBufferTtl, false);
+    }
+
+    /**
+     * Constructor with dependencies and configuration.
+     *
+     * @param searchFeatureDao DAO of features from search
+     * @param interpolator interpolator of samples
+     * @param clock clock for system time
+     * @param maxTrainSamples max number of samples from search
+     * @param maxSampleStride max stride between uninterpolated train samples
+     * @param shingleSize size of feature shingles
+     * @param maxMissingPoints max number of missing points allowed to generate a shingle
+     * @param maxNeighborDistance max distance (number of intervals) between a missing point and a replacement neighbor
+     * @param maxPreviewSamples max number of samples from search for preview features
+     * @param featureBufferTtl time to live for stale feature buffers
+     * @param fullResolutionPreview whether preview features are read for every interval instead of interpolated from samples
+     */
+    public FeatureManager(SearchFeatureDao searchFeatureDao, Interpolator interpolator, Clock clock,
+        int maxTrainSamples, int maxSampleStride, int shingleSize, int maxMissingPoints, int maxNeighborDistance,
+        int maxPreviewSamples, Duration featureBufferTtl, boolean fullResolutionPreview) {
         this.searchFeatureDao = searchFeatureDao;
         this.interpolator = interpolator;
         this.clock = clock;
@@ -94,10 +114,24 @@ public class FeatureManager {
         this.maxNeighborDistance = maxNeighborDistance;
         this.maxPreviewSamples = maxPreviewSamples;
         this.featureBufferTtl = featureBufferTtl;
+        this.fullResolutionPreview = fullResolutionPreview;
 
         this.detectorIdsToTimeShingles = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Returns the time features are read at in place of the given time.
+     *
+     * Feature searches may align their ranges to interval boundaries, so data points are reported with the aligned range.
+     *
+     * @param detector anomaly detector for which the features are read
+     * @param time epoch milliseconds
+     * @return epoch milliseconds features are read at
+     */
+    public long alignToInterval(AnomalyDetector detector, long time) {
+        return searchFeatureDao.alignToInterval(detector, time);
+    }
+
     /**
      * Returns unprocessed features and processed features (such as shingle) for the current data point.
      *
@@ -110,47 +144,78 @@ public class FeatureManager {
      */
     @Deprecated
     public SinglePointFeatures getCurrentFeatures(AnomalyDetector detector, long startTime, long endTime) {
-        double[][] currentPoints = null;
-        Deque<Entry<Long, double[]>> shingle = detectorIdsToTimeShingles.computeIfAbsent(
-            detector.getDetectorId(), id -> new ArrayDeque<Entry<Long, double[]>>(shingleSize));
-        if (shingle.isEmpty() || shingle.getLast().getKey() < endTime) {
+        ShingleBuffer shingle = detectorIdsToTimeShingles.computeIfAbsent(detector.getDetectorId(), id -> new ShingleBuffer(shingleSize));
+        boolean isDataPointMissing;
+        synchronized (shingle) {
+            isDataPointMissing = shingle.isEmpty() || shingle.getLastTime() < endTime;
+        }
+        if (isDataPointMissing) {
             Optional<double[]> point = searchFeatureDao.getFeaturesForPeriod(detector, startTime, endTime);
-            if (point.isPresent()) {
-                if (shingle.size() == shingleSize) {
-                    shingle.remove();
-                }
-                shingle.add(new SimpleImmutableEntry<>(endTime, point.get()));
-            } else {
-                return new SinglePointFeatures(Optional.empty(), Optional.empty());
+            return updateUnprocessedFeatures(point, shingle, detector, endTime);
+        } else {
+            return getProcessedFeatures(shingle, detector, endTime);
+        }
+    }
+
+    /**
+     * Returns to listener unprocessed features and processed features (such as shingle) for the current data point.
+     *
+     * The search for the data point does not block the calling thread.
+     *
+     * @param detector anomaly detector for which the features are returned
+     * @param startTime start time of the data point in epoch milliseconds
+     * @param endTime end time of the data point in epoch milliseconds
+     * @param listener onResponse is called with unprocessed features and processed features for the current data point
+     */
+    public void getCurrentFeatures(AnomalyDetector detector, long startTime, long endTime,
+            ActionListener<SinglePointFeatures> listener) {
+        ShingleBuffer shingle = detectorIdsToTimeShingles.computeIfAbsent(detector.getDetectorId(), id -> new ShingleBuffer(shingleSize));
+        boolean isDataPointMissing;
+        synchronized (shingle) {
+            isDataPointMissing = shingle.isEmpty() || shingle.getLastTime() < endTime;
+        }
+        if (isDataPointMissing) {
+            searchFeatureDao.getFeaturesForPeriod(detector, startTime, endTime, ActionListener.wrap(
+                point -> listener.onResponse(updateUnprocessedFeatures(point, shingle, detector, endTime)),
+                listener::onFailure));
+        } else {
+            listener.onResponse(getProcessedFeatures(shingle, detector, endTime));
+        }
+    }
+
+    private SinglePointFeatures updateUnprocessedFeatures(Optional<double[]> point, ShingleBuffer shingle, AnomalyDetector detector,
+            long endTime) {
+        if (!point.isPresent()) {
+            return new SinglePointFeatures(Optional.empty(), Optional.empty());
+        }
+        synchronized (shingle) {
+            if (shingle.isEmpty() || shingle.getLastTime() < endTime) {
+                shingle.add(endTime, point.get());
             }
         }
-        currentPoints = filterAndFill(shingle, endTime, detector);
-        Optional<double[]> currentPoint = Optional.ofNullable(shingle.peekLast().getValue());
-        return Optional.ofNullable(currentPoints)
-            .map(points -> new SinglePointFeatures(currentPoint, Optional.of(batchShingle(points, shingleSize)[0])))
-            .orElse(new SinglePointFeatures(currentPoint, Optional.empty()));
+        return getProcessedFeatures(shingle, detector, endTime);
+    }
+
+    private boolean isStale(ShingleBuffer shingle) {
+        synchronized (shingle) {
+            return shingle.isEmpty() || Instant.ofEpochMilli(shingle.getLastTime()).plus(featureBufferTtl).isBefore(clock.instant());
+        }
     }
 
-    private double[][] filterAndFill(Deque<Entry<Long, double[]>> shingle, long endTime, AnomalyDetector detector) {
+    private SinglePointFeatures getProcessedFeatures(ShingleBuffer shingle, AnomalyDetector detector, long endTime) {
         long intervalMilli = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
-        double[][] result = null;
-        if (shingle.size() >= shingleSize - maxMissingPoints) {
-            TreeMap<Long, double[]> search = new TreeMap<>(shingle.stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue)));
-            result = IntStream.rangeClosed(1, shingleSize).mapToLong(i -> endTime - (shingleSize - i) * intervalMilli)
-                .mapToObj(t -> {
-                    Optional<Entry<Long, double[]>> after = Optional.ofNullable(search.ceilingEntry(t));
-                    Optional<Entry<Long, double[]>> before = Optional.ofNullable(search.floorEntry(t));
-                    return after.filter(a -> Math.abs(t - a.getKey()) <= before.map(b -> Math.abs(t - b.getKey())).orElse(Long.MAX_VALUE))
-                        .map(Optional::of).orElse(before)
-                        .filter(e -> Math.abs(t - e.getKey()) < intervalMilli * maxNeighborDistance)
-                        .map(Entry::getValue).orElse(null); })
-               .filter(d -> d != null)
-               .toArray(double[][]::new);
-            if (result.length < shingleSize) {
-                result = null;
+        Optional<double[]> currentPoint;
+        Optional<double[]> processedPoint = Optional.empty();
+        synchronized (shingle) {
+            currentPoint = Optional.of(shingle.getLastPoint());
+            if (shingle.size() >= shingleSize - maxMissingPoints && shingle.getDimension() > 0) {
+                double[] shinglePoint = new double[shingleSize * shingle.getDimension()];
+                if (shingle.fillShingle(endTime, intervalMilli, maxNeighborDistance, shinglePoint)) {
+                    processedPoint = Optional.of(shinglePoint);
+                }
             }
         }
-        return result;
+        return new SinglePointFeatures(currentPoint, processedPoint);
     }
 
     /**
@@ -200,12 +265,13 @@ public class FeatureManager {
     }
 
     /**
-     * Deletes managed features for the detector.
+     * Deletes managed features and the parsed feature query for the detector.
      *
      * @param detectorId ID of the detector
      */
     public void clear(String detectorId) {
         detectorIdsToTimeShingles.remove(detectorId);
+        searchFeatureDao.clear(detectorId);
     }
 
     /**
@@ -216,9 +282,7 @@ public class FeatureManager {
      */
     public void maintenance() {
         try {
-            detectorIdsToTimeShingles.entrySet().removeIf(idQueue ->
-                Optional.ofNullable(idQueue.getValue().peekLast())
-                .map(p -> Instant.ofEpochMilli(p.getKey()).plus(featureBufferTtl).isBefore(clock.instant())).orElse(true));
+            detectorIdsToTimeShingles.entrySet().removeIf(idShingle -> isStale(idShingle.getValue()));
         } catch (Exception e) {
             logger.warn("Caught exception during maintenance", e);
         }
@@ -257,6 +321,7 @@ public class FeatureManager {
      *
      * Due to the constraints (workload, latency) from preview, a small number of data samples are from actual
      * query results and the remaining are from interpolation. The results are approximate to the actual features.
+     * With full resolution preview, every interval is read from bucketed aggregations and the results are exact.
      *
      * @param detector detector info containing indices, features, interval, etc
      * @param startMilli start of the range in epoch milliseconds
@@ -266,6 +331,15 @@ public class FeatureManager {
      */
     public void getPreviewFeatures(AnomalyDetector detector, long startMilli, long endMilli,
             ActionListener<Features> listener) {
+        if (fullResolutionPreview) {
+            getFullResolutionPreviewFeatures(detector, startMilli, endMilli, listener);
+        } else {
+            getSampledPreviewFeatures(detector, startMilli, endMilli, listener);
+        }
+    }
+
+    private void getSampledPreviewFeatures(AnomalyDetector detector, long startMilli, long endMilli,
+            ActionListener<Features> listener) {
         Entry<List<Entry<Long, Long>>, Integer> sampleRangeResults = getSampleRanges(detector, startMilli, endMilli);
         List<Entry<Long, Long>> sampleRanges = sampleRangeResults.getKey();
         int stride = sampleRangeResults.getValue();
@@ -280,6 +354,50 @@ public class FeatureManager {
         }, listener::onFailure));
     }
 
+    /**
+     * Returns to listener feature data points (unprocessed and processed) of every interval in the period.
+     *
+     * Shingles are filled the same way as for real-time detection: an interval without data gets no data point,
+     * and missing data points in a shingle are filled with neighbors up to maxNeighborDistance intervals away.
+     * When fewer intervals get a data point than a shingle needs to be filled, the data is too sparse and
+     * the sampled preview is returned instead.
+     */
+    private void getFullResolutionPreviewFeatures(AnomalyDetector detector, long startMilli, long endMilli,
+            ActionListener<Features> listener) {
+        // ranges are reported as searched
+        long start = searchFeatureDao.alignToInterval(detector, truncateToMinute(startMilli));
+        long bucketSize = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+        long numBuckets = Math.max(0, (truncateToMinute(endMilli) - start) / bucketSize);
+        long end = start + numBuckets * bucketSize;
+
+        searchFeatureDao.getFeaturesByPeriodEnd(detector, start, end, ActionListener.wrap(features -> {
+            ShingleBuffer shingle = new ShingleBuffer(shingleSize);
+            List<Entry<Long, Long>> ranges = new ArrayList<>(features.size());
+            List<double[]> unprocessed = new ArrayList<>(features.size());
+            List<double[]> processed = new ArrayList<>(features.size());
+            for (long periodEnd = start + bucketSize; periodEnd <= end; periodEnd += bucketSize) {
+                double[] point = features.get(periodEnd);
+                if (point == null) {
+                    continue;
+                }
+                shingle.add(periodEnd, point);
+                if (shingle.size() >= shingleSize - maxMissingPoints) {
+                    double[] shinglePoint = new double[shingleSize * shingle.getDimension()];
+                    if (shingle.fillShingle(periodEnd, bucketSize, maxNeighborDistance, shinglePoint)) {
+                        ranges.add(new SimpleImmutableEntry<>(periodEnd - bucketSize, periodEnd));
+                        unprocessed.add(point);
+                        processed.add(shinglePoint);
+                    }
+                }
+            }
+            if (processed.isEmpty() || (long) processed.size() * shingleSize < numBuckets * (shingleSize - maxMissingPoints)) {
+                getSampledPreviewFeatures(detector, startMilli, endMilli, listener);
+                return;
+            }
+            listener.onResponse(new Features(ranges, unprocessed.toArray(new double[0][0]), processed.toArray(new double[0][0])));
+        }, listener::onFailure));
+    }
+
     /**
      * Gets time ranges of sampled data points.
      *
@@ -289,7 +407,8 @@ public class FeatureManager {
      * @return key is a list of sampled time ranges, value is the stride between samples
      */
     private Entry<List<Entry<Long, Long>>, Integer> getSampleRanges(AnomalyDetector detector, long startMilli, long endMilli) {
-        long start = truncateToMinute(startMilli);
+        // ranges are reported as searched
+        long start = searchFeatureDao.alignToInterval(detector, truncateToMinute(startMilli));
         long end = truncateToMinute(endMilli);
         long bucketSize = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
         int numBuckets = (int)Math.floor((end - start)/(double)bucketSize);
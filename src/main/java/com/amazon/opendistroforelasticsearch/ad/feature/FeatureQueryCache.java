@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.util.ParseUtils;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+/**
+ * Caches parsed feature aggregations of detectors.
+ *
+ * Feature aggregations are parsed once per detector version, after which feature queries
+ * only differ by the time range. Detectors without an id or version, such as detectors in preview,
+ * are parsed every time.
+ */
+public class FeatureQueryCache {
+
+    private final NamedXContentRegistry xContent;
+
+    // detector id to the detector version and parsed feature aggregations of that version
+    private final Map<String, Entry<Long, List<AggregationBuilder>>> detectorIdsToAggregations = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param xContent ES XContentRegistry
+     */
+    public FeatureQueryCache(NamedXContentRegistry xContent) {
+        this.xContent = xContent;
+    }
+
+    /**
+     * Gets the feature query of the detector for the time range.
+     *
+     * @param detector info about the indices, documents, feature query
+     * @param startTime epoch milliseconds at the beginning of the period
+     * @param endTime epoch milliseconds at the end of the period
+     * @return feature query for the time range
+     * @throws IOException when feature aggregations cannot be parsed
+     */
+    public SearchSourceBuilder getFeatureQuery(AnomalyDetector detector, long startTime, long endTime) throws IOException {
+        String detectorId = detector.getDetectorId();
+        Long version = detector.getVersion();
+        if (Strings.isNullOrEmpty(detectorId) || version == null) {
+            return ParseUtils.generateInternalFeatureQuery(detector, startTime, endTime, xContent);
+        }
+        Entry<Long, List<AggregationBuilder>> aggregations = detectorIdsToAggregations.get(detectorId);
+        if (aggregations == null || !version.equals(aggregations.getKey())) {
+            aggregations = new SimpleImmutableEntry<>(version, ParseUtils.parseFeatureAggregations(detector, xContent));
+            detectorIdsToAggregations.put(detectorId, aggregations);
+        }
+        return ParseUtils.generateInternalFeatureQuery(detector, startTime, endTime, aggregations.getValue());
+    }
+
+    /**
+     * Removes parsed feature aggregations of the detector.
+     *
+     * @param detectorId ID of the detector
+     */
+    public void clear(String detectorId) {
+        detectorIdsToAggregations.remove(detectorId);
+    }
+}
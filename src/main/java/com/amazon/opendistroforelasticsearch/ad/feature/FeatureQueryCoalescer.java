@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Coalesces feature queries of many detectors into multi-search requests.
+ *
+ * Queries with the same batch key, such as the same indices and interval boundaries,
+ * arriving within the batch window are sent in one multi-search request. Responses
+ * are returned to each query's own listener in submission order.
+ */
+public class FeatureQueryCoalescer {
+
+    private static final Logger logger = LogManager.getLogger(FeatureQueryCoalescer.class);
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final TimeValue batchWindow;
+    private final int maxBatchSize;
+    private final ADStats adStats;
+
+    private final Map<String, Batch> pendingBatches = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param client ES client for queries
+     * @param threadPool thread pool to schedule batch flushes
+     * @param batchWindow time to wait for more queries of the same batch key
+     * @param maxBatchSize number of queries at which a batch is sent without waiting
+     * @param adStats AD statistics
+     */
+    public FeatureQueryCoalescer(Client client, ThreadPool threadPool, TimeValue batchWindow, int maxBatchSize, ADStats adStats) {
+        this.client = client;
+        this.threadPool = threadPool;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.adStats = adStats;
+    }
+
+    /**
+     * Submits a search to be sent with other searches of the same batch key.
+     *
+     * @param batchKey key of searches that can be sent together
+     * @param request search request
+     * @param listener onResponse is called with the search response of the request
+     */
+    public void search(String batchKey, SearchRequest request, ActionListener<SearchResponse> listener) {
+        adStats.counter(StatNames.AD_FEATURE_QUERY_COUNT).increment();
+        if (batchWindow.millis() <= 0 || maxBatchSize <= 1) {
+            adStats.counter(StatNames.AD_FEATURE_QUERY_ROUND_TRIP_COUNT).increment();
+            client.search(request, listener);
+            return;
+        }
+
+        Batch batch;
+        boolean isNewBatch = false;
+        boolean isFull = false;
+        synchronized (pendingBatches) {
+            batch = pendingBatches.get(batchKey);
+            if (batch == null) {
+                batch = new Batch();
+                pendingBatches.put(batchKey, batch);
+                isNewBatch = true;
+            }
+            batch.add(request, listener);
+            if (batch.size() >= maxBatchSize) {
+                pendingBatches.remove(batchKey);
+                isFull = true;
+            }
+        }
+
+        if (isFull) {
+            send(batch);
+        } else if (isNewBatch) {
+            Batch scheduledBatch = batch;
+            threadPool.schedule(() -> flush(batchKey, scheduledBatch), batchWindow, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    private void flush(String batchKey, Batch batch) {
+        boolean isPending;
+        synchronized (pendingBatches) {
+            isPending = pendingBatches.remove(batchKey, batch);
+        }
+        // a batch no longer pending was sent when it became full
+        if (isPending) {
+            send(batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        adStats.counter(StatNames.AD_FEATURE_QUERY_ROUND_TRIP_COUNT).increment();
+        if (batch.size() == 1) {
+            client.search(batch.requests.get(0), batch.listeners.get(0));
+            return;
+        }
+
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        batch.requests.forEach(multiSearchRequest::add);
+        client.multiSearch(multiSearchRequest, ActionListener.wrap(response -> {
+            MultiSearchResponse.Item[] items = response.getResponses();
+            for (int i = 0; i < batch.size(); i++) {
+                ActionListener<SearchResponse> listener = batch.listeners.get(i);
+                try {
+                    if (items[i].isFailure()) {
+                        listener.onFailure(items[i].getFailure());
+                    } else {
+                        listener.onResponse(items[i].getResponse());
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to return feature query response", e);
+                }
+            }
+        }, exception -> {
+            for (ActionListener<SearchResponse> listener : batch.listeners) {
+                try {
+                    listener.onFailure(exception);
+                } catch (Exception e) {
+                    logger.error("Failed to return feature query failure", e);
+                }
+            }
+        }));
+    }
+
+    private static class Batch {
+        private final List<SearchRequest> requests = new ArrayList<>();
+        private final List<ActionListener<SearchResponse>> listeners = new ArrayList<>();
+
+        private void add(SearchRequest request, ActionListener<SearchResponse> listener) {
+            requests.add(request);
+            listeners.add(listener);
+        }
+
+        private int size() {
+            return requests.size();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.RemovalNotification;
+
+/**
+ * Node-level cache of features of closed intervals.
+ *
+ * Features of an interval no longer change once the interval ends before the window delay,
+ * so cold start, preview and real-time runs of a detector reuse each other's search results.
+ * Features are keyed by detector id, detector version and interval end time. Intervals known to have
+ * no data are cached as well. The least recently used intervals are dropped beyond the max bytes.
+ * Detectors without an id or version, such as detectors in preview, are not cached.
+ */
+public class HistoricalFeatureCache {
+
+    private static final double[] NO_DATA = new double[0];
+    // estimated bytes of the key and the cache entry besides the features
+    private static final long ENTRY_OVERHEAD_BYTES = 200;
+
+    private final Clock clock;
+    private final ADStats adStats;
+
+    private final Cache<String, double[]> features;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes max estimated bytes of cached intervals
+     * @param clock clock for system time
+     * @param adStats AD statistics
+     */
+    public HistoricalFeatureCache(long maxBytes, Clock clock, ADStats adStats) {
+        this.clock = clock;
+        this.adStats = adStats;
+        this.features = CacheBuilder.<String, double[]>builder()
+            .setMaximumWeight(maxBytes)
+            .weigher((key, point) -> getBytes(point))
+            .removalListener(this::onRemoval)
+            .build();
+
+        adStats.gauge(StatNames.AD_FEATURE_CACHE_SIZE, () -> (long) getCount());
+    }
+
+    /**
+     * Gets cached features of the intervals between the start and end time.
+     *
+     * A lookup counts as a hit when every interval is cached, since any uncached interval is searched.
+     *
+     * @param detector detector info containing id, version and interval
+     * @param startTime epoch milliseconds at the beginning of the earliest interval
+     * @param endTime epoch milliseconds at the end of the latest interval
+     * @return features of cached intervals keyed by interval end time, empty for cached intervals without data
+     */
+    public Map<Long, Optional<double[]>> get(AnomalyDetector detector, long startTime, long endTime) {
+        Map<Long, Optional<double[]>> cached = new HashMap<>();
+        if (!isCacheable(detector)) {
+            return cached;
+        }
+        long interval = getIntervalMillis(detector);
+        boolean isHit = true;
+        for (long intervalEnd = endTime; intervalEnd > startTime; intervalEnd -= interval) {
+            double[] point = features.get(getKey(detector, intervalEnd));
+            if (point == null) {
+                isHit = false;
+            } else {
+                cached.put(intervalEnd, point == NO_DATA ? Optional.empty() : Optional.of(point));
+            }
+        }
+        adStats.counter(isHit ? StatNames.AD_FEATURE_CACHE_HIT_COUNT : StatNames.AD_FEATURE_CACHE_MISS_COUNT).increment();
+        return cached;
+    }
+
+    /**
+     * Caches features of the closed intervals between the start and end time.
+     *
+     * Intervals ending after the window delay are not cached since their data may still arrive.
+     *
+     * @param detector detector info containing id, version, interval and window delay
+     * @param startTime epoch milliseconds at the beginning of the earliest interval
+     * @param endTime epoch milliseconds at the end of the latest interval
+     * @param searchResults features from search keyed by interval end time, intervals without data are absent
+     */
+    public void put(AnomalyDetector detector, long startTime, long endTime, Map<Long, double[]> searchResults) {
+        if (!isCacheable(detector)) {
+            return;
+        }
+        long interval = getIntervalMillis(detector);
+        long closedTime = clock.millis() - Optional.ofNullable((IntervalTimeConfiguration) detector.getWindowDelay())
+            .map(delay -> delay.toDuration().toMillis()).orElse(0L);
+        for (long intervalEnd = endTime; intervalEnd > startTime; intervalEnd -= interval) {
+            if (intervalEnd <= closedTime) {
+                features.put(getKey(detector, intervalEnd), Optional.ofNullable(searchResults.get(intervalEnd)).orElse(NO_DATA));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached intervals.
+     *
+     * @return number of cached intervals
+     */
+    public int getCount() {
+        return features.count();
+    }
+
+    /**
+     * Returns the estimated bytes of a cached interval.
+     *
+     * @param point features of the interval
+     * @return estimated bytes of the cached interval
+     */
+    static long getBytes(double[] point) {
+        return ENTRY_OVERHEAD_BYTES + RamUsageEstimator.sizeOf(point);
+    }
+
+    private void onRemoval(RemovalNotification<String, double[]> notification) {
+        if (notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED) {
+            adStats.counter(StatNames.AD_FEATURE_CACHE_EVICTION_COUNT).increment();
+        }
+    }
+
+    private boolean isCacheable(AnomalyDetector detector) {
+        return !Strings.isNullOrEmpty(detector.getDetectorId()) && detector.getVersion() != null;
+    }
+
+    private long getIntervalMillis(AnomalyDetector detector) {
+        return ((IntervalTimeConfiguration) detector.getDetectionInterval()).toDuration().toMillis();
+    }
+
+    private String getKey(AnomalyDetector detector, long intervalEnd) {
+        return detector.getDetectorId() + "|" + detector.getVersion() + "|" + intervalEnd;
+    }
+}
@@ -16,8 +16,11 @@
 package com.amazon.opendistroforelasticsearch.ad.feature;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -41,6 +44,10 @@ import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.metrics.Max;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -52,6 +59,9 @@ import org.elasticsearch.search.aggregations.metrics.Percentile;
 
 import com.amazon.opendistroforelasticsearch.ad.dataprocessor.Interpolator;
 
+import static com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings.FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
 import static org.apache.commons.math3.linear.MatrixUtils.createRealMatrix;
 
 /**
@@ -60,6 +70,7 @@ import static org.apache.commons.math3.linear.MatrixUtils.createRealMatrix;
 public class SearchFeatureDao {
 
     protected static final String AGG_NAME_MAX = "max_timefield";
+    protected static final String AGG_NAME_PERIODS = "feature_periods";
     protected static final String FEATURE_SAMPLE_PREFERENCE = "_shards:0";
 
     private static final Logger logger = LogManager.getLogger(SearchFeatureDao.class);
@@ -70,6 +81,10 @@ public class SearchFeatureDao {
     private final NamedXContentRegistry xContent;
     private final Interpolator interpolator;
     private final ClientUtil clientUtil;
+    private final Optional<FeatureQueryCoalescer> coalescer;
+    private final Optional<FeatureQueryCache> featureQueryCache;
+    private final Optional<ShardRequestCachePolicy> requestCachePolicy;
+    private final Optional<HistoricalFeatureCache> featureCache;
 
     /**
      * Constructor injection.
@@ -82,11 +97,65 @@ public class SearchFeatureDao {
      */
     public SearchFeatureDao(Client client, ScriptService scriptService, NamedXContentRegistry xContent,
         Interpolator interpolator, ClientUtil clientUtil) {
+        this(client, scriptService, xContent, interpolator, clientUtil, null);
+    }
+
+    /**
+     * Constructor injection.
+     *
+     * @param client ES client for queries
+     * @param scriptService ES ScriptService
+     * @param xContent ES XContentRegistry
+     * @param interpolator interpolator for missing values
+     * @param clientUtil utility for ES client
+     * @param coalescer coalescer of current feature queries across detectors, null to search individually
+     */
+    public SearchFeatureDao(Client client, ScriptService scriptService, NamedXContentRegistry xContent,
+        Interpolator interpolator, ClientUtil clientUtil, FeatureQueryCoalescer coalescer) {
+        this(client, scriptService, xContent, interpolator, clientUtil, coalescer, null);
+    }
+
+    /**
+     * Constructor injection.
+     *
+     * @param client ES client for queries
+     * @param scriptService ES ScriptService
+     * @param xContent ES XContentRegistry
+     * @param interpolator interpolator for missing values
+     * @param clientUtil utility for ES client
+     * @param coalescer coalescer of current feature queries across detectors, null to search individually
+     * @param featureQueryCache cache of parsed feature aggregations, null to parse for every query
+     */
+    public SearchFeatureDao(Client client, ScriptService scriptService, NamedXContentRegistry xContent,
+        Interpolator interpolator, ClientUtil clientUtil, FeatureQueryCoalescer coalescer, FeatureQueryCache featureQueryCache) {
+        this(client, scriptService, xContent, interpolator, clientUtil, coalescer, featureQueryCache, null, null);
+    }
+
+    /**
+     * Constructor injection.
+     *
+     * @param client ES client for queries
+     * @param scriptService ES ScriptService
+     * @param xContent ES XContentRegistry
+     * @param interpolator interpolator for missing values
+     * @param clientUtil utility for ES client
+     * @param coalescer coalescer of current feature queries across detectors, null to search individually
+     * @param featureQueryCache cache of parsed feature aggregations, null to parse for every query
+     * @param requestCachePolicy policy making feature searches cacheable by shards, null to search with exact ranges
+     * @param featureCache cache of features of closed intervals, null to search for every interval
+     */
+    public SearchFeatureDao(Client client, ScriptService scriptService, NamedXContentRegistry xContent,
+        Interpolator interpolator, ClientUtil clientUtil, FeatureQueryCoalescer coalescer, FeatureQueryCache featureQueryCache,
+        ShardRequestCachePolicy requestCachePolicy, HistoricalFeatureCache featureCache) {
         this.client = client;
         this.scriptService = scriptService;
         this.xContent = xContent;
         this.interpolator = interpolator;
         this.clientUtil = clientUtil;
+        this.coalescer = Optional.ofNullable(coalescer);
+        this.featureQueryCache = Optional.ofNullable(featureQueryCache);
+        this.requestCachePolicy = Optional.ofNullable(requestCachePolicy);
+        this.featureCache = Optional.ofNullable(featureCache);
     }
 
     /**
@@ -112,22 +181,84 @@ public class SearchFeatureDao {
     /**
      * Gets features for the given time period.
      *
+     * @deprecated use getFeaturesForPeriod with listener instead.
+     *
      * @param detector info about indices, documents, feature query
      * @param startTime epoch milliseconds at the beginning of the period
      * @param endTime epoch milliseconds at the end of the period
      * @throws IllegalStateException when unexpected failures happen
      * @return features from search results, empty when no data found
      */
+    @Deprecated
     public Optional<double[]> getFeaturesForPeriod(AnomalyDetector detector, long startTime, long endTime) {
-        SearchRequest searchRequest = createFeatureSearchRequest(detector, startTime, endTime, Optional.empty());
-        return clientUtil.<SearchRequest, SearchResponse>timedRequest(searchRequest, logger, client::search)
-            .flatMap(resp -> parseResponse(resp, detector.getEnabledFeatureIds()));
+        long start = alignToInterval(detector, startTime);
+        long end = alignToInterval(detector, endTime);
+        boolean isCacheable = isSinglePeriod(detector, start, end);
+        if (isCacheable) {
+            Map<Long, Optional<double[]>> cached = getCachedFeatures(detector, start, end);
+            if (cached.containsKey(end)) {
+                return cached.get(end);
+            }
+        }
+        SearchRequest searchRequest = createFeatureSearchRequest(detector, start, end, Optional.empty());
+        Optional<SearchResponse> response = clientUtil.<SearchRequest, SearchResponse>timedRequest(searchRequest, logger, client::search);
+        Optional<double[]> features = response.flatMap(resp -> parseResponse(resp, detector.getEnabledFeatureIds()));
+        if (isCacheable && response.map(this::isComplete).orElse(false)) {
+            cacheFeatures(detector, start, end, features.map(values -> singletonMap(end, values)).orElse(emptyMap()));
+        }
+        return features;
+    }
+
+    /**
+     * Returns to listener features for the given time period.
+     *
+     * Queries of detectors on the same indices and time period are sent together when a coalescer is configured.
+     *
+     * @param detector info about indices, documents, feature query
+     * @param startTime epoch milliseconds at the beginning of the period
+     * @param endTime epoch milliseconds at the end of the period
+     * @param listener onResponse is called with features from search results, empty when no data found
+     */
+    public void getFeaturesForPeriod(AnomalyDetector detector, long startTime, long endTime,
+            ActionListener<Optional<double[]>> listener) {
+        long start = alignToInterval(detector, startTime);
+        long end = alignToInterval(detector, endTime);
+        boolean isCacheable = isSinglePeriod(detector, start, end);
+        if (isCacheable) {
+            Map<Long, Optional<double[]>> cached = getCachedFeatures(detector, start, end);
+            if (cached.containsKey(end)) {
+                listener.onResponse(cached.get(end));
+                return;
+            }
+        }
+        SearchRequest searchRequest = createFeatureSearchRequest(detector, start, end, Optional.empty());
+        ActionListener<SearchResponse> searchListener = ActionListener.wrap(response -> {
+            Optional<double[]> features = parseResponse(response, detector.getEnabledFeatureIds());
+            if (isCacheable && isComplete(response)) {
+                cacheFeatures(detector, start, end, features.map(values -> singletonMap(end, values)).orElse(emptyMap()));
+            }
+            listener.onResponse(features);
+        }, listener::onFailure);
+        if (coalescer.isPresent()) {
+            coalescer.get().search(getBatchKey(detector, start, end), searchRequest, searchListener);
+        } else {
+            client.search(searchRequest, searchListener);
+        }
+    }
+
+    private String getBatchKey(AnomalyDetector detector, long startTime, long endTime) {
+        return detector.getIndices().stream().sorted().collect(Collectors.joining(",", "", "|" + startTime + "|" + endTime));
     }
 
     private Optional<double[]> parseResponse(SearchResponse response, List<String> featureIds) {
         return Optional.ofNullable(response)
             .filter(resp -> response.getHits().getTotalHits().value > 0L)
             .map(resp-> resp.getAggregations())
+            .flatMap(aggs -> parseAggregations(aggs, featureIds));
+    }
+
+    private Optional<double[]> parseAggregations(Aggregations aggregations, List<String> featureIds) {
+        return Optional.ofNullable(aggregations)
             .map(aggs -> aggs.asMap())
             .map(map -> featureIds.stream()
                 .mapToDouble(id -> Optional.ofNullable(map.get(id)).map(this::parseAggregation).orElse(Double.NaN))
@@ -161,7 +292,8 @@ public class SearchFeatureDao {
     public List<Optional<double[]>> getFeatureSamplesForPeriods(AnomalyDetector detector, List<Entry<Long, Long>> ranges) {
          MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
          ranges.stream()
-             .map(range -> createFeatureSearchRequest(detector, range.getKey(), range.getValue(), Optional.of(FEATURE_SAMPLE_PREFERENCE)))
+             .map(range -> createFeatureSearchRequest(detector, alignToInterval(detector, range.getKey()),
+                 alignToInterval(detector, range.getValue()), Optional.of(FEATURE_SAMPLE_PREFERENCE)))
              .forEachOrdered(request -> multiSearchRequest.add(request));
 
          return clientUtil.<MultiSearchRequest, MultiSearchResponse>timedRequest(multiSearchRequest, logger, client::multiSearch)
@@ -188,7 +320,8 @@ public class SearchFeatureDao {
             ActionListener<List<Optional<double[]>>> listener) {
         MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
         ranges.stream()
-                .map(range -> createFeatureSearchRequest(detector, range.getKey(), range.getValue(),
+                .map(range -> createFeatureSearchRequest(detector, alignToInterval(detector, range.getKey()),
+                        alignToInterval(detector, range.getValue()),
                         Optional.of(FEATURE_SAMPLE_PREFERENCE)))
                 .forEachOrdered(request -> multiSearchRequest.add(request));
 
@@ -207,16 +340,20 @@ public class SearchFeatureDao {
      * Sampling starts with the latest period and goes backwards in time until there are up to {@code maxSamples} samples.
      * If the initial stride {@code maxStride} results into a low count of samples, the implementation
      * may attempt with (exponentially) reduced strides and interpolate missing points.
+     * Features of all periods in the lookback window are read upfront so that no stride requires additional searches.
      *
      * @param detector info about indices, documents, feature query
      * @param maxSamples the maximum number of samples to return
      * @param maxStride the maximum number of periods between samples
-     * @param endTime the end time of the latest period
+     * @param latestTime the end time of the latest period, aligned down to an interval boundary with a request cache policy
      * @return sampled features and stride, empty when no data found
      */
     public Optional<Entry<double[][], Integer>> getFeaturesForSampledPeriods(
-        AnomalyDetector detector, int maxSamples, int maxStride, long endTime) {
-        Map<Long, double[]> cache = new HashMap<>();
+        AnomalyDetector detector, int maxSamples, int maxStride, long latestTime) {
+        long endTime = alignToInterval(detector, latestTime);
+        long span = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+        long startTime = endTime - span * ((long) maxStride * (maxSamples - 1) + 1);
+        Map<Long, double[]> cache = new HashMap<>(getFeaturesByPeriodEnd(detector, startTime, endTime));
         int currentStride = maxStride;
         Optional<double[][]> features = Optional.empty();
         while (currentStride >= 1) {
@@ -243,24 +380,18 @@ public class SearchFeatureDao {
             long end = endTime - span * stride * i;
             if (cache.containsKey(end)) {
                 sampledFeatures.addFirst(cache.get(end));
-            } else {
-                Optional<double[]> features = getFeaturesForPeriod(detector, end - span, end);
-                if (features.isPresent()) {
-                    cache.put(end, features.get());
-                    sampledFeatures.addFirst(features.get());
-                } else if (isInterpolatable) {
-                    Optional<double[]> previous = Optional.ofNullable(cache.get(end - span * stride));
-                    Optional<double[]> next = Optional.ofNullable(cache.get(end + span * stride));
-                    if (previous.isPresent() && next.isPresent()) {
-                        double[] interpolants = getInterpolants(previous.get(), next.get());
-                        cache.put(end, interpolants);
-                        sampledFeatures.addFirst(interpolants);
-                    } else {
-                        break;
-                    }
+            } else if (isInterpolatable) {
+                Optional<double[]> previous = Optional.ofNullable(cache.get(end - span * stride));
+                Optional<double[]> next = Optional.ofNullable(cache.get(end + span * stride));
+                if (previous.isPresent() && next.isPresent()) {
+                    double[] interpolants = getInterpolants(previous.get(), next.get());
+                    cache.put(end, interpolants);
+                    sampledFeatures.addFirst(interpolants);
                 } else {
                     break;
                 }
+            } else {
+                break;
             }
         }
         Optional<double[][]> samples;
@@ -272,6 +403,128 @@ public class SearchFeatureDao {
         return samples;
     }
 
+    /**
+     * Gets features of every detection period between the start and end time.
+     *
+     * Periods are read as buckets of date histograms aligned to the end time and sent together in one multi-search,
+     * each histogram covering up to {@code FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH} periods.
+     *
+     * @param detector info about indices, documents, feature query
+     * @param startTime epoch milliseconds at the beginning of the earliest period
+     * @param endTime epoch milliseconds at the end of the latest period
+     * @return features keyed by the end time of their periods, periods without data are absent
+     */
+    protected Map<Long, double[]> getFeaturesByPeriodEnd(AnomalyDetector detector, long startTime, long endTime) {
+        Map<Long, double[]> features = new HashMap<>();
+        List<Entry<Long, Long>> pages = getUncachedPages(detector, startTime, endTime, features);
+        if (!pages.isEmpty()) {
+            MultiSearchRequest multiSearchRequest = createFeatureHistogramRequests(detector, pages);
+            clientUtil.<MultiSearchRequest, MultiSearchResponse>timedRequest(multiSearchRequest, logger, client::multiSearch)
+                .ifPresent(response -> features.putAll(parseHistogramResponses(response, detector, pages)));
+        }
+        return features;
+    }
+
+    /**
+     * Returns to listener features of every detection period between the start and end time.
+     *
+     * Periods are read as buckets of date histograms aligned to the end time and sent together in one multi-search,
+     * each histogram covering up to {@code FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH} periods.
+     *
+     * @param detector info about indices, documents, feature query
+     * @param startTime epoch milliseconds at the beginning of the earliest period
+     * @param endTime epoch milliseconds at the end of the latest period
+     * @param listener onResponse is called with features keyed by the end time of their periods, periods without data are absent
+     */
+    public void getFeaturesByPeriodEnd(AnomalyDetector detector, long startTime, long endTime,
+            ActionListener<Map<Long, double[]>> listener) {
+        Map<Long, double[]> features = new HashMap<>();
+        List<Entry<Long, Long>> pages = getUncachedPages(detector, startTime, endTime, features);
+        if (pages.isEmpty()) {
+            listener.onResponse(features);
+            return;
+        }
+        client.multiSearch(createFeatureHistogramRequests(detector, pages), ActionListener.wrap(response -> {
+            features.putAll(parseHistogramResponses(response, detector, pages));
+            listener.onResponse(features);
+        }, listener::onFailure));
+    }
+
+    /**
+     * Splits the time range into histogram pages, adding features of pages with every period cached.
+     *
+     * @return start and end time of pages to search
+     */
+    private List<Entry<Long, Long>> getUncachedPages(AnomalyDetector detector, long startTime, long endTime,
+            Map<Long, double[]> features) {
+        long span = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+        long pageSpan = span * FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH;
+        List<Entry<Long, Long>> pages = new ArrayList<>();
+        for (long pageEnd = endTime; pageEnd > startTime; pageEnd -= pageSpan) {
+            long pageStart = Math.max(startTime, pageEnd - pageSpan);
+            Map<Long, Optional<double[]>> cached = getCachedFeatures(detector, pageStart, pageEnd);
+            if (cached.size() == (pageEnd - pageStart + span - 1) / span) {
+                cached.forEach((periodEnd, point) -> point.ifPresent(values -> features.put(periodEnd, values)));
+            } else {
+                pages.add(new SimpleImmutableEntry<>(pageStart, pageEnd));
+            }
+        }
+        return pages;
+    }
+
+    private MultiSearchRequest createFeatureHistogramRequests(AnomalyDetector detector, List<Entry<Long, Long>> pages) {
+        long span = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        pages.forEach(page -> multiSearchRequest.add(createFeatureHistogramRequest(detector, page.getKey(), page.getValue(), span)));
+        return multiSearchRequest;
+    }
+
+    private Map<Long, double[]> parseHistogramResponses(MultiSearchResponse response, AnomalyDetector detector,
+            List<Entry<Long, Long>> pages) {
+        Map<Long, double[]> features = new HashMap<>();
+        MultiSearchResponse.Item[] items = response.getResponses();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].getFailure() != null) {
+                logger.warn("Failed to get search response", items[i].getFailure());
+            } else if (items[i].getResponse() != null) {
+                Map<Long, double[]> pageFeatures = parseHistogramResponse(items[i].getResponse(), detector);
+                if (isComplete(items[i].getResponse())) {
+                    cacheFeatures(detector, pages.get(i).getKey(), pages.get(i).getValue(), pageFeatures);
+                }
+                features.putAll(pageFeatures);
+            }
+        }
+        return features;
+    }
+
+    private Map<Long, double[]> parseHistogramResponse(SearchResponse response, AnomalyDetector detector) {
+        long span = ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+        Map<Long, double[]> features = new HashMap<>();
+        Optional.ofNullable(response.getAggregations())
+            .map(aggs -> (Histogram) aggs.get(AGG_NAME_PERIODS))
+            .ifPresent(histogram -> histogram.getBuckets()
+                .forEach(bucket -> parseAggregations(bucket.getAggregations(), detector.getEnabledFeatureIds())
+                    .ifPresent(values -> features.put(((ZonedDateTime) bucket.getKey()).toInstant().toEpochMilli() + span, values))));
+        return features;
+    }
+
+    private Map<Long, Optional<double[]>> getCachedFeatures(AnomalyDetector detector, long startTime, long endTime) {
+        return featureCache.map(cache -> cache.get(detector, startTime, endTime)).orElseGet(HashMap::new);
+    }
+
+    private void cacheFeatures(AnomalyDetector detector, long startTime, long endTime, Map<Long, double[]> features) {
+        featureCache.ifPresent(cache -> cache.put(detector, startTime, endTime, features));
+    }
+
+    // features missing the data of failed shards are returned but not cached, so that later reads search again
+    private boolean isComplete(SearchResponse response) {
+        return response.getFailedShards() == 0;
+    }
+
+    private boolean isSinglePeriod(AnomalyDetector detector, long startTime, long endTime) {
+        return endTime - startTime == ((IntervalTimeConfiguration)detector.getDetectionInterval()).toDuration().toMillis();
+    }
+
     private double[] getInterpolants(double[] previous, double[] next) {
         return transpose(interpolator.interpolate(transpose(new double[][]{previous, next}), 3))[1];
     }
@@ -283,12 +536,64 @@ public class SearchFeatureDao {
     private SearchRequest createFeatureSearchRequest(AnomalyDetector detector, long startTime, long endTime, Optional<String> preference) {
         // TODO: FeatureQuery field is planned to be removed and search request creation will migrate to new api.
         try {
-            SearchSourceBuilder searchSourceBuilder = ParseUtils.generateInternalFeatureQuery(detector, startTime, endTime, xContent);
-            return new SearchRequest(detector.getIndices().toArray(new String[0]), searchSourceBuilder)
-                .preference(preference.orElse(null));
+            SearchSourceBuilder searchSourceBuilder = generateFeatureQuery(detector, startTime, endTime);
+            return applyRequestCachePolicy(detector, new SearchRequest(detector.getIndices().toArray(new String[0]), searchSourceBuilder)
+                .preference(preference.orElse(null)));
         } catch (IOException e) {
             logger.warn("Failed to create feature search request for " + detector + " from " + startTime +  " to " + endTime, e);
             throw new IllegalStateException(e);
         }
     }
+
+    /**
+     * Returns the time feature searches use in place of the given time.
+     *
+     * With a request cache policy, the time is aligned down to an interval boundary of the detector.
+     *
+     * @param detector detector info containing the interval
+     * @param time epoch milliseconds
+     * @return epoch milliseconds feature searches use
+     */
+    public long alignToInterval(AnomalyDetector detector, long time) {
+        return requestCachePolicy.map(policy -> policy.alignToInterval(detector, time)).orElse(time);
+    }
+
+    /**
+     * Removes the parsed feature query of the detector.
+     *
+     * @param detectorId ID of the detector
+     */
+    public void clear(String detectorId) {
+        featureQueryCache.ifPresent(cache -> cache.clear(detectorId));
+    }
+
+    private SearchRequest applyRequestCachePolicy(AnomalyDetector detector, SearchRequest request) {
+        return requestCachePolicy.map(policy -> policy.apply(detector, request)).orElse(request);
+    }
+
+    private SearchSourceBuilder generateFeatureQuery(AnomalyDetector detector, long startTime, long endTime) throws IOException {
+        if (featureQueryCache.isPresent()) {
+            return featureQueryCache.get().getFeatureQuery(detector, startTime, endTime);
+        } else {
+            return ParseUtils.generateInternalFeatureQuery(detector, startTime, endTime, xContent);
+        }
+    }
+
+    private SearchRequest createFeatureHistogramRequest(AnomalyDetector detector, long startTime, long endTime, long span) {
+        try {
+            SearchSourceBuilder featureQuery = generateFeatureQuery(detector, startTime, endTime);
+            DateHistogramAggregationBuilder periods = AggregationBuilders.dateHistogram(AGG_NAME_PERIODS)
+                .field(detector.getTimeField())
+                .fixedInterval(new DateHistogramInterval(span + "ms"))
+                .offset(Math.floorMod(endTime, span))
+                .minDocCount(1);
+            Optional.ofNullable(featureQuery.aggregations())
+                .ifPresent(aggs -> aggs.getAggregatorFactories().forEach(periods::subAggregation));
+            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(featureQuery.query()).aggregation(periods).size(0);
+            return applyRequestCachePolicy(detector, new SearchRequest(detector.getIndices().toArray(new String[0]), searchSourceBuilder));
+        } catch (IOException e) {
+            logger.warn("Failed to create feature histogram request for " + detector + " from " + startTime +  " to " + endTime, e);
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.elasticsearch.action.search.SearchRequest;
+
+/**
+ * Makes feature searches reusable from the shard request cache.
+ *
+ * The shard request cache only returns results for requests identical to previous ones.
+ * Feature query ranges are aligned to interval boundaries so that searches over the same closed intervals,
+ * from previews, cold starts and real-time runs, are identical. Searches ask for the request cache explicitly
+ * and use a stable preference per detector so that they go to the same shard copies.
+ *
+ * ES does not report whether a search was answered from the request cache, so repeats of recently sent
+ * searches are counted instead. The ratio of repeated to cacheable searches is the upper bound of the hit rate.
+ */
+public class ShardRequestCachePolicy {
+
+    private final ADStats adStats;
+    private final Map<Integer, Boolean> recentRequests;
+
+    /**
+     * Constructor.
+     *
+     * @param maxTrackedRequests number of recently sent searches remembered to count repeats
+     * @param adStats AD statistics
+     */
+    public ShardRequestCachePolicy(int maxTrackedRequests, ADStats adStats) {
+        this.adStats = adStats;
+        this.recentRequests = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<Integer, Boolean> eldest) {
+                return size() > maxTrackedRequests;
+            }
+        };
+    }
+
+    /**
+     * Aligns the time to the latest interval boundary of the detector at or before it.
+     *
+     * @param detector detector info containing the interval
+     * @param time epoch milliseconds
+     * @return epoch milliseconds of the interval boundary
+     */
+    public long alignToInterval(AnomalyDetector detector, long time) {
+        long interval = ((IntervalTimeConfiguration) detector.getDetectionInterval()).toDuration().toMillis();
+        return time - Math.floorMod(time, interval);
+    }
+
+    /**
+     * Makes the search cacheable by the shard request cache.
+     *
+     * Only the hit count and aggregations of feature searches are used, so no hits are returned.
+     * A preference already set on the search is kept.
+     *
+     * @param detector detector the search is for
+     * @param request feature search
+     * @return the same search request
+     */
+    public SearchRequest apply(AnomalyDetector detector, SearchRequest request) {
+        request.requestCache(true);
+        if (request.preference() == null) {
+            request.preference(detector.getDetectorId());
+        }
+        if (request.source() != null) {
+            request.source().size(0);
+        }
+        adStats.counter(StatNames.AD_FEATURE_QUERY_CACHEABLE_COUNT).increment();
+        if (isRepeat(request)) {
+            adStats.counter(StatNames.AD_FEATURE_QUERY_CACHE_REPEAT_COUNT).increment();
+        }
+        return request;
+    }
+
+    private synchronized boolean isRepeat(SearchRequest request) {
+        int key = Objects.hash(Arrays.hashCode(request.indices()), request.preference(), request.source());
+        return recentRequests.put(key, Boolean.TRUE) != null;
+    }
+}
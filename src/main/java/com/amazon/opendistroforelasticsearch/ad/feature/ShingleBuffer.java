@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+/**
+ * Fixed-capacity buffer of the latest data points of a detector.
+ *
+ * Timestamps are kept in a primitive ring and data points in a flat matrix of
+ * the same ring layout, so adding a data point and filling a shingle do not
+ * allocate. Data points must be added in ascending time order.
+ *
+ * The buffer is not thread-safe, callers synchronize on the buffer.
+ */
+public class ShingleBuffer {
+
+    private final int capacity;
+    private final long[] times;
+    private double[] points;
+    private int dimension;
+    private int start;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity max number of data points kept
+     */
+    public ShingleBuffer(int capacity) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.points = new double[0];
+    }
+
+    /**
+     * Returns whether no data point is kept.
+     *
+     * @return whether no data point is kept
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of data points kept.
+     *
+     * @return the number of data points kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the dimension of data points kept.
+     *
+     * @return the dimension of data points kept
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns the time of the latest data point.
+     *
+     * @return epoch milliseconds of the latest data point
+     * @throws IllegalStateException when the buffer is empty
+     */
+    public long getLastTime() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Shingle buffer is empty");
+        }
+        return times[slot(size - 1)];
+    }
+
+    /**
+     * Returns a copy of the latest data point.
+     *
+     * @return a copy of the latest data point
+     * @throws IllegalStateException when the buffer is empty
+     */
+    public double[] getLastPoint() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Shingle buffer is empty");
+        }
+        double[] point = new double[dimension];
+        System.arraycopy(points, slot(size - 1) * dimension, point, 0, dimension);
+        return point;
+    }
+
+    /**
+     * Adds the latest data point, replacing the oldest data point when full.
+     *
+     * Data points kept of a different dimension are dropped.
+     *
+     * @param time epoch milliseconds of the data point, later than the latest data point
+     * @param point data point
+     */
+    public void add(long time, double[] point) {
+        if (point.length != dimension || points.length == 0) {
+            dimension = point.length;
+            points = new double[capacity * dimension];
+            start = 0;
+            size = 0;
+        }
+        int slot;
+        if (size < capacity) {
+            slot = slot(size);
+            size++;
+        } else {
+            slot = start;
+            start = (start + 1) % capacity;
+        }
+        times[slot] = time;
+        System.arraycopy(point, 0, points, slot * dimension, dimension);
+    }
+
+    /**
+     * Fills a shingle of data points at the interval ending at the time.
+     *
+     * A data point missing at a time is filled with the nearest data point, the later one on a tie,
+     * when that data point is less than the max neighbor distance away.
+     *
+     * @param endTime epoch milliseconds of the last data point in the shingle
+     * @param intervalMillis milliseconds between data points in the shingle
+     * @param maxNeighborDistance max distance in intervals to fill a missing data point
+     * @param shingle output of the capacity times dimension values of the shingle
+     * @return whether all data points in the shingle are filled
+     */
+    public boolean fillShingle(long endTime, long intervalMillis, int maxNeighborDistance, double[] shingle) {
+        int next = 0;
+        for (int i = 0; i < capacity; i++) {
+            long time = endTime - (capacity - 1 - i) * intervalMillis;
+            while (next < size && times[slot(next)] < time) {
+                next++;
+            }
+            int nearest = -1;
+            long distance = Long.MAX_VALUE;
+            if (next < size) {
+                nearest = next;
+                distance = times[slot(next)] - time;
+            }
+            if (next > 0 && time - times[slot(next - 1)] < distance) {
+                nearest = next - 1;
+                distance = time - times[slot(next - 1)];
+            }
+            if (nearest < 0 || distance >= intervalMillis * maxNeighborDistance) {
+                return false;
+            }
+            System.arraycopy(points, slot(nearest) * dimension, shingle, i * dimension, dimension);
+        }
+        return true;
+    }
+
+    private int slot(int index) {
+        return (start + index) % capacity;
+    }
+}
@@ -0,0 +1,756 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.amazon.randomcutforest.AbstractForestTraversalExecutor;
+import com.amazon.randomcutforest.RandomCutForest;
+import com.amazon.randomcutforest.TreeUpdater;
+import com.amazon.randomcutforest.serialize.AbstractForestTraversalExecutorAdapter;
+import com.amazon.randomcutforest.serialize.RandomAdapter;
+import com.amazon.randomcutforest.serialize.RandomCutForestAdapter;
+import com.amazon.randomcutforest.serialize.TreeUpdaterAdapter;
+import com.amazon.randomcutforest.tree.Node;
+
+/**
+ * Serializes/deserializes models to/from a versioned, compact binary checkpoint format.
+ *
+ * A binary checkpoint starts with a header of magic bytes, format version, model type and flags,
+ * followed by the (optionally deflated) model payload. Checkpoints are stored Base64-encoded
+ * so they can live in the same document field as legacy JSON checkpoints;
+ * {@link #isBinary(String)} tells the two apart.
+ *
+ * For RCF models, the payload holds the forest configuration and the samples of each tree.
+ * Since the same point is usually sampled by many trees, points are stored once in a dictionary
+ * ordered by sequence index (delta-encoded as varints), with each point stored as floats when that
+ * is lossless, and trees refer to points by dictionary index. Tree nodes are not stored, as with
+ * the JSON format trees are rebuilt from their samples on load.
+ *
+ * A RCF delta checkpoint stores only the samples each tree added and evicted since a full checkpoint,
+ * identified by the {@link ForestSamples} of that checkpoint. Deltas are cumulative, so a full checkpoint
+ * and its latest delta restore the model.
+ *
+ * Thresholding models are small, so the payload is the (optionally deflated) Gson serialization.
+ */
+public class BinaryCheckpointSerDe {
+
+    // 'A', 'D', 'C', Base64-encoded as "QURD"
+    private static final byte[] MAGIC = new byte[] {0x41, 0x44, 0x43};
+    private static final String BASE64_MAGIC = Base64.getEncoder().encodeToString(MAGIC);
+
+    protected static final byte FORMAT_VERSION = 1;
+    protected static final byte TYPE_RCF = 1;
+    protected static final byte TYPE_THRESHOLD = 2;
+    protected static final byte TYPE_RCF_DELTA = 3;
+    protected static final byte FLAG_DEFLATE = 1;
+
+    private static final byte POINT_FLOAT = 0;
+    private static final byte POINT_DOUBLE = 1;
+
+    // RCF JSON property names, see RandomCutForestSerDe
+    private static final String DIMENSIONS = "dimensions";
+    private static final String SAMPLE_SIZE = "sampleSize";
+    private static final String OUTPUT_AFTER = "outputAfter";
+    private static final String NUMBER_OF_TREES = "numberOfTrees";
+    private static final String LAMBDA = "lambda";
+    private static final String STORE_SEQUENCE_INDEXES_ENABLED = "storeSequenceIndexesEnabled";
+    private static final String CENTER_OF_MASS_ENABLED = "centerOfMassEnabled";
+    private static final String PARALLEL_EXECUTION_ENABLED = "parallelExecutionEnabled";
+    private static final String THREAD_POOL_SIZE = "threadPoolSize";
+    private static final String RNG = "rng";
+    private static final String RANDOM = "random";
+    private static final String EXECUTOR = AbstractForestTraversalExecutorAdapter.PROPERTY_EXECUTOR;
+    private static final String EXECUTOR_TYPE = AbstractForestTraversalExecutorAdapter.PROPERTY_EXECUTOR_TYPE;
+    private static final String TREE_UPDATERS = "treeUpdaters";
+    private static final String TOTAL_UPDATES = "totalUpdates";
+    private static final String SAMPLER = "sampler";
+    private static final String TREE = "tree";
+    private static final String WEIGHTED_SAMPLES = "weightedSamples";
+    private static final String ENTRIES_SEEN = "entriesSeen";
+    private static final String POINT = "point";
+    private static final String WEIGHT = "weight";
+    private static final String SEQUENCE_INDEX = "sequenceIndex";
+
+    private final Gson rcfGson;
+    private final Gson gson;
+    private final boolean compressionEnabled;
+
+    /**
+     * Constructor.
+     *
+     * @param gson thresholding model serialization
+     * @param compressionEnabled whether payloads are deflated
+     */
+    public BinaryCheckpointSerDe(Gson gson, boolean compressionEnabled) {
+        this.gson = gson;
+        this.compressionEnabled = compressionEnabled;
+        // same configuration as RandomCutForestSerDe, which does not expose its json tree
+        Set<Class<?>> skipClasses = Stream.of(BiFunction.class, Node.class, ForkJoinPool.class).collect(Collectors.toSet());
+        this.rcfGson = new GsonBuilder()
+            .addSerializationExclusionStrategy(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                    return false;
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return skipClasses.contains(clazz);
+                }
+            })
+            .registerTypeAdapter(TreeUpdater.class, new TreeUpdaterAdapter())
+            .registerTypeAdapter(AbstractForestTraversalExecutor.class, new AbstractForestTraversalExecutorAdapter())
+            .registerTypeAdapter(RandomCutForest.class, new RandomCutForestAdapter())
+            .registerTypeAdapter(Random.class, new RandomAdapter())
+            .create();
+    }
+
+    /**
+     * Returns whether the checkpoint is in the binary format.
+     *
+     * Legacy JSON checkpoints always start with a brace, which is not in the Base64 alphabet.
+     *
+     * @param checkpoint model checkpoint
+     * @return true if the checkpoint is in the binary format
+     */
+    public boolean isBinary(String checkpoint) {
+        return checkpoint != null && checkpoint.startsWith(BASE64_MAGIC);
+    }
+
+    /**
+     * Serializes a RCF model to a Base64-encoded binary checkpoint.
+     *
+     * @param forest RCF model
+     * @return binary checkpoint
+     */
+    public String toCheckpoint(RandomCutForest forest) {
+        return encode(TYPE_RCF, out -> writeForest(rcfGson.toJsonTree(forest).getAsJsonObject(), out));
+    }
+
+    /**
+     * Serializes a RCF model to a Base64-encoded binary checkpoint along with its samples,
+     * which later delta checkpoints are relative to.
+     *
+     * The samples are taken from the same json tree as the checkpoint, rather than by decoding the checkpoint.
+     *
+     * @param forest RCF model
+     * @return binary checkpoint and its samples of each tree
+     */
+    public Entry<String, ForestSamples> toCheckpointWithSamples(RandomCutForest forest) {
+        JsonObject forestJson = rcfGson.toJsonTree(forest).getAsJsonObject();
+        String checkpoint = encode(TYPE_RCF, out -> writeForest(forestJson, out));
+        return new SimpleImmutableEntry<>(checkpoint, toForestSamples(forestJson));
+    }
+
+    /**
+     * Deserializes a RCF model from a Base64-encoded binary checkpoint.
+     *
+     * @param checkpoint binary checkpoint
+     * @return RCF model
+     * @throws IllegalArgumentException when the checkpoint is not a valid RCF binary checkpoint
+     */
+    public RandomCutForest toRcf(String checkpoint) {
+        JsonObject forestJson = decode(checkpoint, TYPE_RCF, this::readForest);
+        return rcfGson.fromJson(forestJson, RandomCutForest.class);
+    }
+
+    /**
+     * Serializes a RCF model to binary bytes, deflated regardless of the compression setting,
+     * for keeping the model in memory rather than in the checkpoint index.
+     *
+     * @param forest RCF model
+     * @return deflated binary model
+     */
+    public byte[] toBytes(RandomCutForest forest) {
+        return encode(TYPE_RCF, true, out -> writeForest(rcfGson.toJsonTree(forest).getAsJsonObject(), out));
+    }
+
+    /**
+     * Deserializes a RCF model from binary bytes.
+     *
+     * @param bytes binary model from {@link #toBytes(RandomCutForest)}
+     * @return RCF model
+     * @throws IllegalArgumentException when the bytes are not a valid RCF binary model
+     */
+    public RandomCutForest toRcf(byte[] bytes) {
+        JsonObject forestJson = decode(bytes, TYPE_RCF, this::readForest);
+        return rcfGson.fromJson(forestJson, RandomCutForest.class);
+    }
+
+    /**
+     * Deserializes a RCF model from a Base64-encoded binary checkpoint and its delta checkpoint.
+     *
+     * A delta relative to another full checkpoint, left behind when replacing it failed, is ignored.
+     *
+     * @param checkpoint binary checkpoint
+     * @param deltaCheckpoint delta checkpoint made after the binary checkpoint
+     * @return RCF model
+     * @throws IllegalArgumentException when either checkpoint is not valid
+     */
+    public RandomCutForest toRcf(String checkpoint, String deltaCheckpoint) {
+        JsonObject forestJson = decode(checkpoint, TYPE_RCF, this::readForest);
+        decode(deltaCheckpoint, TYPE_RCF_DELTA, in -> applyDelta(forestJson, in));
+        return rcfGson.fromJson(forestJson, RandomCutForest.class);
+    }
+
+    /**
+     * Returns the samples of a RCF model in a binary checkpoint, which later delta checkpoints are relative to.
+     *
+     * @param checkpoint binary checkpoint
+     * @return samples of each tree
+     * @throws IllegalArgumentException when the checkpoint is not a valid RCF binary checkpoint
+     */
+    public ForestSamples getSamples(String checkpoint) {
+        return toForestSamples(decode(checkpoint, TYPE_RCF, this::readForest));
+    }
+
+    private ForestSamples toForestSamples(JsonObject forestJson) {
+        JsonObject executor = getExecutor(forestJson);
+        JsonArray treeUpdaters = executor.getAsJsonArray(TREE_UPDATERS);
+        long[][] sequenceIndexes = new long[treeUpdaters.size()][];
+        for (int i = 0; i < sequenceIndexes.length; i++) {
+            JsonArray samples = getSamples(treeUpdaters.get(i));
+            sequenceIndexes[i] = new long[samples.size()];
+            for (int j = 0; j < samples.size(); j++) {
+                sequenceIndexes[i][j] = samples.get(j).getAsJsonObject().get(SEQUENCE_INDEX).getAsLong();
+            }
+            Arrays.sort(sequenceIndexes[i]);
+        }
+        return new ForestSamples(executor.get(TOTAL_UPDATES).getAsLong(), sequenceIndexes);
+    }
+
+    /**
+     * Serializes the samples of a RCF model changed since a full checkpoint to a Base64-encoded delta checkpoint.
+     *
+     * @param forest RCF model
+     * @param base samples of the model at its full checkpoint
+     * @param maxChangedRatio max ratio of changed samples to all samples for a delta checkpoint
+     * @return delta checkpoint, or empty when more samples changed and a full checkpoint should be made instead
+     */
+    public Optional<String> toDeltaCheckpoint(RandomCutForest forest, ForestSamples base, double maxChangedRatio) {
+        JsonObject executor = getExecutor(rcfGson.toJsonTree(forest).getAsJsonObject());
+        JsonArray treeUpdaters = executor.getAsJsonArray(TREE_UPDATERS);
+        if (treeUpdaters.size() != base.getNumberOfTrees()) {
+            return Optional.empty();
+        }
+        // points added to any tree, keyed by sequence index as every tree samples the same point of an update
+        TreeMap<Long, double[]> points = new TreeMap<>();
+        List<List<JsonObject>> added = new ArrayList<>(treeUpdaters.size());
+        List<List<Long>> evicted = new ArrayList<>(treeUpdaters.size());
+        int changed = 0;
+        for (int i = 0; i < treeUpdaters.size(); i++) {
+            long[] baseSequenceIndexes = base.getSequenceIndexes(i);
+            Set<Long> retained = new HashSet<>();
+            List<JsonObject> treeAdded = new ArrayList<>();
+            for (JsonElement sample : getSamples(treeUpdaters.get(i))) {
+                JsonObject weightedPoint = sample.getAsJsonObject();
+                long sequenceIndex = weightedPoint.get(SEQUENCE_INDEX).getAsLong();
+                if (Arrays.binarySearch(baseSequenceIndexes, sequenceIndex) >= 0) {
+                    retained.add(sequenceIndex);
+                    continue;
+                }
+                double[] point = toDoubleArray(weightedPoint.getAsJsonArray(POINT));
+                if (!Arrays.equals(points.computeIfAbsent(sequenceIndex, k -> point), point)) {
+                    return Optional.empty();
+                }
+                treeAdded.add(weightedPoint);
+            }
+            List<Long> treeEvicted = Arrays.stream(baseSequenceIndexes).filter(index -> !retained.contains(index))
+                .boxed().collect(Collectors.toList());
+            changed += treeAdded.size() + treeEvicted.size();
+            added.add(treeAdded);
+            evicted.add(treeEvicted);
+        }
+        if (changed > maxChangedRatio * base.size()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(encode(TYPE_RCF_DELTA, out -> {
+            writeVLong(out, base.getTotalUpdates());
+            writeVLong(out, executor.get(TOTAL_UPDATES).getAsLong());
+            Map<Long, Integer> pointIndexes = new HashMap<>();
+            writeVInt(out, points.size());
+            long previousSequenceIndex = 0;
+            for (Map.Entry<Long, double[]> entry : points.entrySet()) {
+                pointIndexes.put(entry.getKey(), pointIndexes.size());
+                writeVLong(out, zigZag(entry.getKey() - previousSequenceIndex));
+                previousSequenceIndex = entry.getKey();
+                writePoint(out, entry.getValue());
+            }
+            writeVInt(out, treeUpdaters.size());
+            for (int i = 0; i < treeUpdaters.size(); i++) {
+                JsonObject sampler = treeUpdaters.get(i).getAsJsonObject().getAsJsonObject(SAMPLER);
+                writeVLong(out, sampler.get(ENTRIES_SEEN).getAsLong());
+                writeVInt(out, evicted.get(i).size());
+                previousSequenceIndex = 0;
+                for (long sequenceIndex : evicted.get(i)) {
+                    writeVLong(out, zigZag(sequenceIndex - previousSequenceIndex));
+                    previousSequenceIndex = sequenceIndex;
+                }
+                writeVInt(out, added.get(i).size());
+                for (JsonObject weightedPoint : added.get(i)) {
+                    writeVInt(out, pointIndexes.get(weightedPoint.get(SEQUENCE_INDEX).getAsLong()));
+                    out.writeDouble(weightedPoint.get(WEIGHT).getAsDouble());
+                }
+            }
+        }));
+    }
+
+    /**
+     * Serializes a thresholding model to a Base64-encoded binary checkpoint.
+     *
+     * @param threshold thresholding model
+     * @return binary checkpoint
+     */
+    public String toCheckpoint(ThresholdingModel threshold) {
+        return encode(TYPE_THRESHOLD, out -> writeThreshold(threshold, out));
+    }
+
+    /**
+     * Serializes a thresholding model to binary bytes, deflated regardless of the compression setting.
+     *
+     * @param threshold thresholding model
+     * @return deflated binary model
+     */
+    public byte[] toBytes(ThresholdingModel threshold) {
+        return encode(TYPE_THRESHOLD, true, out -> writeThreshold(threshold, out));
+    }
+
+    /**
+     * Deserializes a thresholding model from a Base64-encoded binary checkpoint.
+     *
+     * @param checkpoint binary checkpoint
+     * @param thresholdingModelClass class of thresholding model
+     * @param <T> type of thresholding model
+     * @return thresholding model
+     * @throws IllegalArgumentException when the checkpoint is not a valid thresholding model binary checkpoint
+     */
+    public <T extends ThresholdingModel> T toThreshold(String checkpoint, Class<T> thresholdingModelClass) {
+        return gson.fromJson(decode(checkpoint, TYPE_THRESHOLD, this::readThreshold), thresholdingModelClass);
+    }
+
+    /**
+     * Deserializes a thresholding model from binary bytes.
+     *
+     * @param bytes binary model from {@link #toBytes(ThresholdingModel)}
+     * @param thresholdingModelClass class of thresholding model
+     * @param <T> type of thresholding model
+     * @return thresholding model
+     * @throws IllegalArgumentException when the bytes are not a valid thresholding binary model
+     */
+    public <T extends ThresholdingModel> T toThreshold(byte[] bytes, Class<T> thresholdingModelClass) {
+        return gson.fromJson(decode(bytes, TYPE_THRESHOLD, this::readThreshold), thresholdingModelClass);
+    }
+
+    private void writeThreshold(ThresholdingModel threshold, DataOutputStream out) throws IOException {
+        byte[] json = gson.toJson(threshold).getBytes(StandardCharsets.UTF_8);
+        writeVInt(out, json.length);
+        out.write(json);
+    }
+
+    private String readThreshold(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String encode(byte type, PayloadWriter payloadWriter) {
+        return Base64.getEncoder().encodeToString(encode(type, compressionEnabled, payloadWriter));
+    }
+
+    private byte[] encode(byte type, boolean deflate, PayloadWriter payloadWriter) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(MAGIC);
+            bytes.write(FORMAT_VERSION);
+            bytes.write(type);
+            bytes.write(deflate ? FLAG_DEFLATE : 0);
+            OutputStream payload = bytes;
+            Deflater deflater = null;
+            if (deflate) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+                payload = new DeflaterOutputStream(bytes, deflater);
+            }
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                payloadWriter.write(out);
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write binary checkpoint", e);
+        }
+    }
+
+    private <T> T decode(String checkpoint, byte expectedType, PayloadReader<T> payloadReader) {
+        if (!isBinary(checkpoint)) {
+            throw new IllegalArgumentException("Not a binary checkpoint");
+        }
+        return decode(Base64.getDecoder().decode(checkpoint), expectedType, payloadReader);
+    }
+
+    private <T> T decode(byte[] bytes, byte expectedType, PayloadReader<T> payloadReader) {
+        int offset = MAGIC.length;
+        if (bytes.length < offset + 3) {
+            throw new IllegalArgumentException("Truncated binary checkpoint");
+        }
+        if (!Arrays.equals(Arrays.copyOf(bytes, offset), MAGIC)) {
+            throw new IllegalArgumentException("Not a binary checkpoint");
+        }
+        byte version = bytes[offset++];
+        byte type = bytes[offset++];
+        byte flags = bytes[offset++];
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary checkpoint version " + version);
+        }
+        if (type != expectedType) {
+            throw new IllegalArgumentException("Unexpected binary checkpoint model type " + type);
+        }
+        InputStream payload = new ByteArrayInputStream(bytes, offset, bytes.length - offset);
+        if ((flags & FLAG_DEFLATE) != 0) {
+            payload = new InflaterInputStream(payload);
+        }
+        try (DataInputStream in = new DataInputStream(payload)) {
+            return payloadReader.read(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read binary checkpoint", e);
+        }
+    }
+
+    private void writeForest(JsonObject forest, DataOutputStream out) throws IOException {
+        writeVInt(out, forest.get(DIMENSIONS).getAsInt());
+        writeVInt(out, forest.get(SAMPLE_SIZE).getAsInt());
+        writeVInt(out, forest.get(OUTPUT_AFTER).getAsInt());
+        writeVInt(out, forest.get(NUMBER_OF_TREES).getAsInt());
+        out.writeDouble(forest.get(LAMBDA).getAsDouble());
+        out.writeBoolean(forest.get(STORE_SEQUENCE_INDEXES_ENABLED).getAsBoolean());
+        out.writeBoolean(forest.get(CENTER_OF_MASS_ENABLED).getAsBoolean());
+        out.writeBoolean(forest.get(PARALLEL_EXECUTION_ENABLED).getAsBoolean());
+        writeVInt(out, forest.get(THREAD_POOL_SIZE).getAsInt());
+
+        JsonObject executorWrapper = forest.getAsJsonObject(EXECUTOR);
+        JsonObject executor = executorWrapper.getAsJsonObject(EXECUTOR);
+        out.writeUTF(executorWrapper.get(EXECUTOR_TYPE).getAsString());
+        writeVLong(out, executor.get(TOTAL_UPDATES).getAsLong());
+        // only present for the parallel executor
+        boolean hasExecutorThreadPoolSize = executor.has(THREAD_POOL_SIZE);
+        out.writeBoolean(hasExecutorThreadPoolSize);
+        if (hasExecutorThreadPoolSize) {
+            writeVInt(out, executor.get(THREAD_POOL_SIZE).getAsInt());
+        }
+
+        JsonArray treeUpdaters = executor.getAsJsonArray(TREE_UPDATERS);
+
+        // point dictionary shared by all trees, ordered by sequence index
+        TreeMap<Long, List<double[]>> points = new TreeMap<>();
+        for (JsonElement treeUpdater : treeUpdaters) {
+            for (JsonElement sample : getSamples(treeUpdater)) {
+                JsonObject weightedPoint = sample.getAsJsonObject();
+                double[] point = toDoubleArray(weightedPoint.getAsJsonArray(POINT));
+                List<double[]> samePoints = points.computeIfAbsent(weightedPoint.get(SEQUENCE_INDEX).getAsLong(),
+                    k -> new ArrayList<>(1));
+                if (samePoints.stream().noneMatch(p -> Arrays.equals(p, point))) {
+                    samePoints.add(point);
+                }
+            }
+        }
+        Map<Long, List<double[]>> pointsBySequence = new HashMap<>();
+        Map<Long, Integer> firstIndexBySequence = new HashMap<>();
+        int numPoints = points.values().stream().mapToInt(List::size).sum();
+        writeVInt(out, numPoints);
+        long previousSequenceIndex = 0;
+        int index = 0;
+        for (Map.Entry<Long, List<double[]>> entry : points.entrySet()) {
+            firstIndexBySequence.put(entry.getKey(), index);
+            pointsBySequence.put(entry.getKey(), entry.getValue());
+            for (double[] point : entry.getValue()) {
+                writeVLong(out, zigZag(entry.getKey() - previousSequenceIndex));
+                previousSequenceIndex = entry.getKey();
+                writePoint(out, point);
+                index++;
+            }
+        }
+
+        writeVInt(out, treeUpdaters.size());
+        for (JsonElement treeUpdater : treeUpdaters) {
+            JsonObject sampler = treeUpdater.getAsJsonObject().getAsJsonObject(SAMPLER);
+            JsonObject tree = treeUpdater.getAsJsonObject().getAsJsonObject(TREE);
+            writeVInt(out, sampler.get(SAMPLE_SIZE).getAsInt());
+            out.writeDouble(sampler.get(LAMBDA).getAsDouble());
+            writeVLong(out, sampler.get(ENTRIES_SEEN).getAsLong());
+            out.writeBoolean(tree.get(STORE_SEQUENCE_INDEXES_ENABLED).getAsBoolean());
+            out.writeBoolean(tree.get(CENTER_OF_MASS_ENABLED).getAsBoolean());
+            JsonArray samples = sampler.getAsJsonArray(WEIGHTED_SAMPLES);
+            writeVInt(out, samples.size());
+            for (JsonElement sample : samples) {
+                JsonObject weightedPoint = sample.getAsJsonObject();
+                long sequenceIndex = weightedPoint.get(SEQUENCE_INDEX).getAsLong();
+                double[] point = toDoubleArray(weightedPoint.getAsJsonArray(POINT));
+                List<double[]> samePoints = pointsBySequence.get(sequenceIndex);
+                int offset = 0;
+                while (!Arrays.equals(samePoints.get(offset), point)) {
+                    offset++;
+                }
+                writeVInt(out, firstIndexBySequence.get(sequenceIndex) + offset);
+                out.writeDouble(weightedPoint.get(WEIGHT).getAsDouble());
+            }
+        }
+    }
+
+    private JsonObject readForest(DataInputStream in) throws IOException {
+        JsonObject forest = new JsonObject();
+        forest.add(RNG, new JsonObject());
+        forest.addProperty(DIMENSIONS, readVInt(in));
+        forest.addProperty(SAMPLE_SIZE, readVInt(in));
+        forest.addProperty(OUTPUT_AFTER, readVInt(in));
+        forest.addProperty(NUMBER_OF_TREES, readVInt(in));
+        forest.addProperty(LAMBDA, in.readDouble());
+        forest.addProperty(STORE_SEQUENCE_INDEXES_ENABLED, in.readBoolean());
+        forest.addProperty(CENTER_OF_MASS_ENABLED, in.readBoolean());
+        forest.addProperty(PARALLEL_EXECUTION_ENABLED, in.readBoolean());
+        forest.addProperty(THREAD_POOL_SIZE, readVInt(in));
+
+        JsonObject executorWrapper = new JsonObject();
+        JsonObject executor = new JsonObject();
+        executorWrapper.addProperty(EXECUTOR_TYPE, in.readUTF());
+        long totalUpdates = readVLong(in);
+        if (in.readBoolean()) {
+            executor.addProperty(THREAD_POOL_SIZE, readVInt(in));
+        }
+
+        int numPoints = readVInt(in);
+        long[] sequenceIndexes = new long[numPoints];
+        JsonArray[] points = new JsonArray[numPoints];
+        long sequenceIndex = 0;
+        for (int i = 0; i < numPoints; i++) {
+            sequenceIndex += unZigZag(readVLong(in));
+            sequenceIndexes[i] = sequenceIndex;
+            points[i] = readPoint(in);
+        }
+
+        int numTrees = readVInt(in);
+        JsonArray treeUpdaters = new JsonArray();
+        for (int i = 0; i < numTrees; i++) {
+            JsonObject sampler = new JsonObject();
+            JsonObject tree = new JsonObject();
+            JsonArray samples = new JsonArray();
+            sampler.add(WEIGHTED_SAMPLES, samples);
+            sampler.addProperty(SAMPLE_SIZE, readVInt(in));
+            sampler.addProperty(LAMBDA, in.readDouble());
+            sampler.add(RANDOM, new JsonObject());
+            sampler.addProperty(ENTRIES_SEEN, readVLong(in));
+            tree.addProperty(STORE_SEQUENCE_INDEXES_ENABLED, in.readBoolean());
+            tree.addProperty(CENTER_OF_MASS_ENABLED, in.readBoolean());
+            tree.add(RANDOM, new JsonObject());
+            int numSamples = readVInt(in);
+            for (int j = 0; j < numSamples; j++) {
+                int pointIndex = readVInt(in);
+                JsonObject weightedPoint = new JsonObject();
+                // copy so that trees do not share mutable json arrays
+                weightedPoint.add(POINT, points[pointIndex].deepCopy());
+                weightedPoint.addProperty(WEIGHT, in.readDouble());
+                weightedPoint.addProperty(SEQUENCE_INDEX, sequenceIndexes[pointIndex]);
+                samples.add(weightedPoint);
+            }
+            JsonObject treeUpdater = new JsonObject();
+            treeUpdater.add(SAMPLER, sampler);
+            treeUpdater.add(TREE, tree);
+            treeUpdaters.add(treeUpdater);
+        }
+        executor.add(TREE_UPDATERS, treeUpdaters);
+        executor.addProperty(TOTAL_UPDATES, totalUpdates);
+        executorWrapper.add(EXECUTOR, executor);
+        forest.add(EXECUTOR, executorWrapper);
+        return forest;
+    }
+
+    private boolean applyDelta(JsonObject forest, DataInputStream in) throws IOException {
+        JsonObject executor = getExecutor(forest);
+        long baseTotalUpdates = readVLong(in);
+        if (baseTotalUpdates != executor.get(TOTAL_UPDATES).getAsLong()) {
+            return false;
+        }
+        long totalUpdates = readVLong(in);
+
+        int numPoints = readVInt(in);
+        long[] sequenceIndexes = new long[numPoints];
+        JsonArray[] points = new JsonArray[numPoints];
+        long sequenceIndex = 0;
+        for (int i = 0; i < numPoints; i++) {
+            sequenceIndex += unZigZag(readVLong(in));
+            sequenceIndexes[i] = sequenceIndex;
+            points[i] = readPoint(in);
+        }
+
+        JsonArray treeUpdaters = executor.getAsJsonArray(TREE_UPDATERS);
+        int numTrees = readVInt(in);
+        if (numTrees != treeUpdaters.size()) {
+            throw new IOException("Delta checkpoint has " + numTrees + " trees, checkpoint has " + treeUpdaters.size());
+        }
+        for (int i = 0; i < numTrees; i++) {
+            JsonObject sampler = treeUpdaters.get(i).getAsJsonObject().getAsJsonObject(SAMPLER);
+            sampler.addProperty(ENTRIES_SEEN, readVLong(in));
+            Set<Long> evicted = new HashSet<>();
+            int numEvicted = readVInt(in);
+            sequenceIndex = 0;
+            for (int j = 0; j < numEvicted; j++) {
+                sequenceIndex += unZigZag(readVLong(in));
+                evicted.add(sequenceIndex);
+            }
+            JsonArray samples = new JsonArray();
+            for (JsonElement sample : getSamples(treeUpdaters.get(i))) {
+                if (!evicted.contains(sample.getAsJsonObject().get(SEQUENCE_INDEX).getAsLong())) {
+                    samples.add(sample);
+                }
+            }
+            int numAdded = readVInt(in);
+            for (int j = 0; j < numAdded; j++) {
+                int pointIndex = readVInt(in);
+                JsonObject weightedPoint = new JsonObject();
+                weightedPoint.add(POINT, points[pointIndex].deepCopy());
+                weightedPoint.addProperty(WEIGHT, in.readDouble());
+                weightedPoint.addProperty(SEQUENCE_INDEX, sequenceIndexes[pointIndex]);
+                samples.add(weightedPoint);
+            }
+            sampler.add(WEIGHTED_SAMPLES, samples);
+        }
+        executor.addProperty(TOTAL_UPDATES, totalUpdates);
+        return true;
+    }
+
+    private JsonObject getExecutor(JsonObject forest) {
+        return forest.getAsJsonObject(EXECUTOR).getAsJsonObject(EXECUTOR);
+    }
+
+    private JsonArray getSamples(JsonElement treeUpdater) {
+        return treeUpdater.getAsJsonObject().getAsJsonObject(SAMPLER).getAsJsonArray(WEIGHTED_SAMPLES);
+    }
+
+    private double[] toDoubleArray(JsonArray array) {
+        double[] result = new double[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i).getAsDouble();
+        }
+        return result;
+    }
+
+    private void writePoint(DataOutputStream out, double[] point) throws IOException {
+        boolean isFloat = Arrays.stream(point).allMatch(d -> (double) (float) d == d || Double.isNaN(d));
+        out.writeByte(isFloat ? POINT_FLOAT : POINT_DOUBLE);
+        writeVInt(out, point.length);
+        for (double d : point) {
+            if (isFloat) {
+                out.writeFloat((float) d);
+            } else {
+                out.writeDouble(d);
+            }
+        }
+    }
+
+    private JsonArray readPoint(DataInputStream in) throws IOException {
+        byte encoding = in.readByte();
+        int length = readVInt(in);
+        JsonArray point = new JsonArray();
+        for (int i = 0; i < length; i++) {
+            point.add(encoding == POINT_FLOAT ? (double) in.readFloat() : in.readDouble());
+        }
+        return point;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVInt(DataOutputStream out, int value) throws IOException {
+        writeVLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVInt(DataInputStream in) throws IOException {
+        return (int) readVLong(in);
+    }
+
+    private static void writeVLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((byte) value);
+    }
+
+    private static long readVLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    @FunctionalInterface
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface PayloadReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+/**
+ * Node-local writer saving model checkpoints in bulk requests.
+ *
+ * Queued checkpoints are saved in bulk requests spread evenly over the flush window, starting after a random
+ * delay so that nodes running maintenance at the same time do not flush together. One bulk request is in flight
+ * at a time, and the next one waits long enough to keep the checkpoint bytes within the per second budget.
+ * Checkpoints are serialized only when their bulk request is built, so queued checkpoints take little memory.
+ * A checkpoint is acknowledged to its model only once all of its requests are saved. A checkpoint rejected
+ * because Elasticsearch cannot keep up is queued again, and the next bulk request waits for its backoff.
+ */
+public class CheckpointBulkWriter {
+
+    /**
+     * A checkpoint of a model to save in bulk.
+     */
+    @FunctionalInterface
+    public interface BulkCheckpoint {
+        /**
+         * Adds the requests saving the checkpoint to a bulk request.
+         *
+         * @param bulkRequest bulk request to add the requests to
+         * @return callback run once all added requests are saved
+         */
+        Runnable addTo(BulkRequest bulkRequest);
+    }
+
+    private static final Logger LOG = LogManager.getLogger(CheckpointBulkWriter.class);
+
+    static final String FAIL_TO_SAVE_ERR_MSG = "Failed to save checkpoint ";
+    static final String RETRY_SAVING_ERR_MSG = "Retry in saving checkpoint ";
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final ADStats adStats;
+    private final BackoffPolicy backoffPolicy;
+    private final int bulkSize;
+    private final long maxBytesPerSecond;
+    private final TimeValue flushWindow;
+
+    private final Map<String, QueuedCheckpoint> queue;
+    // checkpoints of the bulk request in flight
+    private final Map<String, QueuedCheckpoint> inFlight;
+    private boolean isFlushScheduled;
+    private long flushIntervalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param client ES client for bulk requests
+     * @param threadPool thread pool to schedule flushes
+     * @param settings node settings for the retry backoff
+     * @param adStats AD statistics
+     * @param bulkSize max number of checkpoints in a bulk request
+     * @param maxBytesPerSecond max checkpoint bytes saved per second
+     * @param flushWindow time over which queued checkpoints are spread
+     */
+    public CheckpointBulkWriter(Client client, ThreadPool threadPool, Settings settings, ADStats adStats, int bulkSize,
+            long maxBytesPerSecond, TimeValue flushWindow) {
+        this.client = client;
+        this.threadPool = threadPool;
+        this.adStats = adStats;
+        this.backoffPolicy = BackoffPolicy.exponentialBackoff(AnomalyDetectorSettings.BACKOFF_INITIAL_DELAY.get(settings),
+                AnomalyDetectorSettings.MAX_RETRY_FOR_BACKOFF.get(settings));
+        this.bulkSize = bulkSize;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.flushWindow = flushWindow;
+        this.queue = new LinkedHashMap<>();
+        this.inFlight = new HashMap<>();
+
+        adStats.gauge(StatNames.AD_CHECKPOINT_QUEUE_SIZE, this::getQueueSize);
+    }
+
+    /**
+     * Queues checkpoints to save.
+     *
+     * A model already queued keeps its place with the latest checkpoint.
+     *
+     * @param checkpoints model ids to checkpoints of the models
+     */
+    public void write(Map<String, BulkCheckpoint> checkpoints) {
+        long delayMillis = -1;
+        synchronized (queue) {
+            checkpoints.forEach((modelId, checkpoint) -> queue.put(modelId, new QueuedCheckpoint(checkpoint, backoffPolicy.iterator())));
+            int numBulks = (queue.size() + bulkSize - 1) / bulkSize;
+            flushIntervalMillis = flushWindow.millis() / Math.max(1, numBulks);
+            if (!isFlushScheduled && !queue.isEmpty()) {
+                isFlushScheduled = true;
+                delayMillis = (long) (Randomness.get().nextDouble() * flushIntervalMillis);
+            }
+        }
+
+        if (delayMillis >= 0) {
+            threadPool.schedule(this::flush, TimeValue.timeValueMillis(delayMillis), ThreadPool.Names.GENERIC);
+        }
+    }
+
+    /**
+     * Drops the queued checkpoint of a model, superseded by a checkpoint saved otherwise.
+     *
+     * A checkpoint of the model in flight is not retried.
+     *
+     * @param modelId model id
+     */
+    public void cancel(String modelId) {
+        synchronized (queue) {
+            queue.remove(modelId);
+            Optional.ofNullable(inFlight.get(modelId)).ifPresent(checkpoint -> checkpoint.isCancelled = true);
+        }
+    }
+
+    /**
+     * Returns the number of checkpoints waiting to be saved.
+     *
+     * @return the number of checkpoints waiting to be saved
+     */
+    public long getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private void flush() {
+        BulkRequest bulkRequest = new BulkRequest();
+        List<PendingCheckpoint> pendingCheckpoints = new ArrayList<>();
+        for (Entry<String, QueuedCheckpoint> checkpoint : drain()) {
+            try {
+                int firstItem = bulkRequest.numberOfActions();
+                Runnable onSaved = checkpoint.getValue().checkpoint.addTo(bulkRequest);
+                pendingCheckpoints.add(new PendingCheckpoint(checkpoint.getKey(), checkpoint.getValue(), firstItem,
+                    bulkRequest.numberOfActions(), onSaved));
+            } catch (Exception e) {
+                adStats.counter(StatNames.AD_CHECKPOINT_FAILURE_COUNT).increment();
+                LOG.error(FAIL_TO_SAVE_ERR_MSG + checkpoint.getKey(), e);
+            }
+        }
+        if (bulkRequest.numberOfActions() == 0) {
+            scheduleFlush(0, 0);
+            return;
+        }
+
+        long bytes = bulkRequest.estimatedSizeInBytes();
+        long bulkStartNanos = System.nanoTime();
+        adStats.counter(StatNames.AD_CHECKPOINT_BULK_COUNT).increment();
+        adStats.counter(StatNames.AD_CHECKPOINT_BULK_BYTES).add(bytes);
+        client.bulk(bulkRequest, ActionListener.wrap(response -> {
+            adStats.latency(StatNames.AD_CHECKPOINT_BULK_LATENCY).recordSince(bulkStartNanos);
+            BulkItemResponse[] items = response.getItems();
+            long retryDelayMillis = 0;
+            for (PendingCheckpoint checkpoint : pendingCheckpoints) {
+                Exception failure = null;
+                boolean isRejected = false;
+                for (int i = checkpoint.firstItem; i < checkpoint.endItem; i++) {
+                    if (items[i].isFailed()) {
+                        failure = items[i].getFailure().getCause();
+                        isRejected |= items[i].getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS;
+                    }
+                }
+                if (failure == null) {
+                    onSaved(checkpoint);
+                } else {
+                    retryDelayMillis = Math.max(retryDelayMillis, onFailure(checkpoint, failure, isRejected));
+                }
+            }
+            scheduleFlush(bytes, retryDelayMillis);
+        }, exception -> {
+            adStats.latency(StatNames.AD_CHECKPOINT_BULK_LATENCY).recordSince(bulkStartNanos);
+            long retryDelayMillis = 0;
+            for (PendingCheckpoint checkpoint : pendingCheckpoints) {
+                retryDelayMillis = Math.max(retryDelayMillis, onFailure(checkpoint, exception, false));
+            }
+            scheduleFlush(bytes, retryDelayMillis);
+        }));
+    }
+
+    private void onSaved(PendingCheckpoint checkpoint) {
+        synchronized (queue) {
+            if (checkpoint.queued.isCancelled) {
+                // superseded by a checkpoint saved otherwise since the bulk request was sent
+                return;
+            }
+        }
+        try {
+            checkpoint.onSaved.run();
+        } catch (Exception e) {
+            LOG.error("Failed to acknowledge saved checkpoint " + checkpoint.modelId, e);
+        }
+    }
+
+    // returns the backoff before the checkpoint is retried, or 0 if it is not retried
+    private long onFailure(PendingCheckpoint checkpoint, Exception exception, boolean isRejected) {
+        // Elasticsearch tells us with EsRejectedExecutionException that it cannot keep up with the
+        // requests, so the checkpoint is retried later rather than dropped until the next maintenance.
+        if ((isRejected || ExceptionsHelper.unwrapCause(exception) instanceof EsRejectedExecutionException)
+                && checkpoint.queued.backoff.hasNext()) {
+            TimeValue nextDelay = checkpoint.queued.backoff.next();
+            synchronized (queue) {
+                if (!checkpoint.queued.isCancelled) {
+                    // a checkpoint of the model queued since is newer
+                    queue.putIfAbsent(checkpoint.modelId, checkpoint.queued);
+                }
+            }
+            adStats.counter(StatNames.AD_CHECKPOINT_RETRY_COUNT).increment();
+            LOG.info(RETRY_SAVING_ERR_MSG + checkpoint.modelId);
+            return nextDelay.millis();
+        }
+        adStats.counter(StatNames.AD_CHECKPOINT_FAILURE_COUNT).increment();
+        LOG.error(FAIL_TO_SAVE_ERR_MSG + checkpoint.modelId, exception);
+        return 0;
+    }
+
+    private List<Entry<String, QueuedCheckpoint>> drain() {
+        synchronized (queue) {
+            List<Entry<String, QueuedCheckpoint>> checkpoints = new ArrayList<>(Math.min(bulkSize, queue.size()));
+            Iterator<Entry<String, QueuedCheckpoint>> iterator = queue.entrySet().iterator();
+            while (checkpoints.size() < bulkSize && iterator.hasNext()) {
+                checkpoints.add(new SimpleImmutableEntry<>(iterator.next()));
+                iterator.remove();
+            }
+            inFlight.clear();
+            checkpoints.forEach(checkpoint -> inFlight.put(checkpoint.getKey(), checkpoint.getValue()));
+            return checkpoints;
+        }
+    }
+
+    private void scheduleFlush(long sentBytes, long retryDelayMillis) {
+        long delayMillis;
+        synchronized (queue) {
+            inFlight.clear();
+            if (queue.isEmpty()) {
+                isFlushScheduled = false;
+                return;
+            }
+            delayMillis = Math.max(retryDelayMillis, Math.max(flushIntervalMillis, sentBytes * 1000 / maxBytesPerSecond));
+        }
+        threadPool.schedule(this::flush, TimeValue.timeValueMillis(delayMillis), ThreadPool.Names.GENERIC);
+    }
+
+    private static class QueuedCheckpoint {
+        private final BulkCheckpoint checkpoint;
+        private final Iterator<TimeValue> backoff;
+        // guarded by the queue
+        private boolean isCancelled;
+
+        private QueuedCheckpoint(BulkCheckpoint checkpoint, Iterator<TimeValue> backoff) {
+            this.checkpoint = checkpoint;
+            this.backoff = backoff;
+        }
+    }
+
+    private static class PendingCheckpoint {
+        private final String modelId;
+        private final QueuedCheckpoint queued;
+        // the requests of the checkpoint are the bulk items from firstItem until endItem, exclusive
+        private final int firstItem;
+        private final int endItem;
+        private final Runnable onSaved;
+
+        private PendingCheckpoint(String modelId, QueuedCheckpoint queued, int firstItem, int endItem, Runnable onSaved) {
+            this.modelId = modelId;
+            this.queued = queued;
+            this.firstItem = firstItem;
+            this.endItem = endItem;
+            this.onSaved = onSaved;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
@@ -70,15 +71,26 @@ public class CheckpointDao {
      *
      * @param modelId Id of the model
      * @param modelCheckpoint Checkpoint data of the model
+     * @return whether the checkpoint is saved
      */
-    public void putModelCheckpoint(String modelId, String modelCheckpoint) {
+    public boolean putModelCheckpoint(String modelId, String modelCheckpoint) {
+        return clientUtil.<IndexRequest, IndexResponse>timedRequest(
+            toIndexRequest(modelId, modelCheckpoint),
+            logger, client::index).isPresent();
+    }
+
+    /**
+     * Returns the request putting a model checkpoint in the storage, for bulk requests.
+     *
+     * @param modelId Id of the model
+     * @param modelCheckpoint Checkpoint data of the model
+     * @return index request of the checkpoint
+     */
+    public IndexRequest toIndexRequest(String modelId, String modelCheckpoint) {
         Map<String, Object> source = new HashMap<>();
         source.put(FIELD_MODEL, modelCheckpoint);
         source.put(TIMESTAMP, ZonedDateTime.now(ZoneOffset.UTC));
-
-        clientUtil.<IndexRequest, IndexResponse>timedRequest(
-            new IndexRequest(indexName, DOC_TYPE, modelId).source(source),
-            logger, client::index);
+        return new IndexRequest(indexName, DOC_TYPE, modelId).source(source);
     }
 
     /**
@@ -102,7 +114,22 @@ public class CheckpointDao {
      */
     public void deleteModelCheckpoint(String modelId) {
         clientUtil.<DeleteRequest, DeleteResponse>timedRequest(
-            new DeleteRequest(indexName, DOC_TYPE, modelId),
+            toDeleteRequest(modelId),
             logger, client::delete);
     }
+
+    /**
+     * Deletes the model checkpoint for the id without blocking.
+     *
+     * @param modelId ID of the model checkpoint
+     * @param listener onResponse is called with the response of the delete
+     */
+    public void deleteModelCheckpoint(String modelId, ActionListener<DeleteResponse> listener) {
+        client.delete(toDeleteRequest(modelId), listener);
+    }
+
+    // request deleting the model checkpoint for the id, shared by the blocking and non-blocking deletes
+    private DeleteRequest toDeleteRequest(String modelId) {
+        return new DeleteRequest(indexName, DOC_TYPE, modelId);
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+/**
+ * Sequence indexes of the samples in each tree of a RCF model when its last full checkpoint was made.
+ *
+ * Delta checkpoints store the samples that changed relative to these.
+ */
+public class ForestSamples {
+
+    private final long totalUpdates;
+    private final long[][] sequenceIndexes;
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param totalUpdates number of updates of the forest
+     * @param sequenceIndexes sorted sequence indexes of the samples of each tree
+     */
+    public ForestSamples(long totalUpdates, long[][] sequenceIndexes) {
+        this.totalUpdates = totalUpdates;
+        this.sequenceIndexes = sequenceIndexes;
+        int size = 0;
+        for (long[] tree : sequenceIndexes) {
+            size += tree.length;
+        }
+        this.size = size;
+    }
+
+    /**
+     * @return number of updates of the forest
+     */
+    public long getTotalUpdates() {
+        return totalUpdates;
+    }
+
+    /**
+     * @return number of trees
+     */
+    public int getNumberOfTrees() {
+        return sequenceIndexes.length;
+    }
+
+    /**
+     * @param tree index of the tree
+     * @return sorted sequence indexes of the samples of the tree
+     */
+    public long[] getSequenceIndexes(int tree) {
+        return sequenceIndexes[tree];
+    }
+
+    /**
+     * @return number of samples in all trees
+     */
+    public int size() {
+        return size;
+    }
+}
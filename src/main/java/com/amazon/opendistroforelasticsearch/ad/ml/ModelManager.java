@@ -15,6 +15,7 @@
 
 package com.amazon.opendistroforelasticsearch.ad.ml;
 
+import java.io.ByteArrayOutputStream;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.time.Clock;
@@ -23,6 +24,9 @@ import java.time.Instant;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,7 +34,13 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -42,14 +52,21 @@ import org.apache.logging.log4j.Logger;
 
 import com.google.gson.Gson;
 
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.monitor.jvm.JvmService;
 
+import com.amazon.opendistroforelasticsearch.ad.common.exception.AnomalyDetectionException;
 import com.amazon.opendistroforelasticsearch.ad.common.exception.LimitExceededException;
 import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
 import com.amazon.opendistroforelasticsearch.ad.constant.CommonErrorMessages;
+import com.amazon.opendistroforelasticsearch.ad.ml.CheckpointBulkWriter.BulkCheckpoint;
 import com.amazon.opendistroforelasticsearch.ad.ml.rcf.CombinedRcfResult;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import com.amazon.randomcutforest.RandomCutForest;
 import com.amazon.randomcutforest.serialize.RandomCutForestSerDe;
 
@@ -61,13 +78,22 @@ public class ModelManager {
     protected static final String DETECTOR_ID_PATTERN = "(.*)_model_.+";
     protected static final String RCF_MODEL_ID_PATTERN = "%s_model_rcf_%d";
     protected static final String THRESHOLD_MODEL_ID_PATTERN = "%s_model_threshold";
+    protected static final String DELTA_CHECKPOINT_ID_PATTERN = "%s_delta";
+    private static final Pattern THRESHOLD_MODEL_ID_REGEX = Pattern.compile(String.format(THRESHOLD_MODEL_ID_PATTERN, "(.*)"));
     private static final double FULL_CONFIDENCE_EXPONENT = 18.43; // exponent over which confidence is 1
 
     private static final Logger logger = LogManager.getLogger(ModelManager.class);
+    static final String OUT_OF_ORDER_CHUNK_MSG = "Received out of order model chunk";
 
     // states
     private Map<String, ModelState<RandomCutForest>> forests;
     private Map<String, ModelState<ThresholdingModel>> thresholds;
+    // listeners waiting for models being loaded, so that concurrent requests share a load
+    private final Map<String, List<ActionListener<ModelState<RandomCutForest>>>> forestLoads;
+    private final Map<String, List<ActionListener<ModelState<ThresholdingModel>>>> thresholdLoads;
+    private final AtomicLong hostedModelSize;
+    // model id to the chunks received so far of a transferred model, chunks of a model are sent one at a time
+    private final Map<String, PartialModel> partialModels;
 
     // configuration
     private final double modelDesiredSizePercentage;
@@ -85,14 +111,24 @@ public class ModelManager {
     private final int minPreviewSize;
     private final Duration modelTtl;
     private final Duration checkpointInterval;
+    private final boolean binaryCheckpointEnabled;
+    private final double maxDeltaCheckpointRatio;
+    private final Duration maxCheckpointBaseAge;
+    private final Duration modelTransferTimeout;
 
     // dependencies
     private final ClusterService clusterService;
     private final JvmService jvmService;
     private final RandomCutForestSerDe rcfSerde;
     private final CheckpointDao checkpointDao;
+    private final CheckpointBulkWriter checkpointBulkWriter;
     private final Gson gson;
+    private final BinaryCheckpointSerDe binaryCheckpointSerde;
+    private final OffHeapModelCache warmModels;
     private final Clock clock;
+    private final ADStats adStats;
+    private final ExecutorService trainingExecutor;
+    private final ExecutorService modelLoadExecutor;
 
     // A tree of N samples has 2N nodes, with one bounding box for each node.
     private static final long BOUNDING_BOXES = 2L;
@@ -106,8 +142,14 @@ public class ModelManager {
      * @param jvmService jvm info
      * @param rcfSerde RCF model serialization
      * @param checkpointDao model checkpoint storage
+     * @param checkpointBulkWriter writer saving checkpoints of maintenance in bulk
      * @param gson thresholding model serialization
+     * @param binaryCheckpointSerde binary model checkpoint serialization
+     * @param warmModels off-heap cache of RCF models no longer hosted
      * @param clock clock for system time
+     * @param adStats node-level statistics
+     * @param trainingExecutor bounded executor training RCF model partitions in parallel
+     * @param modelLoadExecutor executor loading models from checkpoints
      * @param modelDesiredSizePercentage percentage of heap for the desired size of a model
      * @param modelMaxSizePercentage percentage of heap for the max size of a model
      * @param rcfNumTrees number of trees used in RCF
@@ -123,22 +165,37 @@ public class ModelManager {
      * @param minPreviewSize minimum number of data points for preview
      * @param modelTtl time to live for hosted models
      * @param checkpointInterval interval between checkpoints
+     * @param binaryCheckpointEnabled whether new checkpoints are written in the binary format
+     * @param maxDeltaCheckpointRatio max ratio of RCF samples changed since the last full checkpoint for a delta
+     *  checkpoint, 0 for full checkpoints only
+     * @param maxCheckpointBaseAge max age of the full checkpoint a delta checkpoint is based on
+     * @param modelTransferTimeout time after the last received chunk when a model transfer is dropped as abandoned
      */
     public ModelManager(ClusterService clusterService, JvmService jvmService,
-        RandomCutForestSerDe rcfSerde, CheckpointDao checkpointDao, Gson gson, Clock clock,
+        RandomCutForestSerDe rcfSerde, CheckpointDao checkpointDao, CheckpointBulkWriter checkpointBulkWriter, Gson gson,
+        BinaryCheckpointSerDe binaryCheckpointSerde, OffHeapModelCache warmModels, Clock clock, ADStats adStats,
+        ExecutorService trainingExecutor,
+        ExecutorService modelLoadExecutor,
         double modelDesiredSizePercentage, double modelMaxSizePercentage,
         int rcfNumTrees, int rcfNumSamplesInTree, double rcfTimeDecay,
         double thresholdMinPvalue, double thresholdMaxRankError, double thresholdMaxScore, int thresholdNumLogNormalQuantiles,
         int thresholdDownsamples, long thresholdMaxSamples, Class<? extends ThresholdingModel> thresholdingModelClass,
         int minPreviewSize,
-        Duration modelTtl, Duration checkpointInterval) {
+        Duration modelTtl, Duration checkpointInterval, boolean binaryCheckpointEnabled, double maxDeltaCheckpointRatio,
+        Duration maxCheckpointBaseAge, Duration modelTransferTimeout) {
 
         this.clusterService = clusterService;
         this.jvmService = jvmService;
         this.rcfSerde = rcfSerde;
         this.checkpointDao = checkpointDao;
+        this.checkpointBulkWriter = checkpointBulkWriter;
         this.gson = gson;
+        this.binaryCheckpointSerde = binaryCheckpointSerde;
+        this.warmModels = warmModels;
         this.clock = clock;
+        this.adStats = adStats;
+        this.trainingExecutor = trainingExecutor;
+        this.modelLoadExecutor = modelLoadExecutor;
 
         this.modelDesiredSizePercentage = modelDesiredSizePercentage;
         this.modelMaxSizePercentage = modelMaxSizePercentage;
@@ -155,9 +212,20 @@ public class ModelManager {
         this.minPreviewSize = minPreviewSize;
         this.modelTtl = modelTtl;
         this.checkpointInterval = checkpointInterval;
+        this.binaryCheckpointEnabled = binaryCheckpointEnabled;
+        this.maxDeltaCheckpointRatio = maxDeltaCheckpointRatio;
+        this.maxCheckpointBaseAge = maxCheckpointBaseAge;
+        this.modelTransferTimeout = modelTransferTimeout;
 
         this.forests = new ConcurrentHashMap<>();
         this.thresholds = new ConcurrentHashMap<>();
+        this.forestLoads = new HashMap<>();
+        this.thresholdLoads = new HashMap<>();
+        this.hostedModelSize = new AtomicLong();
+        this.partialModels = new ConcurrentHashMap<>();
+        adStats.gauge(StatNames.AD_MODEL_SIZE, this.hostedModelSize::get);
+        adStats.gauge(StatNames.AD_MODEL_MEMORY_BUDGET,
+            () -> (long) (jvmService.info().getMem().getHeapMax().getBytes() * modelMaxSizePercentage));
     }
 
     /**
@@ -203,6 +271,23 @@ public class ModelManager {
         }
     }
 
+    /**
+     * Gets the id of RCF model partition 0 of the detector of a thresholding model.
+     *
+     * A thresholding model co-located with RCF model partition 0 is placed by this id.
+     *
+     * @param modelId id of a model
+     * @return id of RCF model partition 0 if the model is a thresholding model, empty otherwise
+     */
+    public static Optional<String> getColocatedRcfModelId(String modelId) {
+        Matcher matcher = THRESHOLD_MODEL_ID_REGEX.matcher(modelId);
+        if (matcher.matches()) {
+            return Optional.of(String.format(RCF_MODEL_ID_PATTERN, matcher.group(1), 0));
+        } else {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Partitions a RCF model by forest size.
      *
@@ -267,18 +352,39 @@ public class ModelManager {
      * @param point features of the data point
      * @return RCF result for the input point, including a score
      * @throws ResourceNotFoundException when the model is not found
-     * @throws LimitExceededException when a limit is exceeded for the model
+     * @throws LimitExceededException when the model does not fit in memory even after evicting other models
      */
     @Deprecated
     public RcfResult getRcfResult(String detectorId, String modelId, double[] point) {
-        ModelState<RandomCutForest> modelState = forests.computeIfAbsent(modelId,
-            model -> checkpointDao.getModelCheckpoint(model)
-                .map(checkpoint -> AccessController.doPrivileged((PrivilegedAction<RandomCutForest>) ()
-                    -> rcfSerde.fromJson(checkpoint)))
-                .filter(rcf -> isHostingAllowed(detectorId, rcf))
-                .map(rcf -> new ModelState<>(rcf, clock.instant()))
-                .orElseThrow(() -> new ResourceNotFoundException(detectorId, CommonErrorMessages.NO_CHECKPOINT_ERR_MSG + modelId)));
+        return getRcfResult(getForest(detectorId, modelId), point);
+    }
+
+    /**
+     * Gets the RCF anomaly result using the specified model.
+     *
+     * A model not hosted is loaded from its checkpoint on the model load executor rather than the calling thread.
+     * Concurrent requests of a model being loaded share the same load.
+     *
+     * @param detectorId ID of the detector
+     * @param modelId ID of the model to score the point
+     * @param point features of the data point
+     * @param listener onResponse is called with RCF result for the input point, including a score;
+     *  onFailure is called with ResourceNotFoundException when the model is not found,
+     *  or with LimitExceededException when the model does not fit in memory even after evicting other models
+     */
+    public void getRcfResult(String detectorId, String modelId, double[] point, ActionListener<RcfResult> listener) {
+        ModelState<RandomCutForest> modelState = forests.get(modelId);
+        if (modelState != null) {
+            adStats.counter(StatNames.AD_MODEL_CACHE_HIT_COUNT).increment();
+            listener.onResponse(getRcfResult(modelState, point));
+        } else {
+            adStats.counter(StatNames.AD_MODEL_CACHE_MISS_COUNT).increment();
+            loadModel(forestLoads, modelId, () -> loadForest(detectorId, modelId),
+                ActionListener.wrap(loaded -> listener.onResponse(getRcfResult(loaded, point)), listener::onFailure));
+        }
+    }
 
+    private RcfResult getRcfResult(ModelState<RandomCutForest> modelState, double[] point) {
         RandomCutForest rcf = modelState.getModel();
         double score = rcf.getAnomalyScore(point);
         double confidence = computeRcfConfidence(rcf);
@@ -301,13 +407,41 @@ public class ModelManager {
      */
     @Deprecated
     public ThresholdingResult getThresholdingResult(String detectorId, String modelId, double score) {
-        ModelState<ThresholdingModel> modelState = thresholds.computeIfAbsent(modelId,
-            model -> checkpointDao.getModelCheckpoint(model)
-                .map(checkpoint -> AccessController.doPrivileged((PrivilegedAction<ThresholdingModel>)
-                    () -> gson.fromJson(checkpoint, thresholdingModelClass)))
-                .map(threshold -> new ModelState<>(threshold, clock.instant()))
-                .orElseThrow(() -> new ResourceNotFoundException(detectorId, CommonErrorMessages.NO_CHECKPOINT_ERR_MSG + modelId)));
+        ModelState<ThresholdingModel> modelState = thresholds.get(modelId);
+        if (modelState != null) {
+            adStats.counter(StatNames.AD_MODEL_CACHE_HIT_COUNT).increment();
+        } else {
+            adStats.counter(StatNames.AD_MODEL_CACHE_MISS_COUNT).increment();
+            modelState = loadThreshold(detectorId, modelId);
+        }
+        return getThresholdingResult(modelState, score);
+    }
 
+    /**
+     * Gets the result using the specified thresholding model.
+     *
+     * A model not hosted is loaded from its checkpoint on the model load executor rather than the calling thread.
+     * Concurrent requests of a model being loaded share the same load.
+     *
+     * @param detectorId ID of the detector
+     * @param modelId ID of the thresholding model
+     * @param score raw anomaly score
+     * @param listener onResponse is called with thresholding model result for the raw score;
+     *  onFailure is called with ResourceNotFoundException when the model is not found
+     */
+    public void getThresholdingResult(String detectorId, String modelId, double score, ActionListener<ThresholdingResult> listener) {
+        ModelState<ThresholdingModel> modelState = thresholds.get(modelId);
+        if (modelState != null) {
+            adStats.counter(StatNames.AD_MODEL_CACHE_HIT_COUNT).increment();
+            listener.onResponse(getThresholdingResult(modelState, score));
+        } else {
+            adStats.counter(StatNames.AD_MODEL_CACHE_MISS_COUNT).increment();
+            loadModel(thresholdLoads, modelId, () -> loadThreshold(detectorId, modelId),
+                ActionListener.wrap(loaded -> listener.onResponse(getThresholdingResult(loaded, score)), listener::onFailure));
+        }
+    }
+
+    private ThresholdingResult getThresholdingResult(ModelState<ThresholdingModel> modelState, double score) {
         ThresholdingModel threshold = modelState.getModel();
         double grade = threshold.grade(score);
         double confidence = threshold.confidence();
@@ -353,17 +487,257 @@ public class ModelManager {
     @Deprecated
     public void stopModel(String detectorId, String modelId) {
         logger.info(String.format("Stopping detector %s model %s", detectorId, modelId));
-        stopModel(forests, modelId, this::toCheckpoint);
-        stopModel(thresholds, modelId, this::toCheckpoint);
+        stopModel(forests, modelId, this::writeRcfCheckpoint);
+        stopModel(thresholds, modelId, this::writeThresholdCheckpoint);
+        warmModels.remove(modelId);
+    }
+
+    private <T> void stopModel(Map<String, ModelState<T>> models, String modelId,
+        BiConsumer<String, ModelState<T>> checkpointWriter) {
+        removeModel(models, modelId).ifPresent(model -> saveCheckpoint(modelId, model, checkpointWriter));
+    }
+
+    private <T> Optional<ModelState<T>> removeModel(Map<String, ModelState<T>> models, String modelId) {
+        Optional<ModelState<T>> removed = Optional.ofNullable(models.remove(modelId));
+        removed.ifPresent(model -> hostedModelSize.addAndGet(-model.getModelSize()));
+        return removed;
     }
 
-    private <T> void stopModel(Map<String, ModelState<T>> models, String modelId, Function<T, String> toCheckpoint) {
+    private <T> void saveCheckpoint(String modelId, ModelState<T> model, BiConsumer<String, ModelState<T>> checkpointWriter) {
+        if (model.getLastCheckpointTime().plus(checkpointInterval).isBefore(clock.instant())) {
+            putCheckpoint(modelId, model, checkpointWriter);
+        }
+    }
+
+    private <T> void putCheckpoint(String modelId, ModelState<T> model, BiConsumer<String, ModelState<T>> checkpointWriter) {
         Instant now = clock.instant();
-        Optional.ofNullable(models.remove(modelId))
-            .filter(model -> model.getLastCheckpointTime().plus(checkpointInterval).isBefore(now))
-            .ifPresent(model -> {
-                checkpointDao.putModelCheckpoint(modelId, toCheckpoint.apply(model.getModel()));
-                model.setLastCheckpointTime(now);});
+        // a checkpoint of the model queued by maintenance would overwrite this newer one
+        checkpointBulkWriter.cancel(modelId);
+        checkpointWriter.accept(modelId, model);
+        model.setLastCheckpointTime(now);
+    }
+
+    /**
+     * Checkpoints a hosted RCF model.
+     *
+     * Once a full binary checkpoint is made, later checkpoints only store the samples changed since then,
+     * so that their size follows the update rate rather than the model size. A full checkpoint replaces
+     * the delta when too many samples changed, or when the full checkpoint nears the checkpoint ttl,
+     * since saving a delta does not refresh it.
+     */
+    private void writeRcfCheckpoint(String modelId, ModelState<RandomCutForest> modelState) {
+        writeRcfCheckpoint(modelId, modelState, this::putCheckpointDoc, checkpointDao::deleteModelCheckpoint);
+    }
+
+    private void writeRcfCheckpoint(String modelId, ModelState<RandomCutForest> modelState, CheckpointWriter put,
+        Consumer<String> delete) {
+        RandomCutForest forest = modelState.getModel();
+        if (binaryCheckpointEnabled && maxDeltaCheckpointRatio > 0) {
+            Instant now = clock.instant();
+            ForestSamples base = modelState.getCheckpointBase();
+            Optional<String> delta = Optional.ofNullable(base)
+                .filter(samples -> modelState.getCheckpointBaseTime().plus(maxCheckpointBaseAge).isAfter(now))
+                .flatMap(samples -> AccessController.doPrivileged(
+                    (PrivilegedAction<Optional<String>>) () -> binaryCheckpointSerde.toDeltaCheckpoint(forest, samples,
+                        maxDeltaCheckpointRatio)));
+            if (delta.isPresent()) {
+                put.put(getDeltaCheckpointId(modelId), delta.get(), () -> {});
+                adStats.counter(StatNames.AD_MODEL_DELTA_CHECKPOINT_COUNT).increment();
+                adStats.counter(StatNames.AD_MODEL_CHECKPOINT_BYTES).add(delta.get().length());
+                return;
+            }
+
+            // samples are taken along with the checkpoint rather than later from the forest, which may have been updated since
+            Entry<String, ForestSamples> checkpoint = AccessController.doPrivileged(
+                (PrivilegedAction<Entry<String, ForestSamples>>) () -> binaryCheckpointSerde.toCheckpointWithSamples(forest));
+            // deltas keep following the previous base until the checkpoint is saved, and the delta of the replaced
+            // checkpoint is ignored on load if deleting it fails
+            put.put(modelId, checkpoint.getKey(), () -> {
+                modelState.setCheckpointBase(checkpoint.getValue(), now);
+                delete.accept(getDeltaCheckpointId(modelId));
+            });
+            adStats.counter(StatNames.AD_MODEL_FULL_CHECKPOINT_COUNT).increment();
+            adStats.counter(StatNames.AD_MODEL_CHECKPOINT_BYTES).add(checkpoint.getKey().length());
+        } else {
+            String checkpoint = toCheckpoint(forest);
+            put.put(modelId, checkpoint, () -> {});
+            adStats.counter(StatNames.AD_MODEL_FULL_CHECKPOINT_COUNT).increment();
+            adStats.counter(StatNames.AD_MODEL_CHECKPOINT_BYTES).add(checkpoint.length());
+        }
+    }
+
+    private void writeThresholdCheckpoint(String modelId, ModelState<ThresholdingModel> modelState) {
+        writeThresholdCheckpoint(modelId, modelState, this::putCheckpointDoc);
+    }
+
+    private void writeThresholdCheckpoint(String modelId, ModelState<ThresholdingModel> modelState, CheckpointWriter put) {
+        String checkpoint = toCheckpoint(modelState.getModel());
+        put.put(modelId, checkpoint, () -> {});
+        adStats.counter(StatNames.AD_MODEL_CHECKPOINT_BYTES).add(checkpoint.length());
+    }
+
+    private void putCheckpointDoc(String id, String checkpoint, Runnable onSaved) {
+        if (checkpointDao.putModelCheckpoint(id, checkpoint)) {
+            onSaved.run();
+        }
+    }
+
+    private CheckpointWriter toBulkCheckpointWriter(BulkRequest bulkRequest, List<Runnable> callbacks) {
+        return (id, checkpoint, onSaved) -> {
+            bulkRequest.add(checkpointDao.toIndexRequest(id, checkpoint));
+            callbacks.add(onSaved);
+        };
+    }
+
+    // the bulk writer acknowledges saved checkpoints on a transport thread, which must not wait for the delete
+    private void deleteCheckpointDoc(String id) {
+        checkpointDao.deleteModelCheckpoint(id, ActionListener.wrap(response -> {},
+            exception -> logger.warn("Failed to delete checkpoint " + id, exception)));
+    }
+
+    private String getDeltaCheckpointId(String modelId) {
+        return String.format(DELTA_CHECKPOINT_ID_PATTERN, modelId);
+    }
+
+    /**
+     * Stops hosting the model and checkpoints it regardless of the checkpoint interval,
+     * so that the node taking over the model continues from its latest state.
+     * A model kept off-heap is checkpointed the same way.
+     *
+     * @param detectorId ID of the detector for informational purposes
+     * @param modelId ID of the model to hand off
+     */
+    public void handoffModel(String detectorId, String modelId) {
+        logger.info(String.format("Handing off detector %s model %s", detectorId, modelId));
+        removeModel(forests, modelId).ifPresent(model -> putCheckpoint(modelId, model, this::writeRcfCheckpoint));
+        removeModel(thresholds, modelId).ifPresent(model -> putCheckpoint(modelId, model, this::writeThresholdCheckpoint));
+        // the checkpoint queued when the model stopped being hosted may not be saved yet
+        restoreWarmForest(modelId)
+            .ifPresent(rcf -> putCheckpoint(modelId, new ModelState<>(rcf, clock.instant()), this::writeRcfCheckpoint));
+        adStats.counter(StatNames.AD_MODEL_HANDOFF_COUNT).increment();
+    }
+
+    /**
+     * Serializes a hosted model for a direct transfer to the node taking it over.
+     * The deflated binary format is used regardless of the checkpoint format setting, without Base64 encoding.
+     *
+     * @param modelId ID of the RCF or thresholding model
+     * @return the serialized model, empty when the model is not hosted
+     */
+    public Optional<byte[]> exportModel(String modelId) {
+        ModelState<RandomCutForest> forest = forests.get(modelId);
+        ModelState<ThresholdingModel> threshold = thresholds.get(modelId);
+        byte[] state = null;
+        if (forest != null) {
+            state = AccessController.doPrivileged((PrivilegedAction<byte[]>)
+                () -> binaryCheckpointSerde.toBytes(forest.getModel()));
+        } else if (threshold != null) {
+            state = AccessController.doPrivileged((PrivilegedAction<byte[]>)
+                () -> binaryCheckpointSerde.toBytes(threshold.getModel()));
+        }
+        return Optional.ofNullable(state);
+    }
+
+    /**
+     * Stops hosting a model already transferred to its new owner, without checkpointing it.
+     * A copy of the model kept off-heap is dropped as well.
+     *
+     * @param detectorId ID of the detector for informational purposes
+     * @param modelId ID of the model
+     */
+    public void releaseModel(String detectorId, String modelId) {
+        logger.info(String.format("Released detector %s model %s to its new owner", detectorId, modelId));
+        removeModel(forests, modelId);
+        removeModel(thresholds, modelId);
+        warmModels.remove(modelId);
+    }
+
+    /**
+     * Returns the ids of RCF models no longer hosted but kept off-heap.
+     *
+     * @return ids of models kept off-heap
+     */
+    public Set<String> getWarmModelIds() {
+        return warmModels.getModelIds();
+    }
+
+    /**
+     * Buffers a chunk of a transferred model and hosts the model once its last chunk arrives.
+     * A first chunk restarts the transfer of its model, so a transfer abandoned by the sender
+     * is replaced by its next attempt, or dropped by maintenance once it times out.
+     *
+     * @param detectorId ID of the detector
+     * @param modelId ID of the RCF or thresholding model
+     * @param chunk index of the chunk
+     * @param totalChunks number of chunks of the model
+     * @param data bytes of the chunk
+     * @return whether the model is hosted now
+     * @throws IllegalArgumentException when a chunk arrives out of order
+     * @throws LimitExceededException when the model does not fit in memory even after evicting other models
+     */
+    public boolean importModelChunk(String detectorId, String modelId, int chunk, int totalChunks, byte[] data) {
+        PartialModel partial = chunk == 0 ? new PartialModel() : partialModels.remove(modelId);
+        if (partial == null || partial.nextChunk != chunk) {
+            throw new IllegalArgumentException(OUT_OF_ORDER_CHUNK_MSG + " " + chunk + " of model " + modelId);
+        }
+        partial.bytes.write(data, 0, data.length);
+        partial.nextChunk++;
+        partial.lastChunkTime = clock.instant();
+
+        if (partial.nextChunk < totalChunks) {
+            partialModels.put(modelId, partial);
+            return false;
+        }
+        partialModels.remove(modelId);
+        importModel(detectorId, modelId, partial.bytes.toByteArray());
+        return true;
+    }
+
+    /**
+     * Hosts a model transferred from its previous owner. The transferred state replaces a copy
+     * loaded from an older checkpoint in the meantime.
+     *
+     * @param detectorId ID of the detector
+     * @param modelId ID of the RCF or thresholding model
+     * @param state the model serialized by {@link #exportModel(String)}
+     * @throws LimitExceededException when the model does not fit in memory even after evicting other models
+     */
+    public void importModel(String detectorId, String modelId, byte[] state) {
+        if (THRESHOLD_MODEL_ID_REGEX.matcher(modelId).matches()) {
+            ThresholdingModel threshold = AccessController.doPrivileged((PrivilegedAction<ThresholdingModel>)
+                () -> binaryCheckpointSerde.toThreshold(state, thresholdingModelClass));
+            thresholds.put(modelId, new ModelState<>(threshold, clock.instant()));
+        } else {
+            RandomCutForest forest = AccessController.doPrivileged((PrivilegedAction<RandomCutForest>)
+                () -> binaryCheckpointSerde.toRcf(state));
+            warmModels.remove(modelId);
+            hostForest(detectorId, modelId, forest, true);
+        }
+        adStats.counter(StatNames.AD_MODEL_TRANSFER_COUNT).increment();
+    }
+
+    /**
+     * Loads the model from its checkpoint unless it is already hosted, so that the first
+     * request after the model moved to this node does not wait for the checkpoint.
+     *
+     * @param detectorId ID of the detector
+     * @param modelId ID of the RCF or thresholding model
+     * @return whether the model is loaded by this call
+     * @throws ResourceNotFoundException when the model is not found
+     * @throws LimitExceededException when the model does not fit in memory even after evicting other models
+     */
+    public boolean preloadModel(String detectorId, String modelId) {
+        boolean isThreshold = THRESHOLD_MODEL_ID_REGEX.matcher(modelId).matches();
+        if (isThreshold ? thresholds.containsKey(modelId) : forests.containsKey(modelId)) {
+            return false;
+        }
+        if (isThreshold) {
+            loadThreshold(detectorId, modelId);
+        } else {
+            loadForest(detectorId, modelId);
+        }
+        adStats.counter(StatNames.AD_MODEL_PRELOAD_COUNT).increment();
+        return true;
     }
 
     /**
@@ -377,6 +751,9 @@ public class ModelManager {
     public void clear(String detectorId) {
         clearModels(detectorId, forests);
         clearModels(detectorId, thresholds);
+        warmModels.getModelIds().stream()
+            .filter(modelId -> getDetectorIdForModelId(modelId).equals(detectorId))
+            .forEach(warmModels::remove);
     }
 
     /**
@@ -384,7 +761,7 @@ public class ModelManager {
      *
      * @deprecated use trainModel with listener instead.
      *
-     * This implementations splits RCF models and trains them all.
+     * This implementations splits RCF models and trains them all in parallel on the training executor.
      * As all model partitions have the same size, the scores from RCF models are merged by averaging.
      * Since RCF outputs 0 until it is ready, initial 0 scores are meaningless and therefore filtered out.
      * Filtered (non-zero) RCF scores are the training data for a single thresholding model.
@@ -407,19 +784,19 @@ public class ModelManager {
                 .outputAfter(rcfNumSamplesInTree).parallelExecutionEnabled(false).build(), anomalyDetector.getDetectorId());
         int numForests = partitionResults.getKey();
         int forestSize = partitionResults.getValue();
+        List<Future<double[]>> partitions = new ArrayList<>(numForests);
+        for (int i = 0; i < numForests; i++) {
+            String modelId = getRcfModelId(anomalyDetector.getDetectorId(), i);
+            partitions.add(trainingExecutor.submit(() -> trainRcf(modelId, rcfNumFeatures, forestSize, dataPoints)));
+        }
+        // partition scores are summed in partition order so that results do not depend on scheduling
         double[] scores = new double[dataPoints.length];
         Arrays.fill(scores, 0.);
-        for (int i = 0; i < numForests; i++) {
-            RandomCutForest rcf = RandomCutForest.builder().dimensions(rcfNumFeatures).sampleSize(rcfNumSamplesInTree) 
-                .numberOfTrees(forestSize).lambda(rcfTimeDecay).outputAfter(rcfNumSamplesInTree).parallelExecutionEnabled(false).build();
+        for (Future<double[]> partition : partitions) {
+            double[] partitionScores = joinPartition(anomalyDetector.getDetectorId(), partition, partitions);
             for (int j = 0; j < dataPoints.length; j++) {
-                scores[j] += rcf.getAnomalyScore(dataPoints[j]);
-                rcf.update(dataPoints[j]);
+                scores[j] += partitionScores[j];
             }
-            String modelId = getRcfModelId(anomalyDetector.getDetectorId(), i);
-            String checkpoint = AccessController.doPrivileged(
-                (PrivilegedAction<String>) () -> rcfSerde.toJson(rcf));
-            checkpointDao.putModelCheckpoint(modelId, checkpoint);
         }
 
         scores = DoubleStream.of(scores).filter(score -> score > 0).map(score -> score/numForests).toArray();
@@ -432,9 +809,37 @@ public class ModelManager {
 
         // Persist thresholding model
         String modelId = getThresholdModelId(anomalyDetector.getDetectorId());
-        String checkpoint = AccessController.doPrivileged(
-            (PrivilegedAction<String>) () -> gson.toJson(threshold));
-        checkpointDao.putModelCheckpoint(modelId, checkpoint);
+        checkpointDao.putModelCheckpoint(modelId, toCheckpoint(threshold));
+    }
+
+    private double[] trainRcf(String modelId, int rcfNumFeatures, int forestSize, double[][] dataPoints) {
+        RandomCutForest rcf = RandomCutForest.builder().dimensions(rcfNumFeatures).sampleSize(rcfNumSamplesInTree)
+            .numberOfTrees(forestSize).lambda(rcfTimeDecay).outputAfter(rcfNumSamplesInTree).parallelExecutionEnabled(false).build();
+        double[] scores = new double[dataPoints.length];
+        for (int j = 0; j < dataPoints.length; j++) {
+            scores[j] = rcf.getAnomalyScore(dataPoints[j]);
+            rcf.update(dataPoints[j]);
+        }
+        checkpointDao.putModelCheckpoint(modelId, toCheckpoint(rcf));
+        // the retrained model replaces any copy of the previous model kept off-heap
+        warmModels.remove(modelId);
+        return scores;
+    }
+
+    private double[] joinPartition(String detectorId, Future<double[]> partition, List<Future<double[]>> partitions) {
+        try {
+            return partition.get();
+        } catch (InterruptedException e) {
+            partitions.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new AnomalyDetectionException(detectorId, "Interrupted while training model partitions", e);
+        } catch (ExecutionException e) {
+            partitions.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AnomalyDetectionException(detectorId, "Failed to train model partitions", e.getCause());
+        }
     }
 
     /**
@@ -458,34 +863,230 @@ public class ModelManager {
         return String.format(THRESHOLD_MODEL_ID_PATTERN, detectorId);
     }
 
-    private void clearModels(String detectorId, Map<String, ?> models) {
+    private <T> void clearModels(String detectorId, Map<String, ModelState<T>> models) {
         models.keySet().stream()
             .filter(modelId -> getDetectorIdForModelId(modelId).equals(detectorId))
             .forEach(modelId -> {
-                models.remove(modelId);
-                checkpointDao.deleteModelCheckpoint(modelId); });
+                removeModel(models, modelId);
+                checkpointDao.deleteModelCheckpoint(modelId);
+                if (!THRESHOLD_MODEL_ID_REGEX.matcher(modelId).matches()) {
+                    checkpointDao.deleteModelCheckpoint(getDeltaCheckpointId(modelId));
+                }});
+    }
+
+    /**
+     * Gets the hosted RCF model, loading it from its checkpoint on a cache miss.
+     *
+     * A loaded model is admitted by evicting the least recently used models, larger ones first among equally cold,
+     * until the hosted models fit in the memory limit. Evicted models are checkpointed so no update is lost.
+     */
+    private ModelState<RandomCutForest> getForest(String detectorId, String modelId) {
+        ModelState<RandomCutForest> modelState = forests.get(modelId);
+        if (modelState != null) {
+            adStats.counter(StatNames.AD_MODEL_CACHE_HIT_COUNT).increment();
+            return modelState;
+        }
+        adStats.counter(StatNames.AD_MODEL_CACHE_MISS_COUNT).increment();
+        return loadForest(detectorId, modelId);
+    }
+
+    // a model kept off-heap is restored without reading its checkpoint
+    private ModelState<RandomCutForest> loadForest(String detectorId, String modelId) {
+        Optional<RandomCutForest> warmForest = restoreWarmForest(modelId);
+        warmForest.ifPresent(forest -> adStats.counter(StatNames.AD_WARM_MODEL_HIT_COUNT).increment());
+        RandomCutForest rcf = warmForest.orElseGet(() -> checkpointDao.getModelCheckpoint(modelId)
+            .map(checkpoint -> toRcf(modelId, checkpoint))
+            .orElseThrow(() -> new ResourceNotFoundException(detectorId, CommonErrorMessages.NO_CHECKPOINT_ERR_MSG + modelId)));
+        return hostForest(detectorId, modelId, rcf, false);
+    }
+
+    private Optional<RandomCutForest> restoreWarmForest(String modelId) {
+        try {
+            return AccessController.doPrivileged((PrivilegedAction<Optional<RandomCutForest>>)
+                () -> warmModels.take(modelId).map(binaryCheckpointSerde::toRcf));
+        } catch (Exception e) {
+            logger.warn("Failed to restore model kept off-heap " + modelId, e);
+            return Optional.empty();
+        }
+    }
+
+    // keeps the model off-heap so that its next use does not read the checkpoint
+    private void demoteForest(String modelId, ModelState<RandomCutForest> modelState) {
+        try {
+            AccessController.doPrivileged((PrivilegedAction<Boolean>)
+                () -> warmModels.put(modelId, binaryCheckpointSerde.toBytes(modelState.getModel())));
+        } catch (Exception e) {
+            logger.warn("Failed to keep model off-heap " + modelId, e);
+        }
+    }
+
+    private ModelState<RandomCutForest> hostForest(String detectorId, String modelId, RandomCutForest rcf, boolean replace) {
+        ModelState<RandomCutForest> modelState;
+        List<Entry<String, ModelState<RandomCutForest>>> evicted = new ArrayList<>();
+        synchronized (forests) {
+            modelState = forests.get(modelId);
+            if (modelState != null && replace) {
+                removeModel(forests, modelId);
+                modelState = null;
+            }
+            if (modelState == null) {
+                long modelSize = estimateModelSize(rcf);
+                evicted = evictForSize(detectorId, modelSize);
+                modelState = new ModelState<>(rcf, clock.instant(), modelSize);
+                hostedModelSize.addAndGet(modelSize);
+                forests.put(modelId, modelState);
+            }
+        }
+        // checkpoints are written outside the lock so that slow writes do not block loading other models
+        evicted.forEach(entry -> {
+            demoteForest(entry.getKey(), entry.getValue());
+            try {
+                // regardless of the checkpoint interval, as updates since the last checkpoint are lost once the model is dropped
+                putCheckpoint(entry.getKey(), entry.getValue(), this::writeRcfCheckpoint);
+            } catch (Exception e) {
+                logger.warn("Failed to checkpoint evicted model " + entry.getKey(), e);
+            }});
+        return modelState;
     }
 
-    private boolean isHostingAllowed(String detectorId, RandomCutForest rcf) {
-        long total = forests.values().stream().mapToLong(f -> estimateModelSize(f.getModel())).sum()
-            + estimateModelSize(rcf);
+    // the checkpoint is read outside the map so that a slow load does not block other models
+    private ModelState<ThresholdingModel> loadThreshold(String detectorId, String modelId) {
+        ModelState<ThresholdingModel> modelState = checkpointDao.getModelCheckpoint(modelId)
+            .map(this::toThreshold)
+            .map(threshold -> new ModelState<>(threshold, clock.instant()))
+            .orElseThrow(() -> new ResourceNotFoundException(detectorId, CommonErrorMessages.NO_CHECKPOINT_ERR_MSG + modelId));
+        ModelState<ThresholdingModel> hostedState = thresholds.putIfAbsent(modelId, modelState);
+        return hostedState != null ? hostedState : modelState;
+    }
+
+    /**
+     * Loads a model on the model load executor and returns it to the listener.
+     *
+     * A request of a model already being loaded waits for that load instead of starting another one.
+     */
+    private <T> void loadModel(Map<String, List<ActionListener<ModelState<T>>>> loads, String modelId,
+        Supplier<ModelState<T>> loader, ActionListener<ModelState<T>> listener) {
+        boolean isLoading;
+        synchronized (loads) {
+            List<ActionListener<ModelState<T>>> listeners = loads.get(modelId);
+            isLoading = listeners != null;
+            if (isLoading) {
+                listeners.add(listener);
+            } else {
+                listeners = new ArrayList<>();
+                listeners.add(listener);
+                loads.put(modelId, listeners);
+            }
+        }
+        if (isLoading) {
+            adStats.counter(StatNames.AD_MODEL_LOAD_SHARED_COUNT).increment();
+            return;
+        }
+
+        adStats.counter(StatNames.AD_MODEL_LOAD_COUNT).increment();
+        long loadStartNanos = System.nanoTime();
+        try {
+            modelLoadExecutor.execute(() -> {
+                ModelState<T> modelState = null;
+                Exception failure = null;
+                try {
+                    modelState = loader.get();
+                    adStats.latency(StatNames.AD_MODEL_LOAD_LATENCY).recordSince(loadStartNanos);
+                } catch (Exception e) {
+                    failure = e;
+                }
+                onModelLoaded(loads, modelId, modelState, failure);
+            });
+        } catch (Exception e) {
+            // the executor rejects the load when its queue is full
+            onModelLoaded(loads, modelId, null, e);
+        }
+    }
+
+    private <T> void onModelLoaded(Map<String, List<ActionListener<ModelState<T>>>> loads, String modelId,
+        ModelState<T> modelState, Exception failure) {
+        List<ActionListener<ModelState<T>>> listeners;
+        synchronized (loads) {
+            listeners = loads.remove(modelId);
+        }
+        for (ActionListener<ModelState<T>> listener : listeners) {
+            try {
+                if (failure == null) {
+                    listener.onResponse(modelState);
+                } else {
+                    listener.onFailure(failure);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to notify the load of model " + modelId, e);
+            }
+        }
+    }
+
+    private List<Entry<String, ModelState<RandomCutForest>>> evictForSize(String detectorId, long requiredSize) {
         double heapLimit = jvmService.info().getMem().getHeapMax().getBytes() * modelMaxSizePercentage;
+        // the running total keeps the check constant time, models are only sorted when some must be evicted
+        long total = hostedModelSize.get() + requiredSize;
+        List<Entry<String, ModelState<RandomCutForest>>> victims = new ArrayList<>();
         if (total <= heapLimit) {
-            return true;
-        } else {
+            return victims;
+        }
+        long remaining = total;
+        Comparator<Entry<String, ModelState<RandomCutForest>>> coldestFirst = Comparator
+            .comparing((Entry<String, ModelState<RandomCutForest>> entry) -> entry.getValue().getLastUsedTime())
+            .thenComparing(entry -> entry.getValue().getModelSize(), Comparator.reverseOrder());
+        for (Entry<String, ModelState<RandomCutForest>> entry : forests.entrySet().stream().sorted(coldestFirst)
+            .collect(Collectors.toList())) {
+            if (remaining <= heapLimit) {
+                break;
+            }
+            victims.add(entry);
+            remaining -= entry.getValue().getModelSize();
+        }
+        if (remaining > heapLimit) {
             throw new LimitExceededException(detectorId,
                 String.format("Exceeded memory limit. New size is %d and max limit is %f", total, heapLimit));
         }
+        victims.forEach(entry -> {
+            removeModel(forests, entry.getKey());
+            adStats.counter(StatNames.AD_MODEL_EVICTION_COUNT).increment();
+            logger.info(String.format("Evicted model %s to host models of detector %s", entry.getKey(), detectorId));
+        });
+        return victims;
     }
 
     private String toCheckpoint(RandomCutForest forest) {
         return AccessController.doPrivileged((PrivilegedAction<String>)
-            () -> rcfSerde.toJson(forest));
+            () -> binaryCheckpointEnabled ? binaryCheckpointSerde.toCheckpoint(forest) : rcfSerde.toJson(forest));
     }
 
     private String toCheckpoint(ThresholdingModel threshold) {
         return AccessController.doPrivileged((PrivilegedAction<String>)
-            () -> gson.toJson(threshold));
+            () -> binaryCheckpointEnabled ? binaryCheckpointSerde.toCheckpoint(threshold) : gson.toJson(threshold));
+    }
+
+    // legacy json checkpoints remain readable regardless of the format used for writing
+    private RandomCutForest toRcf(String checkpoint) {
+        return AccessController.doPrivileged((PrivilegedAction<RandomCutForest>)
+            () -> binaryCheckpointSerde.isBinary(checkpoint)
+                ? binaryCheckpointSerde.toRcf(checkpoint) : rcfSerde.fromJson(checkpoint));
+    }
+
+    // a binary checkpoint is followed by the latest delta checkpoint, if any
+    private RandomCutForest toRcf(String modelId, String checkpoint) {
+        if (!binaryCheckpointSerde.isBinary(checkpoint)) {
+            return toRcf(checkpoint);
+        }
+        return checkpointDao.getModelCheckpoint(getDeltaCheckpointId(modelId))
+            .map(delta -> AccessController.doPrivileged((PrivilegedAction<RandomCutForest>)
+                () -> binaryCheckpointSerde.toRcf(checkpoint, delta)))
+            .orElseGet(() -> toRcf(checkpoint));
+    }
+
+    private ThresholdingModel toThreshold(String checkpoint) {
+        return AccessController.doPrivileged((PrivilegedAction<ThresholdingModel>)
+            () -> binaryCheckpointSerde.isBinary(checkpoint)
+                ? binaryCheckpointSerde.toThreshold(checkpoint, thresholdingModelClass)
+                : gson.fromJson(checkpoint, thresholdingModelClass));
     }
 
     /**
@@ -493,32 +1094,85 @@ public class ModelManager {
      *
      * @deprecated use maintenance with listener instead.
      *
-     * The implementation makes checkpoints for hosted models and stop hosting models not actively used.
+     * The implementation queues checkpoints of hosted models to save in bulk and stop hosting models not actively used.
+     * RCF models no longer hosted are kept off-heap until they are used again or dropped for room.
      */
     @Deprecated
     public void maintenance() {
-        maintenance(forests, this::toCheckpoint);
-        maintenance(thresholds, this::toCheckpoint);
+        Map<String, BulkCheckpoint> checkpoints = new LinkedHashMap<>();
+        maintenance(forests, checkpoints, (modelId, modelState, put) -> writeRcfCheckpoint(modelId, modelState, put,
+            this::deleteCheckpointDoc), this::demoteForest);
+        maintenance(thresholds, checkpoints, this::writeThresholdCheckpoint, (modelId, modelState) -> {});
+        checkpointBulkWriter.write(checkpoints);
+        Instant transferExpiry = clock.instant().minus(modelTransferTimeout);
+        partialModels.values().removeIf(partial -> partial.lastChunkTime.isBefore(transferExpiry));
     }
 
-    private <T> void maintenance(Map<String, ModelState<T>> models, Function<T, String> toCheckpoint) {
+    private <T> void maintenance(Map<String, ModelState<T>> models, Map<String, BulkCheckpoint> checkpoints,
+        ModelCheckpointWriter<T> modelCheckpointWriter, BiConsumer<String, ModelState<T>> expiredModelHandler) {
         models.entrySet().stream().forEach(entry -> {
             String modelId = entry.getKey();
             try {
                 ModelState<T> modelState = entry.getValue();
                 Instant now = clock.instant();
+                boolean isExpired = modelState.getLastUsedTime().plus(modelTtl).isBefore(now);
                 if (modelState.getLastCheckpointTime().plus(checkpointInterval).isBefore(now)) {
-                    checkpointDao.putModelCheckpoint(modelId, toCheckpoint.apply(modelState.getModel()));
-                    modelState.setLastCheckpointTime(now);
+                    checkpoints.put(modelId, isExpired ? toSerializedCheckpoint(modelId, modelState, modelCheckpointWriter)
+                        : toBulkCheckpoint(models, modelId, modelState, modelCheckpointWriter));
                 }
-                if (modelState.getLastUsedTime().plus(modelTtl).isBefore(now)) {
-                    models.remove(modelId);
+                if (isExpired) {
+                    // handled before the model stops being hosted, so that a request in between finds it off-heap
+                    expiredModelHandler.accept(modelId, modelState);
+                    removeModel(models, modelId);
                 }
             } catch (Exception e) {
                 logger.warn("Failed to finish maintenance for model id " + modelId, e);
             }});
     }
 
+    /**
+     * Returns a checkpoint of a hosted model serialized when its bulk request is built.
+     *
+     * The checkpoint is skipped if the model is checkpointed since or no longer hosted, and the model is
+     * acknowledged only once the checkpoint is saved, so that a failed checkpoint is retried by the next maintenance.
+     */
+    private <T> BulkCheckpoint toBulkCheckpoint(Map<String, ModelState<T>> models, String modelId, ModelState<T> modelState,
+        ModelCheckpointWriter<T> modelCheckpointWriter) {
+        Instant lastCheckpointTime = modelState.getLastCheckpointTime();
+        return bulkRequest -> {
+            if (!modelState.getLastCheckpointTime().equals(lastCheckpointTime) || models.get(modelId) != modelState) {
+                return () -> {};
+            }
+            Instant checkpointTime = clock.instant();
+            List<Runnable> callbacks = new ArrayList<>();
+            modelCheckpointWriter.write(modelId, modelState, toBulkCheckpointWriter(bulkRequest, callbacks));
+            return () -> {
+                // a checkpoint saved directly in the meantime is newer than this one
+                if (modelState.getLastCheckpointTime().equals(lastCheckpointTime)) {
+                    callbacks.forEach(Runnable::run);
+                    modelState.setLastCheckpointTime(checkpointTime);
+                }
+            };
+        };
+    }
+
+    /**
+     * Returns a checkpoint of a model about to stop being hosted, serialized right away.
+     *
+     * The queued checkpoint keeps neither the model nor its state, so saving it updates no state.
+     * A delta checkpoint it replaces is ignored on load.
+     */
+    private <T> BulkCheckpoint toSerializedCheckpoint(String modelId, ModelState<T> modelState,
+        ModelCheckpointWriter<T> modelCheckpointWriter) {
+        List<IndexRequest> requests = new ArrayList<>();
+        modelCheckpointWriter.write(modelId, modelState,
+            (id, checkpoint, onSaved) -> requests.add(checkpointDao.toIndexRequest(id, checkpoint)));
+        return bulkRequest -> {
+            requests.forEach(request -> bulkRequest.add(request));
+            return () -> {};
+        };
+    }
+
     /**
      * Returns computed anomaly results for preview data points.
      *
@@ -574,4 +1228,22 @@ public class ModelManager {
             return Math.max(0, confidence); // Replaces -0 wth 0 for cosmetic purpose.
         }
     }
+
+    private static class PartialModel {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int nextChunk = 0;
+        private volatile Instant lastChunkTime;
+    }
+
+    // puts a checkpoint doc, running onSaved once the doc is saved
+    @FunctionalInterface
+    private interface CheckpointWriter {
+        void put(String id, String checkpoint, Runnable onSaved);
+    }
+
+    // writes the checkpoint docs of a model
+    @FunctionalInterface
+    private interface ModelCheckpointWriter<T> {
+        void write(String modelId, ModelState<T> modelState, CheckpointWriter put);
+    }
 }
@@ -25,6 +25,9 @@ public class ModelState<T> {
     private T model;
     private Instant lastUsedTime;
     private Instant lastCheckpointTime;
+    private long modelSize;
+    private ForestSamples checkpointBase;
+    private Instant checkpointBaseTime;
 
     /**
      * Constructor.
@@ -33,9 +36,21 @@ public class ModelState<T> {
      * @param lastUsedTime time when the ML model was used last time
      */
     public ModelState(T model, Instant lastUsedTime) {
+        this(model, lastUsedTime, 0L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param model ML model
+     * @param lastUsedTime time when the ML model was used last time
+     * @param modelSize estimated memory size of the ML model in bytes
+     */
+    public ModelState(T model, Instant lastUsedTime, long modelSize) {
         this.model = model;
         this.lastUsedTime = lastUsedTime;
         this.lastCheckpointTime = Instant.MIN;
+        this.modelSize = modelSize;
     }
 
     /**
@@ -82,4 +97,42 @@ public class ModelState<T> {
     public void setLastCheckpointTime(Instant lastCheckpointTime) {
         this.lastCheckpointTime = lastCheckpointTime;
     }
+
+    /**
+     * Returns the estimated memory size of the ML model in bytes.
+     *
+     * @return the estimated memory size of the ML model in bytes, 0 if not estimated
+     */
+    public long getModelSize() {
+        return this.modelSize;
+    }
+
+    /**
+     * Returns the samples of the RCF model at its last full checkpoint.
+     *
+     * @return the samples at the last full checkpoint, null if not known or not a RCF model
+     */
+    public ForestSamples getCheckpointBase() {
+        return this.checkpointBase;
+    }
+
+    /**
+     * Returns the time when the last full checkpoint of the RCF model was made.
+     *
+     * @return the time of the last full checkpoint, null if not known or not a RCF model
+     */
+    public Instant getCheckpointBaseTime() {
+        return this.checkpointBaseTime;
+    }
+
+    /**
+     * Sets the samples of the RCF model at its last full checkpoint.
+     *
+     * @param checkpointBase the samples at the last full checkpoint
+     * @param checkpointBaseTime the time when the last full checkpoint was made
+     */
+    public void setCheckpointBase(ForestSamples checkpointBase, Instant checkpointBaseTime) {
+        this.checkpointBase = checkpointBase;
+        this.checkpointBaseTime = checkpointBaseTime;
+    }
 }
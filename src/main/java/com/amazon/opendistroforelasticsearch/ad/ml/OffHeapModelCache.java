@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+/**
+ * Node-local cache of serialized models in direct memory, outside the heap budget of hosted models.
+ *
+ * Models no longer hosted are kept here so that they can be restored without reading their checkpoints.
+ * The cache holds models up to its capacity in bytes; the least recently cached models are dropped to make room.
+ * A model is removed from the cache when it is restored.
+ */
+public class OffHeapModelCache {
+
+    private final long capacityBytes;
+    private final ADStats adStats;
+
+    private final Map<String, WritableDirectHandle> models;
+    private long sizeBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param capacityBytes max bytes of cached models
+     * @param adStats AD statistics
+     */
+    public OffHeapModelCache(long capacityBytes, ADStats adStats) {
+        this.capacityBytes = capacityBytes;
+        this.adStats = adStats;
+        this.models = new LinkedHashMap<>();
+
+        adStats.gauge(StatNames.AD_WARM_MODEL_COUNT, () -> (long) getCount());
+        adStats.gauge(StatNames.AD_WARM_MODEL_SIZE, this::getSizeInBytes);
+    }
+
+    /**
+     * Caches a serialized model, replacing the model of the same id if any.
+     *
+     * @param modelId ID of the model
+     * @param model serialized model
+     * @return whether the model is cached, false when it is larger than the capacity
+     */
+    public synchronized boolean put(String modelId, byte[] model) {
+        remove(modelId);
+        if (model.length > capacityBytes) {
+            return false;
+        }
+        Iterator<Entry<String, WritableDirectHandle>> coldest = models.entrySet().iterator();
+        while (sizeBytes + model.length > capacityBytes && coldest.hasNext()) {
+            free(coldest.next().getValue());
+            coldest.remove();
+            adStats.counter(StatNames.AD_WARM_MODEL_EVICTION_COUNT).increment();
+        }
+        WritableDirectHandle handle = WritableMemory.allocateDirect(model.length);
+        handle.get().putByteArray(0, model, 0, model.length);
+        models.put(modelId, handle);
+        sizeBytes += model.length;
+        return true;
+    }
+
+    /**
+     * Removes a model from the cache and returns it.
+     *
+     * @param modelId ID of the model
+     * @return the serialized model, empty when the model is not cached
+     */
+    public synchronized Optional<byte[]> take(String modelId) {
+        WritableDirectHandle handle = models.remove(modelId);
+        if (handle == null) {
+            return Optional.empty();
+        }
+        byte[] model = new byte[(int) handle.get().getCapacity()];
+        handle.get().getByteArray(0, model, 0, model.length);
+        free(handle);
+        return Optional.of(model);
+    }
+
+    /**
+     * Removes a model from the cache.
+     *
+     * @param modelId ID of the model
+     * @return whether the model was cached
+     */
+    public synchronized boolean remove(String modelId) {
+        WritableDirectHandle handle = models.remove(modelId);
+        if (handle != null) {
+            free(handle);
+        }
+        return handle != null;
+    }
+
+    /**
+     * Returns the ids of cached models.
+     *
+     * @return ids of cached models
+     */
+    public synchronized Set<String> getModelIds() {
+        return new HashSet<>(models.keySet());
+    }
+
+    /**
+     * Returns the number of cached models.
+     *
+     * @return number of cached models
+     */
+    public synchronized int getCount() {
+        return models.size();
+    }
+
+    /**
+     * Returns the direct memory taken by cached models.
+     *
+     * @return bytes of cached models
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Removes all models and releases their memory.
+     */
+    public synchronized void clear() {
+        models.values().forEach(this::free);
+        models.clear();
+    }
+
+    private void free(WritableDirectHandle handle) {
+        sizeBytes -= handle.get().getCapacity();
+        handle.close();
+    }
+}
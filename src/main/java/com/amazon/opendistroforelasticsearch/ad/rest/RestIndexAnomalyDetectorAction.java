@@ -15,6 +15,7 @@
 
 package com.amazon.opendistroforelasticsearch.ad.rest;
 
+import com.amazon.opendistroforelasticsearch.ad.feature.FeatureQueryCache;
 import com.amazon.opendistroforelasticsearch.ad.indices.AnomalyDetectionIndices;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.rest.handler.IndexAnomalyDetectorActionHandler;
@@ -54,19 +55,21 @@ public class RestIndexAnomalyDetectorAction extends BaseRestHandler {
     private final Logger logger = LogManager.getLogger(RestIndexAnomalyDetectorAction.class);
     private final ClusterService clusterService;
     private final Settings settings;
+    private final FeatureQueryCache featureQueryCache;
 
     private volatile TimeValue requestTimeout;
     private volatile TimeValue detectionInterval;
     private volatile TimeValue detectionWindowDelay;
 
     public RestIndexAnomalyDetectorAction(Settings settings, RestController controller, ClusterService clusterService,
-                                          AnomalyDetectionIndices anomalyDetectionIndices) {
+                                          AnomalyDetectionIndices anomalyDetectionIndices, FeatureQueryCache featureQueryCache) {
         super(settings);
         controller.registerHandler(RestRequest.Method.POST, AnomalyDetectorPlugin.AD_BASE_DETECTORS_URI, this); // Create
         controller.registerHandler(RestRequest.Method.PUT,
                 String.format(Locale.ROOT, "%s/{%s}", AnomalyDetectorPlugin.AD_BASE_DETECTORS_URI, DETECTOR_ID), this); // update
         this.settings = settings;
         this.anomalyDetectionIndices = anomalyDetectionIndices;
+        this.featureQueryCache = featureQueryCache;
         this.requestTimeout = REQUEST_TIMEOUT.get(settings);
         this.detectionInterval = DETECTION_INTERVAL.get(settings);
         this.detectionWindowDelay = DETECTION_WINDOW_DELAY.get(settings);
@@ -102,7 +105,7 @@ public class RestIndexAnomalyDetectorAction extends BaseRestHandler {
 
         return channel -> new IndexAnomalyDetectorActionHandler(settings, clusterService, client, channel,
                 anomalyDetectionIndices, detectorId, seqNo,
-                primaryTerm, refreshPolicy, detector, requestTimeout).start();
+                primaryTerm, refreshPolicy, detector, requestTimeout, featureQueryCache).start();
     }
 
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.rest;
+
+import com.amazon.opendistroforelasticsearch.ad.AnomalyDetectorPlugin;
+import com.amazon.opendistroforelasticsearch.ad.transport.ADStatsAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ADStatsRequest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * This class consists of the REST handler to retrieve node-level statistics of AD.
+ */
+public class RestStatsAnomalyDetectorAction extends BaseRestHandler {
+
+    public static final String STATS_ANOMALY_DETECTOR_ACTION = "stats_anomaly_detector";
+    public static final String STATS = "stats";
+    public static final String NODE_ID = "nodeId";
+
+    public RestStatsAnomalyDetectorAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(RestRequest.Method.GET,
+                String.format(Locale.ROOT, "%s/%s", AnomalyDetectorPlugin.AD_BASE_URI, STATS), this);
+        controller.registerHandler(RestRequest.Method.GET,
+                String.format(Locale.ROOT, "%s/{%s}/%s", AnomalyDetectorPlugin.AD_BASE_URI, NODE_ID, STATS), this);
+    }
+
+    @Override
+    public String getName() {
+        return STATS_ANOMALY_DETECTOR_ACTION;
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        ADStatsRequest statsRequest = new ADStatsRequest(Strings.splitStringByCommaToArray(request.param(NODE_ID)));
+        return channel -> client.execute(ADStatsAction.INSTANCE, statsRequest, new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
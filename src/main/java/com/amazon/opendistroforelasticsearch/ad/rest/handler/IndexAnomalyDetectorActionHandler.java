@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.ad.rest.handler;
 
 import com.amazon.opendistroforelasticsearch.ad.AnomalyDetectorPlugin;
+import com.amazon.opendistroforelasticsearch.ad.feature.FeatureQueryCache;
 import com.amazon.opendistroforelasticsearch.ad.indices.AnomalyDetectionIndices;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.model.Feature;
@@ -74,6 +75,7 @@ public class IndexAnomalyDetectorActionHandler extends AbstractActionHandler {
     private final WriteRequest.RefreshPolicy refreshPolicy;
     private final AnomalyDetector anomalyDetector;
     private final ClusterService clusterService;
+    private final FeatureQueryCache featureQueryCache;
 
     private final Logger logger = LogManager.getLogger(IndexAnomalyDetectorActionHandler.class);
     private final TimeValue requestTimeout;
@@ -95,12 +97,14 @@ public class IndexAnomalyDetectorActionHandler extends AbstractActionHandler {
      * @param refreshPolicy           refresh policy
      * @param anomalyDetector         anomaly detector instance
      * @param requestTimeout          request time out configuration
+     * @param featureQueryCache       cache of parsed feature aggregations, cleared for the updated detector
      */
     public IndexAnomalyDetectorActionHandler(Settings settings, ClusterService clusterService, NodeClient client, RestChannel channel,
                                              AnomalyDetectionIndices anomalyDetectionIndices,
                                              String detectorId, Long seqNo,
                                              Long primaryTerm, WriteRequest.RefreshPolicy refreshPolicy,
-                                             AnomalyDetector anomalyDetector, TimeValue requestTimeout) {
+                                             AnomalyDetector anomalyDetector, TimeValue requestTimeout,
+                                             FeatureQueryCache featureQueryCache) {
         super(client, channel);
         this.clusterService = clusterService;
         this.anomalyDetectionIndices = anomalyDetectionIndices;
@@ -110,6 +114,7 @@ public class IndexAnomalyDetectorActionHandler extends AbstractActionHandler {
         this.refreshPolicy = refreshPolicy;
         this.anomalyDetector = anomalyDetector;
         this.requestTimeout = requestTimeout;
+        this.featureQueryCache = featureQueryCache;
         maxAnomalyDetectors = MAX_ANOMALY_DETECTORS.get(settings);
         maxAnomalyFeatures = MAX_ANOMALY_FEATURES.get(settings);
         clusterService.getClusterSettings().addSettingsUpdateConsumer(MAX_ANOMALY_DETECTORS, it -> maxAnomalyDetectors = it);
@@ -279,6 +284,7 @@ public class IndexAnomalyDetectorActionHandler extends AbstractActionHandler {
                     return new BytesRestResponse(response.status(),
                             response.toXContent(channel.newErrorBuilder(), EMPTY_PARAMS));
                 }
+                featureQueryCache.clear(response.getId());
 
                 XContentBuilder builder = channel.newBuilder()
                         .startObject()
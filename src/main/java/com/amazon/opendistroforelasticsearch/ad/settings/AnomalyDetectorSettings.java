@@ -18,6 +18,7 @@ package com.amazon.opendistroforelasticsearch.ad.settings;
 import java.time.Duration;
 
 import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 
 /**
@@ -85,6 +86,45 @@ public final class AnomalyDetectorSettings {
             "ml.anomaly_detectors.cooldown_minutes", TimeValue.timeValueMinutes(5),
             Setting.Property.NodeScope, Setting.Property.Dynamic);
 
+    // the threshold model of a detector is hosted with its RCF model partition 0
+    public static final Setting<Boolean> COLOCATE_THRESHOLD_MODEL = Setting.boolSetting(
+            "ml.anomaly_detectors.colocate_threshold_model", true,
+            Setting.Property.NodeScope);
+
+    // models hosted on the coordinating node are executed without a transport request
+    public static final Setting<Boolean> LOCAL_MODEL_SHORT_CIRCUIT = Setting.boolSetting(
+            "ml.anomaly_detectors.local_model_short_circuit", true,
+            Setting.Property.NodeScope);
+
+    // models moving to another node are sent to it directly, the checkpoint index is only the fallback
+    public static final Setting<Boolean> DIRECT_MODEL_TRANSFER = Setting.boolSetting(
+            "ml.anomaly_detectors.direct_model_transfer", true,
+            Setting.Property.NodeScope);
+
+    // feature queries are aligned to intervals and sent cacheable by the shard request cache,
+    // results report the aligned detection range
+    public static final Setting<Boolean> FEATURE_QUERY_REQUEST_CACHE_ENABLED = Setting.boolSetting(
+            "ml.anomaly_detectors.feature_query_request_cache_enabled", true,
+            Setting.Property.NodeScope);
+
+    // features of closed intervals cached on each node, shared by cold start, preview and real-time runs
+    public static final Setting<ByteSizeValue> FEATURE_CACHE_SIZE = Setting.memorySizeSetting(
+            "ml.anomaly_detectors.feature_cache_size", "1%",
+            Setting.Property.NodeScope);
+
+    // cold starts of different detectors and model partitions of a detector are trained concurrently up to the limits
+    public static final Setting<Integer> MAX_CONCURRENT_COLD_STARTS = Setting.intSetting(
+            "ml.anomaly_detectors.max_concurrent_cold_starts",
+            2,
+            1,
+            Setting.Property.NodeScope);
+
+    public static final Setting<Integer> MAX_TRAINING_PARALLELISM = Setting.intSetting(
+            "ml.anomaly_detectors.max_training_parallelism",
+            4,
+            1,
+            Setting.Property.NodeScope);
+
     public static final Setting<TimeValue> BACKOFF_MINUTES = Setting.positiveTimeSetting(
             "ml.anomaly_detectors.backoff_minutes", TimeValue.timeValueMinutes(15),
             Setting.Property.NodeScope, Setting.Property.Dynamic);
@@ -106,6 +146,46 @@ public final class AnomalyDetectorSettings {
 
     public static final Duration CHECKPOINT_TTL = Duration.ofDays(14);
 
+    // delta checkpoints do not refresh the timestamp of their full checkpoint, so a full checkpoint is made
+    // well before the checkpoint ttl deletes the last one
+    public static final Duration MAX_CHECKPOINT_BASE_AGE = CHECKPOINT_TTL.dividedBy(2);
+
+    // checkpoints in the legacy json format stay readable when enabled
+    public static final boolean BINARY_CHECKPOINT_ENABLED = true;
+
+    public static final boolean CHECKPOINT_COMPRESSION_ENABLED = true;
+
+    // a binary rcf checkpoint is saved as a delta while at most this ratio of its samples changed, 0 disables deltas
+    public static final double MAX_DELTA_CHECKPOINT_RATIO = 0.5;
+
+    // checkpoints due in hourly maintenance are saved in bulk requests spread over the window
+    public static final int CHECKPOINT_BULK_SIZE = 20;
+
+    public static final long CHECKPOINT_MAX_BYTES_PER_SECOND = 5 * 1024 * 1024;
+
+    public static final TimeValue CHECKPOINT_FLUSH_WINDOW = TimeValue.timeValueMinutes(45);
+
+    // anomaly results are saved in bulk requests of up to this many results
+    public static final int RESULT_BULK_SIZE = 500;
+
+    public static final int MAX_BUFFERED_RESULTS = 10_000;
+
+    public static final TimeValue RESULT_FLUSH_INTERVAL = TimeValue.timeValueSeconds(1);
+
+    // RCF result requests of detectors to the same model node are sent together within the window
+    public static final TimeValue RCF_BATCH_WINDOW = TimeValue.timeValueMillis(10);
+
+    public static final int RCF_MAX_BATCH_SIZE = 100;
+
+    // models missing in memory are loaded from checkpoints by a dedicated thread pool, with loads beyond the queue rejected
+    public static final int MODEL_LOAD_QUEUE_SIZE = 1000;
+
+    // a model transferred directly between nodes is sent in chunks of up to this many bytes
+    public static final int MODEL_TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    // chunks of a model transfer are dropped when no chunk arrives for this long
+    public static final Duration MODEL_TRANSFER_TIMEOUT = Duration.ofMinutes(10);
+
     // ======================================
     // ML parameters
     // ======================================
@@ -122,6 +202,9 @@ public final class AnomalyDetectorSettings {
 
     public static final double MODEL_MAX_SIZE_PERCENTAGE = 0.1;
 
+    // models no longer hosted are kept serialized in direct memory, up to this percentage of heap
+    public static final double WARM_MODEL_MAX_SIZE_PERCENTAGE = 0.1;
+
     // Thresholding
     public static final double THRESHOLD_MIN_PVALUE = 0.995;
 
@@ -150,5 +233,18 @@ public final class AnomalyDetectorSettings {
 
     public static final int MAX_PREVIEW_SAMPLES = 60; // ok to adjust, higher for more data, lower for lower latency
 
+    // preview reads every interval through date histograms instead of interpolating MAX_PREVIEW_SAMPLES samples
+    public static final boolean FULL_RESOLUTION_PREVIEW = true;
+
+    // feature queries of detectors on the same indices and interval are sent together within the window
+    public static final TimeValue FEATURE_QUERY_BATCH_WINDOW = TimeValue.timeValueMillis(100);
+
+    public static final int FEATURE_QUERY_MAX_BATCH_SIZE = 100;
+
+    public static final int FEATURE_QUERY_MAX_TRACKED_REQUESTS = 10_000;
+
+    // cold start samples are read with date histograms of up to this many buckets per search
+    public static final int FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH = 1_000;
+
 
 }
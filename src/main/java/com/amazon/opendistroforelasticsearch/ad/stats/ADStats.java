@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.stats;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the node-level statistics of AD.
+ *
+ * Statistics are created on first use by name, see {@link StatNames}.
+ */
+public class ADStats {
+
+    private final Map<String, ADStat> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the counter of the name.
+     *
+     * @param name name of the statistic
+     * @return counter of the name
+     * @throws IllegalArgumentException when the name is used by a different type of statistic
+     */
+    public CounterStat counter(String name) {
+        return get(name, CounterStat.class, CounterStat::new);
+    }
+
+    /**
+     * Returns the latency statistic of the name.
+     *
+     * @param name name of the statistic
+     * @return latency statistic of the name
+     * @throws IllegalArgumentException when the name is used by a different type of statistic
+     */
+    public LatencyStat latency(String name) {
+        return get(name, LatencyStat.class, LatencyStat::new);
+    }
+
+    /**
+     * Registers a gauge, replacing any statistic of the same name.
+     *
+     * @param name name of the statistic
+     * @param supplier supplier of the current value
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        stats.put(name, new GaugeStat(supplier));
+    }
+
+    /**
+     * Returns the current values of all statistics ordered by name.
+     *
+     * @return names to values of statistics
+     */
+    public Map<String, Object> getStatValues() {
+        Map<String, Object> values = new TreeMap<>();
+        stats.forEach((name, stat) -> values.put(name, stat.getValue()));
+        return values;
+    }
+
+    private <T extends ADStat> T get(String name, Class<T> statClass, Supplier<T> factory) {
+        ADStat stat = stats.computeIfAbsent(name, key -> factory.get());
+        if (!statClass.isInstance(stat)) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "Stat %s is not a %s", name, statClass.getSimpleName()));
+        }
+        return statClass.cast(stat);
+    }
+}
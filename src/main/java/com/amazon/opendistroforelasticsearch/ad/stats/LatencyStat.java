@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, average and max of recorded latencies.
+ */
+public class LatencyStat implements ADStat {
+
+    public static final String COUNT = "count";
+    public static final String AVG_MILLIS = "avg_millis";
+    public static final String MAX_MILLIS = "max_millis";
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records the time elapsed since the start.
+     *
+     * @param startNanos start time from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public Object getValue() {
+        long currentCount = count.sum();
+        Map<String, Object> value = new HashMap<>();
+        value.put(COUNT, currentCount);
+        value.put(AVG_MILLIS, currentCount == 0 ? 0d : toMillis(totalNanos.sum()) / currentCount);
+        value.put(MAX_MILLIS, toMillis(maxNanos.get()));
+        return value;
+    }
+
+    private double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.stats;
+
+/**
+ * Names of node-level statistics.
+ */
+public class StatNames {
+    // ======================================
+    // Anomaly result
+    // ======================================
+    public static final String AD_EXECUTE_REQUEST_COUNT = "ad_execute_request_count";
+    public static final String AD_EXECUTE_FAILURE_COUNT = "ad_execute_failure_count";
+    public static final String AD_EXECUTE_LATENCY = "ad_execute_latency";
+    public static final String AD_FEATURE_LATENCY = "ad_feature_latency";
+    public static final String AD_RCF_LATENCY = "ad_rcf_latency";
+    public static final String AD_THRESHOLD_LATENCY = "ad_threshold_latency";
+    public static final String AD_RESULT_INDEX_LATENCY = "ad_result_index_latency";
+    public static final String AD_RESULT_BUFFER_SIZE = "ad_result_buffer_size";
+    public static final String AD_RESULT_BULK_COUNT = "ad_result_bulk_count";
+    public static final String AD_RESULT_BULK_LATENCY = "ad_result_bulk_latency";
+    public static final String AD_RESULT_RETRY_COUNT = "ad_result_retry_count";
+    public static final String AD_RESULT_FAILURE_COUNT = "ad_result_failure_count";
+    public static final String AD_RESULT_DROPPED_COUNT = "ad_result_dropped_count";
+    public static final String AD_RCF_REQUEST_COUNT = "ad_rcf_request_count";
+    public static final String AD_RCF_ROUND_TRIP_COUNT = "ad_rcf_round_trip_count";
+    public static final String AD_MODEL_LOCAL_REQUEST_COUNT = "ad_model_local_request_count";
+    public static final String AD_MODEL_FUSED_REQUEST_COUNT = "ad_model_fused_request_count";
+    public static final String AD_MODEL_FUSED_LATENCY = "ad_model_fused_latency";
+
+    // ======================================
+    // Feature query
+    // ======================================
+    public static final String AD_FEATURE_QUERY_COUNT = "ad_feature_query_count";
+    public static final String AD_FEATURE_QUERY_ROUND_TRIP_COUNT = "ad_feature_query_round_trip_count";
+    public static final String AD_FEATURE_QUERY_CACHEABLE_COUNT = "ad_feature_query_cacheable_count";
+    public static final String AD_FEATURE_QUERY_CACHE_REPEAT_COUNT = "ad_feature_query_cache_repeat_count";
+    public static final String AD_FEATURE_CACHE_HIT_COUNT = "ad_feature_cache_hit_count";
+    public static final String AD_FEATURE_CACHE_MISS_COUNT = "ad_feature_cache_miss_count";
+    public static final String AD_FEATURE_CACHE_EVICTION_COUNT = "ad_feature_cache_eviction_count";
+    public static final String AD_FEATURE_CACHE_SIZE = "ad_feature_cache_size";
+
+    // ======================================
+    // Model cache
+    // ======================================
+    public static final String AD_MODEL_CACHE_HIT_COUNT = "ad_model_cache_hit_count";
+    public static final String AD_MODEL_CACHE_MISS_COUNT = "ad_model_cache_miss_count";
+    public static final String AD_MODEL_EVICTION_COUNT = "ad_model_eviction_count";
+    public static final String AD_MODEL_SIZE = "ad_model_size";
+    public static final String AD_MODEL_MEMORY_BUDGET = "ad_model_memory_budget";
+    public static final String AD_MODEL_HANDOFF_COUNT = "ad_model_handoff_count";
+    public static final String AD_MODEL_PRELOAD_COUNT = "ad_model_preload_count";
+    public static final String AD_MODEL_TRANSFER_COUNT = "ad_model_transfer_count";
+    public static final String AD_MODEL_LOAD_COUNT = "ad_model_load_count";
+    public static final String AD_MODEL_LOAD_SHARED_COUNT = "ad_model_load_shared_count";
+    public static final String AD_MODEL_LOAD_LATENCY = "ad_model_load_latency";
+    public static final String AD_WARM_MODEL_COUNT = "ad_warm_model_count";
+    public static final String AD_WARM_MODEL_SIZE = "ad_warm_model_size";
+    public static final String AD_WARM_MODEL_HIT_COUNT = "ad_warm_model_hit_count";
+    public static final String AD_WARM_MODEL_EVICTION_COUNT = "ad_warm_model_eviction_count";
+
+    // ======================================
+    // Checkpoint
+    // ======================================
+    public static final String AD_MODEL_FULL_CHECKPOINT_COUNT = "ad_model_full_checkpoint_count";
+    public static final String AD_MODEL_DELTA_CHECKPOINT_COUNT = "ad_model_delta_checkpoint_count";
+    public static final String AD_MODEL_CHECKPOINT_BYTES = "ad_model_checkpoint_bytes";
+    public static final String AD_CHECKPOINT_QUEUE_SIZE = "ad_checkpoint_queue_size";
+    public static final String AD_CHECKPOINT_BULK_COUNT = "ad_checkpoint_bulk_count";
+    public static final String AD_CHECKPOINT_BULK_BYTES = "ad_checkpoint_bulk_bytes";
+    public static final String AD_CHECKPOINT_BULK_LATENCY = "ad_checkpoint_bulk_latency";
+    public static final String AD_CHECKPOINT_FAILURE_COUNT = "ad_checkpoint_failure_count";
+    public static final String AD_CHECKPOINT_RETRY_COUNT = "ad_checkpoint_retry_count";
+
+    // ======================================
+    // Cold start
+    // ======================================
+    public static final String AD_COLD_START_ACTIVE_COUNT = "ad_cold_start_active_count";
+    public static final String AD_COLD_START_QUEUE_SIZE = "ad_cold_start_queue_size";
+    public static final String AD_TRAINING_ACTIVE_COUNT = "ad_training_active_count";
+    public static final String AD_TRAINING_QUEUE_SIZE = "ad_training_queue_size";
+}
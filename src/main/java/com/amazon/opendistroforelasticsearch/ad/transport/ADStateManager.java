@@ -35,6 +35,7 @@ import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings
 import com.amazon.opendistroforelasticsearch.ad.util.ClientUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.client.Client;
@@ -99,9 +100,25 @@ public class ADStateManager {
         if (!detector.isPresent()) {
             throw new AnomalyDetectionException(adID, "AnomalyDetector is not found");
         }
+        return getPartitionNumber(adID, detector.get());
+    }
+
+    /**
+     * Get the number of RCF model's partition number for a detector already fetched, without reading the detector again
+     * @param adID detector id
+     * @param detector detector of adID
+     * @return the number of RCF model's partition number for adID
+     * @throws LimitExceededException when there is no sufficient resource available
+     */
+    public int getPartitionNumber(String adID, AnomalyDetector detector) {
+        Entry<Integer, Instant> partitonAndTime = partitionNumber.get(adID);
+        if (partitonAndTime != null) {
+            partitonAndTime.setValue(clock.instant());
+            return partitonAndTime.getKey();
+        }
 
         RandomCutForest forest = RandomCutForest.builder()
-            .dimensions(detector.get().getFeatureAttributes().size() * AnomalyDetectorSettings.SHINGLE_SIZE)
+            .dimensions(detector.getFeatureAttributes().size() * AnomalyDetectorSettings.SHINGLE_SIZE)
             .sampleSize(AnomalyDetectorSettings.NUM_SAMPLES_PER_TREE) 
             .numberOfTrees(AnomalyDetectorSettings.NUM_TREES).parallelExecutionEnabled(false).build();
         int partitionNum = modelManager.getPartitionedForestSizes(forest, adID).getKey();
@@ -123,6 +140,29 @@ public class ADStateManager {
         return onGetResponse(getResponse, adID);
     }
 
+    /**
+     * Returns to listener the detector for the id, reading it from the index without blocking when it is not cached.
+     *
+     * @param adID detector id
+     * @param listener onResponse is called with the detector, empty when it is not found or cannot be read
+     */
+    public void getAnomalyDetector(String adID, ActionListener<Optional<AnomalyDetector>> listener) {
+        Entry<AnomalyDetector, Instant> detectorAndTime = currentDetectors.get(adID);
+        if (detectorAndTime != null) {
+            detectorAndTime.setValue(clock.instant());
+            listener.onResponse(Optional.of(detectorAndTime.getKey()));
+            return;
+        }
+
+        GetRequest request = new GetRequest(AnomalyDetector.ANOMALY_DETECTORS_INDEX, adID);
+        client.get(request, ActionListener.wrap(response -> listener.onResponse(onGetResponse(Optional.of(response), adID)),
+            exception -> {
+                // same as a failed blocking read, the detector is treated as not available
+                LOG.error("Fail to get detector " + adID, exception);
+                listener.onResponse(Optional.empty());
+            }));
+    }
+
     private Optional<AnomalyDetector> onGetResponse(Optional<GetResponse> asResponse, String adID) {
         if (!asResponse.isPresent() || !asResponse.get().isExists()) {
             return Optional.empty();
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class ADStatsNodeResponse extends BaseNodeResponse implements ToXContentObject {
+    static String NODE_ID = "node_id";
+    static String STATS = "stats";
+
+    private Map<String, Object> stats;
+
+    public ADStatsNodeResponse() {
+        this.stats = Collections.emptyMap();
+    }
+
+    public ADStatsNodeResponse(DiscoveryNode node, Map<String, Object> stats) {
+        super(node);
+        this.stats = stats;
+    }
+
+    public static ADStatsNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        ADStatsNodeResponse nodeResponse = new ADStatsNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    public Map<String, Object> getStats() {
+        return stats;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        stats = in.readMap();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeMap(stats);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(NODE_ID, getNode().getId());
+        builder.field(STATS, stats);
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.List;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class ADStatsTransportAction
+        extends TransportNodesAction<ADStatsRequest, ADStatsResponse, ADStatsNodeRequest, ADStatsNodeResponse> {
+
+    private ADStats adStats;
+
+    @Inject
+    public ADStatsTransportAction(ThreadPool threadPool, ClusterService clusterService, TransportService transportService,
+            ActionFilters actionFilters, ADStats adStats) {
+        super(ADStatsAction.NAME, threadPool, clusterService, transportService, actionFilters, ADStatsRequest::new,
+                ADStatsNodeRequest::new, ThreadPool.Names.MANAGEMENT, ADStatsNodeResponse.class);
+        this.adStats = adStats;
+    }
+
+    @Override
+    protected ADStatsResponse newResponse(ADStatsRequest request, List<ADStatsNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new ADStatsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected ADStatsNodeRequest newNodeRequest(String nodeId, ADStatsRequest request) {
+        return new ADStatsNodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected ADStatsNodeResponse newNodeResponse() {
+        return new ADStatsNodeResponse();
+    }
+
+    /**
+     * Collects the current values of the local node's statistics.
+     *
+     * @param request stats request
+     * @return stats response including local node Id.
+     */
+    @Override
+    protected ADStatsNodeResponse nodeOperation(ADStatsNodeRequest request) {
+        return new ADStatsNodeResponse(clusterService.localNode(), adStats.getStatValues());
+    }
+}
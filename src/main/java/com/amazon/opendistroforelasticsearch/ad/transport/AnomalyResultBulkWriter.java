@@ -0,0 +1,271 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Node-local writer buffering anomaly results and saving them in bulk requests.
+ *
+ * Buffered results are flushed when the buffer reaches the bulk size or when the flush
+ * interval has passed since the first buffered result. One bulk request is in flight at a time,
+ * and results are dropped when the buffer is full. Results rejected because the write queue
+ * is full are buffered again after a randomized exponential backoff.
+ */
+public class AnomalyResultBulkWriter {
+
+    private static final Logger LOG = LogManager.getLogger(AnomalyResultBulkWriter.class);
+
+    static final String FAIL_TO_SAVE_ERR_MSG = "Fail to save anomaly index: ";
+    static final String RETRY_SAVING_ERR_MSG = "Retry in saving anomaly index: ";
+    static final String SUCCESS_SAVING_MSG = "Success in saving anomaly index: ";
+    static final String BUFFER_FULL_ERR_MSG = "Anomaly result buffer is full. Drop anomaly result: ";
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final BackoffPolicy backoffPolicy;
+    private final ADStats adStats;
+    private final int bulkSize;
+    private final int maxBufferedResults;
+    private final TimeValue flushInterval;
+
+    private final Deque<PendingResult> buffer;
+    private boolean isFlushScheduled;
+    private boolean isSending;
+    private boolean isClosed;
+
+    /**
+     * Constructor.
+     *
+     * @param client ES client for bulk requests
+     * @param threadPool thread pool to schedule flushes and retries
+     * @param settings node settings for the retry backoff
+     * @param adStats AD statistics
+     * @param bulkSize max number of results in a bulk request
+     * @param maxBufferedResults max number of results waiting to be saved
+     * @param flushInterval max time a result waits in the buffer before a flush
+     */
+    public AnomalyResultBulkWriter(Client client, ThreadPool threadPool, Settings settings, ADStats adStats, int bulkSize,
+            int maxBufferedResults, TimeValue flushInterval) {
+        this.client = client;
+        this.threadPool = threadPool;
+        this.backoffPolicy = BackoffPolicy.exponentialBackoff(AnomalyDetectorSettings.BACKOFF_INITIAL_DELAY.get(settings),
+                AnomalyDetectorSettings.MAX_RETRY_FOR_BACKOFF.get(settings));
+        this.adStats = adStats;
+        this.bulkSize = bulkSize;
+        this.maxBufferedResults = maxBufferedResults;
+        this.flushInterval = flushInterval;
+        this.buffer = new ArrayDeque<>();
+
+        adStats.gauge(StatNames.AD_RESULT_BUFFER_SIZE, this::getBufferSize);
+    }
+
+    /**
+     * Buffers an anomaly result to save.
+     *
+     * @param indexRequest index request of the anomaly result
+     * @param context description of the anomaly result for logging
+     */
+    public void write(IndexRequest indexRequest, String context) {
+        add(new PendingResult(indexRequest, context, backoffPolicy.iterator(), System.nanoTime()));
+    }
+
+    /**
+     * Sends buffered results in a bulk request unless one is in flight, which sends them when it completes.
+     */
+    public void flush() {
+        List<PendingResult> results;
+        synchronized (buffer) {
+            if (isSending || buffer.isEmpty()) {
+                return;
+            }
+            isSending = true;
+            results = drain();
+        }
+        send(results);
+    }
+
+    /**
+     * Sends all buffered results on shutdown, without waiting for bulk requests in flight.
+     *
+     * Results failing afterwards are not retried.
+     */
+    public void close() {
+        List<PendingResult> results;
+        synchronized (buffer) {
+            isClosed = true;
+            isSending = true;
+            results = drain();
+        }
+        while (!results.isEmpty()) {
+            send(results);
+            synchronized (buffer) {
+                results = drain();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of results waiting to be saved.
+     *
+     * @return the number of results waiting to be saved
+     */
+    public long getBufferSize() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    private void add(PendingResult result) {
+        boolean isAdded = false;
+        boolean isBulkFull = false;
+        boolean shouldScheduleFlush = false;
+        synchronized (buffer) {
+            if (buffer.size() < maxBufferedResults) {
+                buffer.add(result);
+                isAdded = true;
+                isBulkFull = buffer.size() >= bulkSize;
+                if (!isBulkFull && !isFlushScheduled) {
+                    isFlushScheduled = true;
+                    shouldScheduleFlush = true;
+                }
+            }
+        }
+
+        if (!isAdded) {
+            adStats.counter(StatNames.AD_RESULT_DROPPED_COUNT).increment();
+            LOG.error(BUFFER_FULL_ERR_MSG + result.context);
+        } else if (isBulkFull) {
+            flush();
+        } else if (shouldScheduleFlush) {
+            threadPool.schedule(this::scheduledFlush, flushInterval, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    private void scheduledFlush() {
+        synchronized (buffer) {
+            isFlushScheduled = false;
+        }
+        flush();
+    }
+
+    // guarded by the buffer
+    private List<PendingResult> drain() {
+        List<PendingResult> results = new ArrayList<>(Math.min(bulkSize, buffer.size()));
+        while (results.size() < bulkSize && !buffer.isEmpty()) {
+            results.add(buffer.poll());
+        }
+        return results;
+    }
+
+    // sends the results buffered while the bulk request was in flight
+    private void onSent() {
+        boolean shouldFlush;
+        synchronized (buffer) {
+            if (isClosed) {
+                return;
+            }
+            isSending = false;
+            // a flush skipped while sending is not scheduled again
+            shouldFlush = buffer.size() >= bulkSize || (!isFlushScheduled && !buffer.isEmpty());
+        }
+        if (shouldFlush) {
+            flush();
+        }
+    }
+
+    private void send(List<PendingResult> results) {
+        BulkRequest bulkRequest = new BulkRequest();
+        results.forEach(result -> bulkRequest.add(result.indexRequest));
+        long bulkStartNanos = System.nanoTime();
+        adStats.counter(StatNames.AD_RESULT_BULK_COUNT).increment();
+        client.bulk(bulkRequest, ActionListener.wrap(response -> {
+            adStats.latency(StatNames.AD_RESULT_BULK_LATENCY).recordSince(bulkStartNanos);
+            BulkItemResponse[] items = response.getItems();
+            for (int i = 0; i < results.size(); i++) {
+                PendingResult result = results.get(i);
+                if (items[i].isFailed()) {
+                    BulkItemResponse.Failure failure = items[i].getFailure();
+                    onFailure(result, failure.getCause(), failure.getStatus() == RestStatus.TOO_MANY_REQUESTS);
+                } else {
+                    adStats.latency(StatNames.AD_RESULT_INDEX_LATENCY).recordSince(result.startNanos);
+                    LOG.debug(SUCCESS_SAVING_MSG + result.context);
+                }
+            }
+            onSent();
+        }, exception -> {
+            adStats.latency(StatNames.AD_RESULT_BULK_LATENCY).recordSince(bulkStartNanos);
+            results.forEach(result -> onFailure(result, exception, false));
+            onSent();
+        }));
+    }
+
+    private void onFailure(PendingResult result, Exception exception, boolean isRejected) {
+        // Elasticsearch tells us with EsRejectedExecutionException that it cannot keep up with the
+        // current indexing rate. We pause indexing the rejected result a bit before trying again,
+        // with randomized exponential backoff.
+        boolean isClosed;
+        synchronized (buffer) {
+            isClosed = this.isClosed;
+        }
+        if ((isRejected || ExceptionsHelper.unwrapCause(exception) instanceof EsRejectedExecutionException)
+                && result.backoff.hasNext() && !isClosed) {
+            TimeValue nextDelay = result.backoff.next();
+            adStats.counter(StatNames.AD_RESULT_RETRY_COUNT).increment();
+            LOG.info(RETRY_SAVING_ERR_MSG + result.context);
+            threadPool.schedule(() -> add(result), nextDelay, ThreadPool.Names.GENERIC);
+        } else {
+            adStats.counter(StatNames.AD_RESULT_FAILURE_COUNT).increment();
+            LOG.error(FAIL_TO_SAVE_ERR_MSG + result.context, exception);
+        }
+    }
+
+    private static class PendingResult {
+        private final IndexRequest indexRequest;
+        private final String context;
+        private final Iterator<TimeValue> backoff;
+        private final long startNanos;
+
+        private PendingResult(IndexRequest indexRequest, String context, Iterator<TimeValue> backoff, long startNanos) {
+            this.indexRequest = indexRequest;
+            this.context = context;
+            this.backoff = backoff;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -17,15 +17,17 @@ package com.amazon.opendistroforelasticsearch.ad.transport;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.time.Instant;
 
 import com.amazon.opendistroforelasticsearch.ad.cluster.HashRing;
@@ -35,7 +37,6 @@ import com.amazon.opendistroforelasticsearch.ad.common.exception.EndRunException
 import com.amazon.opendistroforelasticsearch.ad.common.exception.InternalFailure;
 import com.amazon.opendistroforelasticsearch.ad.common.exception.LimitExceededException;
 import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
-import com.amazon.opendistroforelasticsearch.ad.constant.CommonErrorMessages;
 import com.amazon.opendistroforelasticsearch.ad.feature.FeatureManager;
 import com.amazon.opendistroforelasticsearch.ad.feature.SinglePointFeatures;
 import com.amazon.opendistroforelasticsearch.ad.indices.AnomalyDetectionIndices;
@@ -46,6 +47,8 @@ import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyResult;
 import com.amazon.opendistroforelasticsearch.ad.model.FeatureData;
 import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import com.amazon.opendistroforelasticsearch.ad.util.ColdStartRunner;
 import com.amazon.opendistroforelasticsearch.ad.util.RestHandlerUtils;
 import org.apache.logging.log4j.LogManager;
@@ -58,15 +61,11 @@ import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionListenerResponseHandler;
 import org.elasticsearch.action.ActionRequest;
-import org.elasticsearch.action.LatchedActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
-import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.HandledTransportAction;
 import org.elasticsearch.action.support.IndicesOptions;
-import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.block.ClusterBlockLevel;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
@@ -76,7 +75,6 @@ import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.NotSerializableExceptionWrapper;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.node.NodeClosedException;
 import org.elasticsearch.tasks.Task;
@@ -92,11 +90,7 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
     private static final Logger LOG = LogManager.getLogger(AnomalyResultTransportAction.class);
     static final String NO_MODEL_ERR_MSG = "No RCF models are available either because RCF"
             + " models are not ready or all nodes are unresponsive or the system might have bugs.";
-    static final String WAIT_FOR_THRESHOLD_ERR_MSG = "Exception in waiting for threshold result";
     static final String NODE_UNRESPONSIVE_ERR_MSG = "Model node is unresponsive.  Mute model";
-    static final String FAIL_TO_SAVE_ERR_MSG = "Fail to save anomaly index: ";
-    static final String RETRY_SAVING_ERR_MSG = "Retry in saving anomaly index: ";
-    static final String SUCCESS_SAVING_MSG = "Success in saving anomaly index: ";
     static final String READ_WRITE_BLOCKED = "Cannot read/write due to global block.";
     static final String INDEX_READ_BLOCKED = "Cannot read user index due to read block.";
     static final String CANNOT_SAVE_ERR_MSG = "Cannot save anomaly result due to write block.";
@@ -111,25 +105,26 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
     private final ColdStartRunner globalRunner;
     private final AnomalyDetectionIndices anomalyDetectionIndices;
     private volatile TimeValue requestTimeout;
-    private final Client client;
+    private final AnomalyResultBulkWriter resultWriter;
     private final FeatureManager featureManager;
     private final ModelManager modelManager;
     private final HashRing hashRing;
     private final TransportRequestOptions option;
     private final ClusterService clusterService;
     private final IndexNameExpressionResolver indexNameExpressionResolver;
-    private final ThreadPool threadPool;
-    private final BackoffPolicy resultSavingBackoffPolicy;
+    private final ADStats adStats;
+    private final RCFResultBatcher rcfBatcher;
+    private final boolean localShortCircuit;
 
     @Inject
-    public AnomalyResultTransportAction(ActionFilters actionFilters, TransportService transportService, Client client,
-            Settings settings, ADStateManager manager, ColdStartRunner eventExecutor,
+    public AnomalyResultTransportAction(ActionFilters actionFilters, TransportService transportService,
+            AnomalyResultBulkWriter resultWriter, Settings settings, ADStateManager manager, ColdStartRunner eventExecutor,
             AnomalyDetectionIndices anomalyDetectionIndices, FeatureManager featureManager, ModelManager modelManager,
             HashRing hashRing, ClusterService clusterService, IndexNameExpressionResolver indexNameExpressionResolver,
-            ThreadPool threadPool) {
+            ThreadPool threadPool, ADStats adStats) {
         super(AnomalyResultAction.NAME, transportService, actionFilters, AnomalyResultRequest::new);
         this.transportService = transportService;
-        this.client = client;
+        this.resultWriter = resultWriter;
         this.stateManager = manager;
         this.globalRunner = eventExecutor;
         this.anomalyDetectionIndices = anomalyDetectionIndices;
@@ -142,9 +137,10 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
                 .withTimeout(requestTimeout).build();
         this.clusterService = clusterService;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
-        this.threadPool = threadPool;
-        this.resultSavingBackoffPolicy = BackoffPolicy.exponentialBackoff(AnomalyDetectorSettings.BACKOFF_INITIAL_DELAY.get(settings),
-                AnomalyDetectorSettings.MAX_RETRY_FOR_BACKOFF.get(settings));
+        this.adStats = adStats;
+        this.rcfBatcher = new RCFResultBatcher(transportService, threadPool, option, AnomalyDetectorSettings.RCF_BATCH_WINDOW,
+                AnomalyDetectorSettings.RCF_MAX_BATCH_SIZE, adStats);
+        this.localShortCircuit = AnomalyDetectorSettings.LOCAL_MODEL_SHORT_CIRCUIT.get(settings);
     }
 
     private List<FeatureData> getFeatureData(double[] currentFeature, AnomalyDetector detector) {
@@ -195,7 +191,6 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
      *  Known cause of InternalFailure:
      *   + threshold model node is not available
      *   + cluster read/write is blocked
-     *   + interrupted while waiting for rcf/threshold model nodes' responses
      *   + cold start hasn't been finished
      *   + fail to get all of rcf model nodes' responses
      *   + fail to get threshold model node's response
@@ -207,13 +202,39 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
         AnomalyResultRequest request = AnomalyResultRequest.fromActionRequest(actionRequest);
         String adID = request.getAdID();
 
+        long startNanos = System.nanoTime();
+        adStats.counter(StatNames.AD_EXECUTE_REQUEST_COUNT).increment();
+        ActionListener<AnomalyResultResponse> timedListener = ActionListener.wrap(response -> {
+            adStats.latency(StatNames.AD_EXECUTE_LATENCY).recordSince(startNanos);
+            listener.onResponse(response);
+        }, exception -> {
+            adStats.latency(StatNames.AD_EXECUTE_LATENCY).recordSince(startNanos);
+            adStats.counter(StatNames.AD_EXECUTE_FAILURE_COUNT).increment();
+            listener.onFailure(exception);
+        });
+
+        try {
+            stateManager.getAnomalyDetector(adID, ActionListener.wrap(detector -> onGetDetector(request, detector, timedListener),
+                exception -> handleExecuteException(exception, timedListener, adID)));
+        } catch (Exception exception) {
+            handleExecuteException(exception, timedListener, adID);
+        }
+    }
+
+    private void onGetDetector(AnomalyResultRequest originalRequest, Optional<AnomalyDetector> detector,
+            ActionListener<AnomalyResultResponse> listener) {
+        String adID = originalRequest.getAdID();
         try {
-            Optional<AnomalyDetector> detector = stateManager.getAnomalyDetector(adID);
             if (!detector.isPresent()) {
                 listener.onFailure(new EndRunException(adID, "AnomalyDetector is not available.", true));
                 return;
             }
 
+            // features may be read over the range aligned to interval boundaries, which the shingle and the result use
+            AnomalyResultRequest request = new AnomalyResultRequest(adID,
+                featureManager.alignToInterval(detector.get(), originalRequest.getStart()),
+                featureManager.alignToInterval(detector.get(), originalRequest.getEnd()));
+
             String thresholdModelID = modelManager.getThresholdModelId(adID);
             Optional<DiscoveryNode> thresholdNode = hashRing.getOwningNode(thresholdModelID);
             if (!thresholdNode.isPresent()) {
@@ -221,136 +242,261 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
                 return;
             }
 
-            String thresholdNodeId = thresholdNode.get().getId();
-
-            if (!shouldStart(listener, adID, detector.get(), thresholdNodeId, thresholdModelID)) {
+            if (!shouldStart(listener, adID, detector.get(), thresholdNode.get().getId(), thresholdModelID)) {
                 return;
             }
 
-            SinglePointFeatures featureOptional = featureManager.getCurrentFeatures(detector.get(),
-                    request.getStart(), request.getEnd());
+            long featureStartNanos = System.nanoTime();
+            featureManager.getCurrentFeatures(detector.get(), request.getStart(), request.getEnd(),
+                ActionListener.wrap(featureOptional -> {
+                    adStats.latency(StatNames.AD_FEATURE_LATENCY).recordSince(featureStartNanos);
+                    onFeatureResponse(request, detector.get(), thresholdNode.get(), thresholdModelID, featureOptional, listener);
+                }, exception -> {
+                    adStats.latency(StatNames.AD_FEATURE_LATENCY).recordSince(featureStartNanos);
+                    handleExecuteException(exception, listener, adID);
+                }));
+        } catch (Exception exception) {
+            handleExecuteException(exception, listener, adID);
+        }
+    }
 
-            List<FeatureData> featureInResponse = null;
+    /**
+     * Fans out the current features to all RCF model partitions. Requests to the same
+     * node are batched with requests of other detectors. Responses are
+     * collected without blocking and the last one to arrive moves the request on to
+     * the threshold stage. Every partition request has the transport timeout, so
+     * the fan-out always completes.
+     *
+     * A detector with a single RCF partition hosted together with its threshold model
+     * is scored by both models in one request. Models hosted on this node are called
+     * directly without a transport request.
+     */
+    private void onFeatureResponse(AnomalyResultRequest request, AnomalyDetector detector, DiscoveryNode thresholdNode,
+            String thresholdModelID, SinglePointFeatures featureOptional, ActionListener<AnomalyResultResponse> listener) {
+        String adID = detector.getDetectorId();
 
-            if (featureOptional.getUnprocessedFeatures().isPresent()) {
-                featureInResponse = getFeatureData(featureOptional.getUnprocessedFeatures().get(),
-                        detector.get());
-            }
+        List<FeatureData> featureInResponse = null;
 
-            if (!featureOptional.getProcessedFeatures().isPresent()) {
-                LOG.info("No full shingle in current detection window for {}", adID);
-                if(!featureOptional.getUnprocessedFeatures().isPresent()) {
-                    // Feature not available is common when we have data holes. Respond empty response
-                    // so that alerting will not print stack trace to avoid bloating our logs.
-                    LOG.info("No data in current detection window for {}", adID);
-                    listener.onResponse(new AnomalyResultResponse(Double.NaN, Double.NaN, new ArrayList<FeatureData>()));
-                } else {
-                    LOG.info("Return at least current feature for {}", adID);
-                    listener.onResponse(new AnomalyResultResponse(Double.NaN, Double.NaN, featureInResponse));
-                }
-                return;
+        if (featureOptional.getUnprocessedFeatures().isPresent()) {
+            featureInResponse = getFeatureData(featureOptional.getUnprocessedFeatures().get(), detector);
+        }
+
+        if (!featureOptional.getProcessedFeatures().isPresent()) {
+            LOG.info("No full shingle in current detection window for {}", adID);
+            if(!featureOptional.getUnprocessedFeatures().isPresent()) {
+                // Feature not available is common when we have data holes. Respond empty response
+                // so that alerting will not print stack trace to avoid bloating our logs.
+                LOG.info("No data in current detection window for {}", adID);
+                listener.onResponse(new AnomalyResultResponse(Double.NaN, Double.NaN, new ArrayList<FeatureData>()));
+            } else {
+                LOG.info("Return at least current feature for {}", adID);
+                listener.onResponse(new AnomalyResultResponse(Double.NaN, Double.NaN, featureInResponse));
             }
+            return;
+        }
 
-            // Can throw LimitExceededException when a single partition is more than X% of heap memory.
-            // Compute this number once and the value won't change unless the coordinating AD node for an
-            // detector changes or the cluster size changes.
-            int rcfPartitionNum = stateManager.getPartitionNumber(adID);
+        // Can throw LimitExceededException when a single partition is more than X% of heap memory.
+        // Compute this number once and the value won't change unless the coordinating AD node for an
+        // detector changes or the cluster size changes.
+        int rcfPartitionNum = stateManager.getPartitionNumber(adID, detector);
 
-            final CountDownLatch rcfLatch = createCountDownLatch(rcfPartitionNum);
-            List<RCFResultResponse> rcfResults = new ArrayList<>();
+        List<Entry<String, DiscoveryNode>> rcfTargets = new ArrayList<>();
+        for (int i = 0; i < rcfPartitionNum; i++) {
+            String rcfModelID = modelManager.getRcfModelId(adID, i);
 
-            final AtomicReference<AnomalyDetectionException> failure = new AtomicReference<AnomalyDetectionException>();
+            Optional<DiscoveryNode> rcfNode = hashRing.getOwningNode(rcfModelID.toString());
+            if (!rcfNode.isPresent()) {
+                continue;
+            }
+            String rcfNodeId = rcfNode.get().getId();
+            if (stateManager.isMuted(rcfNodeId)) {
+                LOG.info(String.format(Locale.ROOT, NODE_UNRESPONSIVE_ERR_MSG + " %s", rcfNodeId));
+                continue;
+            }
+            rcfTargets.add(new SimpleImmutableEntry<>(rcfModelID, rcfNode.get()));
+        }
 
-            for (int i = 0; i < rcfPartitionNum; i++) {
-                String rcfModelID = modelManager.getRcfModelId(adID, i);
+        List<RCFResultResponse> rcfResults = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<AnomalyDetectionException> failure = new AtomicReference<AnomalyDetectionException>();
+        List<FeatureData> features = featureInResponse;
+        long rcfStartNanos = System.nanoTime();
+        Runnable onRCFResults = () -> {
+            adStats.latency(StatNames.AD_RCF_LATENCY).recordSince(rcfStartNanos);
+            try {
+                onRCFResponse(request, detector, thresholdNode, thresholdModelID, features, rcfResults, failure, listener);
+            } catch (Exception exception) {
+                handleExecuteException(exception, listener, adID);
+            }
+        };
 
-                Optional<DiscoveryNode> rcfNode = hashRing.getOwningNode(rcfModelID.toString());
-                if (!rcfNode.isPresent()) {
-                    continue;
-                }
-                String rcfNodeId = rcfNode.get().getId();
-                if (stateManager.isMuted(rcfNodeId)) {
-                    LOG.info(String.format(Locale.ROOT, NODE_UNRESPONSIVE_ERR_MSG + " %s", rcfNodeId));
-                    continue;
-                }
+        if (rcfTargets.isEmpty()) {
+            onRCFResults.run();
+            return;
+        }
 
-                LOG.info("Sending RCF request to {} for model {}", rcfNodeId, rcfModelID);
-                LatchedActionListener<RCFResultResponse> rcfListener = new LatchedActionListener<>(
-                        new RCFActionListener(rcfResults, rcfModelID.toString(), failure, rcfNodeId), rcfLatch);
-                transportService.sendRequest(rcfNode.get(), RCFResultAction.NAME,
-                        new RCFResultRequest(adID, rcfModelID, featureOptional.getProcessedFeatures().get()), option,
-                        new ActionListenerResponseHandler<>(rcfListener, RCFResultResponse::new));
+        if (rcfPartitionNum == 1 && rcfTargets.size() == 1 && rcfTargets.get(0).getValue().getId().equals(thresholdNode.getId())) {
+            executeFused(request, detector, rcfTargets.get(0).getKey(), thresholdNode, thresholdModelID, features,
+                    featureOptional.getProcessedFeatures().get(), listener);
+            return;
+        }
+
+        AtomicInteger pendingResponses = new AtomicInteger(rcfTargets.size());
+        for (Entry<String, DiscoveryNode> rcfTarget : rcfTargets) {
+            String rcfModelID = rcfTarget.getKey();
+            String rcfNodeId = rcfTarget.getValue().getId();
+            LOG.info("Sending RCF request to {} for model {}", rcfNodeId, rcfModelID);
+            RCFActionListener rcfListener = new RCFActionListener(rcfResults, rcfModelID, failure, rcfNodeId,
+                    pendingResponses, onRCFResults);
+            RCFResultRequest rcfRequest = new RCFResultRequest(adID, rcfModelID, featureOptional.getProcessedFeatures().get());
+            if (isLocal(rcfTarget.getValue())) {
+                executeLocally(rcfListener, modelListener -> modelManager.getRcfResult(adID, rcfModelID, rcfRequest.getFeatures(),
+                        ActionListener.wrap(result -> modelListener.onResponse(new RCFResultResponse(result.getScore(),
+                                result.getConfidence(), result.getForestSize())), modelListener::onFailure)));
+            } else {
+                rcfBatcher.send(rcfTarget.getValue(), rcfRequest, rcfListener);
             }
+        }
+    }
 
-            // wait a bit longer than transport timeout
-            long latchWaitSecs = Math.round(requestTimeout.getSeconds() * 1.25d);
+    private void executeFused(AnomalyResultRequest request, AnomalyDetector detector, String rcfModelID,
+            DiscoveryNode modelNode, String thresholdModelID, List<FeatureData> featureInResponse, double[] processedFeatures,
+            ActionListener<AnomalyResultResponse> listener) {
+        String adID = detector.getDetectorId();
+        String modelNodeId = modelNode.getId();
+
+        List<RCFResultResponse> rcfResults = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<AnomalyResultResponse> anomalyResultResponse = new AtomicReference<>();
+        AtomicReference<AnomalyDetectionException> failure = new AtomicReference<AnomalyDetectionException>();
+        long startNanos = System.nanoTime();
+        adStats.counter(StatNames.AD_MODEL_FUSED_REQUEST_COUNT).increment();
+        FusedActionListener fusedListener = new FusedActionListener(rcfResults, anomalyResultResponse, featureInResponse,
+                rcfModelID, failure, modelNodeId, () -> {
+                    // one round trip serves both models, so it is not split into rcf and threshold latencies
+                    adStats.latency(StatNames.AD_MODEL_FUSED_LATENCY).recordSince(startNanos);
+                    try {
+                        onFusedResponse(request, detector, featureInResponse, rcfResults, anomalyResultResponse, failure,
+                                listener);
+                    } catch (Exception exception) {
+                        handleExecuteException(exception, listener, adID);
+                    }
+                });
 
-            try {
-                LOG.debug("Wait for RCF results...");
-                rcfLatch.await(latchWaitSecs, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                listener.onFailure(new InternalFailure(adID, CommonErrorMessages.WAIT_ERR_MSG, e));
-                return;
-            }
+        RCFThresholdResultRequest fusedRequest = new RCFThresholdResultRequest(adID, rcfModelID, thresholdModelID,
+                processedFeatures);
+        if (isLocal(modelNode)) {
+            executeLocally(fusedListener,
+                    modelListener -> RCFThresholdResultTransportAction.getResult(modelManager, fusedRequest, modelListener));
+        } else {
+            LOG.info("Sending RCF and threshold request to {} for model {}", modelNodeId, rcfModelID);
+            transportService.sendRequest(modelNode, RCFThresholdResultAction.NAME, fusedRequest, option,
+                    new ActionListenerResponseHandler<>(fusedListener, RCFThresholdResultResponse::new));
+        }
+    }
 
-            if (coldStartIfNoModel(failure, detector.get()) || rcfResults.isEmpty()) {
-                listener.onFailure(new InternalFailure(adID, NO_MODEL_ERR_MSG));
-                return;
-            }
+    private void onFusedResponse(AnomalyResultRequest request, AnomalyDetector detector, List<FeatureData> featureInResponse,
+            List<RCFResultResponse> rcfResults, AtomicReference<AnomalyResultResponse> anomalyResultResponse,
+            AtomicReference<AnomalyDetectionException> failure, ActionListener<AnomalyResultResponse> listener) {
+        if (coldStartIfNoModel(failure, detector) || rcfResults.isEmpty()) {
+            listener.onFailure(new InternalFailure(detector.getDetectorId(), NO_MODEL_ERR_MSG));
+            return;
+        }
+
+        onThresholdResponse(request, detector, featureInResponse, getCombinedResult(rcfResults), anomalyResultResponse,
+                failure, listener);
+    }
+
+    private boolean isLocal(DiscoveryNode node) {
+        return localShortCircuit && node.getId().equals(clusterService.localNode().getId());
+    }
 
-            CombinedRcfResult combinedResult = getCombinedResult(rcfResults);
-            double combinedScore = combinedResult.getScore();
+    /**
+     * Calls a model hosted on this node directly. The listener sees the same
+     * responses and failures as it would for a transport request.
+     */
+    private <T> void executeLocally(ActionListener<T> listener, Consumer<ActionListener<T>> modelCall) {
+        adStats.counter(StatNames.AD_MODEL_LOCAL_REQUEST_COUNT).increment();
+        try {
+            modelCall.accept(listener);
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
 
-            final CountDownLatch thresholdLatch = createCountDownLatch(1);
+    private void onRCFResponse(AnomalyResultRequest request, AnomalyDetector detector, DiscoveryNode thresholdNode,
+            String thresholdModelID, List<FeatureData> featureInResponse, List<RCFResultResponse> rcfResults,
+            AtomicReference<AnomalyDetectionException> failure, ActionListener<AnomalyResultResponse> listener) {
+        String adID = detector.getDetectorId();
 
-            final AtomicReference<AnomalyResultResponse> anomalyResultResponse = new AtomicReference<>();
+        if (coldStartIfNoModel(failure, detector) || rcfResults.isEmpty()) {
+            listener.onFailure(new InternalFailure(adID, NO_MODEL_ERR_MSG));
+            return;
+        }
 
+        CombinedRcfResult combinedResult = getCombinedResult(rcfResults);
+        double combinedScore = combinedResult.getScore();
+
+        final AtomicReference<AnomalyResultResponse> anomalyResultResponse = new AtomicReference<>();
+
+        String thresholdNodeId = thresholdNode.getId();
+        long thresholdStartNanos = System.nanoTime();
+        ThresholdActionListener thresholdListener = new ThresholdActionListener(anomalyResultResponse, featureInResponse,
+                thresholdModelID, failure, thresholdNodeId, () -> {
+                    adStats.latency(StatNames.AD_THRESHOLD_LATENCY).recordSince(thresholdStartNanos);
+                    try {
+                        onThresholdResponse(request, detector, featureInResponse, combinedResult, anomalyResultResponse,
+                                failure, listener);
+                    } catch (Exception exception) {
+                        handleExecuteException(exception, listener, adID);
+                    }
+                });
+        if (isLocal(thresholdNode)) {
+            executeLocally(thresholdListener, modelListener -> modelManager.getThresholdingResult(adID, thresholdModelID,
+                    combinedScore, ActionListener.wrap(result -> modelListener.onResponse(new ThresholdResultResponse(result.getGrade(),
+                            result.getConfidence())), modelListener::onFailure)));
+        } else {
             LOG.info("Sending threshold request to {} for model {}", thresholdNodeId, thresholdModelID);
-            LatchedActionListener<ThresholdResultResponse> thresholdListener = new LatchedActionListener<>(
-                    new ThresholdActionListener(anomalyResultResponse, featureInResponse, thresholdModelID,
-                            failure, thresholdNodeId),
-                    thresholdLatch);
-            transportService.sendRequest(thresholdNode.get(), ThresholdResultAction.NAME,
+            transportService.sendRequest(thresholdNode, ThresholdResultAction.NAME,
                     new ThresholdResultRequest(adID, thresholdModelID, combinedScore), option,
                     new ActionListenerResponseHandler<>(thresholdListener, ThresholdResultResponse::new));
+        }
+    }
 
-            try {
-                LOG.debug("Wait for threshold results...");
-                thresholdLatch.await(latchWaitSecs, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                listener.onFailure(new InternalFailure(adID, WAIT_FOR_THRESHOLD_ERR_MSG, e));
-                return;
-            }
+    private void onThresholdResponse(AnomalyResultRequest request, AnomalyDetector detector,
+            List<FeatureData> featureInResponse, CombinedRcfResult combinedResult,
+            AtomicReference<AnomalyResultResponse> anomalyResultResponse,
+            AtomicReference<AnomalyDetectionException> failure, ActionListener<AnomalyResultResponse> listener) {
+        String adID = detector.getDetectorId();
 
-            if (coldStartIfNoModel(failure, detector.get())) {
-                listener.onFailure(new InternalFailure(adID, NO_MODEL_ERR_MSG));
-                return;
-            }
+        if (coldStartIfNoModel(failure, detector)) {
+            listener.onFailure(new InternalFailure(adID, NO_MODEL_ERR_MSG));
+            return;
+        }
 
-            if (anomalyResultResponse.get() != null) {
-                AnomalyResultResponse response = anomalyResultResponse.get();
-                double confidence = response.getConfidence() * combinedResult.getConfidence();
-                response = new AnomalyResultResponse(response.getAnomalyGrade(), confidence, response.getFeatures());
-                listener.onResponse(response);
-                indexAnomalyResult(new AnomalyResult(adID, Double.valueOf(combinedScore),
-                        Double.valueOf(response.getAnomalyGrade()), Double.valueOf(confidence),
-                        featureInResponse, Instant.ofEpochMilli(request.getStart()),
-                        Instant.ofEpochMilli(request.getEnd())));
-            } else if (failure.get() != null) {
-                listener.onFailure(failure.get());
-            } else {
-                listener.onFailure(new InternalFailure(adID, "Unexpected exception"));
-            }
-        } catch (ClientException clientException) {
-            listener.onFailure(clientException);
+        if (anomalyResultResponse.get() != null) {
+            AnomalyResultResponse response = anomalyResultResponse.get();
+            double confidence = response.getConfidence() * combinedResult.getConfidence();
+            response = new AnomalyResultResponse(response.getAnomalyGrade(), confidence, response.getFeatures());
+            listener.onResponse(response);
+            indexAnomalyResult(new AnomalyResult(adID, Double.valueOf(combinedResult.getScore()),
+                    Double.valueOf(response.getAnomalyGrade()), Double.valueOf(confidence),
+                    featureInResponse, Instant.ofEpochMilli(request.getStart()),
+                    Instant.ofEpochMilli(request.getEnd())));
+        } else if (failure.get() != null) {
+            listener.onFailure(failure.get());
+        } else {
+            listener.onFailure(new InternalFailure(adID, "Unexpected exception"));
         }
-        catch (AnomalyDetectionException adEx) {
-            listener.onFailure(new InternalFailure(adEx));
-        } catch (Exception throwable) {
-            Throwable cause = ExceptionsHelper.unwrapCause(throwable);
+    }
+
+    private void handleExecuteException(Exception exception, ActionListener<AnomalyResultResponse> listener, String adID) {
+        if (exception instanceof ClientException) {
+            listener.onFailure(exception);
+        } else if (exception instanceof AnomalyDetectionException) {
+            listener.onFailure(new InternalFailure((AnomalyDetectionException) exception));
+        } else {
+            Throwable cause = ExceptionsHelper.unwrapCause(exception);
             listener.onFailure(new InternalFailure(adID, cause));
         }
-
     }
 
     /**
@@ -461,10 +607,6 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
         return modelManager.combineRcfResults(rcfResultLib);
     }
 
-    CountDownLatch createCountDownLatch(int count) {
-        return new CountDownLatch(count);
-    }
-
     /**
      * Saves the result unless an exception is thrown. The anomaly result index is
      * implicitly created if it does not exist.
@@ -512,68 +654,59 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
         try (XContentBuilder builder = jsonBuilder()) {
             IndexRequest indexRequest = new IndexRequest(AnomalyResult.ANOMALY_RESULT_INDEX)
                     .source(anomalyResult.toXContent(builder, RestHandlerUtils.XCONTENT_WITH_TYPE));
-            saveDetectorResult(indexRequest,
-                    String.format(Locale.ROOT, "ID %s from %s to %s", anomalyResult.getDetectorId(),
-                            anomalyResult.getStartTime(), anomalyResult.getEndTime()),
-                    resultSavingBackoffPolicy.iterator());
+            resultWriter.write(indexRequest, String.format(Locale.ROOT, "ID %s from %s to %s", anomalyResult.getDetectorId(),
+                    anomalyResult.getStartTime(), anomalyResult.getEndTime()));
         } catch (Exception e) {
             throw new AnomalyDetectionException(anomalyResult.getDetectorId(), "Cannot save result");
         }
     }
 
-    void saveDetectorResult(IndexRequest indexRequest, String context, Iterator<TimeValue> backoff) {
-        client.index(indexRequest,
-                ActionListener.<IndexResponse>wrap(response -> LOG.debug(SUCCESS_SAVING_MSG + context), exception -> {
-                    // Elasticsearch has a thread pool and a queue for write per node. A thread
-                    // pool will have N number of workers ready to handle the requests. When a
-                    // request comes and if a worker is free , this is handled by the worker. Now by
-                    // default the number of workers is equal to the number of cores on that CPU.
-                    // When the workers are full and there are more write requests, the request
-                    // will go to queue. The size of queue is also limited. If by default size is,
-                    // say, 200 and if there happens more parallel requests than this, then those
-                    // requests would be rejected as you can see EsRejectedExecutionException.
-                    // So EsRejectedExecutionException is the way that Elasticsearch tells us that
-                    // it cannot keep up with the current indexing rate.
-                    // When it happens, we should pause indexing a bit before trying again, ideally
-                    // with randomized exponential backoff.
-                    if (!(exception instanceof EsRejectedExecutionException) || !backoff.hasNext()) {
-                        LOG.error(FAIL_TO_SAVE_ERR_MSG + context);
-                    } else {
-                        TimeValue nextDelay = backoff.next();
-                        LOG.info(RETRY_SAVING_ERR_MSG + context);
-                        threadPool.schedule(() -> saveDetectorResult(indexRequest, context, backoff), nextDelay,
-                                ThreadPool.Names.SAME);
-                    }
-                }));
-    }
-
     class RCFActionListener implements ActionListener<RCFResultResponse> {
         private List<RCFResultResponse> rcfResults;
         private String modelID;
         private AtomicReference<AnomalyDetectionException> failure;
         private String nodeID;
+        private AtomicInteger pendingResponses;
+        private Runnable onAllResponses;
 
         RCFActionListener(List<RCFResultResponse> rcfResults, String modelID,
-                AtomicReference<AnomalyDetectionException> failure, String nodeID) {
+                AtomicReference<AnomalyDetectionException> failure, String nodeID, AtomicInteger pendingResponses,
+                Runnable onAllResponses) {
             this.rcfResults = rcfResults;
             this.modelID = modelID;
             this.failure = failure;
             this.nodeID = nodeID;
+            this.pendingResponses = pendingResponses;
+            this.onAllResponses = onAllResponses;
         }
 
         @Override
         public void onResponse(RCFResultResponse response) {
-            stateManager.resetBackpressureCounter(nodeID);
-            if (response != null) {
-                rcfResults.add(response);
-            } else {
-                LOG.warn(NULL_RESPONSE + " {} for {}", modelID, nodeID);
+            try {
+                stateManager.resetBackpressureCounter(nodeID);
+                if (response != null) {
+                    rcfResults.add(response);
+                } else {
+                    LOG.warn(NULL_RESPONSE + " {} for {}", modelID, nodeID);
+                }
+            } finally {
+                countDown();
             }
         }
 
         @Override
         public void onFailure(Exception e) {
-            handlePredictionFailure(e, modelID, nodeID, failure);
+            try {
+                handlePredictionFailure(e, modelID, nodeID, failure);
+            } finally {
+                countDown();
+            }
+        }
+
+        private void countDown() {
+            if (pendingResponses.decrementAndGet() == 0) {
+                onAllResponses.run();
+            }
         }
     }
 
@@ -583,15 +716,17 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
         private String modelID;
         private AtomicReference<AnomalyDetectionException> failure;
         private String nodeID;
+        private Runnable onThresholdResponse;
 
         ThresholdActionListener(AtomicReference<AnomalyResultResponse> anomalyResultResponse,
                 List<FeatureData> features, String modelID, AtomicReference<AnomalyDetectionException> failure,
-                String nodeID) {
+                String nodeID, Runnable onThresholdResponse) {
             this.anomalyResultResponse = anomalyResultResponse;
             this.features = features;
             this.modelID = modelID;
             this.failure = failure;
             this.nodeID = nodeID;
+            this.onThresholdResponse = onThresholdResponse;
         }
 
         @Override
@@ -602,12 +737,68 @@ public class AnomalyResultTransportAction extends HandledTransportAction<ActionR
                 stateManager.resetBackpressureCounter(nodeID);
             } catch (Exception ex) {
                 LOG.error("Unexpected exception", ex);
+            } finally {
+                onThresholdResponse.run();
+            }
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            try {
+                handlePredictionFailure(e, modelID, nodeID, failure);
+            } finally {
+                onThresholdResponse.run();
+            }
+        }
+    }
+
+    class FusedActionListener implements ActionListener<RCFThresholdResultResponse> {
+        private List<RCFResultResponse> rcfResults;
+        private AtomicReference<AnomalyResultResponse> anomalyResultResponse;
+        private List<FeatureData> features;
+        private String modelID;
+        private AtomicReference<AnomalyDetectionException> failure;
+        private String nodeID;
+        private Runnable onFusedResponse;
+
+        FusedActionListener(List<RCFResultResponse> rcfResults, AtomicReference<AnomalyResultResponse> anomalyResultResponse,
+                List<FeatureData> features, String modelID, AtomicReference<AnomalyDetectionException> failure,
+                String nodeID, Runnable onFusedResponse) {
+            this.rcfResults = rcfResults;
+            this.anomalyResultResponse = anomalyResultResponse;
+            this.features = features;
+            this.modelID = modelID;
+            this.failure = failure;
+            this.nodeID = nodeID;
+            this.onFusedResponse = onFusedResponse;
+        }
+
+        @Override
+        public void onResponse(RCFThresholdResultResponse response) {
+            try {
+                stateManager.resetBackpressureCounter(nodeID);
+                if (response != null) {
+                    rcfResults.add(new RCFResultResponse(response.getRCFScore(), response.getRCFConfidence(),
+                            response.getForestSize()));
+                    anomalyResultResponse.set(new AnomalyResultResponse(response.getAnomalyGrade(),
+                            response.getConfidence(), features));
+                } else {
+                    LOG.warn(NULL_RESPONSE + " {} for {}", modelID, nodeID);
+                }
+            } catch (Exception ex) {
+                LOG.error("Unexpected exception", ex);
+            } finally {
+                onFusedResponse.run();
             }
         }
 
         @Override
         public void onFailure(Exception e) {
-            handlePredictionFailure(e, modelID, nodeID, failure);
+            try {
+                handlePredictionFailure(e, modelID, nodeID, failure);
+            } finally {
+                onFusedResponse.run();
+            }
         }
     }
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * Request sent by a node handing off models to the nodes taking them over
+ */
+public class ModelPreloadRequest extends BaseNodesRequest<ModelPreloadRequest> {
+    // node id to ids of the models the node takes over
+    private Map<String, List<String>> modelIds;
+
+    public ModelPreloadRequest() {
+        super();
+    }
+
+    public ModelPreloadRequest(Map<String, List<String>> modelIds) {
+        super(modelIds.keySet().toArray(new String[0]));
+        this.modelIds = modelIds;
+    }
+
+    public List<String> getModelIds(String nodeId) {
+        return modelIds.getOrDefault(nodeId, Collections.emptyList());
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeMap(modelIds, StreamOutput::writeString, StreamOutput::writeStringCollection);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        modelIds = in.readMap(StreamInput::readString, StreamInput::readStringList);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class ModelPreloadResponse extends BaseNodesResponse<ModelPreloadNodeResponse> implements ToXContentFragment {
+    static String NODES_JSON_KEY = "nodes";
+
+    public ModelPreloadResponse() {
+    }
+
+    public ModelPreloadResponse(ClusterName clusterName, List<ModelPreloadNodeResponse> nodes,
+            List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    @Override
+    public List<ModelPreloadNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(ModelPreloadNodeResponse::readNodeResponse);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<ModelPreloadNodeResponse> nodes) throws IOException {
+        out.writeStreamableList(nodes);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startArray(NODES_JSON_KEY);
+        for (ModelPreloadNodeResponse nodeResp : getNodes()) {
+            nodeResp.toXContent(builder, params);
+        }
+        builder.endArray();
+        return builder;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.List;
+
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class ModelPreloadTransportAction extends
+        TransportNodesAction<ModelPreloadRequest, ModelPreloadResponse, ModelPreloadNodeRequest, ModelPreloadNodeResponse> {
+    private static final Logger LOG = LogManager.getLogger(ModelPreloadTransportAction.class);
+    private ModelManager modelManager;
+
+    @Inject
+    public ModelPreloadTransportAction(ThreadPool threadPool, ClusterService clusterService,
+            TransportService transportService, ActionFilters actionFilters, ModelManager modelManager) {
+        // loading checkpoints blocks on index reads, so it runs on the generic pool
+        super(ModelPreloadAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                ModelPreloadRequest::new, ModelPreloadNodeRequest::new, ThreadPool.Names.GENERIC,
+                ModelPreloadNodeResponse.class);
+        this.modelManager = modelManager;
+    }
+
+    @Override
+    protected ModelPreloadResponse newResponse(ModelPreloadRequest request, List<ModelPreloadNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new ModelPreloadResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected ModelPreloadNodeRequest newNodeRequest(String nodeId, ModelPreloadRequest request) {
+        return new ModelPreloadNodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected ModelPreloadNodeResponse newNodeResponse() {
+        return new ModelPreloadNodeResponse();
+    }
+
+    /**
+     * Loads the models this node takes over from their checkpoints. A model that
+     * cannot be loaded is skipped and loaded on its first request instead.
+     *
+     * @param request ids of the models this node takes over
+     * @return preload response including local node Id and the number of loaded models
+     */
+    @Override
+    protected ModelPreloadNodeResponse nodeOperation(ModelPreloadNodeRequest request) {
+        int loaded = 0;
+        for (String modelId : request.getModelIds()) {
+            try {
+                if (modelManager.preloadModel(modelManager.getDetectorIdForModelId(modelId), modelId)) {
+                    loaded++;
+                }
+            } catch (Exception e) {
+                LOG.warn(new ParameterizedMessage("Failed to preload model {}", modelId), e);
+            }
+        }
+        LOG.info("Preloaded {} of {} models", loaded, request.getModelIds().size());
+        return new ModelPreloadNodeResponse(clusterService.localNode(), loaded);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class ModelTransferNodeResponse extends BaseNodeResponse implements ToXContentObject {
+    static String NODE_ID = "node_id";
+    static String INSTALLED_JSON_KEY = "installed";
+    private boolean installed;
+
+    public ModelTransferNodeResponse() {}
+
+    public ModelTransferNodeResponse(DiscoveryNode node, boolean installed) {
+        super(node);
+        this.installed = installed;
+    }
+
+    public static ModelTransferNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        ModelTransferNodeResponse nodeResponse = new ModelTransferNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    /**
+     * @return whether the node hosts the model after receiving the chunk, true only for the last chunk
+     */
+    public boolean isInstalled() {
+        return installed;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        installed = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(installed);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(NODE_ID, getNode().getId());
+        builder.field(INSTALLED_JSON_KEY, installed);
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * Request carrying one chunk of a serialized model from its previous owner to the node taking it over
+ */
+public class ModelTransferRequest extends BaseNodesRequest<ModelTransferRequest> {
+    private String adID;
+    private String modelID;
+    private int chunk;
+    private int totalChunks;
+    private byte[] data;
+
+    public ModelTransferRequest() {
+        super();
+    }
+
+    public ModelTransferRequest(String nodeID, String adID, String modelID, int chunk, int totalChunks, byte[] data) {
+        super(nodeID);
+        this.adID = adID;
+        this.modelID = modelID;
+        this.chunk = chunk;
+        this.totalChunks = totalChunks;
+        this.data = data;
+    }
+
+    public String getAdID() {
+        return adID;
+    }
+
+    public String getModelID() {
+        return modelID;
+    }
+
+    public int getChunk() {
+        return chunk;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(adID);
+        out.writeString(modelID);
+        out.writeVInt(chunk);
+        out.writeVInt(totalChunks);
+        out.writeByteArray(data);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        adID = in.readString();
+        modelID = in.readString();
+        chunk = in.readVInt();
+        totalChunks = in.readVInt();
+        data = in.readByteArray();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.List;
+
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class ModelTransferTransportAction extends
+        TransportNodesAction<ModelTransferRequest, ModelTransferResponse, ModelTransferNodeRequest, ModelTransferNodeResponse> {
+    private static final Logger LOG = LogManager.getLogger(ModelTransferTransportAction.class);
+
+    private ModelManager modelManager;
+
+    @Inject
+    public ModelTransferTransportAction(ThreadPool threadPool, ClusterService clusterService,
+            TransportService transportService, ActionFilters actionFilters, ModelManager modelManager) {
+        super(ModelTransferAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                ModelTransferRequest::new, ModelTransferNodeRequest::new, ThreadPool.Names.GENERIC,
+                ModelTransferNodeResponse.class);
+        this.modelManager = modelManager;
+    }
+
+    @Override
+    protected ModelTransferResponse newResponse(ModelTransferRequest request, List<ModelTransferNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new ModelTransferResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected ModelTransferNodeRequest newNodeRequest(String nodeId, ModelTransferRequest request) {
+        return new ModelTransferNodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected ModelTransferNodeResponse newNodeResponse() {
+        return new ModelTransferNodeResponse();
+    }
+
+    /**
+     * Passes a chunk of a transferred model to the model manager, which hosts the model once its last chunk arrives.
+     *
+     * @param request a chunk of the serialized model
+     * @return transfer response including local node Id and whether the model is hosted now
+     * @throws IllegalArgumentException when a chunk arrives out of order
+     */
+    @Override
+    protected ModelTransferNodeResponse nodeOperation(ModelTransferNodeRequest request) {
+        ModelTransferRequest chunk = request.getRequest();
+        boolean installed = modelManager.importModelChunk(chunk.getAdID(), chunk.getModelID(), chunk.getChunk(),
+            chunk.getTotalChunks(), chunk.getData());
+        if (installed) {
+            LOG.info("Received model {} in {} chunks", chunk.getModelID(), chunk.getTotalChunks());
+        }
+        return new ModelTransferNodeResponse(clusterService.localNode(), installed);
+    }
+}
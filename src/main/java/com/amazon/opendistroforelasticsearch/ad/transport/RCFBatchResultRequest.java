@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * RCF result requests of many models hosted on the same node, sent in one transport message.
+ */
+public class RCFBatchResultRequest extends ActionRequest {
+    private List<RCFResultRequest> requests;
+
+    public RCFBatchResultRequest(StreamInput in) throws IOException {
+        super(in);
+        int size = in.readVInt();
+        requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            requests.add(new RCFResultRequest(in.readString(), in.readString(), in.readDoubleArray()));
+        }
+    }
+
+    public RCFBatchResultRequest(List<RCFResultRequest> requests) {
+        super();
+        this.requests = requests;
+    }
+
+    public List<RCFResultRequest> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(requests.size());
+        for (RCFResultRequest request : requests) {
+            out.writeString(request.getAdID());
+            out.writeString(request.getModelID());
+            out.writeDoubleArray(request.getFeatures());
+        }
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        // each request is validated when it is scored, so that an invalid one fails only its own item
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * Results of a batch of RCF result requests, in the order of the requests.
+ *
+ * Each item holds either the RCF result or the failure of its request, so one
+ * failed model does not fail the other models of the batch.
+ */
+public class RCFBatchResultResponse extends ActionResponse {
+    private List<Item> items;
+
+    public RCFBatchResultResponse(List<Item> items) {
+        this.items = items;
+    }
+
+    public RCFBatchResultResponse(StreamInput in) throws IOException {
+        super(in);
+        int size = in.readVInt();
+        items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (in.readBoolean()) {
+                items.add(new Item(in.<Exception>readException()));
+            } else {
+                items.add(new Item(new RCFResultResponse(in)));
+            }
+        }
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(items.size());
+        for (Item item : items) {
+            out.writeBoolean(item.isFailure());
+            if (item.isFailure()) {
+                out.writeException(item.getFailure());
+            } else {
+                item.getResponse().writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Result of one RCF result request of the batch.
+     */
+    public static class Item {
+        private final RCFResultResponse response;
+        private final Exception failure;
+
+        public Item(RCFResultResponse response) {
+            this.response = response;
+            this.failure = null;
+        }
+
+        public Item(Exception failure) {
+            this.response = null;
+            this.failure = failure;
+        }
+
+        public boolean isFailure() {
+            return failure != null;
+        }
+
+        public RCFResultResponse getResponse() {
+            return response;
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class RCFBatchResultTransportAction extends HandledTransportAction<RCFBatchResultRequest, RCFBatchResultResponse> {
+
+    private static final Logger LOG = LogManager.getLogger(RCFBatchResultTransportAction.class);
+    private ModelManager manager;
+
+    @Inject
+    public RCFBatchResultTransportAction(ActionFilters actionFilters, TransportService transportService,
+            ModelManager manager) {
+        // a batch scores many models, so it runs off the transport thread
+        super(RCFBatchResultAction.NAME, transportService, actionFilters, RCFBatchResultRequest::new, ThreadPool.Names.GENERIC);
+        this.manager = manager;
+    }
+
+    /**
+     * Scores all models of the batch. A failure of one model is returned in its item
+     * without failing the others.
+     *
+     * @param task the task of the batch request
+     * @param request RCF result requests of models hosted on this node
+     * @param listener onResponse is called with results in the order of the requests
+     */
+    @Override
+    protected void doExecute(Task task, RCFBatchResultRequest request, ActionListener<RCFBatchResultResponse> listener) {
+        List<RCFResultRequest> requests = request.getRequests();
+        LOG.info("Serve rcf batch request of {} models", requests.size());
+        RCFBatchResultResponse.Item[] items = new RCFBatchResultResponse.Item[requests.size()];
+        if (items.length == 0) {
+            listener.onResponse(new RCFBatchResultResponse(Arrays.asList(items)));
+            return;
+        }
+        // models not hosted yet are loaded asynchronously, the response is sent once every item is done
+        AtomicInteger pendingItems = new AtomicInteger(items.length);
+        for (int i = 0; i < items.length; i++) {
+            int index = i;
+            RCFResultRequest rcfRequest = requests.get(i);
+            ActionListener<RcfResult> itemListener = ActionListener.wrap(result -> {
+                items[index] = new RCFBatchResultResponse.Item(
+                    new RCFResultResponse(result.getScore(), result.getConfidence(), result.getForestSize()));
+                if (pendingItems.decrementAndGet() == 0) {
+                    listener.onResponse(new RCFBatchResultResponse(Arrays.asList(items)));
+                }
+            }, e -> {
+                LOG.error(e);
+                items[index] = new RCFBatchResultResponse.Item(e);
+                if (pendingItems.decrementAndGet() == 0) {
+                    listener.onResponse(new RCFBatchResultResponse(Arrays.asList(items)));
+                }
+            });
+            ActionRequestValidationException validationException = rcfRequest.validate();
+            if (validationException != null) {
+                itemListener.onFailure(validationException);
+                continue;
+            }
+            try {
+                manager.getRcfResult(rcfRequest.getAdID(), rcfRequest.getModelID(), rcfRequest.getFeatures(), itemListener);
+            } catch (Exception e) {
+                itemListener.onFailure(e);
+            }
+        }
+    }
+}
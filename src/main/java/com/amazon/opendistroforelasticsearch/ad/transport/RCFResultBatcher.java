@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Coalesces RCF result requests of many detectors into batch requests per model node.
+ *
+ * Requests to the same node arriving within the batch window are sent in one
+ * transport message. A batch of a single request is sent as a plain RCF result
+ * request. Responses are returned to each request's own listener.
+ */
+public class RCFResultBatcher {
+
+    private static final Logger LOG = LogManager.getLogger(RCFResultBatcher.class);
+
+    private final TransportService transportService;
+    private final ThreadPool threadPool;
+    private final TransportRequestOptions option;
+    private final TimeValue batchWindow;
+    private final int maxBatchSize;
+    private final ADStats adStats;
+
+    private final Map<String, Batch> pendingBatches = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param transportService transport service to send requests
+     * @param threadPool thread pool to schedule batch flushes
+     * @param option transport options of requests, including timeout
+     * @param batchWindow time to wait for more requests to the same node
+     * @param maxBatchSize number of requests at which a batch is sent without waiting
+     * @param adStats AD statistics
+     */
+    public RCFResultBatcher(TransportService transportService, ThreadPool threadPool, TransportRequestOptions option,
+            TimeValue batchWindow, int maxBatchSize, ADStats adStats) {
+        this.transportService = transportService;
+        this.threadPool = threadPool;
+        this.option = option;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.adStats = adStats;
+    }
+
+    /**
+     * Submits a RCF result request to be sent with other requests to the same node.
+     *
+     * @param node node hosting the model
+     * @param request RCF result request
+     * @param listener onResponse is called with the RCF result of the request
+     */
+    public void send(DiscoveryNode node, RCFResultRequest request, ActionListener<RCFResultResponse> listener) {
+        adStats.counter(StatNames.AD_RCF_REQUEST_COUNT).increment();
+        if (batchWindow.millis() <= 0 || maxBatchSize <= 1) {
+            sendSingle(node, request, listener);
+            return;
+        }
+
+        String nodeId = node.getId();
+        Batch batch;
+        boolean isNewBatch = false;
+        boolean isFull = false;
+        synchronized (pendingBatches) {
+            batch = pendingBatches.get(nodeId);
+            if (batch == null) {
+                batch = new Batch(node);
+                pendingBatches.put(nodeId, batch);
+                isNewBatch = true;
+            }
+            batch.add(request, listener);
+            if (batch.size() >= maxBatchSize) {
+                pendingBatches.remove(nodeId);
+                isFull = true;
+            }
+        }
+
+        if (isFull) {
+            sendBatch(batch);
+        } else if (isNewBatch) {
+            Batch scheduledBatch = batch;
+            threadPool.schedule(() -> flush(nodeId, scheduledBatch), batchWindow, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    private void flush(String nodeId, Batch batch) {
+        boolean isPending;
+        synchronized (pendingBatches) {
+            isPending = pendingBatches.remove(nodeId, batch);
+        }
+        // a batch no longer pending was sent when it became full
+        if (isPending) {
+            sendBatch(batch);
+        }
+    }
+
+    private void sendSingle(DiscoveryNode node, RCFResultRequest request, ActionListener<RCFResultResponse> listener) {
+        adStats.counter(StatNames.AD_RCF_ROUND_TRIP_COUNT).increment();
+        transportService.sendRequest(node, RCFResultAction.NAME, request, option,
+                new ActionListenerResponseHandler<>(listener, RCFResultResponse::new));
+    }
+
+    private void sendBatch(Batch batch) {
+        if (batch.size() == 1) {
+            sendSingle(batch.node, batch.requests.get(0), batch.listeners.get(0));
+            return;
+        }
+
+        adStats.counter(StatNames.AD_RCF_ROUND_TRIP_COUNT).increment();
+        LOG.info("Sending RCF batch request of {} models to {}", batch.size(), batch.node.getId());
+        ActionListener<RCFBatchResultResponse> batchListener = new ActionListener<RCFBatchResultResponse>() {
+            @Override
+            public void onResponse(RCFBatchResultResponse response) {
+                List<RCFBatchResultResponse.Item> items = response.getItems();
+                if (items.size() != batch.size()) {
+                    onFailure(new IllegalStateException(String.format("Received %d results for %d RCF requests",
+                            items.size(), batch.size())));
+                    return;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    ActionListener<RCFResultResponse> listener = batch.listeners.get(i);
+                    try {
+                        if (items.get(i).isFailure()) {
+                            listener.onFailure(items.get(i).getFailure());
+                        } else {
+                            listener.onResponse(items.get(i).getResponse());
+                        }
+                    } catch (Exception e) {
+                        LOG.error("Failed to return RCF result", e);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                for (ActionListener<RCFResultResponse> listener : batch.listeners) {
+                    try {
+                        listener.onFailure(exception);
+                    } catch (Exception e) {
+                        LOG.error("Failed to return RCF failure", e);
+                    }
+                }
+            }
+        };
+        transportService.sendRequest(batch.node, RCFBatchResultAction.NAME, new RCFBatchResultRequest(batch.requests), option,
+                new ActionListenerResponseHandler<>(batchListener, RCFBatchResultResponse::new));
+    }
+
+    private static class Batch {
+        private final DiscoveryNode node;
+        private final List<RCFResultRequest> requests = new ArrayList<>();
+        private final List<ActionListener<RCFResultResponse>> listeners = new ArrayList<>();
+
+        private Batch(DiscoveryNode node) {
+            this.node = node;
+        }
+
+        private void add(RCFResultRequest request, ActionListener<RCFResultResponse> listener) {
+            requests.add(request);
+            listeners.add(listener);
+        }
+
+        private int size() {
+            return requests.size();
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package com.amazon.opendistroforelasticsearch.ad.transport;
 
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
-import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.action.ActionListener;
@@ -43,8 +42,12 @@ public class RCFResultTransportAction extends HandledTransportAction<RCFResultRe
 
         try {
             LOG.info("Serve rcf request for {}", request.getModelID());
-            RcfResult result = manager.getRcfResult(request.getAdID(), request.getModelID(), request.getFeatures());
-            listener.onResponse(new RCFResultResponse(result.getScore(), result.getConfidence(), result.getForestSize()));
+            manager.getRcfResult(request.getAdID(), request.getModelID(), request.getFeatures(), ActionListener.wrap(
+                result -> listener.onResponse(new RCFResultResponse(result.getScore(), result.getConfidence(), result.getForestSize())),
+                e -> {
+                    LOG.error(e);
+                    listener.onFailure(e);
+                }));
         } catch (Exception e) {
             LOG.error(e);
             listener.onFailure(e);
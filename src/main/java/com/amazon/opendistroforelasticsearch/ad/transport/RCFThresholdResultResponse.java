@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.io.IOException;
+
+import com.amazon.opendistroforelasticsearch.ad.constant.CommonMessageAttributes;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class RCFThresholdResultResponse extends ActionResponse implements ToXContentObject {
+    public static final String RCF_CONFIDENCE_JSON_KEY = "rcfConfidence";
+    private double rcfScore;
+    private double rcfConfidence;
+    private int forestSize;
+    private double anomalyGrade;
+    private double confidence;
+
+    public RCFThresholdResultResponse(double rcfScore, double rcfConfidence, int forestSize, double anomalyGrade,
+            double confidence) {
+        this.rcfScore = rcfScore;
+        this.rcfConfidence = rcfConfidence;
+        this.forestSize = forestSize;
+        this.anomalyGrade = anomalyGrade;
+        this.confidence = confidence;
+    }
+
+    public RCFThresholdResultResponse(StreamInput in) throws IOException {
+        super(in);
+        rcfScore = in.readDouble();
+        rcfConfidence = in.readDouble();
+        forestSize = in.readVInt();
+        anomalyGrade = in.readDouble();
+        confidence = in.readDouble();
+    }
+
+    public double getRCFScore() {
+        return rcfScore;
+    }
+
+    public double getRCFConfidence() {
+        return rcfConfidence;
+    }
+
+    public int getForestSize() {
+        return forestSize;
+    }
+
+    public double getAnomalyGrade() {
+        return anomalyGrade;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeDouble(rcfScore);
+        out.writeDouble(rcfConfidence);
+        out.writeVInt(forestSize);
+        out.writeDouble(anomalyGrade);
+        out.writeDouble(confidence);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(CommonMessageAttributes.RCF_SCORE_JSON_KEY, rcfScore);
+        builder.field(RCF_CONFIDENCE_JSON_KEY, rcfConfidence);
+        builder.field(RCFResultResponse.FOREST_SIZE_JSON_KEY, forestSize);
+        builder.field(CommonMessageAttributes.ANOMALY_GRADE_JSON_KEY, anomalyGrade);
+        builder.field(CommonMessageAttributes.CONFIDENCE_JSON_KEY, confidence);
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import java.util.Collections;
+
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.TransportService;
+
+public class RCFThresholdResultTransportAction extends HandledTransportAction<RCFThresholdResultRequest,
+        RCFThresholdResultResponse> {
+
+    private static final Logger LOG = LogManager.getLogger(RCFThresholdResultTransportAction.class);
+    private ModelManager manager;
+
+    @Inject
+    public RCFThresholdResultTransportAction(ActionFilters actionFilters, TransportService transportService,
+            ModelManager manager) {
+        super(RCFThresholdResultAction.NAME, transportService, actionFilters, RCFThresholdResultRequest::new);
+        this.manager = manager;
+    }
+
+    @Override
+    protected void doExecute(Task task, RCFThresholdResultRequest request,
+            ActionListener<RCFThresholdResultResponse> listener) {
+
+        try {
+            LOG.info("Serve rcf and threshold request for {}", request.getRcfModelID());
+            getResult(manager, request, ActionListener.wrap(listener::onResponse, e -> {
+                LOG.error(e);
+                listener.onFailure(e);
+            }));
+        } catch (Exception e) {
+            LOG.error(e);
+            listener.onFailure(e);
+        }
+    }
+
+    /**
+     * Scores the features with the RCF model and feeds the score to the threshold model.
+     * The RCF model has a single partition, so its score is combined the same way the
+     * coordinating node combines the scores of all partitions.
+     *
+     * @param manager model manager hosting both models
+     * @param request request of a single-partition detector
+     * @param listener onResponse is called with RCF and threshold results
+     */
+    static void getResult(ModelManager manager, RCFThresholdResultRequest request,
+            ActionListener<RCFThresholdResultResponse> listener) {
+        manager.getRcfResult(request.getAdID(), request.getRcfModelID(), request.getFeatures(), ActionListener.wrap(rcfResult -> {
+            double combinedScore = manager.combineRcfResults(Collections.singletonList(rcfResult)).getScore();
+            manager.getThresholdingResult(request.getAdID(), request.getThresholdModelID(), combinedScore,
+                    ActionListener.wrap(thresholdResult -> listener.onResponse(new RCFThresholdResultResponse(rcfResult.getScore(),
+                            rcfResult.getConfidence(), rcfResult.getForestSize(), thresholdResult.getGrade(),
+                            thresholdResult.getConfidence())), listener::onFailure));
+        }, listener::onFailure));
+    }
+}
@@ -16,7 +16,6 @@
 package com.amazon.opendistroforelasticsearch.ad.transport;
 
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
-import com.amazon.opendistroforelasticsearch.ad.ml.ThresholdingResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.action.ActionListener;
@@ -46,9 +45,12 @@ public class ThresholdResultTransportAction extends HandledTransportAction<Thres
 
         try {
             LOG.info("Serve threshold request for {}", request.getModelID());
-            ThresholdingResult result = manager.getThresholdingResult(request.getAdID(), request.getModelID(),
-                    request.getRCFScore());
-            listener.onResponse(new ThresholdResultResponse(result.getGrade(), result.getConfidence()));
+            manager.getThresholdingResult(request.getAdID(), request.getModelID(), request.getRCFScore(), ActionListener.wrap(
+                    result -> listener.onResponse(new ThresholdResultResponse(result.getGrade(), result.getConfidence())),
+                    e -> {
+                        LOG.error(e);
+                        listener.onFailure(e);
+                    }));
         } catch (Exception e) {
             LOG.error(e);
             listener.onFailure(e);
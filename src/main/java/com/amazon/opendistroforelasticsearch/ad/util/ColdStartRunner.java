@@ -21,13 +21,17 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.amazon.opendistroforelasticsearch.ad.common.exception.AnomalyDetectionException;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
@@ -36,21 +40,51 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * coordinating AD node. We can check the execution results and exceptions if
  * any when cold start finishes.
  *
+ * Cold starts of different detectors run concurrently up to a limit. The RCF
+ * model partitions of a cold start are trained on a separate bounded executor,
+ * so cold start threads waiting for their partitions never starve them.
  */
 public class ColdStartRunner {
     private static final Logger LOG = LogManager.getLogger(ColdStartRunner.class);
 
-    private ExecutorService exec;
+    private ThreadPoolExecutor exec;
+    private ThreadPoolExecutor trainingExec;
     private ExecutorCompletionService<Boolean> runner;
 
     private Map<String, AnomalyDetectionException> currentExceptions;
 
-    public ColdStartRunner() {
+    /**
+     * Constructor.
+     *
+     * @param maxConcurrentColdStarts max number of cold starts running at the same time
+     * @param maxTrainingParallelism max number of model partitions trained at the same time
+     * @param adStats node-level statistics
+     */
+    public ColdStartRunner(int maxConcurrentColdStarts, int maxTrainingParallelism, ADStats adStats) {
         // when the thread is daemon thread, it will end immediately when the application exits.
-        exec = Executors.newFixedThreadPool(1,
-                new ThreadFactoryBuilder().setNameFormat("ad-thread-%d").setDaemon(true).build());
+        exec = newFixedThreadPool(maxConcurrentColdStarts, "ad-thread-%d");
+        trainingExec = newFixedThreadPool(maxTrainingParallelism, "ad-training-%d");
         this.runner = new ExecutorCompletionService<Boolean>(exec);
         this.currentExceptions = new ConcurrentHashMap<>();
+
+        adStats.gauge(StatNames.AD_COLD_START_ACTIVE_COUNT, () -> exec.getActiveCount());
+        adStats.gauge(StatNames.AD_COLD_START_QUEUE_SIZE, () -> exec.getQueue().size());
+        adStats.gauge(StatNames.AD_TRAINING_ACTIVE_COUNT, () -> trainingExec.getActiveCount());
+        adStats.gauge(StatNames.AD_TRAINING_QUEUE_SIZE, () -> trainingExec.getQueue().size());
+    }
+
+    private static ThreadPoolExecutor newFixedThreadPool(int size, String nameFormat) {
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * Returns the executor training model partitions.
+     *
+     * @return the executor training model partitions
+     */
+    public ExecutorService getTrainingExecutor() {
+        return trainingExec;
     }
 
     public Future<Boolean> compute(Callable<Boolean> task) {
@@ -59,6 +93,7 @@ public class ColdStartRunner {
 
     public void shutDown() {
         exec.shutdown();
+        trainingExec.shutdown();
     }
 
     Optional<Boolean> checkResult() {
@@ -33,6 +33,8 @@ import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 
@@ -220,7 +222,20 @@ public final class ParseUtils {
     public static SearchSourceBuilder generateInternalFeatureQuery(AnomalyDetector detector, long startTime,
                                                                    long endTime, NamedXContentRegistry xContentRegistry)
             throws IOException {
-        SearchSourceBuilder searchSourceBuilder = detector.generateFeatureQuery();
+        return generateInternalFeatureQuery(detector, startTime, endTime, parseFeatureAggregations(detector, xContentRegistry));
+    }
+
+    /**
+     * Generate feature query of detector for time range with feature aggregations that are already parsed.
+     *
+     * @param detector            anomaly detector
+     * @param startTime           start time of the range in epoch milliseconds, inclusive
+     * @param endTime             end time of the range in epoch milliseconds, exclusive
+     * @param featureAggregations aggregations of detector features, from {@link #parseFeatureAggregations}
+     * @return feature query of the time range
+     */
+    public static SearchSourceBuilder generateInternalFeatureQuery(AnomalyDetector detector, long startTime, long endTime,
+                                                                   List<AggregationBuilder> featureAggregations) {
         RangeQueryBuilder rangeQuery = new RangeQueryBuilder(detector.getTimeField())
                 .from(startTime)
                 .to(endTime)
@@ -229,18 +244,32 @@ public final class ParseUtils {
                 .includeUpper(false);
 
         BoolQueryBuilder internalFilterQuery = QueryBuilders.boolQuery().must(rangeQuery)
-                .must(searchSourceBuilder.query());
+                .must(detector.getFilterQuery());
 
         SearchSourceBuilder internalSearchSourceBuilder = new SearchSourceBuilder().query(internalFilterQuery);
+        featureAggregations.forEach(internalSearchSourceBuilder::aggregation);
+        return internalSearchSourceBuilder;
+    }
+
+    /**
+     * Parse aggregations of detector features, each named by its feature id.
+     *
+     * @param detector         anomaly detector
+     * @param xContentRegistry ES named content registry
+     * @return aggregations of detector features
+     * @throws IOException IOException if content can't be parsed correctly
+     */
+    public static List<AggregationBuilder> parseFeatureAggregations(AnomalyDetector detector, NamedXContentRegistry xContentRegistry)
+            throws IOException {
+        List<AggregationBuilder> featureAggregations = new ArrayList<>();
         if (detector.getFeatureAttributes() != null) {
             for (Feature feature : detector.getFeatureAttributes()) {
                 AggregatorFactories.Builder internalAgg = parseAggregators(feature.getAggregation().toString(),
                         xContentRegistry, feature.getId());
-                internalSearchSourceBuilder.aggregation(internalAgg.getAggregatorFactories().iterator().next());
+                featureAggregations.add(internalAgg.getAggregatorFactories().iterator().next());
             }
         }
-
-        return internalSearchSourceBuilder;
+        return featureAggregations;
     }
 
     public static String generateInternalFeatureQueryTemplate(AnomalyDetector detector,
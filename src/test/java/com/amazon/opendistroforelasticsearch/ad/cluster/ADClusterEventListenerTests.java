@@ -21,8 +21,14 @@ import static org.elasticsearch.test.ClusterServiceUtils.createClusterService;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Optional;
@@ -34,6 +40,15 @@ import static java.util.Collections.emptySet;
 
 import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelPreloadRequest;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferAction;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferNodeResponse;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferRequest;
+import com.amazon.opendistroforelasticsearch.ad.transport.ModelTransferResponse;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
@@ -42,12 +57,16 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNode.Role;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.gateway.GatewayService;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.Version;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.mockito.ArgumentCaptor;
 
 
 public class ADClusterEventListenerTests extends AbstractADTest {
@@ -59,6 +78,7 @@ public class ADClusterEventListenerTests extends AbstractADTest {
     private ADClusterEventListener listener;
     private HashRing hashRing;
     private ModelManager modelManager;
+    private Client client;
     private ClusterState oldClusterState;
     private ClusterState newClusterState;
     private DiscoveryNode masterNode;
@@ -94,7 +114,8 @@ public class ADClusterEventListenerTests extends AbstractADTest {
         newClusterState = ClusterState.builder(new ClusterName(clusterName)).nodes(new DiscoveryNodes.Builder()
                 .masterNodeId(masterNodeId).localNodeId(dataNode1Id).add(masterNode).add(dataNode1)).build();
 
-        listener = new ADClusterEventListener(clusterService, hashRing, modelManager);
+        client = mock(Client.class);
+        listener = new ADClusterEventListener(clusterService, hashRing, modelManager, client, threadPool, Settings.EMPTY, 2);
     }
 
     @Override
@@ -105,6 +126,7 @@ public class ADClusterEventListenerTests extends AbstractADTest {
         clusterService = null;
         hashRing = null;
         modelManager = null;
+        client = null;
         oldClusterState = null;
         listener = null;
     }
@@ -179,4 +201,110 @@ public class ADClusterEventListenerTests extends AbstractADTest {
         assertTrue(!testAppender.containsMessage(ADClusterEventListener.NODE_ADDED_MSG));
         assertTrue(testAppender.containsMessage(ADClusterEventListener.NODE_REMOVED_MSG));
     }
+
+    public void testNodeAddedHandsOffModel() {
+        String modelId = "123-threshold";
+        doAnswer(invocation -> {
+            Set<String> res = new HashSet<>();
+            res.add(modelId);
+            return res;
+        }).when(modelManager).getAllModelIds();
+        when(modelManager.getDetectorIdForModelId(modelId)).thenReturn("123");
+        when(hashRing.getOwningNode(any(String.class))).thenReturn(Optional.of(masterNode));
+        ThreadPool directThreadPool = mock(ThreadPool.class);
+        when(directThreadPool.generic()).thenReturn(EsExecutors.newDirectExecutorService());
+        listener = new ADClusterEventListener(clusterService, hashRing, modelManager, client, directThreadPool,
+                Settings.EMPTY, 2);
+
+        listener.clusterChanged(new ClusterChangedEvent("foo", newClusterState, oldClusterState));
+
+        verify(modelManager).handoffModel("123", modelId);
+        ArgumentCaptor<ModelPreloadRequest> request = ArgumentCaptor.forClass(ModelPreloadRequest.class);
+        verify(client).execute(eq(ModelPreloadAction.INSTANCE), request.capture(), any());
+        assertEquals(Collections.singletonList(modelId), request.getValue().getModelIds(masterNodeId));
+    }
+
+    public void testNodeRemovedHandsOffModel() {
+        String modelId = "123_model_rcf_0";
+        when(modelManager.getAllModelIds()).thenReturn(Collections.singleton(modelId));
+        when(modelManager.getDetectorIdForModelId(modelId)).thenReturn("123");
+        DiscoveryNode dataNode2 = new DiscoveryNode("dataNode2", buildNewFakeTransportAddress(), emptyMap(),
+                EnumSet.allOf(Role.class), Version.CURRENT);
+        when(hashRing.getOwningNode(any(String.class))).thenReturn(Optional.of(dataNode2));
+        ThreadPool directThreadPool = mock(ThreadPool.class);
+        when(directThreadPool.generic()).thenReturn(EsExecutors.newDirectExecutorService());
+        listener = new ADClusterEventListener(clusterService, hashRing, modelManager, client, directThreadPool,
+                Settings.EMPTY, 2);
+        ClusterState threeDataNodeClusterState = ClusterState.builder(new ClusterName(clusterName))
+                .nodes(new DiscoveryNodes.Builder().masterNodeId(masterNodeId).localNodeId(dataNode1Id)
+                        .add(masterNode).add(dataNode1).add(dataNode2)
+                        .add(new DiscoveryNode("dataNode3", buildNewFakeTransportAddress(), emptyMap(),
+                                EnumSet.allOf(Role.class), Version.CURRENT)))
+                .build();
+        ClusterState twoDataNodeClusterState = ClusterState.builder(new ClusterName(clusterName))
+                .nodes(new DiscoveryNodes.Builder().masterNodeId(masterNodeId).localNodeId(dataNode1Id)
+                        .add(masterNode).add(dataNode1).add(dataNode2))
+                .build();
+
+        listener.clusterChanged(new ClusterChangedEvent("foo", twoDataNodeClusterState, threeDataNodeClusterState));
+
+        verify(modelManager).handoffModel("123", modelId);
+        ArgumentCaptor<ModelPreloadRequest> request = ArgumentCaptor.forClass(ModelPreloadRequest.class);
+        verify(client).execute(eq(ModelPreloadAction.INSTANCE), request.capture(), any());
+        assertEquals(Collections.singletonList(modelId), request.getValue().getModelIds("dataNode2"));
+    }
+
+    public void testHandoffFailureSkipsPreload() {
+        String modelId = "123_model_rcf_0";
+        when(modelManager.getDetectorIdForModelId(modelId)).thenReturn("123");
+        doThrow(new RuntimeException()).when(modelManager).handoffModel("123", modelId);
+
+        listener.handoff(Collections.singletonMap(masterNodeId, Collections.singletonList(modelId)));
+
+        assertTrue(testAppender.containsMessage(ADClusterEventListener.HANDOFF_FAILURE_MSG));
+        verify(client, never()).execute(any(), any(), any());
+    }
+
+    private PlainActionFuture<ModelTransferResponse> transferResponse(boolean installed) {
+        PlainActionFuture<ModelTransferResponse> future = PlainActionFuture.newFuture();
+        future.onResponse(new ModelTransferResponse(new ClusterName(clusterName),
+            Collections.singletonList(new ModelTransferNodeResponse(masterNode, installed)), Collections.emptyList()));
+        return future;
+    }
+
+    public void testTransferModelInChunks() {
+        String modelId = "123_model_rcf_0";
+        when(modelManager.getDetectorIdForModelId(modelId)).thenReturn("123");
+        when(modelManager.exportModel(modelId)).thenReturn(Optional.of(new byte[] { 1, 2, 3, 4, 5 }));
+        when(client.execute(eq(ModelTransferAction.INSTANCE), any(ModelTransferRequest.class)))
+            .thenReturn(transferResponse(false)).thenReturn(transferResponse(false)).thenReturn(transferResponse(true));
+
+        listener.handoff(Collections.singletonMap(masterNodeId, Collections.singletonList(modelId)));
+
+        ArgumentCaptor<ModelTransferRequest> request = ArgumentCaptor.forClass(ModelTransferRequest.class);
+        verify(client, times(3)).execute(eq(ModelTransferAction.INSTANCE), request.capture());
+        assertArrayEquals(new byte[] { 5 }, request.getValue().getData());
+        assertEquals(3, request.getValue().getTotalChunks());
+        verify(modelManager).releaseModel("123", modelId);
+        verify(modelManager, never()).handoffModel(any(), any());
+        verify(client, never()).execute(eq(ModelPreloadAction.INSTANCE), any(), any());
+    }
+
+    public void testTransferFailureFallsBackToCheckpoint() {
+        String modelId = "123_model_rcf_0";
+        when(modelManager.getDetectorIdForModelId(modelId)).thenReturn("123");
+        when(modelManager.exportModel(modelId)).thenReturn(Optional.of(new byte[] { 1, 2, 3 }));
+        PlainActionFuture<ModelTransferResponse> failure = PlainActionFuture.newFuture();
+        failure.onResponse(new ModelTransferResponse(new ClusterName(clusterName), Collections.emptyList(),
+            Collections.singletonList(new FailedNodeException(masterNodeId, "failed", new RuntimeException()))));
+        when(client.execute(eq(ModelTransferAction.INSTANCE), any(ModelTransferRequest.class)))
+            .thenReturn(transferResponse(false)).thenReturn(failure);
+
+        listener.handoff(Collections.singletonMap(masterNodeId, Collections.singletonList(modelId)));
+
+        assertTrue(testAppender.containsMessage(ADClusterEventListener.TRANSFER_FAILURE_MSG));
+        verify(modelManager, never()).releaseModel(any(), any());
+        verify(modelManager).handoffModel("123", modelId);
+        verify(client).execute(eq(ModelPreloadAction.INSTANCE), any(ModelPreloadRequest.class), any());
+    }
 }
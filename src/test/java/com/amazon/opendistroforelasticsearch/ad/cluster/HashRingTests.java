@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.ad.cluster;
 
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
 
 import static org.elasticsearch.test.ClusterServiceUtils.createClusterService;
 import static org.elasticsearch.test.ClusterServiceUtils.setState;
@@ -27,6 +28,9 @@ import java.util.Optional;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
 import org.elasticsearch.Version;
@@ -34,6 +38,7 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.node.DiscoveryNode.Role;
+import org.elasticsearch.cluster.routing.Murmur3HashFunction;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
@@ -42,6 +47,8 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+
 public class HashRingTests extends AbstractADTest {
 
     private ClusterService clusterService;
@@ -49,10 +56,25 @@ public class HashRingTests extends AbstractADTest {
     private Clock clock;
 
     private DiscoveryNode createNode(String nodeId) {
-        return new DiscoveryNode(nodeId, buildNewFakeTransportAddress(), emptyMap(), EnumSet.allOf(Role.class),
+        return createNode(nodeId, emptyMap());
+    }
+
+    private DiscoveryNode createNode(String nodeId, Map<String, String> attributes) {
+        return new DiscoveryNode(nodeId, buildNewFakeTransportAddress(), attributes, EnumSet.allOf(Role.class),
                 Version.CURRENT);
     }
 
+    private void setDataNodes(DiscoveryNode... nodes) {
+        DiscoveryNodes.Builder discoBuilder = DiscoveryNodes.builder();
+        for (DiscoveryNode node : nodes) {
+            discoBuilder.add(node);
+        }
+        discoBuilder.localNodeId(nodes[0].getId());
+        discoBuilder.masterNodeId(nodes[0].getId());
+        setState(clusterService.getClusterApplierService(),
+                ClusterState.builder(clusterService.getClusterName()).nodes(discoBuilder).build());
+    }
+
     @BeforeClass
     public static void setUpBeforeClass() {
         setUpThreadPool(HashRingTests.class.getSimpleName());
@@ -111,4 +133,79 @@ public class HashRingTests extends AbstractADTest {
         assertEquals(node, node2);
         assertTrue(testAppender.containsMessage(HashRing.COOLDOWN_MSG));
     }
+
+    public void testGetOwningNode_matchesConsistentHashing() {
+        HashRing ring = new HashRing(clusterService, clock, settings);
+
+        TreeMap<Integer, String> circle = new TreeMap<>();
+        for (ObjectCursor<DiscoveryNode> cursor : clusterService.state().nodes().getDataNodes().values()) {
+            for (int i = 0; i < 100; i++) {
+                circle.put(Murmur3HashFunction.hash(cursor.value.getId() + i), cursor.value.getId());
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            String modelId = "detector" + i + "_model_rcf_1";
+            Map.Entry<Integer, String> expected = circle.higherEntry(Murmur3HashFunction.hash(modelId));
+            String expectedId = expected == null ? circle.firstEntry().getValue() : expected.getValue();
+            assertEquals(expectedId, ring.getOwningNode(modelId).get().getId());
+        }
+    }
+
+    public void testBuild_keepRing_givenSameDataNodes() {
+        HashRing ring = new HashRing(clusterService, clock, settings);
+        Optional<DiscoveryNode> node = ring.getOwningNode("http-latency-rcf-1");
+
+        when(clock.millis()).thenReturn(700000L + TimeValue.timeValueMinutes(6).getMillis());
+        ring.recordMembershipChange();
+
+        assertFalse(ring.build());
+        assertTrue(testAppender.containsMessage(HashRing.UNCHANGED_MSG));
+        assertEquals(node, ring.getOwningNode("http-latency-rcf-1"));
+    }
+
+    public void testGetOwningNode_weightedByModelMemoryBudget() {
+        setDataNodes(createNode("small", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "1073741824")),
+                createNode("large", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "3221225472")));
+        HashRing ring = new HashRing(clusterService, clock, settings);
+
+        int large = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (ring.getOwningNode("detector" + i + "_model_rcf_0").get().getId().equals("large")) {
+                large++;
+            }
+        }
+        // the large node has 3 times the virtual nodes of the small one
+        assertTrue("large node owns " + large, large > 600 && large < 900);
+    }
+
+    public void testGetOwningNode_onlyMovesModelsToJoiningNode() {
+        setDataNodes(createNode("small", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "1073741824")),
+                createNode("large", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "3221225472")));
+        HashRing ring = new HashRing(clusterService, clock, settings);
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String modelId = "detector" + i + "_model_rcf_0";
+            owners.put(modelId, ring.getOwningNode(modelId).get().getId());
+        }
+
+        setDataNodes(createNode("small", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "1073741824")),
+                createNode("large", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "3221225472")),
+                createNode("huge", singletonMap(HashRing.MODEL_MEMORY_BUDGET_ATTR, "8589934592")));
+        when(clock.millis()).thenReturn(700000L + TimeValue.timeValueMinutes(6).getMillis());
+        ring.recordMembershipChange();
+        assertTrue(ring.build());
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            String owner = ring.getOwningNode(entry.getKey()).get().getId();
+            assertTrue(owner.equals(entry.getValue()) || owner.equals("huge"));
+        }
+    }
+
+    public void testThresholdModelColocatedWithFirstRcfPartition() {
+        HashRing ring = new HashRing(clusterService, clock, settings);
+        for (int i = 0; i < 20; i++) {
+            String detectorId = "detector" + i;
+            assertEquals(ring.getOwningNode(detectorId + "_model_rcf_0"), ring.getOwningNode(detectorId + "_model_threshold"));
+        }
+    }
 }
@@ -21,7 +21,10 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 
@@ -39,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -54,11 +58,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -103,6 +109,7 @@ public class FeatureManagerTests {
 
         when(detector.getDetectorId()).thenReturn("id");
         when(detector.getDetectionInterval()).thenReturn(new IntervalTimeConfiguration(1, ChronoUnit.MINUTES));
+        when(searchFeatureDao.alignToInterval(eq(detector), anyLong())).thenAnswer(invocation -> invocation.getArgument(1));
 
         Interpolator interpolator = new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator());
         this.featureManager = spy(new FeatureManager(searchFeatureDao, interpolator, clock,
@@ -298,6 +305,53 @@ public class FeatureManagerTests {
         assertTrue(Arrays.equals(expected.getProcessedFeatures().orElse(null), result.getProcessedFeatures().orElse(null)));
     }
 
+    @Test
+    @Parameters(method = "getCurrentFeaturesData")
+    @SuppressWarnings("unchecked")
+    public void getCurrentFeatures_returnExpectedToListener(long[][] allRanges, double[][] allPoints, long[][] previousRanges,
+        long[] currentRange, SinglePointFeatures expected) {
+
+        for (int i = 0; i < allRanges.length; i++) {
+            Optional<double[]> point = Optional.ofNullable(allPoints[i]);
+            doAnswer(invocation -> {
+                ActionListener<Optional<double[]>> daoListener = invocation.getArgument(3);
+                daoListener.onResponse(point);
+                return null;
+            }).when(searchFeatureDao).getFeaturesForPeriod(eq(detector), eq(allRanges[i][0]), eq(allRanges[i][1]), any());
+        }
+        this.featureManager = spy(new FeatureManager(searchFeatureDao, interpolator, clock,
+            maxTrainSamples, maxSampleStride, 4, maxMissingPoints, maxNeighborDistance, maxPreviewSamples,
+            featureBufferTtl));
+        for (int i = 0; i < previousRanges.length; i++) {
+            featureManager.getCurrentFeatures(detector, previousRanges[i][0], previousRanges[i][1], mock(ActionListener.class));
+        }
+
+        ActionListener<SinglePointFeatures> listener = mock(ActionListener.class);
+        featureManager.getCurrentFeatures(detector, currentRange[0], currentRange[1], listener);
+
+        ArgumentCaptor<SinglePointFeatures> captor = ArgumentCaptor.forClass(SinglePointFeatures.class);
+        verify(listener).onResponse(captor.capture());
+        SinglePointFeatures result = captor.getValue();
+        assertTrue(Arrays.equals(expected.getUnprocessedFeatures().orElse(null), result.getUnprocessedFeatures().orElse(null)));
+        assertTrue(Arrays.equals(expected.getProcessedFeatures().orElse(null), result.getProcessedFeatures().orElse(null)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getCurrentFeatures_returnExceptionToListener() {
+        RuntimeException exception = new RuntimeException();
+        doAnswer(invocation -> {
+            ActionListener<Optional<double[]>> daoListener = invocation.getArgument(3);
+            daoListener.onFailure(exception);
+            return null;
+        }).when(searchFeatureDao).getFeaturesForPeriod(eq(detector), eq(0L), eq(60_000L), any());
+
+        ActionListener<SinglePointFeatures> listener = mock(ActionListener.class);
+        featureManager.getCurrentFeatures(detector, 0L, 60_000L, listener);
+
+        verify(listener).onFailure(exception);
+    }
+
     private Object[] getColdStartDataTestData() {
         double[][] samples = new double[][]{{1.0}};
         return new Object[]{
@@ -383,6 +437,7 @@ public class FeatureManagerTests {
         assertTrue(beforeMaintenance.getProcessedFeatures().isPresent());
 
         featureManager.clear(detector.getDetectorId());
+        verify(searchFeatureDao).clear(detector.getDetectorId());
 
         SinglePointFeatures afterMaintenance = featureManager.getCurrentFeatures(detector, start, end);
         assertTrue(afterMaintenance.getUnprocessedFeatures().isPresent());
@@ -520,4 +575,51 @@ public class FeatureManagerTests {
     public void getPreviewFeatures_returnExceptionToListener() {
         getPreviewFeaturesTemplate(true);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getPreviewFeatures_returnEveryIntervalToListener_givenFullResolution() {
+        featureManager = spy(new FeatureManager(searchFeatureDao, interpolator, clock, maxTrainSamples, maxSampleStride, shingleSize,
+            maxMissingPoints, maxNeighborDistance, maxPreviewSamples, featureBufferTtl, true));
+        long start = 0L;
+        long end = 240_000L;
+        Map<Long, double[]> features = new HashMap<>();
+        features.put(60_000L, new double[]{1});
+        features.put(120_000L, new double[]{2});
+        features.put(240_000L, new double[]{4});
+        doAnswer(invocation -> {
+            ActionListener<Map<Long, double[]>> listener = invocation.getArgument(3);
+            listener.onResponse(features);
+            return null;
+        }).when(searchFeatureDao).getFeaturesByPeriodEnd(eq(detector), eq(start), eq(end), any());
+
+        ActionListener<Features> listener = mock(ActionListener.class);
+        featureManager.getPreviewFeatures(detector, start, end, listener);
+
+        // the missing interval is filled with its later neighbor, as for real-time detection
+        Features expected = new Features(asList(new SimpleEntry<>(60_000L, 120_000L), new SimpleEntry<>(180_000L, 240_000L)),
+            new double[][]{{2}, {4}}, new double[][]{{1, 1, 2}, {2, 4, 4}});
+        verify(listener).onResponse(expected);
+        verify(searchFeatureDao, never()).getFeatureSamplesForPeriods(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getPreviewFeatures_fallBackToSamples_givenSparseFullResolution() {
+        featureManager = spy(new FeatureManager(searchFeatureDao, interpolator, clock, maxTrainSamples, maxSampleStride, shingleSize,
+            maxMissingPoints, maxNeighborDistance, maxPreviewSamples, featureBufferTtl, true));
+        long start = 0L;
+        long end = 600_000L;
+        doAnswer(invocation -> {
+            ActionListener<Map<Long, double[]>> listener = invocation.getArgument(3);
+            listener.onResponse(Collections.singletonMap(600_000L, new double[]{1}));
+            return null;
+        }).when(searchFeatureDao).getFeaturesByPeriodEnd(eq(detector), eq(start), eq(end), any());
+
+        ActionListener<Features> listener = mock(ActionListener.class);
+        featureManager.getPreviewFeatures(detector, start, end, listener);
+
+        verify(searchFeatureDao).getFeatureSamplesForPeriods(eq(detector), any(), any());
+        verify(listener, never()).onResponse(any());
+    }
 }
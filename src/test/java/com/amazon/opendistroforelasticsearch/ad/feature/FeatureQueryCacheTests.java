@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import com.amazon.opendistroforelasticsearch.ad.TestHelpers;
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.util.ParseUtils;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+public class FeatureQueryCacheTests extends ESTestCase {
+
+    private FeatureQueryCache featureQueryCache;
+    private AnomalyDetector detector;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        featureQueryCache = new FeatureQueryCache(TestHelpers.xContentRegistry());
+        detector = TestHelpers.randomAnomalyDetector(null, Instant.now());
+    }
+
+    public void testGetFeatureQueryReturnSameQueryAsParsing() throws IOException {
+        SearchSourceBuilder query = featureQueryCache.getFeatureQuery(detector, 1L, 2L);
+
+        assertEquals(ParseUtils.generateInternalFeatureQuery(detector, 1L, 2L, TestHelpers.xContentRegistry()), query);
+    }
+
+    public void testGetFeatureQueryReuseAggregationsForSameVersion() throws IOException {
+        SearchSourceBuilder first = featureQueryCache.getFeatureQuery(detector, 1L, 2L);
+        SearchSourceBuilder second = featureQueryCache.getFeatureQuery(detector, 2L, 3L);
+
+        assertSame(firstAggregation(first), firstAggregation(second));
+        assertNotEquals(first.query(), second.query());
+    }
+
+    public void testGetFeatureQueryParseAggregationsForNewVersion() throws IOException {
+        SearchSourceBuilder first = featureQueryCache.getFeatureQuery(detector, 1L, 2L);
+        AnomalyDetector updated = new AnomalyDetector(detector.getDetectorId(), detector.getVersion() + 1, detector.getName(),
+            detector.getDescription(), detector.getTimeField(), detector.getIndices(), detector.getFeatureAttributes(),
+            detector.getFilterQuery(), detector.getDetectionInterval(), detector.getWindowDelay(), detector.getUiMetadata(),
+            detector.getSchemaVersion(), detector.getLastUpdateTime());
+        SearchSourceBuilder second = featureQueryCache.getFeatureQuery(updated, 1L, 2L);
+
+        assertNotSame(firstAggregation(first), firstAggregation(second));
+        assertEquals(first, second);
+    }
+
+    public void testGetFeatureQueryParseAggregationsAfterClear() throws IOException {
+        SearchSourceBuilder first = featureQueryCache.getFeatureQuery(detector, 1L, 2L);
+        featureQueryCache.clear(detector.getDetectorId());
+        SearchSourceBuilder second = featureQueryCache.getFeatureQuery(detector, 1L, 2L);
+
+        assertNotSame(firstAggregation(first), firstAggregation(second));
+    }
+
+    private AggregationBuilder firstAggregation(SearchSourceBuilder query) {
+        return query.aggregations().getAggregatorFactories().iterator().next();
+    }
+}
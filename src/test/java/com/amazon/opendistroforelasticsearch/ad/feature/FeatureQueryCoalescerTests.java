@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class FeatureQueryCoalescerTests {
+
+    @Mock
+    private Client client;
+
+    @Mock
+    private ThreadPool threadPool;
+
+    @Mock
+    private SearchResponse searchResponse1;
+
+    @Mock
+    private SearchResponse searchResponse2;
+
+    private ADStats adStats;
+    private TimeValue batchWindow;
+    private FeatureQueryCoalescer coalescer;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        adStats = new ADStats();
+        batchWindow = TimeValue.timeValueMillis(100);
+        coalescer = new FeatureQueryCoalescer(client, threadPool, batchWindow, 2, adStats);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_sendMultiSearch_whenBatchIsFull() {
+        SearchRequest request1 = new SearchRequest("index1");
+        SearchRequest request2 = new SearchRequest("index1");
+        ActionListener<SearchResponse> listener1 = mock(ActionListener.class);
+        ActionListener<SearchResponse> listener2 = mock(ActionListener.class);
+        doAnswer(invocation -> {
+            ActionListener<MultiSearchResponse> listener = invocation.getArgument(1);
+            listener.onResponse(new MultiSearchResponse(new MultiSearchResponse.Item[] {
+                new MultiSearchResponse.Item(searchResponse1, null), new MultiSearchResponse.Item(searchResponse2, null) }, 1L));
+            return null;
+        }).when(client).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+
+        coalescer.search("key", request1, listener1);
+        coalescer.search("key", request2, listener2);
+
+        ArgumentCaptor<MultiSearchRequest> captor = ArgumentCaptor.forClass(MultiSearchRequest.class);
+        verify(client).multiSearch(captor.capture(), any(ActionListener.class));
+        assertEquals(2, captor.getValue().requests().size());
+        assertSame(request1, captor.getValue().requests().get(0));
+        assertSame(request2, captor.getValue().requests().get(1));
+        verify(listener1).onResponse(searchResponse1);
+        verify(listener2).onResponse(searchResponse2);
+        assertEquals(2L, adStats.counter(StatNames.AD_FEATURE_QUERY_COUNT).getCount());
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_QUERY_ROUND_TRIP_COUNT).getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_sendScheduledBatch_afterWindow() {
+        SearchRequest request = new SearchRequest("index1");
+        ActionListener<SearchResponse> listener = mock(ActionListener.class);
+
+        coalescer.search("key", request, listener);
+
+        verify(client, never()).search(any(SearchRequest.class), any(ActionListener.class));
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPool).schedule(captor.capture(), eq(batchWindow), anyString());
+        captor.getValue().run();
+        verify(client).search(request, listener);
+        verify(client, never()).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_doNotResend_whenFullBatchWasSent() {
+        doAnswer(invocation -> null).when(client).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+
+        coalescer.search("key", new SearchRequest("index1"), mock(ActionListener.class));
+        coalescer.search("key", new SearchRequest("index1"), mock(ActionListener.class));
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPool).schedule(captor.capture(), eq(batchWindow), anyString());
+        captor.getValue().run();
+        verify(client, times(1)).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+        verify(client, never()).search(any(SearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_batchSeparately_givenDifferentKeys() {
+        coalescer.search("key1", new SearchRequest("index1"), mock(ActionListener.class));
+        coalescer.search("key2", new SearchRequest("index2"), mock(ActionListener.class));
+
+        verify(threadPool, times(2)).schedule(any(Runnable.class), eq(batchWindow), anyString());
+        verify(client, never()).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_returnItemFailure_toItsListener() {
+        Exception failure = new RuntimeException();
+        ActionListener<SearchResponse> listener1 = mock(ActionListener.class);
+        ActionListener<SearchResponse> listener2 = mock(ActionListener.class);
+        doAnswer(invocation -> {
+            ActionListener<MultiSearchResponse> listener = invocation.getArgument(1);
+            listener.onResponse(new MultiSearchResponse(new MultiSearchResponse.Item[] {
+                new MultiSearchResponse.Item(null, failure), new MultiSearchResponse.Item(searchResponse2, null) }, 1L));
+            return null;
+        }).when(client).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+
+        coalescer.search("key", new SearchRequest("index1"), listener1);
+        coalescer.search("key", new SearchRequest("index1"), listener2);
+
+        verify(listener1).onFailure(failure);
+        verify(listener2).onResponse(searchResponse2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_returnFailure_toAllListeners() {
+        Exception failure = new RuntimeException();
+        ActionListener<SearchResponse> listener1 = mock(ActionListener.class);
+        ActionListener<SearchResponse> listener2 = mock(ActionListener.class);
+        doAnswer(invocation -> {
+            ActionListener<MultiSearchResponse> listener = invocation.getArgument(1);
+            listener.onFailure(failure);
+            return null;
+        }).when(client).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+
+        coalescer.search("key", new SearchRequest("index1"), listener1);
+        coalescer.search("key", new SearchRequest("index1"), listener2);
+
+        verify(listener1).onFailure(failure);
+        verify(listener2).onFailure(failure);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void search_sendDirectly_whenWindowIsZero() {
+        coalescer = new FeatureQueryCoalescer(client, threadPool, TimeValue.ZERO, 2, adStats);
+        SearchRequest request = new SearchRequest("index1");
+        ActionListener<SearchResponse> listener = mock(ActionListener.class);
+
+        coalescer.search("key", request, listener);
+
+        verify(client).search(request, listener);
+        verify(threadPool, never()).schedule(any(Runnable.class), any(TimeValue.class), anyString());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.time.Clock;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.when;
+
+public class HistoricalFeatureCacheTests {
+
+    private static final long INTERVAL = 60_000L;
+
+    @Mock
+    private AnomalyDetector detector;
+
+    @Mock
+    private Clock clock;
+
+    private ADStats adStats;
+    private HistoricalFeatureCache cache;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        when(detector.getDetectorId()).thenReturn("id");
+        when(detector.getVersion()).thenReturn(1L);
+        when(detector.getDetectionInterval()).thenReturn(new IntervalTimeConfiguration(1, ChronoUnit.MINUTES));
+        when(detector.getWindowDelay()).thenReturn(new IntervalTimeConfiguration(1, ChronoUnit.MINUTES));
+        when(clock.millis()).thenReturn(10 * INTERVAL);
+        adStats = new ADStats();
+        cache = new HistoricalFeatureCache(3 * HistoricalFeatureCache.getBytes(new double[0]), clock, adStats);
+    }
+
+    @Test
+    public void get_returnCachedIntervals_givenClosedIntervals() {
+        Map<Long, double[]> searchResults = new HashMap<>();
+        searchResults.put(2 * INTERVAL, new double[] {2});
+        cache.put(detector, 0, 2 * INTERVAL, searchResults);
+
+        Map<Long, Optional<double[]>> cached = cache.get(detector, 0, 3 * INTERVAL);
+
+        assertEquals(2, cached.size());
+        assertArrayEquals(new double[] {2}, cached.get(2 * INTERVAL).get(), 0);
+        assertFalse(cached.get(INTERVAL).isPresent());
+        assertEquals(0L, adStats.counter(StatNames.AD_FEATURE_CACHE_HIT_COUNT).getCount());
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_CACHE_MISS_COUNT).getCount());
+    }
+
+    @Test
+    public void get_countOneHit_givenEveryIntervalCached() {
+        cache.put(detector, 0, 2 * INTERVAL, new HashMap<>());
+
+        assertEquals(2, cache.get(detector, 0, 2 * INTERVAL).size());
+
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_CACHE_HIT_COUNT).getCount());
+        assertEquals(0L, adStats.counter(StatNames.AD_FEATURE_CACHE_MISS_COUNT).getCount());
+    }
+
+    @Test
+    public void put_skipIntervals_endingWithinWindowDelay() {
+        cache.put(detector, 8 * INTERVAL, 10 * INTERVAL, new HashMap<>());
+
+        Map<Long, Optional<double[]>> cached = cache.get(detector, 8 * INTERVAL, 10 * INTERVAL);
+
+        assertEquals(1, cached.size());
+        assertTrue(cached.containsKey(9 * INTERVAL));
+    }
+
+    @Test
+    public void put_evictLeastRecentlyUsed_givenMaxBytes() {
+        cache.put(detector, 0, 3 * INTERVAL, new HashMap<>());
+        cache.get(detector, 0, INTERVAL);
+
+        cache.put(detector, 3 * INTERVAL, 4 * INTERVAL, new HashMap<>());
+
+        assertEquals(3, cache.getCount());
+        assertTrue(cache.get(detector, 0, INTERVAL).containsKey(INTERVAL));
+        assertFalse(cache.get(detector, INTERVAL, 2 * INTERVAL).containsKey(2 * INTERVAL));
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_CACHE_EVICTION_COUNT).getCount());
+    }
+
+    @Test
+    public void get_returnEmpty_givenDetectorWithoutVersion() {
+        cache.put(detector, 0, INTERVAL, new HashMap<>());
+        when(detector.getVersion()).thenReturn(null);
+
+        cache.put(detector, INTERVAL, 2 * INTERVAL, new HashMap<>());
+
+        assertTrue(cache.get(detector, 0, 2 * INTERVAL).isEmpty());
+        assertEquals(1, cache.getCount());
+    }
+}
@@ -15,10 +15,13 @@
 
 package com.amazon.opendistroforelasticsearch.ad.feature;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -32,6 +35,8 @@ import com.amazon.opendistroforelasticsearch.ad.dataprocessor.LinearUniformInter
 import com.amazon.opendistroforelasticsearch.ad.dataprocessor.SingleFeatureLinearUniformInterpolator;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
 import com.amazon.opendistroforelasticsearch.ad.util.ClientUtil;
 import com.amazon.opendistroforelasticsearch.ad.util.ParseUtils;
 import junitparams.JUnitParamsRunner;
@@ -59,6 +64,7 @@ import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.metrics.InternalTDigestPercentiles;
 import org.elasticsearch.search.aggregations.metrics.Max;
 import org.elasticsearch.search.aggregations.metrics.Percentile;
@@ -68,6 +74,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -82,14 +89,20 @@ import static java.util.Arrays.asList;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 @PowerMockIgnore("javax.management.*")
@@ -300,6 +313,140 @@ public class SearchFeatureDaoTests {
         assertTrue(Arrays.equals(expected, result.orElse(null)));
     }
 
+    @Test
+    @Parameters(method = "getFeaturesForPeriodData")
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_returnExpectedToListener(
+        List<Aggregation> aggs, List<String> featureIds, double[] expected) throws Exception {
+
+        long start = 100L;
+        long end = 200L;
+
+        // pre-conditions
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(start), eq(end), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+        when(searchResponse.getAggregations()).thenReturn(new Aggregations(aggs));
+        when(detector.getEnabledFeatureIds()).thenReturn(featureIds);
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(1);
+            listener.onResponse(searchResponse);
+            return null;
+        }).when(client).search(eq(searchRequest), any(ActionListener.class));
+
+        // test
+        ActionListener<Optional<double[]>> listener = mock(ActionListener.class);
+        searchFeatureDao.getFeaturesForPeriod(detector, start, end, listener);
+
+        // verify
+        ArgumentCaptor<Optional<double[]>> captor = ArgumentCaptor.forClass(Optional.class);
+        verify(listener).onResponse(captor.capture());
+        assertTrue(Arrays.equals(expected, captor.getValue().orElse(null)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_searchAlignedCacheableRange_givenRequestCachePolicy() throws Exception {
+        searchFeatureDao = new SearchFeatureDao(client, scriptService, xContent,
+            new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator()), clientUtil, null, null,
+            new ShardRequestCachePolicy(10, new ADStats()), null);
+        when(detector.getDetectorId()).thenReturn("id");
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(60_000L), eq(120_000L), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+
+        searchFeatureDao.getFeaturesForPeriod(detector, 90_000L, 150_000L, mock(ActionListener.class));
+
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(client).search(captor.capture(), any(ActionListener.class));
+        assertSame(searchSourceBuilder, captor.getValue().source());
+        assertTrue(captor.getValue().requestCache());
+        assertEquals("id", captor.getValue().preference());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_returnCachedFeatures_givenCachedPeriod() {
+        double[] expected = new double[] {1.0};
+        HistoricalFeatureCache featureCache = mock(HistoricalFeatureCache.class);
+        when(featureCache.get(detector, 60_000L, 120_000L)).thenReturn(Collections.singletonMap(120_000L, Optional.of(expected)));
+        searchFeatureDao = new SearchFeatureDao(client, scriptService, xContent,
+            new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator()), clientUtil, null, null, null, featureCache);
+
+        ActionListener<Optional<double[]>> listener = mock(ActionListener.class);
+        searchFeatureDao.getFeaturesForPeriod(detector, 60_000L, 120_000L, listener);
+
+        ArgumentCaptor<Optional<double[]>> captor = ArgumentCaptor.forClass(Optional.class);
+        verify(listener).onResponse(captor.capture());
+        assertTrue(Arrays.equals(expected, captor.getValue().orElse(null)));
+        verify(client, never()).search(any(SearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_notCacheFeatures_givenFailedShards() throws Exception {
+        HistoricalFeatureCache featureCache = mock(HistoricalFeatureCache.class);
+        searchFeatureDao = new SearchFeatureDao(client, scriptService, xContent,
+            new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator()), clientUtil, null, null, null, featureCache);
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(60_000L), eq(120_000L), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+        when(searchResponse.getFailedShards()).thenReturn(1);
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(1);
+            listener.onResponse(searchResponse);
+            return null;
+        }).when(client).search(any(SearchRequest.class), any(ActionListener.class));
+
+        ActionListener<Optional<double[]>> listener = mock(ActionListener.class);
+        searchFeatureDao.getFeaturesForPeriod(detector, 60_000L, 120_000L, listener);
+
+        verify(listener).onResponse(anyObject());
+        verify(featureCache, never()).put(any(AnomalyDetector.class), anyLong(), anyLong(), any(Map.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_searchThroughCoalescer_givenCoalescer() throws Exception {
+        long start = 100L;
+        long end = 200L;
+
+        // pre-conditions
+        FeatureQueryCoalescer coalescer = mock(FeatureQueryCoalescer.class);
+        Interpolator interpolator = new LinearUniformInterpolator(new SingleFeatureLinearUniformInterpolator());
+        searchFeatureDao = new SearchFeatureDao(client, scriptService, xContent, interpolator, clientUtil, coalescer);
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(start), eq(end), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+
+        // test
+        searchFeatureDao.getFeaturesForPeriod(detector, start, end, mock(ActionListener.class));
+
+        // verify
+        verify(coalescer).search(eq("testIndices|100|200"), eq(searchRequest), any(ActionListener.class));
+        verify(client, never()).search(any(SearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesForPeriod_returnExceptionToListener() throws Exception {
+        long start = 100L;
+        long end = 200L;
+
+        // pre-conditions
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(start), eq(end), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+        RuntimeException exception = new RuntimeException();
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(1);
+            listener.onFailure(exception);
+            return null;
+        }).when(client).search(eq(searchRequest), any(ActionListener.class));
+
+        // test
+        ActionListener<Optional<double[]>> listener = mock(ActionListener.class);
+        searchFeatureDao.getFeaturesForPeriod(detector, start, end, listener);
+
+        // verify
+        verify(listener).onFailure(exception);
+    }
+
     @SuppressWarnings("unchecked")
     private Object[] getFeaturesForPeriodThrowIllegalStateData() {
         String aggName = "aggName";
@@ -528,11 +675,12 @@ public class SearchFeatureDaoTests {
     public void getFeaturesForSampledPeriods_returnExpected(Long[][] queryRanges, double[][] queryResults, long endTime,
         int maxStride, int maxSamples, Optional<Entry<double[][], Integer>> expected) {
 
-        doReturn(Optional.empty()).when(searchFeatureDao).getFeaturesForPeriod(eq(detector), anyLong(), anyLong());
+        Map<Long, double[]> periodFeatures = new HashMap<>();
         for (int i = 0; i < queryRanges.length; i++) {
-            doReturn(Optional.of(queryResults[i])).when(searchFeatureDao)
-                .getFeaturesForPeriod(detector, queryRanges[i][0], queryRanges[i][1]);
+            periodFeatures.put(queryRanges[i][1], queryResults[i]);
         }
+        long startTime = endTime - 60_000L * (maxStride * (maxSamples - 1) + 1);
+        doReturn(periodFeatures).when(searchFeatureDao).getFeaturesByPeriodEnd(detector, startTime, endTime);
 
         Optional<Entry<double[][], Integer>> result = searchFeatureDao.getFeaturesForSampledPeriods(
             detector, maxSamples, maxStride, endTime);
@@ -542,6 +690,82 @@ public class SearchFeatureDaoTests {
             assertTrue(Arrays.deepEquals(expected.get().getKey(), result.get().getKey()));
             assertEquals(expected.get().getValue(), result.get().getValue());
         }
+        verify(searchFeatureDao, times(1)).getFeaturesByPeriodEnd(detector, startTime, endTime);
+        verify(searchFeatureDao, never()).getFeaturesForPeriod(eq(detector), anyLong(), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesByPeriodEnd_returnExpected_fromHistogramPages() throws Exception {
+        long span = 60_000L;
+        long endTime = 300_000L;
+        long startTime = endTime - span * (AnomalyDetectorSettings.FEATURE_SAMPLE_MAX_BUCKETS_PER_SEARCH + 1);
+
+        Max value = mock(Max.class);
+        when(value.getName()).thenReturn("max");
+        when(value.value()).thenReturn(2.0);
+        Max missing = mock(Max.class);
+        when(missing.getName()).thenReturn("max");
+        when(missing.value()).thenReturn(Double.NaN);
+        Histogram.Bucket bucket = mock(Histogram.Bucket.class);
+        when(bucket.getKey()).thenReturn(Instant.ofEpochMilli(180_000L).atZone(ZoneOffset.UTC));
+        when(bucket.getAggregations()).thenReturn(new Aggregations(asList(value)));
+        Histogram.Bucket emptyBucket = mock(Histogram.Bucket.class);
+        when(emptyBucket.getKey()).thenReturn(Instant.ofEpochMilli(240_000L).atZone(ZoneOffset.UTC));
+        when(emptyBucket.getAggregations()).thenReturn(new Aggregations(asList(missing)));
+        Histogram histogram = mock(Histogram.class);
+        when(histogram.getName()).thenReturn(SearchFeatureDao.AGG_NAME_PERIODS);
+        doReturn(asList(bucket, emptyBucket)).when(histogram).getBuckets();
+
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), anyLong(), anyLong(), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+        when(detector.getEnabledFeatureIds()).thenReturn(asList("max"));
+        when(searchResponse.getAggregations()).thenReturn(new Aggregations(asList(histogram)));
+        when(multiSearchResponse.getResponses()).thenReturn(new Item[]{multiSearchResponseItem, multiSearchResponseItem});
+        ArgumentCaptor<MultiSearchRequest> requestCaptor = ArgumentCaptor.forClass(MultiSearchRequest.class);
+        doReturn(Optional.of(multiSearchResponse)).when(clientUtil).timedRequest(requestCaptor.capture(), anyObject(),
+            Matchers.<BiConsumer<MultiSearchRequest, ActionListener<MultiSearchResponse>>>anyObject());
+
+        Map<Long, double[]> result = searchFeatureDao.getFeaturesByPeriodEnd(detector, startTime, endTime);
+
+        assertEquals(1, result.size());
+        assertTrue(Arrays.equals(new double[]{2.0}, result.get(240_000L)));
+        assertEquals(2, requestCaptor.getValue().requests().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getFeaturesByPeriodEnd_returnExpectedToListener() throws Exception {
+        long startTime = 0L;
+        long endTime = 300_000L;
+
+        Max value = mock(Max.class);
+        when(value.getName()).thenReturn("max");
+        when(value.value()).thenReturn(2.0);
+        Histogram.Bucket bucket = mock(Histogram.Bucket.class);
+        when(bucket.getKey()).thenReturn(Instant.ofEpochMilli(180_000L).atZone(ZoneOffset.UTC));
+        when(bucket.getAggregations()).thenReturn(new Aggregations(asList(value)));
+        Histogram histogram = mock(Histogram.class);
+        when(histogram.getName()).thenReturn(SearchFeatureDao.AGG_NAME_PERIODS);
+        doReturn(asList(bucket)).when(histogram).getBuckets();
+
+        when(ParseUtils.generateInternalFeatureQuery(eq(detector), eq(startTime), eq(endTime), eq(xContent)))
+            .thenReturn(searchSourceBuilder);
+        when(detector.getEnabledFeatureIds()).thenReturn(asList("max"));
+        when(searchResponse.getAggregations()).thenReturn(new Aggregations(asList(histogram)));
+        doAnswer(invocation -> {
+            ActionListener<MultiSearchResponse> listener = invocation.getArgument(1);
+            listener.onResponse(multiSearchResponse);
+            return null;
+        }).when(client).multiSearch(any(MultiSearchRequest.class), any(ActionListener.class));
+
+        ActionListener<Map<Long, double[]>> listener = mock(ActionListener.class);
+        searchFeatureDao.getFeaturesByPeriodEnd(detector, startTime, endTime, listener);
+
+        ArgumentCaptor<Map<Long, double[]>> resultCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(listener).onResponse(resultCaptor.capture());
+        assertEquals(1, resultCaptor.getValue().size());
+        assertTrue(Arrays.equals(new double[]{2.0}, resultCaptor.getValue().get(240_000L)));
     }
 
     private <K, V> Entry<K, V> pair(K key, V value) {
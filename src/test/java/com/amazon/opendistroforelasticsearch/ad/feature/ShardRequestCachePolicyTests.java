@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import java.time.temporal.ChronoUnit;
+
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.model.IntervalTimeConfiguration;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.when;
+
+public class ShardRequestCachePolicyTests {
+
+    @Mock
+    private AnomalyDetector detector;
+
+    private ADStats adStats;
+    private ShardRequestCachePolicy policy;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        when(detector.getDetectorId()).thenReturn("id");
+        when(detector.getDetectionInterval()).thenReturn(new IntervalTimeConfiguration(1, ChronoUnit.MINUTES));
+        adStats = new ADStats();
+        policy = new ShardRequestCachePolicy(2, adStats);
+    }
+
+    @Test
+    public void alignToInterval_returnLatestBoundary() {
+        assertEquals(120_000L, policy.alignToInterval(detector, 179_999L));
+        assertEquals(180_000L, policy.alignToInterval(detector, 180_000L));
+        assertEquals(-60_000L, policy.alignToInterval(detector, -1L));
+    }
+
+    @Test
+    public void apply_setRequestCacheAndDetectorPreference() {
+        SearchRequest request = policy.apply(detector, searchRequest(0L));
+
+        assertTrue(request.requestCache());
+        assertEquals("id", request.preference());
+        assertEquals(0, request.source().size());
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_QUERY_CACHEABLE_COUNT).getCount());
+    }
+
+    @Test
+    public void apply_keepExistingPreference() {
+        SearchRequest request = policy.apply(detector, searchRequest(0L).preference("_shards:0"));
+
+        assertEquals("_shards:0", request.preference());
+    }
+
+    @Test
+    public void apply_countRepeatedRequests() {
+        policy.apply(detector, searchRequest(0L));
+        policy.apply(detector, searchRequest(0L));
+        policy.apply(detector, searchRequest(60_000L));
+
+        assertEquals(3L, adStats.counter(StatNames.AD_FEATURE_QUERY_CACHEABLE_COUNT).getCount());
+        assertEquals(1L, adStats.counter(StatNames.AD_FEATURE_QUERY_CACHE_REPEAT_COUNT).getCount());
+    }
+
+    @Test
+    public void apply_forgetOldestRequests_whenFull() {
+        policy.apply(detector, searchRequest(0L));
+        policy.apply(detector, searchRequest(60_000L));
+        policy.apply(detector, searchRequest(120_000L));
+        policy.apply(detector, searchRequest(0L));
+
+        assertEquals(0L, adStats.counter(StatNames.AD_FEATURE_QUERY_CACHE_REPEAT_COUNT).getCount());
+    }
+
+    private SearchRequest searchRequest(long startTime) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(QueryBuilders.rangeQuery("timestamp").from(startTime).to(startTime + 60_000L));
+        return new SearchRequest(new String[] {"index"}, source);
+    }
+}
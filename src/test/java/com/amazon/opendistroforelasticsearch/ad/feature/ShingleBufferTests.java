@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.feature;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class ShingleBufferTests {
+
+    private static final long INTERVAL = 10;
+
+    @Test
+    public void add_keepLatestPoints_whenFull() {
+        ShingleBuffer buffer = new ShingleBuffer(2);
+        assertTrue(buffer.isEmpty());
+
+        buffer.add(10, new double[] {1});
+        buffer.add(20, new double[] {2});
+        buffer.add(30, new double[] {3});
+
+        assertEquals(2, buffer.size());
+        assertEquals(30, buffer.getLastTime());
+        assertArrayEquals(new double[] {3}, buffer.getLastPoint(), 0);
+        double[] shingle = new double[2];
+        assertTrue(buffer.fillShingle(30, INTERVAL, 1, shingle));
+        assertArrayEquals(new double[] {2, 3}, shingle, 0);
+    }
+
+    @Test
+    public void add_dropPoints_givenDifferentDimension() {
+        ShingleBuffer buffer = new ShingleBuffer(2);
+        buffer.add(10, new double[] {1});
+
+        buffer.add(20, new double[] {2, 3});
+
+        assertEquals(1, buffer.size());
+        assertEquals(2, buffer.getDimension());
+        assertArrayEquals(new double[] {2, 3}, buffer.getLastPoint(), 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getLastTime_throwIllegalState_whenEmpty() {
+        new ShingleBuffer(2).getLastTime();
+    }
+
+    private Object[] fillShingleData() {
+        return new Object[] {
+            // all points present
+            new Object[] {new long[] {10, 20, 30}, 30L, 1, new double[] {1, 2, 3}},
+            // missing point filled by the later neighbor on a tie
+            new Object[] {new long[] {10, 30}, 30L, 2, new double[] {1, 2, 2}},
+            // missing first point filled by the later neighbor
+            new Object[] {new long[] {20, 30}, 30L, 2, new double[] {1, 1, 2}},
+            // nearest neighbor is used for points off the interval
+            new Object[] {new long[] {8, 21, 33}, 30L, 1, new double[] {1, 2, 3}},
+            // missing point too far from neighbors
+            new Object[] {new long[] {10, 30}, 30L, 1, null},
+            // latest point is too old
+            new Object[] {new long[] {10, 20, 30}, 50L, 2, null},
+        };
+    }
+
+    @Test
+    @Parameters(method = "fillShingleData")
+    public void fillShingle_returnExpected(long[] times, long endTime, int maxNeighborDistance, double[] expected) {
+        ShingleBuffer buffer = new ShingleBuffer(3);
+        for (int i = 0; i < times.length; i++) {
+            buffer.add(times[i], new double[] {i + 1});
+        }
+
+        double[] shingle = new double[3];
+        boolean filled = buffer.fillShingle(endTime, INTERVAL, maxNeighborDistance, shingle);
+
+        if (expected == null) {
+            assertFalse(filled);
+        } else {
+            assertTrue(filled);
+            assertArrayEquals(expected, shingle, 0);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Random;
+
+import com.google.gson.Gson;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.amazon.randomcutforest.RandomCutForest;
+import com.amazon.randomcutforest.serialize.RandomCutForestSerDe;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class BinaryCheckpointSerDeTests {
+
+    private Gson gson;
+    private RandomCutForestSerDe rcfSerde;
+
+    private RandomCutForest rcf;
+    private HybridThresholdingModel hybridModel;
+
+    @Before
+    public void setup() {
+        gson = new Gson();
+        rcfSerde = new RandomCutForestSerDe();
+
+        rcf = RandomCutForest.builder().dimensions(4).sampleSize(32).numberOfTrees(10).lambda(1e-4)
+            .outputAfter(32).parallelExecutionEnabled(false).build();
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            // mix float-representable and full precision points
+            double[] point = i % 2 == 0 ? new double[] {1, 2, 3, 4} : random.doubles(4).toArray();
+            rcf.update(point);
+        }
+
+        hybridModel = new HybridThresholdingModel(
+            /*minPvalueThreshold*/ 0.95, /*maxRankError*/ 1e-4, /*maxScore*/ 4, /*numLogNormalQuantiles*/ 10000,
+            /*downsampleNumSamples*/ 100_000, /*downsampleMaxNumObservations*/ 200_000L);
+        hybridModel.train(random.doubles(10_000L, 0.1, 3.9).toArray());
+    }
+
+    private Object[] compressionData() {
+        return new Object[] {
+            new Object[] {true},
+            new Object[] {false}
+        };
+    }
+
+    @Test
+    @Parameters(method = "compressionData")
+    public void rcf_serialize_deserialize_returnOriginalModel(boolean compressionEnabled) {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, compressionEnabled);
+
+        String checkpoint = serde.toCheckpoint(rcf);
+        RandomCutForest deserialized = serde.toRcf(checkpoint);
+
+        assertEquals(rcfSerde.toJson(rcf), rcfSerde.toJson(deserialized));
+        assertTrue(checkpoint.length() < rcfSerde.toJson(rcf).length());
+    }
+
+    @Test
+    @Parameters(method = "compressionData")
+    public void rcf_toBytes_toRcf_returnOriginalModel(boolean compressionEnabled) {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, compressionEnabled);
+
+        byte[] bytes = serde.toBytes(rcf);
+        RandomCutForest deserialized = serde.toRcf(bytes);
+
+        assertEquals(rcfSerde.toJson(rcf), rcfSerde.toJson(deserialized));
+        assertTrue(bytes.length < new BinaryCheckpointSerDe(gson, true).toCheckpoint(rcf).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toRcf_throwIllegalArgument_forInvalidBytes() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+
+        serde.toRcf(rcfSerde.toJson(rcf).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void threshold_toBytes_toThreshold_returnOriginalModel() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, false);
+
+        HybridThresholdingModel deserialized = serde.toThreshold(serde.toBytes(hybridModel), HybridThresholdingModel.class);
+
+        assertEquals(gson.toJson(hybridModel), gson.toJson(deserialized));
+    }
+
+    @Test
+    @Parameters(method = "compressionData")
+    public void threshold_serialize_deserialize_returnOriginalModel(boolean compressionEnabled) {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, compressionEnabled);
+
+        HybridThresholdingModel deserialized = serde.toThreshold(serde.toCheckpoint(hybridModel), HybridThresholdingModel.class);
+
+        double delta = 1e-6;
+        for (double score : new Random().doubles(1000L, 0.1, 3.9).toArray()) {
+            assertEquals(hybridModel.grade(score), deserialized.grade(score), delta);
+            assertEquals(hybridModel.confidence(), deserialized.confidence(), delta);
+            hybridModel.update(score);
+            deserialized.update(score);
+        }
+    }
+
+    @Test
+    public void isBinary_returnExpected() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+
+        assertTrue(serde.isBinary(serde.toCheckpoint(rcf)));
+        assertTrue(serde.isBinary(serde.toCheckpoint(hybridModel)));
+        assertFalse(serde.isBinary(rcfSerde.toJson(rcf)));
+        assertFalse(serde.isBinary(gson.toJson(hybridModel)));
+        assertFalse(serde.isBinary(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toRcf_throwIllegalArgument_forThresholdCheckpoint() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+
+        serde.toRcf(serde.toCheckpoint(hybridModel));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toRcf_throwIllegalArgument_forJsonCheckpoint() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+
+        serde.toRcf(rcfSerde.toJson(rcf));
+    }
+
+    @Test
+    @Parameters(method = "compressionData")
+    public void toRcf_applyDeltaCheckpoint_returnLatestSamples(boolean compressionEnabled) {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, compressionEnabled);
+        String checkpoint = serde.toCheckpoint(rcf);
+        ForestSamples base = serde.getSamples(checkpoint);
+        Random random = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            rcf.update(random.doubles(4).toArray());
+        }
+
+        Optional<String> delta = serde.toDeltaCheckpoint(rcf, base, 0.5);
+        RandomCutForest deserialized = serde.toRcf(checkpoint, delta.get());
+
+        assertTrue(delta.get().length() < serde.toCheckpoint(rcf).length());
+        ForestSamples expected = serde.getSamples(serde.toCheckpoint(rcf));
+        ForestSamples actual = serde.getSamples(serde.toCheckpoint(deserialized));
+        assertEquals(expected.getTotalUpdates(), actual.getTotalUpdates());
+        for (int i = 0; i < expected.getNumberOfTrees(); i++) {
+            assertArrayEquals(expected.getSequenceIndexes(i), actual.getSequenceIndexes(i));
+        }
+    }
+
+    @Test
+    public void toCheckpointWithSamples_returnSamplesOfCheckpoint() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+
+        Entry<String, ForestSamples> checkpoint = serde.toCheckpointWithSamples(rcf);
+
+        ForestSamples expected = serde.getSamples(checkpoint.getKey());
+        assertEquals(serde.toCheckpoint(rcf), checkpoint.getKey());
+        assertEquals(expected.getTotalUpdates(), checkpoint.getValue().getTotalUpdates());
+        for (int i = 0; i < expected.getNumberOfTrees(); i++) {
+            assertArrayEquals(expected.getSequenceIndexes(i), checkpoint.getValue().getSequenceIndexes(i));
+        }
+    }
+
+    @Test
+    public void toRcf_ignoreDeltaCheckpoint_ofOtherBase() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+        ForestSamples base = serde.getSamples(serde.toCheckpoint(rcf));
+        rcf.update(new double[] {1, 2, 3, 4});
+        String delta = serde.toDeltaCheckpoint(rcf, base, 0.5).get();
+        rcf.update(new double[] {1, 2, 3, 4});
+        String checkpoint = serde.toCheckpoint(rcf);
+
+        RandomCutForest deserialized = serde.toRcf(checkpoint, delta);
+
+        assertEquals(rcfSerde.toJson(serde.toRcf(checkpoint)), rcfSerde.toJson(deserialized));
+    }
+
+    @Test
+    public void toDeltaCheckpoint_returnEmpty_whenTooManySamplesChanged() {
+        BinaryCheckpointSerDe serde = new BinaryCheckpointSerDe(gson, true);
+        ForestSamples base = serde.getSamples(serde.toCheckpoint(rcf));
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            rcf.update(random.doubles(4).toArray());
+        }
+
+        assertFalse(serde.toDeltaCheckpoint(rcf, base, 0.5).isPresent());
+    }
+}
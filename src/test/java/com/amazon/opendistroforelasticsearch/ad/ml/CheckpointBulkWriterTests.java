@@ -0,0 +1,281 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.mockito.ArgumentCaptor;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.constant.CommonName;
+import com.amazon.opendistroforelasticsearch.ad.ml.CheckpointBulkWriter.BulkCheckpoint;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+public class CheckpointBulkWriterTests extends AbstractADTest {
+
+    private Client client;
+    private ADStats adStats;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        setUpThreadPool(CheckpointBulkWriterTests.class.getSimpleName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        tearDownThreadPool();
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        super.setUpLog4jForJUnit(CheckpointBulkWriter.class);
+        client = mock(Client.class);
+        adStats = new ADStats();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        client = null;
+        super.tearDownLog4jForJUnit();
+        super.tearDown();
+    }
+
+    private CheckpointBulkWriter createWriter(int bulkSize, TimeValue flushWindow) {
+        return createWriter(Settings.EMPTY, bulkSize, flushWindow);
+    }
+
+    private CheckpointBulkWriter createWriter(Settings settings, int bulkSize, TimeValue flushWindow) {
+        return new CheckpointBulkWriter(client, threadPool, settings, adStats, bulkSize, Long.MAX_VALUE, flushWindow);
+    }
+
+    private BulkCheckpoint checkpoint(String modelId) {
+        return checkpoint(modelId, () -> {});
+    }
+
+    private BulkCheckpoint checkpoint(String modelId, Runnable onSaved) {
+        return bulkRequest -> {
+            bulkRequest.add(new IndexRequest(CommonName.CHECKPOINT_INDEX_NAME, "_doc", modelId)
+                .source("model", randomAlphaOfLength(5)));
+            return onSaved;
+        };
+    }
+
+    private BulkItemResponse successItem(int id, String modelId) {
+        ShardId shardId = new ShardId(new Index(CommonName.CHECKPOINT_INDEX_NAME, randomAlphaOfLength(10)), 0);
+        return new BulkItemResponse(id, DocWriteRequest.OpType.INDEX,
+                new IndexResponse(shardId, "_doc", modelId, 1, 1, 1, true));
+    }
+
+    private BulkItemResponse failedItem(int id, String modelId) {
+        return failedItem(id, modelId, new IllegalArgumentException());
+    }
+
+    private BulkItemResponse failedItem(int id, String modelId, Exception cause) {
+        return new BulkItemResponse(id, DocWriteRequest.OpType.INDEX,
+                new BulkItemResponse.Failure(CommonName.CHECKPOINT_INDEX_NAME, "_doc", modelId, cause));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respond(BulkItemResponse... items) {
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            listener.onResponse(new BulkResponse(items, 1));
+            return null;
+        }).when(client).bulk(any(), any());
+    }
+
+    public void testFlushInBulks() throws Exception {
+        respond(successItem(0, "model0"), successItem(1, "model1"));
+        CheckpointBulkWriter writer = createWriter(2, TimeValue.timeValueMillis(2));
+        Map<String, BulkCheckpoint> checkpoints = new HashMap<>();
+        checkpoints.put("model0", checkpoint("model0"));
+        checkpoints.put("model1", checkpoint("model1"));
+        checkpoints.put("model2", checkpoint("model2"));
+
+        writer.write(checkpoints);
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        assertBusy(() -> verify(client, times(2)).bulk(captor.capture(), any()));
+        assertEquals(2, captor.getAllValues().get(0).numberOfActions());
+        assertEquals(1, captor.getAllValues().get(1).numberOfActions());
+        assertEquals(0L, writer.getQueueSize());
+        assertEquals(2L, adStats.counter(StatNames.AD_CHECKPOINT_BULK_COUNT).getCount());
+        assertEquals(2L, adStats.latency(StatNames.AD_CHECKPOINT_BULK_LATENCY).getCount());
+        assertTrue(adStats.counter(StatNames.AD_CHECKPOINT_BULK_BYTES).getCount() > 0);
+    }
+
+    public void testKeepLatestCheckpoint_whenModelIsQueuedAgain() {
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueHours(1));
+
+        writer.write(Collections.singletonMap("model0", checkpoint("model0")));
+        writer.write(Collections.singletonMap("model0", checkpoint("model0")));
+
+        assertEquals(1L, writer.getQueueSize());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_CHECKPOINT_QUEUE_SIZE));
+        verify(client, never()).bulk(any(), any());
+    }
+
+    public void testSkipCheckpoint_failingToSerialize() throws Exception {
+        respond(successItem(0, "model0"));
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueMillis(1));
+        Map<String, BulkCheckpoint> checkpoints = new HashMap<>();
+        checkpoints.put("model0", checkpoint("model0"));
+        checkpoints.put("model1", bulkRequest -> {
+            throw new IllegalStateException();
+        });
+
+        writer.write(checkpoints);
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        assertBusy(() -> verify(client, times(1)).bulk(captor.capture(), any()));
+        assertEquals(1, captor.getValue().numberOfActions());
+        assertEquals(1L, adStats.counter(StatNames.AD_CHECKPOINT_FAILURE_COUNT).getCount());
+        assertTrue(testAppender.containsMessage(CheckpointBulkWriter.FAIL_TO_SAVE_ERR_MSG + "model1"));
+    }
+
+    public void testCountFailedItems() throws Exception {
+        respond(failedItem(0, "model0"));
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueMillis(1));
+
+        writer.write(Collections.singletonMap("model0", checkpoint("model0")));
+
+        assertBusy(() -> assertEquals(1L, adStats.counter(StatNames.AD_CHECKPOINT_FAILURE_COUNT).getCount()));
+        assertTrue(testAppender.containsMessage(CheckpointBulkWriter.FAIL_TO_SAVE_ERR_MSG + "model0"));
+        assertEquals(0L, adStats.counter(StatNames.AD_CHECKPOINT_RETRY_COUNT).getCount());
+    }
+
+    public void testAcknowledgeSavedCheckpointsOnly() throws Exception {
+        respond(successItem(0, "model0"), failedItem(1, "model1"));
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueMillis(1));
+        AtomicBoolean isModel0Saved = new AtomicBoolean();
+        AtomicBoolean isModel1Saved = new AtomicBoolean();
+        Map<String, BulkCheckpoint> checkpoints = new LinkedHashMap<>();
+        checkpoints.put("model0", checkpoint("model0", () -> isModel0Saved.set(true)));
+        checkpoints.put("model1", checkpoint("model1", () -> isModel1Saved.set(true)));
+
+        writer.write(checkpoints);
+
+        assertBusy(() -> assertTrue(isModel0Saved.get()));
+        assertFalse(isModel1Saved.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRetryRejectedCheckpoint() throws Exception {
+        AtomicInteger numBulks = new AtomicInteger();
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            BulkItemResponse item = numBulks.getAndIncrement() == 0
+                ? failedItem(0, "model0", new EsRejectedExecutionException(""))
+                : successItem(0, "model0");
+            listener.onResponse(new BulkResponse(new BulkItemResponse[] { item }, 1));
+            return null;
+        }).when(client).bulk(any(), any());
+        Settings backoffSettings = Settings.builder().put("ml.anomaly_detectors.backoff_initial_delay", TimeValue.timeValueMillis(1))
+                .build();
+        CheckpointBulkWriter writer = createWriter(backoffSettings, 10, TimeValue.timeValueMillis(1));
+        AtomicBoolean isSaved = new AtomicBoolean();
+
+        writer.write(Collections.singletonMap("model0", checkpoint("model0", () -> isSaved.set(true))));
+
+        assertBusy(() -> assertTrue(isSaved.get()));
+        assertEquals(2, numBulks.get());
+        assertEquals(1L, adStats.counter(StatNames.AD_CHECKPOINT_RETRY_COUNT).getCount());
+        assertEquals(0L, adStats.counter(StatNames.AD_CHECKPOINT_FAILURE_COUNT).getCount());
+        assertTrue(testAppender.containsMessage(CheckpointBulkWriter.RETRY_SAVING_ERR_MSG + "model0"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRetryWholeBulk_whenRejected() throws Exception {
+        AtomicInteger numBulks = new AtomicInteger();
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            if (numBulks.getAndIncrement() == 0) {
+                listener.onFailure(new EsRejectedExecutionException(""));
+            } else {
+                listener.onResponse(new BulkResponse(new BulkItemResponse[] { successItem(0, "model0") }, 1));
+            }
+            return null;
+        }).when(client).bulk(any(), any());
+        Settings backoffSettings = Settings.builder().put("ml.anomaly_detectors.backoff_initial_delay", TimeValue.timeValueMillis(1))
+                .build();
+        CheckpointBulkWriter writer = createWriter(backoffSettings, 10, TimeValue.timeValueMillis(1));
+        AtomicBoolean isSaved = new AtomicBoolean();
+
+        writer.write(Collections.singletonMap("model0", checkpoint("model0", () -> isSaved.set(true))));
+
+        assertBusy(() -> assertTrue(isSaved.get()));
+        assertEquals(1L, adStats.counter(StatNames.AD_CHECKPOINT_RETRY_COUNT).getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSkipAcknowledgement_whenCancelledInFlight() throws Exception {
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueMillis(1));
+        AtomicBoolean isSaved = new AtomicBoolean();
+        writer.write(Collections.singletonMap("model0", checkpoint("model0", () -> isSaved.set(true))));
+        ArgumentCaptor<ActionListener<BulkResponse>> listener = ArgumentCaptor.forClass(ActionListener.class);
+        assertBusy(() -> verify(client, times(1)).bulk(any(), listener.capture()));
+
+        writer.cancel("model0");
+        listener.getValue().onResponse(new BulkResponse(new BulkItemResponse[] { successItem(0, "model0") }, 1));
+
+        assertFalse(isSaved.get());
+    }
+
+    public void testCancelQueuedCheckpoint() {
+        CheckpointBulkWriter writer = createWriter(10, TimeValue.timeValueHours(1));
+        Map<String, BulkCheckpoint> checkpoints = new HashMap<>();
+        checkpoints.put("model0", checkpoint("model0"));
+        checkpoints.put("model1", checkpoint("model1"));
+        writer.write(checkpoints);
+
+        writer.cancel("model0");
+
+        assertEquals(1L, writer.getQueueSize());
+    }
+}
@@ -44,7 +44,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -98,6 +100,22 @@ public class CheckpointDaoTests {
         assertEquals(model, indexRequest.sourceAsMap().get(CheckpointDao.FIELD_MODEL));
     }
 
+    @Test
+    public void putModelCheckpoint_returnSaved_givenResponse() {
+        doReturn(Optional.of(mock(IndexResponse.class))).when(clientUtil).timedRequest(
+            anyObject(), anyObject(), Matchers.<BiConsumer<IndexRequest, ActionListener<IndexResponse>>>anyObject());
+
+        assertTrue(checkpointDao.putModelCheckpoint(modelId, model));
+    }
+
+    @Test
+    public void putModelCheckpoint_returnNotSaved_givenFailure() {
+        doReturn(Optional.empty()).when(clientUtil).timedRequest(
+            anyObject(), anyObject(), Matchers.<BiConsumer<IndexRequest, ActionListener<IndexResponse>>>anyObject());
+
+        assertFalse(checkpointDao.putModelCheckpoint(modelId, model));
+    }
+
     @Test
     public void getModelCheckpoint_returnExpected() {
         ArgumentCaptor<GetRequest> getRequestCaptor = ArgumentCaptor.forClass(GetRequest.class);
@@ -139,4 +157,17 @@ public class CheckpointDaoTests {
         assertEquals(CheckpointDao.DOC_TYPE, deleteRequest.type());
         assertEquals(modelId, deleteRequest.id());
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deleteModelCheckpoint_sendDeleteRequest_toListener() {
+        ActionListener<DeleteResponse> listener = mock(ActionListener.class);
+
+        checkpointDao.deleteModelCheckpoint(modelId, listener);
+
+        ArgumentCaptor<DeleteRequest> deleteRequestCaptor = ArgumentCaptor.forClass(DeleteRequest.class);
+        verify(client).delete(deleteRequestCaptor.capture(), eq(listener));
+        assertEquals(indexName, deleteRequestCaptor.getValue().index());
+        assertEquals(modelId, deleteRequestCaptor.getValue().id());
+    }
 }
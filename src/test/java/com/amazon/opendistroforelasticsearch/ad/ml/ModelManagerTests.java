@@ -18,28 +18,43 @@ package com.amazon.opendistroforelasticsearch.ad.ml;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Random;
 
 import com.amazon.opendistroforelasticsearch.ad.common.exception.LimitExceededException;
 import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
+import com.amazon.opendistroforelasticsearch.ad.ml.CheckpointBulkWriter.BulkCheckpoint;
 import com.amazon.opendistroforelasticsearch.ad.ml.rcf.CombinedRcfResult;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import com.google.gson.Gson;
 
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.monitor.jvm.JvmService;
 
 import org.junit.Before;
@@ -47,6 +62,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -64,9 +80,12 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -99,11 +118,28 @@ public class ModelManagerTests {
     @Mock
     private CheckpointDao checkpointDao;
 
+    @Mock
+    private CheckpointBulkWriter checkpointWriter;
+
+    @Mock
+    private BulkRequest bulkRequest;
+
+    @Mock
+    private BinaryCheckpointSerDe binaryCheckpointSerde;
+
+    @Mock
+    private OffHeapModelCache warmModels;
+
     @Mock
     private Clock clock;
 
     private Gson gson;
 
+    private ADStats adStats;
+
+    private ExecutorService trainingExecutor;
+    private ExecutorService modelLoadExecutor;
+
     private double modelDesiredSizePercentage;
     private double modelMaxSizePercentage;
     private int numTrees;
@@ -120,6 +156,9 @@ public class ModelManagerTests {
     private int minPreviewSize;
     private Duration modelTtl;
     private Duration checkpointInterval;
+    private double maxDeltaCheckpointRatio;
+    private Duration maxCheckpointBaseAge;
+    private Duration modelTransferTimeout;
 
     private RandomCutForest rcf;
 
@@ -151,6 +190,9 @@ public class ModelManagerTests {
         minPreviewSize = 500;
         modelTtl = Duration.ofHours(1);
         checkpointInterval = Duration.ofHours(1);
+        maxDeltaCheckpointRatio = 0.5;
+        maxCheckpointBaseAge = Duration.ofDays(7);
+        modelTransferTimeout = Duration.ofMinutes(10);
 
         rcf = RandomCutForest.builder().dimensions(numFeatures).sampleSize(numSamples)
             .numberOfTrees(numTrees).build();
@@ -158,13 +200,23 @@ public class ModelManagerTests {
         when(jvmService.info().getMem().getHeapMax().getBytes()).thenReturn(10_000_000_000L);
 
         gson = PowerMockito.mock(Gson.class);
-
-        modelManager = spy(new ModelManager(clusterService, jvmService, rcfSerde, checkpointDao, gson, clock,
-            modelDesiredSizePercentage, modelMaxSizePercentage,
-            numTrees, numSamples, rcfTimeDecay,
-            thresholdMinPvalue, thresholdMaxRankError, thresholdMaxScore, thresholdNumLogNormalQuantiles,
-            thresholdDownsamples, thresholdMaxSamples, thresholdingModelClass,
-            minPreviewSize, modelTtl, checkpointInterval));
+        adStats = new ADStats();
+        trainingExecutor = EsExecutors.newDirectExecutorService();
+        modelLoadExecutor = EsExecutors.newDirectExecutorService();
+
+        // saves checkpoints of maintenance right away, skipping failures as the writer does
+        doAnswer(invocation -> {
+            Map<String, BulkCheckpoint> checkpoints = invocation.getArgument(0);
+            checkpoints.values().forEach(checkpoint -> {
+                try {
+                    checkpoint.addTo(bulkRequest).run();
+                } catch (RuntimeException e) {
+                    // failure of one checkpoint does not affect others
+                }});
+            return null;
+        }).when(checkpointWriter).write(anyObject());
+
+        modelManager = spy(createModelManager(false));
 
         detectorId = "detectorId"; 
         modelId = "modelId";
@@ -172,6 +224,16 @@ public class ModelManagerTests {
         thresholdModelId = "detectorId_model_threshold";
     }
 
+    private ModelManager createModelManager(boolean binaryCheckpointEnabled) {
+        return new ModelManager(clusterService, jvmService, rcfSerde, checkpointDao, checkpointWriter, gson, binaryCheckpointSerde,
+            warmModels, clock, adStats, trainingExecutor, modelLoadExecutor, modelDesiredSizePercentage, modelMaxSizePercentage,
+            numTrees, numSamples, rcfTimeDecay,
+            thresholdMinPvalue, thresholdMaxRankError, thresholdMaxScore, thresholdNumLogNormalQuantiles,
+            thresholdDownsamples, thresholdMaxSamples, thresholdingModelClass,
+            minPreviewSize, modelTtl, checkpointInterval, binaryCheckpointEnabled, maxDeltaCheckpointRatio, maxCheckpointBaseAge,
+            modelTransferTimeout);
+    }
+
     private Object[] getDetectorIdForModelIdData() {
         return new Object[]{
             new Object[]{"testId_model_threshold", "testId"},
@@ -325,6 +387,80 @@ public class ModelManagerTests {
         assertEquals(1, result.getConfidence(), 1e-6);
     }
 
+    @Test
+    public void getRcfResult_readBinaryCheckpoint() {
+        String checkpoint = "binaryCheckpoint";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(forest.getAnomalyScore(point)).thenReturn(11.);
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+
+        RcfResult result = modelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        assertEquals(11., result.getScore(), 1e-6);
+        verify(rcfSerde, times(0)).fromJson(anyObject());
+    }
+
+    @Test
+    public void getRcfResult_readBinaryCheckpoint_withDeltaCheckpoint() {
+        String checkpoint = "binaryCheckpoint";
+        String deltaCheckpoint = "deltaCheckpoint";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(checkpointDao.getModelCheckpoint(rcfModelId + "_delta")).thenReturn(Optional.of(deltaCheckpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint, deltaCheckpoint)).thenReturn(forest);
+        when(forest.getAnomalyScore(point)).thenReturn(11.);
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+
+        RcfResult result = modelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        assertEquals(11., result.getScore(), 1e-6);
+        verify(binaryCheckpointSerde, times(0)).toRcf(checkpoint);
+    }
+
+    @Test
+    public void getRcfResult_restoreWarmModel_withoutReadingCheckpoint() {
+        byte[] bytes = new byte[] {1};
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+
+        when(warmModels.take(rcfModelId)).thenReturn(Optional.of(bytes));
+        when(binaryCheckpointSerde.toRcf(bytes)).thenReturn(forest);
+        when(forest.getAnomalyScore(point)).thenReturn(11.);
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+
+        RcfResult result = modelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        assertEquals(11., result.getScore(), 1e-6);
+        verify(checkpointDao, times(0)).getModelCheckpoint(anyObject());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_WARM_MODEL_HIT_COUNT));
+    }
+
+    @Test
+    public void getRcfResult_readCheckpoint_whenWarmModelInvalid() {
+        String checkpoint = "testCheckpoint";
+        byte[] bytes = new byte[] {1};
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+
+        when(warmModels.take(rcfModelId)).thenReturn(Optional.of(bytes));
+        when(binaryCheckpointSerde.toRcf(bytes)).thenThrow(new IllegalArgumentException());
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+
+        RcfResult result = modelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        assertEquals(numTrees, result.getForestSize());
+    }
+
     @Test(expected = ResourceNotFoundException.class)
     public void getRcfResult_throwResourceNotFound_whenNoModelCheckpointFound() {
         String detectorId = "testDetectorId";
@@ -347,6 +483,161 @@ public class ModelManagerTests {
         modelManager.getRcfResult(detectorId, modelId, new double[0]);
     }
 
+    @Test
+    public void getRcfResult_countCacheHitsAndMisses() {
+        String checkpoint = "testCheckpoint";
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(rcf);
+
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures]);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures]);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures]);
+
+        verify(checkpointDao, times(1)).getModelCheckpoint(rcfModelId);
+        assertEquals(2L, adStats.getStatValues().get(StatNames.AD_MODEL_CACHE_HIT_COUNT));
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_CACHE_MISS_COUNT));
+    }
+
+    @Test
+    public void getRcfResult_shareInFlightLoad() {
+        List<Runnable> loads = new ArrayList<>();
+        modelLoadExecutor = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            Runnable load = invocation.getArgument(0);
+            loads.add(load);
+            return null;
+        }).when(modelLoadExecutor).execute(anyObject());
+        modelManager = createModelManager(false);
+        String checkpoint = "testCheckpoint";
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(rcf);
+
+        PlainActionFuture<RcfResult> first = new PlainActionFuture<>();
+        PlainActionFuture<RcfResult> second = new PlainActionFuture<>();
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures], first);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures], second);
+
+        assertEquals(1, loads.size());
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        loads.get(0).run();
+
+        assertEquals(numTrees, first.actionGet().getForestSize());
+        assertEquals(numTrees, second.actionGet().getForestSize());
+        verify(checkpointDao, times(1)).getModelCheckpoint(rcfModelId);
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_LOAD_COUNT));
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_LOAD_SHARED_COUNT));
+    }
+
+    @Test
+    public void getRcfResult_returnFailureToListener_whenNoModelCheckpointFound() {
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.empty());
+
+        PlainActionFuture<RcfResult> result = new PlainActionFuture<>();
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures], result);
+
+        try {
+            result.actionGet();
+            fail("Expected ResourceNotFoundException");
+        } catch (ResourceNotFoundException e) {
+            assertEquals(detectorId, e.getAnomalyDetectorId());
+        }
+    }
+
+    @Test
+    public void getRcfResult_returnFailureToListener_whenLoadRejected() {
+        modelLoadExecutor = mock(ExecutorService.class);
+        doThrow(new EsRejectedExecutionException("rejected")).when(modelLoadExecutor).execute(anyObject());
+        modelManager = createModelManager(false);
+
+        PlainActionFuture<RcfResult> result = new PlainActionFuture<>();
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures], result);
+
+        try {
+            result.actionGet();
+            fail("Expected EsRejectedExecutionException");
+        } catch (EsRejectedExecutionException e) {
+            verifyZeroInteractions(checkpointDao);
+        }
+    }
+
+    @Test
+    public void getRcfResult_evictLeastRecentlyUsedModel_whenHeapLimitReached() {
+        String coldModelId = "detectorId_model_rcf_0";
+        String hotModelId = "detectorId_model_rcf_1";
+        String newModelId = "detectorId_model_rcf_2";
+        String coldCheckpoint = "coldCheckpoint";
+        RandomCutForest coldRcf = RandomCutForest.builder().dimensions(numFeatures).sampleSize(numSamples)
+            .numberOfTrees(numTrees).build();
+        String evictedCheckpoint = "evictedCheckpoint";
+
+        // room for two models
+        long modelSize = modelManager.estimateModelSize(rcf);
+        when(jvmService.info().getMem().getHeapMax().getBytes()).thenReturn((long) (2.5 * modelSize / modelMaxSizePercentage));
+        when(checkpointDao.getModelCheckpoint(coldModelId)).thenReturn(Optional.of(coldCheckpoint));
+        when(checkpointDao.getModelCheckpoint(hotModelId)).thenReturn(Optional.of("hotCheckpoint"));
+        when(checkpointDao.getModelCheckpoint(newModelId)).thenReturn(Optional.of("newCheckpoint"));
+        when(rcfSerde.fromJson(coldCheckpoint)).thenReturn(coldRcf);
+        when(rcfSerde.fromJson("hotCheckpoint")).thenReturn(rcf);
+        when(rcfSerde.fromJson("newCheckpoint")).thenReturn(rcf);
+        when(rcfSerde.toJson(coldRcf)).thenReturn(evictedCheckpoint);
+        when(clock.instant()).thenReturn(Instant.EPOCH, Instant.EPOCH.plusSeconds(1), Instant.EPOCH.plusSeconds(2));
+
+        modelManager.getRcfResult(detectorId, coldModelId, new double[numFeatures]);
+        modelManager.getRcfResult(detectorId, hotModelId, new double[numFeatures]);
+        modelManager.getRcfResult(detectorId, newModelId, new double[numFeatures]);
+
+        assertEquals(Stream.of(hotModelId, newModelId).collect(Collectors.toSet()), modelManager.getAllModelIds());
+        verify(checkpointDao).putModelCheckpoint(coldModelId, evictedCheckpoint);
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_EVICTION_COUNT));
+    }
+
+    @Test
+    public void getRcfResult_checkpointEvictedModel_whenLastCheckpointIsRecent() {
+        String coldModelId = "detectorId_model_rcf_0";
+        String hotModelId = "detectorId_model_rcf_1";
+        String newModelId = "detectorId_model_rcf_2";
+        RandomCutForest coldRcf = RandomCutForest.builder().dimensions(numFeatures).sampleSize(numSamples)
+            .numberOfTrees(numTrees).build();
+        String evictedCheckpoint = "evictedCheckpoint";
+
+        // room for two models
+        long modelSize = modelManager.estimateModelSize(rcf);
+        when(jvmService.info().getMem().getHeapMax().getBytes()).thenReturn((long) (2.5 * modelSize / modelMaxSizePercentage));
+        when(checkpointDao.getModelCheckpoint(coldModelId)).thenReturn(Optional.of("coldCheckpoint"));
+        when(checkpointDao.getModelCheckpoint(hotModelId)).thenReturn(Optional.of("hotCheckpoint"));
+        when(checkpointDao.getModelCheckpoint(newModelId)).thenReturn(Optional.of("newCheckpoint"));
+        when(rcfSerde.fromJson("coldCheckpoint")).thenReturn(coldRcf);
+        when(rcfSerde.fromJson("hotCheckpoint")).thenReturn(rcf);
+        when(rcfSerde.fromJson("newCheckpoint")).thenReturn(rcf);
+        when(rcfSerde.toJson(coldRcf)).thenReturn(evictedCheckpoint);
+        AtomicLong seconds = new AtomicLong();
+        when(clock.instant()).thenAnswer(invocation -> Instant.EPOCH.plusSeconds(seconds.incrementAndGet()));
+
+        modelManager.getRcfResult(detectorId, coldModelId, new double[numFeatures]);
+        modelManager.maintenance();
+        modelManager.getRcfResult(detectorId, hotModelId, new double[numFeatures]);
+        modelManager.getRcfResult(detectorId, newModelId, new double[numFeatures]);
+
+        verify(checkpointDao).toIndexRequest(coldModelId, evictedCheckpoint);
+        verify(checkpointDao).putModelCheckpoint(coldModelId, evictedCheckpoint);
+    }
+
+    @Test
+    public void getRcfResult_trackHostedModelSize() {
+        String checkpoint = "testCheckpoint";
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(rcf);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[numFeatures]);
+        assertEquals(modelManager.estimateModelSize(rcf), adStats.getStatValues().get(StatNames.AD_MODEL_SIZE));
+
+        modelManager.stopModel(detectorId, rcfModelId);
+        assertEquals(0L, adStats.getStatValues().get(StatNames.AD_MODEL_SIZE));
+    }
+
     @Test
     public void getThresholdingResult_returnExpected() {
         String modelId = "testModelId";
@@ -371,6 +662,23 @@ public class ModelManagerTests {
         assertEquals(expected, result);
     }
 
+    @Test
+    public void getThresholdingResult_readBinaryCheckpoint() {
+        String modelId = "testModelId";
+        String checkpoint = "binaryCheckpoint";
+        double score = 1.;
+
+        when(checkpointDao.getModelCheckpoint(modelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        doReturn(hybridThresholdingModel).when(binaryCheckpointSerde).toThreshold(checkpoint, thresholdingModelClass);
+        when(hybridThresholdingModel.grade(score)).thenReturn(0.);
+        when(hybridThresholdingModel.confidence()).thenReturn(0.5);
+
+        ThresholdingResult result = modelManager.getThresholdingResult(detectorId, modelId, score);
+
+        assertEquals(new ThresholdingResult(0., 0.5), result);
+    }
+
     @Test(expected = ResourceNotFoundException.class)
     public void getThresholdingResult_throwResourceNotFound_whenNoModelCheckpointFound() {
         String modelId = "testModelId";
@@ -379,6 +687,25 @@ public class ModelManagerTests {
         modelManager.getThresholdingResult("testDetectorId", modelId, 1.);
     }
 
+    @Test
+    public void getThresholdingResult_returnExpected_toListener() {
+        String modelId = "testModelId";
+        String checkpoint = "testCheckpoint";
+        double score = 1.;
+
+        when(checkpointDao.getModelCheckpoint(modelId)).thenReturn(Optional.of(checkpoint));
+        PowerMockito.doReturn(hybridThresholdingModel).when(gson).fromJson(checkpoint, thresholdingModelClass);
+        when(hybridThresholdingModel.grade(score)).thenReturn(0.);
+        when(hybridThresholdingModel.confidence()).thenReturn(0.5);
+
+        PlainActionFuture<ThresholdingResult> result = new PlainActionFuture<>();
+        modelManager.getThresholdingResult(detectorId, modelId, score, result);
+
+        assertEquals(new ThresholdingResult(0., 0.5), result.actionGet());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_LOAD_COUNT));
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_CACHE_MISS_COUNT));
+    }
+
     @Test
     public void getAllModelIds_returnAllIds_forRcfAndThreshold() {
         String checkpoint = "checkpoint";
@@ -429,6 +756,156 @@ public class ModelManagerTests {
         verify(checkpointDao).putModelCheckpoint(thresholdModelId, checkpoint);
     }
 
+    @Test
+    public void handoffModel_saveCheckpointAndStopHosting() {
+        String checkpoint = "checkpoint";
+
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+        when(rcfSerde.toJson(forest)).thenReturn(checkpoint);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[0]);
+
+        modelManager.handoffModel(detectorId, rcfModelId);
+
+        verify(checkpointDao).putModelCheckpoint(rcfModelId, checkpoint);
+        assertTrue(modelManager.getAllModelIds().isEmpty());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_HANDOFF_COUNT));
+    }
+
+    @Test
+    public void handoffModel_saveCheckpointOfWarmModel() {
+        String checkpoint = "checkpoint";
+        byte[] bytes = new byte[] {1};
+
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(warmModels.take(rcfModelId)).thenReturn(Optional.of(bytes));
+        when(binaryCheckpointSerde.toRcf(bytes)).thenReturn(forest);
+        when(rcfSerde.toJson(forest)).thenReturn(checkpoint);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+
+        modelManager.handoffModel(detectorId, rcfModelId);
+
+        verify(checkpointDao).putModelCheckpoint(rcfModelId, checkpoint);
+        verify(checkpointDao, times(0)).getModelCheckpoint(anyObject());
+    }
+
+    @Test
+    public void preloadModel_loadRcfCheckpoint() {
+        String checkpoint = "checkpoint";
+
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+
+        assertTrue(modelManager.preloadModel(detectorId, rcfModelId));
+        assertFalse(modelManager.preloadModel(detectorId, rcfModelId));
+
+        verify(checkpointDao, times(1)).getModelCheckpoint(rcfModelId);
+        assertEquals(Collections.singleton(rcfModelId), modelManager.getAllModelIds());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_PRELOAD_COUNT));
+    }
+
+    @Test
+    public void preloadModel_loadThresholdCheckpoint() {
+        String checkpoint = "checkpoint";
+
+        when(checkpointDao.getModelCheckpoint(thresholdModelId)).thenReturn(Optional.of(checkpoint));
+        PowerMockito.doReturn(hybridThresholdingModel).when(gson).fromJson(checkpoint, thresholdingModelClass);
+
+        assertTrue(modelManager.preloadModel(detectorId, thresholdModelId));
+
+        assertEquals(Collections.singleton(thresholdModelId), modelManager.getAllModelIds());
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void preloadModel_throwResourceNotFound_whenNoModelCheckpointFound() {
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.empty());
+
+        modelManager.preloadModel(detectorId, rcfModelId);
+    }
+
+    @Test
+    public void exportModel_thenImportModel_transferRcf() {
+        String checkpoint = "checkpoint";
+        byte[] transferState = new byte[] { 1, 2, 3 };
+
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toBytes(forest)).thenReturn(transferState);
+        when(binaryCheckpointSerde.toRcf(transferState)).thenReturn(forest);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[0]);
+
+        byte[] state = modelManager.exportModel(rcfModelId).get();
+        modelManager.releaseModel(detectorId, rcfModelId);
+        assertTrue(modelManager.getAllModelIds().isEmpty());
+        modelManager.importModel(detectorId, rcfModelId, state);
+
+        assertEquals(Collections.singleton(rcfModelId), modelManager.getAllModelIds());
+        verify(checkpointDao, times(0)).putModelCheckpoint(anyObject(), anyObject());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_TRANSFER_COUNT));
+    }
+
+    @Test
+    public void importModel_replaceThreshold() {
+        byte[] transferState = new byte[] { 1, 2, 3 };
+        doReturn(hybridThresholdingModel).when(binaryCheckpointSerde).toThreshold(transferState, thresholdingModelClass);
+
+        modelManager.importModel(detectorId, thresholdModelId, transferState);
+
+        assertEquals(Collections.singleton(thresholdModelId), modelManager.getAllModelIds());
+    }
+
+    @Test
+    public void importModelChunk_hostModel_afterLastChunk() {
+        byte[] state = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        doReturn(hybridThresholdingModel).when(binaryCheckpointSerde).toThreshold(state, thresholdingModelClass);
+
+        assertFalse(modelManager.importModelChunk(detectorId, thresholdModelId, 0, 2, Arrays.copyOfRange(state, 0, 6)));
+        assertTrue(modelManager.getAllModelIds().isEmpty());
+        assertTrue(modelManager.importModelChunk(detectorId, thresholdModelId, 1, 2, Arrays.copyOfRange(state, 6, state.length)));
+
+        assertEquals(Collections.singleton(thresholdModelId), modelManager.getAllModelIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importModelChunk_throwIllegalArgument_givenOutOfOrderChunk() {
+        modelManager.importModelChunk(detectorId, thresholdModelId, 0, 3, new byte[] { 1 });
+
+        modelManager.importModelChunk(detectorId, thresholdModelId, 2, 3, new byte[] { 3 });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maintenance_dropAbandonedModelTransfer() {
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        modelManager.importModelChunk(detectorId, thresholdModelId, 0, 2, new byte[] { 1 });
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(modelTransferTimeout).plusSeconds(1));
+
+        modelManager.maintenance();
+
+        modelManager.importModelChunk(detectorId, thresholdModelId, 1, 2, new byte[] { 2 });
+    }
+
+    @Test
+    public void maintenance_keepModelTransferInProgress() {
+        byte[] state = new byte[] { 1, 2 };
+        doReturn(hybridThresholdingModel).when(binaryCheckpointSerde).toThreshold(state, thresholdingModelClass);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        modelManager.importModelChunk(detectorId, thresholdModelId, 0, 2, new byte[] { 1 });
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(modelTransferTimeout).minusSeconds(1));
+
+        modelManager.maintenance();
+
+        assertTrue(modelManager.importModelChunk(detectorId, thresholdModelId, 1, 2, new byte[] { 2 }));
+    }
+
+    @Test
+    public void exportModel_returnEmpty_whenModelNotHosted() {
+        assertFalse(modelManager.exportModel(rcfModelId).isPresent());
+    }
+
     @Test
     public void clear_deleteRcfCheckpoint() {
         String checkpoint = "checkpoint";
@@ -443,6 +920,17 @@ public class ModelManagerTests {
         verify(checkpointDao).deleteModelCheckpoint(rcfModelId);
     }
 
+    @Test
+    public void clear_removeWarmModels() {
+        String otherModelId = "otherDetectorId_model_rcf_0";
+        when(warmModels.getModelIds()).thenReturn(new HashSet<>(asList(rcfModelId, otherModelId)));
+
+        modelManager.clear(detectorId);
+
+        verify(warmModels).remove(rcfModelId);
+        verify(warmModels, times(0)).remove(otherModelId);
+    }
+
     @Test
     public void clear_deleteThresholdCheckpoint() {
         String checkpoint = "checkpoint";
@@ -470,6 +958,54 @@ public class ModelManagerTests {
             eq(modelManager.getThresholdModelId(anomalyDetector.getDetectorId())), anyObject());
     }
 
+    @Test
+    public void trainModel_putBinaryCheckpoints_whenEnabled() {
+        double[][] trainData = new Random().doubles().limit(100).mapToObj(d->new double[]{d}).toArray(double[][]::new);
+        ModelManager binaryModelManager = spy(createModelManager(true));
+        doReturn(new SimpleEntry<>(1, 10)).when(binaryModelManager).getPartitionedForestSizes(anyObject(), anyObject());
+        when(binaryCheckpointSerde.toCheckpoint(anyObject(RandomCutForest.class))).thenReturn("rcfCheckpoint");
+        when(binaryCheckpointSerde.toCheckpoint(anyObject(ThresholdingModel.class))).thenReturn("thresholdCheckpoint");
+
+        binaryModelManager.trainModel(anomalyDetector, trainData);
+
+        verify(checkpointDao).putModelCheckpoint(binaryModelManager.getRcfModelId(anomalyDetector.getDetectorId(), 0),
+            "rcfCheckpoint");
+        verify(checkpointDao).putModelCheckpoint(binaryModelManager.getThresholdModelId(anomalyDetector.getDetectorId()),
+            "thresholdCheckpoint");
+        verifyZeroInteractions(rcfSerde);
+    }
+
+    @Test
+    public void trainModel_putAllPartitions_givenParallelTraining() throws Exception {
+        double[][] trainData = new Random().doubles().limit(100).mapToObj(d->new double[]{d}).toArray(double[][]::new);
+        trainingExecutor = Executors.newFixedThreadPool(2);
+        try {
+            ModelManager parallelModelManager = spy(createModelManager(false));
+            doReturn(new SimpleEntry<>(3, 10)).when(parallelModelManager).getPartitionedForestSizes(anyObject(), anyObject());
+
+            parallelModelManager.trainModel(anomalyDetector, trainData);
+
+            for (int i = 0; i < 3; i++) {
+                verify(checkpointDao).putModelCheckpoint(
+                    eq(parallelModelManager.getRcfModelId(anomalyDetector.getDetectorId(), i)), anyObject());
+            }
+            verify(checkpointDao).putModelCheckpoint(
+                eq(parallelModelManager.getThresholdModelId(anomalyDetector.getDetectorId())), anyObject());
+        } finally {
+            trainingExecutor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void trainModel_throwPartitionFailure() {
+        double[][] trainData = new Random().doubles().limit(100).mapToObj(d->new double[]{d}).toArray(double[][]::new);
+        doReturn(new SimpleEntry<>(2, 10)).when(modelManager).getPartitionedForestSizes(anyObject(), anyObject());
+        doThrow(new IllegalStateException()).when(checkpointDao).putModelCheckpoint(
+            eq(modelManager.getRcfModelId(anomalyDetector.getDetectorId(), 1)), anyObject());
+
+        modelManager.trainModel(anomalyDetector, trainData);
+    }
+
     private Object[] trainModelIllegalArgumentData() {
         return new Object[] {
             new Object[] {new double[][]{}},
@@ -497,6 +1033,15 @@ public class ModelManagerTests {
         assertFalse(thresholdModelId.isEmpty());
     }
 
+    @Test
+    public void getColocatedRcfModelId_returnFirstPartition_forThresholdModel() {
+        String detectorId = anomalyDetector.getDetectorId();
+
+        assertEquals(Optional.of(modelManager.getRcfModelId(detectorId, 0)),
+            ModelManager.getColocatedRcfModelId(modelManager.getThresholdModelId(detectorId)));
+        assertEquals(Optional.empty(), ModelManager.getColocatedRcfModelId(modelManager.getRcfModelId(detectorId, 1)));
+    }
+
     private Entry<Integer, Integer> pair(int size, int value) {
         return new SimpleImmutableEntry<>(size, value);
     }
@@ -529,7 +1074,7 @@ public class ModelManagerTests {
 
         modelManager.maintenance();
 
-        verify(checkpointDao).putModelCheckpoint(successModelId, successCheckpoint);
+        verify(checkpointDao).toIndexRequest(successModelId, successCheckpoint);
     }
 
     @Test
@@ -552,7 +1097,211 @@ public class ModelManagerTests {
 
         modelManager.maintenance();
 
-        verify(checkpointDao).putModelCheckpoint(successModelId, successCheckpoint);
+        verify(checkpointDao).toIndexRequest(successModelId, successCheckpoint);
+    }
+
+    @Test
+    public void maintenance_saveDeltaCheckpoint_afterFullCheckpoint() {
+        String checkpoint = "binaryCheckpoint";
+        String deltaCheckpoint = "deltaCheckpoint";
+        String deltaCheckpointId = rcfModelId + "_delta";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+        ForestSamples base = new ForestSamples(0L, new long[0][]);
+        ModelManager binaryModelManager = createModelManager(true);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toCheckpointWithSamples(forest)).thenReturn(new SimpleImmutableEntry<>(checkpoint, base));
+        when(binaryCheckpointSerde.toDeltaCheckpoint(forest, base, maxDeltaCheckpointRatio)).thenReturn(Optional.of(deltaCheckpoint));
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        binaryModelManager.maintenance();
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(checkpointInterval).plusSeconds(1));
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+        binaryModelManager.maintenance();
+
+        verify(checkpointDao, times(1)).toIndexRequest(rcfModelId, checkpoint);
+        verify(checkpointDao).deleteModelCheckpoint(eq(deltaCheckpointId), anyObject());
+        verify(checkpointDao).toIndexRequest(deltaCheckpointId, deltaCheckpoint);
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_FULL_CHECKPOINT_COUNT));
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_MODEL_DELTA_CHECKPOINT_COUNT));
+    }
+
+    @Test
+    public void maintenance_saveFullCheckpoint_whenDeltaTooLarge() {
+        String checkpoint = "binaryCheckpoint";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+        ForestSamples base = new ForestSamples(0L, new long[0][]);
+        ModelManager binaryModelManager = createModelManager(true);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toCheckpointWithSamples(forest)).thenReturn(new SimpleImmutableEntry<>(checkpoint, base));
+        when(binaryCheckpointSerde.toDeltaCheckpoint(forest, base, maxDeltaCheckpointRatio)).thenReturn(Optional.empty());
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        binaryModelManager.maintenance();
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(checkpointInterval).plusSeconds(1));
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+        binaryModelManager.maintenance();
+
+        verify(checkpointDao, times(2)).toIndexRequest(rcfModelId, checkpoint);
+        verify(checkpointDao, times(2)).deleteModelCheckpoint(eq(rcfModelId + "_delta"), anyObject());
+        assertEquals(2L, adStats.getStatValues().get(StatNames.AD_MODEL_FULL_CHECKPOINT_COUNT));
+    }
+
+    @Test
+    public void maintenance_saveFullCheckpoint_whenCheckpointBaseNearsTtl() {
+        String checkpoint = "binaryCheckpoint";
+        String deltaCheckpoint = "deltaCheckpoint";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+        ForestSamples base = new ForestSamples(0L, new long[0][]);
+        ModelManager binaryModelManager = createModelManager(true);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toCheckpointWithSamples(forest)).thenReturn(new SimpleImmutableEntry<>(checkpoint, base));
+        when(binaryCheckpointSerde.toDeltaCheckpoint(forest, base, maxDeltaCheckpointRatio)).thenReturn(Optional.of(deltaCheckpoint));
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        binaryModelManager.maintenance();
+        // deltas do not refresh the timestamp of the full checkpoint, which the checkpoint ttl is counted from
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(maxCheckpointBaseAge).plusSeconds(1));
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+        binaryModelManager.maintenance();
+
+        verify(checkpointDao, times(2)).toIndexRequest(rcfModelId, checkpoint);
+        verify(checkpointDao, times(0)).toIndexRequest(rcfModelId + "_delta", deltaCheckpoint);
+        assertEquals(2L, adStats.getStatValues().get(StatNames.AD_MODEL_FULL_CHECKPOINT_COUNT));
+    }
+
+    @Test
+    public void maintenance_keepCheckpointBase_untilFullCheckpointIsSaved() {
+        String checkpoint = "binaryCheckpoint";
+        String deltaCheckpoint = "deltaCheckpoint";
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+        ForestSamples base = new ForestSamples(0L, new long[0][]);
+        ModelManager binaryModelManager = createModelManager(true);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toCheckpointWithSamples(forest)).thenReturn(new SimpleImmutableEntry<>(checkpoint, base));
+        when(binaryCheckpointSerde.toDeltaCheckpoint(forest, base, maxDeltaCheckpointRatio)).thenReturn(Optional.of(deltaCheckpoint));
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+        // the bulk request is sent but its items fail
+        doAnswer(invocation -> {
+            Map<String, BulkCheckpoint> checkpoints = invocation.getArgument(0);
+            checkpoints.values().forEach(bulkCheckpoint -> bulkCheckpoint.addTo(bulkRequest));
+            return null;
+        }).when(checkpointWriter).write(anyObject());
+
+        binaryModelManager.maintenance();
+        when(clock.instant()).thenReturn(Instant.EPOCH.plus(checkpointInterval).plusSeconds(1));
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, point);
+        binaryModelManager.maintenance();
+
+        verify(checkpointDao, times(2)).toIndexRequest(rcfModelId, checkpoint);
+        verify(checkpointDao, times(0)).deleteModelCheckpoint(eq(rcfModelId + "_delta"), anyObject());
+        verify(binaryCheckpointSerde, times(0)).toDeltaCheckpoint(forest, base, maxDeltaCheckpointRatio);
+    }
+
+    @Test
+    public void handoffModel_keepDeltaCheckpoint_whenFullCheckpointFails() {
+        String checkpoint = "binaryCheckpoint";
+        RandomCutForest forest = mock(RandomCutForest.class);
+        ForestSamples base = new ForestSamples(0L, new long[0][]);
+        ModelManager binaryModelManager = createModelManager(true);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(binaryCheckpointSerde.isBinary(checkpoint)).thenReturn(true);
+        when(binaryCheckpointSerde.toRcf(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toCheckpointWithSamples(forest)).thenReturn(new SimpleImmutableEntry<>(checkpoint, base));
+        when(forest.getNumberOfTrees()).thenReturn(numTrees);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        when(checkpointDao.putModelCheckpoint(rcfModelId, checkpoint)).thenReturn(false);
+        binaryModelManager.getRcfResult(detectorId, rcfModelId, new double[0]);
+
+        binaryModelManager.handoffModel(detectorId, rcfModelId);
+
+        verify(checkpointDao).putModelCheckpoint(rcfModelId, checkpoint);
+        verify(checkpointDao, times(0)).deleteModelCheckpoint(rcfModelId + "_delta");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void maintenance_skipQueuedCheckpoint_whenModelHandedOff() {
+        String checkpoint = "testCheckpoint";
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+        when(rcfSerde.toJson(forest)).thenReturn(checkpoint);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        modelManager.getRcfResult(detectorId, rcfModelId, new double[0]);
+        ArgumentCaptor<Map<String, BulkCheckpoint>> checkpointsCaptor = ArgumentCaptor.forClass(Map.class);
+        doNothing().when(checkpointWriter).write(checkpointsCaptor.capture());
+
+        modelManager.maintenance();
+        modelManager.handoffModel(detectorId, rcfModelId);
+        checkpointsCaptor.getValue().get(rcfModelId).addTo(bulkRequest);
+
+        verify(checkpointWriter).cancel(rcfModelId);
+        verify(checkpointDao).putModelCheckpoint(rcfModelId, checkpoint);
+        verify(checkpointDao, times(0)).toIndexRequest(anyObject(), anyObject());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void maintenance_serializeCheckpoint_beforeStoppingInactiveModel() {
+        String checkpoint = "testCheckpoint";
+        IndexRequest indexRequest = new IndexRequest();
+        when(checkpointDao.getModelCheckpoint(thresholdModelId)).thenReturn(Optional.of(checkpoint));
+        doReturn(hybridThresholdingModel).when(gson).fromJson(checkpoint, thresholdingModelClass);
+        doReturn(checkpoint).when(gson).toJson(hybridThresholdingModel);
+        when(checkpointDao.toIndexRequest(thresholdModelId, checkpoint)).thenReturn(indexRequest);
+        when(clock.instant()).thenReturn(Instant.MIN, Instant.EPOCH,
+            Instant.EPOCH.plus(modelTtl).plus(Duration.ofSeconds(1)));
+        modelManager.getThresholdingResult(detectorId, thresholdModelId, 1.);
+        ArgumentCaptor<Map<String, BulkCheckpoint>> checkpointsCaptor = ArgumentCaptor.forClass(Map.class);
+        doNothing().when(checkpointWriter).write(checkpointsCaptor.capture());
+
+        modelManager.maintenance();
+        verify(checkpointDao).toIndexRequest(thresholdModelId, checkpoint);
+        checkpointsCaptor.getValue().get(thresholdModelId).addTo(bulkRequest).run();
+
+        verify(bulkRequest).add(indexRequest);
+        verify(gson, times(1)).toJson(hybridThresholdingModel);
+    }
+
+    @Test
+    public void maintenance_retryCheckpoint_whenCheckpointIsNotSaved() {
+        String checkpoint = "testCheckpoint";
+        when(checkpointDao.getModelCheckpoint(thresholdModelId)).thenReturn(Optional.of(checkpoint));
+        doReturn(hybridThresholdingModel).when(gson).fromJson(checkpoint, thresholdingModelClass);
+        doReturn(checkpoint).when(gson).toJson(hybridThresholdingModel);
+        when(clock.instant()).thenReturn(Instant.MIN, Instant.EPOCH);
+        modelManager.getThresholdingResult(detectorId, thresholdModelId, 1.);
+        // the bulk request is sent but its items fail
+        doAnswer(invocation -> {
+            Map<String, BulkCheckpoint> checkpoints = invocation.getArgument(0);
+            checkpoints.values().forEach(bulkCheckpoint -> bulkCheckpoint.addTo(bulkRequest));
+            return null;
+        }).when(checkpointWriter).write(anyObject());
+
+        modelManager.maintenance();
+        modelManager.maintenance();
+
+        verify(checkpointDao, times(2)).toIndexRequest(thresholdModelId, checkpoint);
     }
 
     @Test
@@ -574,6 +1323,25 @@ public class ModelManagerTests {
         verify(checkpointDao, times(2)).getModelCheckpoint(modelId);
     }
 
+    @Test
+    public void maintenance_keepInactiveRcfModelOffHeap() {
+        String checkpoint = "testCheckpoint";
+        byte[] bytes = new byte[] {1};
+        double[] point = new double[0];
+        RandomCutForest forest = mock(RandomCutForest.class);
+        when(checkpointDao.getModelCheckpoint(rcfModelId)).thenReturn(Optional.of(checkpoint));
+        when(rcfSerde.fromJson(checkpoint)).thenReturn(forest);
+        when(binaryCheckpointSerde.toBytes(forest)).thenReturn(bytes);
+        when(clock.instant()).thenReturn(Instant.MIN, Instant.EPOCH,
+            Instant.EPOCH.plus(modelTtl).plus(Duration.ofSeconds(1)));
+        modelManager.getRcfResult(detectorId, rcfModelId, point);
+
+        modelManager.maintenance();
+
+        verify(warmModels).put(rcfModelId, bytes);
+        assertTrue(modelManager.getAllModelIds().isEmpty());
+    }
+
     @Test
     public void maintenance_keepActiveRcfModel() {
         String modelId = "testModelId";
@@ -642,7 +1410,7 @@ public class ModelManagerTests {
         modelManager.maintenance();
         modelManager.maintenance();
 
-        verify(checkpointDao, times(1)).putModelCheckpoint(eq(modelId), anyObject());
+        verify(checkpointDao, times(1)).toIndexRequest(eq(modelId), anyObject());
     }
 
     @Test
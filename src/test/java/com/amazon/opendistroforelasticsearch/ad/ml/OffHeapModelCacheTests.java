@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.ml;
+
+import java.util.HashSet;
+import java.util.Optional;
+
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapModelCacheTests {
+
+    private ADStats adStats;
+    private OffHeapModelCache cache;
+
+    @Before
+    public void setup() {
+        adStats = new ADStats();
+        cache = new OffHeapModelCache(10, adStats);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Test
+    public void take_returnCachedModel_andRemoveIt() {
+        byte[] model = new byte[] {1, 2, 3};
+        assertTrue(cache.put("model", model));
+
+        Optional<byte[]> taken = cache.take("model");
+
+        assertArrayEquals(model, taken.get());
+        assertFalse(cache.take("model").isPresent());
+        assertEquals(0L, adStats.getStatValues().get(StatNames.AD_WARM_MODEL_COUNT));
+        assertEquals(0L, adStats.getStatValues().get(StatNames.AD_WARM_MODEL_SIZE));
+    }
+
+    @Test
+    public void put_replaceModel_ofSameId() {
+        cache.put("model", new byte[] {1, 2, 3});
+        cache.put("model", new byte[] {4});
+
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_WARM_MODEL_SIZE));
+        assertArrayEquals(new byte[] {4}, cache.take("model").get());
+    }
+
+    @Test
+    public void put_dropLeastRecentlyCachedModels_whenFull() {
+        cache.put("model1", new byte[4]);
+        cache.put("model2", new byte[4]);
+
+        cache.put("model3", new byte[4]);
+
+        assertEquals(new HashSet<>(asList("model2", "model3")), cache.getModelIds());
+        assertEquals(8L, cache.getSizeInBytes());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_WARM_MODEL_EVICTION_COUNT));
+    }
+
+    @Test
+    public void put_returnFalse_whenModelLargerThanCapacity() {
+        cache.put("model", new byte[4]);
+
+        assertFalse(cache.put("model", new byte[11]));
+        assertEquals(0, cache.getCount());
+    }
+
+    @Test
+    public void remove_releaseModel() {
+        cache.put("model", new byte[4]);
+
+        assertTrue(cache.remove("model"));
+        assertFalse(cache.remove("model"));
+        assertEquals(0L, cache.getSizeInBytes());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.stats;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ADStatsTests {
+
+    private ADStats adStats = new ADStats();
+
+    @Test
+    public void counter_returnSameCounter_forSameName() {
+        adStats.counter("counter").increment();
+        adStats.counter("counter").add(2);
+
+        assertSame(adStats.counter("counter"), adStats.counter("counter"));
+        assertEquals(3L, adStats.counter("counter").getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void latency_returnCountAverageAndMax() {
+        adStats.latency("latency").record(1_000_000L);
+        adStats.latency("latency").record(3_000_000L);
+
+        Map<String, Object> value = (Map<String, Object>) adStats.getStatValues().get("latency");
+        assertEquals(2L, value.get(LatencyStat.COUNT));
+        assertEquals(2., (double) value.get(LatencyStat.AVG_MILLIS), 1e-9);
+        assertEquals(3., (double) value.get(LatencyStat.MAX_MILLIS), 1e-9);
+    }
+
+    @Test
+    public void gauge_returnSuppliedValue() {
+        adStats.gauge("gauge", () -> 5L);
+
+        assertEquals(5L, adStats.getStatValues().get("gauge"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void latency_throwIllegalArgument_forCounterName() {
+        adStats.counter("counter");
+
+        adStats.latency("counter");
+    }
+}
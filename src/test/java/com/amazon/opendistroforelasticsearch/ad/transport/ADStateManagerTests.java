@@ -19,6 +19,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.elasticsearch.index.seqno.SequenceNumbers.UNASSIGNED_SEQ_NO;
 
@@ -28,6 +30,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.stream.IntStream;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Map.Entry;
@@ -55,6 +58,7 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.junit.After;
 import org.junit.Before;
+import org.mockito.ArgumentCaptor;
 
 import com.amazon.randomcutforest.RandomCutForest;
 
@@ -138,6 +142,37 @@ public class ADStateManagerTests extends ESTestCase {
         expectThrows(AnomalyDetectionException.class, () -> stateManager.getPartitionNumber(detectorId));
     }
 
+    @SuppressWarnings("unchecked")
+    public void testGetAnomalyDetectorToListener() throws IOException {
+        String detectorId = setupDetector(true);
+        ActionListener<Optional<AnomalyDetector>> listener = mock(ActionListener.class);
+
+        stateManager.getAnomalyDetector(detectorId, listener);
+        stateManager.getAnomalyDetector(detectorId, listener);
+
+        ArgumentCaptor<Optional<AnomalyDetector>> captor = ArgumentCaptor.forClass(Optional.class);
+        verify(listener, times(2)).onResponse(captor.capture());
+        assertEquals(detectorId, captor.getValue().get().getDetectorId());
+        verify(client, times(1)).get(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGetAnomalyDetectorToListenerNotFound() throws IOException {
+        String detectorId = setupDetector(false);
+        ActionListener<Optional<AnomalyDetector>> listener = mock(ActionListener.class);
+
+        stateManager.getAnomalyDetector(detectorId, listener);
+
+        verify(listener).onResponse(Optional.empty());
+    }
+
+    public void testGetPartitionNumberOfFetchedDetector() throws IOException {
+        AnomalyDetector detector = TestHelpers.randomAnomalyDetector(TestHelpers.randomUiMetadata(), null);
+
+        assertEquals(2, stateManager.getPartitionNumber(detector.getDetectorId(), detector));
+        verifyZeroInteractions(client);
+    }
+
     public void testShouldMute() {
         String nodeId = "123";
         assertTrue(!stateManager.isMuted(nodeId));
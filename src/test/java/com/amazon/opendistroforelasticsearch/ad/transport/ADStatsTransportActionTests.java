@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+
+public class ADStatsTransportActionTests extends AbstractADTest {
+    private ADStatsTransportAction action;
+    private ADStats adStats;
+    private String localNodeID;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        ThreadPool threadPool = mock(ThreadPool.class);
+
+        ClusterService clusterService = mock(ClusterService.class);
+        localNodeID = "foo";
+        when(clusterService.localNode()).thenReturn(new DiscoveryNode(localNodeID, buildNewFakeTransportAddress(), Version.CURRENT));
+        when(clusterService.getClusterName()).thenReturn(new ClusterName("test"));
+
+        TransportService transportService = mock(TransportService.class);
+        ActionFilters actionFilters = mock(ActionFilters.class);
+        adStats = new ADStats();
+
+        action = new ADStatsTransportAction(threadPool, clusterService, transportService, actionFilters, adStats);
+    }
+
+    public void testNormal() throws IOException {
+        adStats.counter("counter").add(3);
+        adStats.latency("latency").record(1_000_000L);
+        ADStatsRequest request = new ADStatsRequest();
+
+        ADStatsNodeResponse nodeResponse = action.nodeOperation(new ADStatsNodeRequest("foo1", request));
+        BytesStreamOutput nodeResponseOut = new BytesStreamOutput();
+        nodeResponseOut.setVersion(Version.CURRENT);
+        nodeResponse.writeTo(nodeResponseOut);
+        StreamInput siNode = nodeResponseOut.bytes().streamInput();
+        ADStatsNodeResponse nodeResponseRead = ADStatsNodeResponse.readNodeResponse(siNode);
+
+        assertEquals(3L, nodeResponseRead.getStats().get("counter"));
+        assertEquals(adStats.getStatValues(), nodeResponseRead.getStats());
+
+        ADStatsResponse response = action.newResponse(request, Arrays.asList(nodeResponseRead), Collections.emptyList());
+
+        assertEquals(1, response.getNodes().size());
+        assertTrue(!response.hasFailures());
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        builder.startObject();
+        response.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        builder.endObject();
+
+        String json = Strings.toString(builder);
+        assertTrue(json.contains("\"node_id\":\"" + localNodeID + "\""));
+        assertTrue(json.contains("\"counter\":3"));
+    }
+}
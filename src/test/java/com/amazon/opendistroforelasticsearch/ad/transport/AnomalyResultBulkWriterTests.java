@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.model.AnomalyResult;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.mockito.ArgumentCaptor;
+
+public class AnomalyResultBulkWriterTests extends AbstractADTest {
+
+    private Client client;
+    private ADStats adStats;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        setUpThreadPool(AnomalyResultBulkWriterTests.class.getSimpleName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        tearDownThreadPool();
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        super.setUpLog4jForJUnit(AnomalyResultBulkWriter.class);
+        client = mock(Client.class);
+        adStats = new ADStats();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        client = null;
+        super.tearDownLog4jForJUnit();
+        super.tearDown();
+    }
+
+    private AnomalyResultBulkWriter createWriter(Settings settings, int bulkSize, int maxBufferedResults, TimeValue flushInterval) {
+        return new AnomalyResultBulkWriter(client, threadPool, settings, adStats, bulkSize, maxBufferedResults, flushInterval);
+    }
+
+    private IndexRequest indexRequest() {
+        return new IndexRequest(AnomalyResult.ANOMALY_RESULT_INDEX).source("field", randomAlphaOfLength(5));
+    }
+
+    private BulkItemResponse successItem(int id) {
+        ShardId shardId = new ShardId(new Index(AnomalyResult.ANOMALY_RESULT_INDEX, randomAlphaOfLength(10)), 0);
+        return new BulkItemResponse(id, DocWriteRequest.OpType.INDEX,
+                new IndexResponse(shardId, randomAlphaOfLength(10), randomAlphaOfLength(10), 1, 1, 1, true));
+    }
+
+    private BulkItemResponse failedItem(int id, Exception cause) {
+        return new BulkItemResponse(id, DocWriteRequest.OpType.INDEX,
+                new BulkItemResponse.Failure(AnomalyResult.ANOMALY_RESULT_INDEX, "_doc", randomAlphaOfLength(10), cause));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testFlushWhenBulkIsFull() {
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            listener.onResponse(new BulkResponse(new BulkItemResponse[] { successItem(0), successItem(1) }, 1));
+            return null;
+        }).when(client).bulk(any(), any());
+        AnomalyResultBulkWriter writer = createWriter(Settings.EMPTY, 2, 10, TimeValue.timeValueHours(1));
+
+        writer.write(indexRequest(), "result 0");
+        verify(client, never()).bulk(any(), any());
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_RESULT_BUFFER_SIZE));
+        writer.write(indexRequest(), "result 1");
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(client, times(1)).bulk(captor.capture(), any());
+        assertEquals(2, captor.getValue().numberOfActions());
+        assertEquals(0L, writer.getBufferSize());
+        assertEquals(1L, adStats.counter(StatNames.AD_RESULT_BULK_COUNT).getCount());
+        assertEquals(1L, adStats.latency(StatNames.AD_RESULT_BULK_LATENCY).getCount());
+        assertEquals(2L, adStats.latency(StatNames.AD_RESULT_INDEX_LATENCY).getCount());
+        assertEquals(2, testAppender.countMessage(AnomalyResultBulkWriter.SUCCESS_SAVING_MSG));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSendOneBulkAtATime() {
+        AnomalyResultBulkWriter writer = createWriter(Settings.EMPTY, 1, 10, TimeValue.timeValueHours(1));
+
+        writer.write(indexRequest(), "result 0");
+        writer.write(indexRequest(), "result 1");
+
+        ArgumentCaptor<ActionListener<BulkResponse>> listener = ArgumentCaptor.forClass(ActionListener.class);
+        verify(client, times(1)).bulk(any(), listener.capture());
+        assertEquals(1L, writer.getBufferSize());
+
+        listener.getValue().onResponse(new BulkResponse(new BulkItemResponse[] { successItem(0) }, 1));
+
+        verify(client, times(2)).bulk(any(), any());
+        assertEquals(0L, writer.getBufferSize());
+    }
+
+    public void testCloseSendsBufferedResults() {
+        AnomalyResultBulkWriter writer = createWriter(Settings.EMPTY, 2, 10, TimeValue.timeValueHours(1));
+        writer.write(indexRequest(), "result 0");
+
+        writer.close();
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(client, times(1)).bulk(captor.capture(), any());
+        assertEquals(1, captor.getValue().numberOfActions());
+        assertEquals(0L, writer.getBufferSize());
+    }
+
+    public void testFlushAfterInterval() throws Exception {
+        AnomalyResultBulkWriter writer = createWriter(Settings.EMPTY, 10, 10, TimeValue.timeValueMillis(1));
+
+        writer.write(indexRequest(), "result 0");
+
+        assertBusy(() -> verify(client, times(1)).bulk(any(), any()));
+        assertEquals(0L, writer.getBufferSize());
+    }
+
+    public void testDropWhenBufferIsFull() {
+        AnomalyResultBulkWriter writer = createWriter(Settings.EMPTY, 10, 1, TimeValue.timeValueHours(1));
+
+        writer.write(indexRequest(), "result 0");
+        writer.write(indexRequest(), "result 1");
+
+        assertEquals(1L, writer.getBufferSize());
+        assertEquals(1L, adStats.counter(StatNames.AD_RESULT_DROPPED_COUNT).getCount());
+        assertTrue(testAppender.containsMessage(AnomalyResultBulkWriter.BUFFER_FULL_ERR_MSG + "result 1"));
+    }
+
+    /**
+     * Template to test exponential backoff retry of rejected results.
+     *
+     * @param rejected whether results are rejected by the write queue
+     * @param latchCount number of expected bulk requests
+     * @throws InterruptedException if thread execution is interrupted
+     */
+    @SuppressWarnings("unchecked")
+    private void savingFailureTemplate(boolean rejected, int latchCount) throws InterruptedException {
+        final CountDownLatch backoffLatch = new CountDownLatch(latchCount);
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            if (rejected) {
+                listener.onResponse(new BulkResponse(
+                        new BulkItemResponse[] { failedItem(0, new EsRejectedExecutionException("")) }, 1));
+            } else {
+                listener.onResponse(new BulkResponse(new BulkItemResponse[] { failedItem(0, new IllegalArgumentException()) }, 1));
+            }
+            backoffLatch.countDown();
+            return null;
+        }).when(client).bulk(any(), any());
+        Settings backoffSettings = Settings.builder().put("ml.anomaly_detectors.max_retry_for_backoff", 2)
+                .put("ml.anomaly_detectors.backoff_initial_delay", TimeValue.timeValueMillis(1)).build();
+        AnomalyResultBulkWriter writer = createWriter(backoffSettings, 1, 10, TimeValue.timeValueHours(1));
+
+        writer.write(indexRequest(), "result 0");
+
+        backoffLatch.await();
+    }
+
+    public void testSavingFailureNotRetry() throws InterruptedException {
+        savingFailureTemplate(false, 1);
+
+        assertEquals(1, testAppender.countMessage(AnomalyResultBulkWriter.FAIL_TO_SAVE_ERR_MSG));
+        assertTrue(!testAppender.containsMessage(AnomalyResultBulkWriter.SUCCESS_SAVING_MSG));
+        assertTrue(!testAppender.containsMessage(AnomalyResultBulkWriter.RETRY_SAVING_ERR_MSG));
+        assertEquals(1L, adStats.counter(StatNames.AD_RESULT_FAILURE_COUNT).getCount());
+    }
+
+    public void testSavingFailureRetry() throws InterruptedException {
+        savingFailureTemplate(true, 3);
+
+        assertEquals(2, testAppender.countMessage(AnomalyResultBulkWriter.RETRY_SAVING_ERR_MSG));
+        assertEquals(1, testAppender.countMessage(AnomalyResultBulkWriter.FAIL_TO_SAVE_ERR_MSG));
+        assertTrue(!testAppender.containsMessage(AnomalyResultBulkWriter.SUCCESS_SAVING_MSG));
+        assertEquals(2L, adStats.counter(StatNames.AD_RESULT_RETRY_COUNT).getCount());
+        assertEquals(3L, adStats.counter(StatNames.AD_RESULT_BULK_COUNT).getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRetryWholeBulk_whenRejected() throws InterruptedException {
+        final CountDownLatch backoffLatch = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            if (backoffLatch.getCount() == 2) {
+                listener.onFailure(new EsRejectedExecutionException(""));
+            } else {
+                listener.onResponse(new BulkResponse(new BulkItemResponse[] { successItem(0) }, 1));
+            }
+            backoffLatch.countDown();
+            return null;
+        }).when(client).bulk(any(), any());
+        Settings backoffSettings = Settings.builder().put("ml.anomaly_detectors.backoff_initial_delay", TimeValue.timeValueMillis(1))
+                .build();
+        AnomalyResultBulkWriter writer = createWriter(backoffSettings, 1, 10, TimeValue.timeValueHours(1));
+
+        writer.write(indexRequest(), "result 0");
+
+        backoffLatch.await();
+        assertEquals(1, testAppender.countMessage(AnomalyResultBulkWriter.RETRY_SAVING_ERR_MSG));
+        assertEquals(1, testAppender.countMessage(AnomalyResultBulkWriter.SUCCESS_SAVING_MSG));
+    }
+}
@@ -34,19 +34,19 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import com.amazon.opendistroforelasticsearch.ad.indices.AnomalyDetectionIndices;
@@ -71,6 +71,9 @@ import com.amazon.opendistroforelasticsearch.ad.ml.rcf.CombinedRcfResult;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyDetector;
 import com.amazon.opendistroforelasticsearch.ad.model.AnomalyResult;
 import com.amazon.opendistroforelasticsearch.ad.model.FeatureData;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.settings.AnomalyDetectorSettings;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import com.amazon.opendistroforelasticsearch.ad.util.ColdStartRunner;
 import org.elasticsearch.ElasticsearchTimeoutException;
 import org.elasticsearch.Version;
@@ -78,10 +81,8 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.PlainActionFuture;
-import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.block.ClusterBlocks;
@@ -97,12 +98,8 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.NotSerializableExceptionWrapper;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.index.Index;
-import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.NodeNotConnectedException;
 import org.elasticsearch.transport.TransportException;
@@ -114,6 +111,7 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.mockito.ArgumentCaptor;
 
 import com.google.gson.JsonElement;
 
@@ -130,7 +128,7 @@ public class AnomalyResultTests extends AbstractADTest {
     private ColdStartRunner runner;
     private FeatureManager featureQuery;
     private ModelManager normalModelManager;
-    private Client client;
+    private AnomalyResultBulkWriter resultWriter;
     private AnomalyDetectionIndices anomalyDetectionIndices;
     private AnomalyDetector detector;
     private HashRing hashRing;
@@ -140,11 +138,13 @@ public class AnomalyResultTests extends AbstractADTest {
     private String adID;
     private String featureId;
     private String featureName;
+    private ADStats adStats;
 
     @BeforeClass
     public static void setUpBeforeClass() {
         setUpThreadPool(AnomalyResultTests.class.getSimpleName());
-        settings = Settings.EMPTY;
+        // most tests inject transport failures on the local node, so models are always called over the transport
+        settings = Settings.builder().put(AnomalyDetectorSettings.LOCAL_MODEL_SHORT_CIRCUIT.getKey(), false).build();
     }
 
     @AfterClass
@@ -165,7 +165,7 @@ public class AnomalyResultTests extends AbstractADTest {
         clusterService = testNodes[0].clusterService;
         stateManager = mock(ADStateManager.class);
         // return 2 RCF partitions
-        when(stateManager.getPartitionNumber(any(String.class))).thenReturn(2);
+        when(stateManager.getPartitionNumber(any(String.class), any(AnomalyDetector.class))).thenReturn(2);
         when(stateManager.isMuted(any(String.class))).thenReturn(false);
 
         detector = mock(AnomalyDetector.class);
@@ -177,20 +177,30 @@ public class AnomalyResultTests extends AbstractADTest {
         List<String> userIndex = new ArrayList<>();
         userIndex.add("test*");
         when(detector.getIndices()).thenReturn(userIndex);
-        when(stateManager.getAnomalyDetector(any(String.class))).thenReturn(Optional.of(detector));
+        setUpDetector(stateManager);
 
         hashRing = mock(HashRing.class);
         when(hashRing.getOwningNode(any(String.class)))
                 .thenReturn(Optional.of(clusterService.state().nodes().getLocalNode()));
         when(hashRing.build()).thenReturn(true);
         featureQuery = mock(FeatureManager.class);
-        when(featureQuery.getCurrentFeatures(any(AnomalyDetector.class), anyLong(), anyLong())).thenReturn(
-                new SinglePointFeatures(Optional.of(new double[] { 0.0d }), Optional.of(new double[] { 0 })));
+        doAnswer(invocation -> {
+            ActionListener<SinglePointFeatures> listener = invocation.getArgument(3);
+            listener.onResponse(new SinglePointFeatures(Optional.of(new double[] { 0.0d }), Optional.of(new double[] { 0 })));
+            return null;
+        }).when(featureQuery).getCurrentFeatures(any(AnomalyDetector.class), anyLong(), anyLong(), any(ActionListener.class));
+        when(featureQuery.alignToInterval(any(AnomalyDetector.class), anyLong())).thenAnswer(invocation -> invocation.getArgument(1));
         normalModelManager = mock(ModelManager.class);
-        when(normalModelManager.getThresholdingResult(any(String.class), any(String.class), anyDouble()))
-                .thenReturn(new ThresholdingResult(0, 1.0d));
-        when(normalModelManager.getRcfResult(any(String.class), any(String.class), any(double[].class)))
-                .thenReturn(new RcfResult(0.2, 0, 100));
+        doAnswer(invocation -> {
+            ActionListener<ThresholdingResult> listener = invocation.getArgument(3);
+            listener.onResponse(new ThresholdingResult(0, 1.0d));
+            return null;
+        }).when(normalModelManager).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0.2, 0, 100));
+            return null;
+        }).when(normalModelManager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
         when(normalModelManager.combineRcfResults(any())).thenReturn(new CombinedRcfResult(0, 1.0d));
         adID = "123";
         rcfModelID = "123-rcf-1";
@@ -198,29 +208,10 @@ public class AnomalyResultTests extends AbstractADTest {
         thresholdModelID = "123-threshold";
         when(normalModelManager.getThresholdModelId(any(String.class))).thenReturn(thresholdModelID);
 
-        client = mock(Client.class);
-        doAnswer(invocation -> {
-            Object[] args = invocation.getArguments();
-            assertTrue(String.format("The size of args is %d.  Its content is %s", args.length, Arrays.toString(args)),
-                    args.length >= 2);
-
-            IndexRequest request = null;
-            ActionListener<IndexResponse> listener = null;
-            if (args[0] instanceof IndexRequest) {
-                request = (IndexRequest) args[0];
-            }
-            if (args[1] instanceof ActionListener) {
-                listener = (ActionListener<IndexResponse>) args[1];
-            }
-
-            assertTrue(request != null && listener != null);
-            ShardId shardId = new ShardId(new Index(AnomalyResult.ANOMALY_RESULT_INDEX, randomAlphaOfLength(10)), 0);
-            listener.onResponse(new IndexResponse(shardId, randomAlphaOfLength(10), request.id(), 1, 1, 1, true));
-
-            return null;
-        }).when(client).index(any(), any());
+        resultWriter = mock(AnomalyResultBulkWriter.class);
 
         indexNameResolver = new IndexNameExpressionResolver();
+        adStats = new ADStats();
     }
 
     public void setupTestNodes(Settings settings) {
@@ -229,7 +220,16 @@ public class AnomalyResultTests extends AbstractADTest {
         for (int i = 0; i < testNodes.length; i++) {
             testNodes[i] = new FakeNode("node" + i, threadPool, settings);
         }
-        runner = new ColdStartRunner();
+        runner = new ColdStartRunner(1, 1, new ADStats());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setUpDetector(ADStateManager stateManager) {
+        doAnswer(invocation -> {
+            ActionListener<Optional<AnomalyDetector>> listener = invocation.getArgument(1);
+            listener.onResponse(Optional.of(detector));
+            return null;
+        }).when(stateManager).getAnomalyDetector(any(String.class), any(ActionListener.class));
     }
 
     @SuppressWarnings("unchecked")
@@ -272,7 +272,7 @@ public class AnomalyResultTests extends AbstractADTest {
         }
         runner.shutDown();
         runner = null;
-        client = null;
+        resultWriter = null;
         anomalyDetectionIndices = null;
         super.tearDownLog4jForJUnit();
         super.tearDown();
@@ -298,9 +298,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -308,6 +308,90 @@ public class AnomalyResultTests extends AbstractADTest {
 
         AnomalyResultResponse response = listener.actionGet();
         assertAnomalyResultResponse(response, 0, 1, 0d);
+
+        assertEquals(1, adStats.counter(StatNames.AD_EXECUTE_REQUEST_COUNT).getCount());
+        assertEquals(0, adStats.counter(StatNames.AD_EXECUTE_FAILURE_COUNT).getCount());
+        assertEquals(1, adStats.latency(StatNames.AD_EXECUTE_LATENCY).getCount());
+        assertEquals(1, adStats.latency(StatNames.AD_FEATURE_LATENCY).getCount());
+        assertEquals(1, adStats.latency(StatNames.AD_RCF_LATENCY).getCount());
+        assertEquals(1, adStats.latency(StatNames.AD_THRESHOLD_LATENCY).getCount());
+    }
+
+    public void testFusedRcfAndThreshold() throws IOException {
+        setUpSavingAnomalyResultIndex(false);
+        when(stateManager.getPartitionNumber(any(String.class), any(AnomalyDetector.class))).thenReturn(1);
+        when(hashRing.getOwningNode(any(String.class))).thenReturn(Optional.of(testNodes[1].discoveryNode()));
+
+        // only the fused action is served by the model node
+        new RCFThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), testNodes[1].transportService,
+                normalModelManager);
+
+        AnomalyResultTransportAction action = new AnomalyResultTransportAction(
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
+                anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
+                threadPool, adStats);
+
+        AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
+        PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
+        action.doExecute(null, request, listener);
+
+        AnomalyResultResponse response = listener.actionGet();
+        assertAnomalyResultResponse(response, 0, 1, 0d);
+        verify(normalModelManager, times(1)).getRcfResult(eq(adID), eq(rcfModelID), any(double[].class), any());
+        verify(normalModelManager, times(1)).getThresholdingResult(eq(adID), eq(thresholdModelID), anyDouble(), any());
+        assertEquals(1, adStats.counter(StatNames.AD_MODEL_FUSED_REQUEST_COUNT).getCount());
+        assertEquals(1, adStats.latency(StatNames.AD_MODEL_FUSED_LATENCY).getCount());
+        assertEquals(0, adStats.latency(StatNames.AD_RCF_LATENCY).getCount());
+        assertEquals(0, adStats.latency(StatNames.AD_THRESHOLD_LATENCY).getCount());
+        assertEquals(0, adStats.counter(StatNames.AD_MODEL_LOCAL_REQUEST_COUNT).getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testReportAlignedRange() throws IOException {
+        setUpSavingAnomalyResultIndex(false);
+        when(featureQuery.alignToInterval(any(AnomalyDetector.class), anyLong()))
+            .thenAnswer(invocation -> (long) invocation.getArgument(1) / 100 * 100);
+        new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, normalModelManager);
+        new ThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), transportService,
+                normalModelManager);
+
+        AnomalyResultTransportAction action = spy(new AnomalyResultTransportAction(
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
+                anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
+                threadPool, adStats));
+
+        AnomalyResultRequest request = new AnomalyResultRequest(adID, 150, 250);
+        PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
+        action.doExecute(null, request, listener);
+        listener.actionGet();
+
+        verify(featureQuery).getCurrentFeatures(any(AnomalyDetector.class), eq(100L), eq(200L), any(ActionListener.class));
+        ArgumentCaptor<AnomalyResult> resultCaptor = ArgumentCaptor.forClass(AnomalyResult.class);
+        verify(action, timeout(1000)).indexAnomalyResult(resultCaptor.capture());
+        assertEquals(Instant.ofEpochMilli(100), resultCaptor.getValue().getStartTime());
+        assertEquals(Instant.ofEpochMilli(200), resultCaptor.getValue().getEndTime());
+    }
+
+    public void testLocalModelShortCircuit() throws IOException {
+        setUpSavingAnomalyResultIndex(false);
+        Settings shortCircuitSettings = Settings.builder().put(AnomalyDetectorSettings.LOCAL_MODEL_SHORT_CIRCUIT.getKey(), true)
+                .build();
+
+        // no model handler is registered, so any transport request would fail
+        AnomalyResultTransportAction action = new AnomalyResultTransportAction(
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, shortCircuitSettings, stateManager,
+                runner, anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
+                threadPool, adStats);
+
+        AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
+        PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
+        action.doExecute(null, request, listener);
+
+        AnomalyResultResponse response = listener.actionGet();
+        assertAnomalyResultResponse(response, 0, 1, 0d);
+        // 2 RCF partitions and 1 threshold model
+        assertEquals(3, adStats.counter(StatNames.AD_MODEL_LOCAL_REQUEST_COUNT).getCount());
+        assertEquals(0, adStats.counter(StatNames.AD_RCF_REQUEST_COUNT).getCount());
     }
 
     private void assertAnomalyResultResponse(AnomalyResultResponse response, double anomalyGrade, double confidence,
@@ -325,8 +409,11 @@ public class AnomalyResultTests extends AbstractADTest {
             Class<? extends Exception> expectedExceptionType, String error) {
 
         ModelManager rcfManager = mock(ModelManager.class);
-        doThrow(thrownException).when(rcfManager).getRcfResult(any(String.class), any(String.class),
-                any(double[].class));
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(thrownException);
+            return null;
+        }).when(rcfManager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
         when(rcfManager.getRcfModelId(any(String.class), anyInt())).thenReturn(rcfModelID);
 
         doNothing().when(normalModelManager).trainModel(any(AnomalyDetector.class), any(double[][].class));
@@ -339,9 +426,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager,
                 globalRunner, anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService,
-                indexNameResolver, threadPool);
+                indexNameResolver, threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -381,8 +468,11 @@ public class AnomalyResultTests extends AbstractADTest {
     public void testInsufficientCapacityExceptionDuringColdStart() {
 
         ModelManager rcfManager = mock(ModelManager.class);
-        doThrow(ResourceNotFoundException.class).when(rcfManager).getRcfResult(any(String.class), any(String.class),
-                any(double[].class));
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new ResourceNotFoundException(adID, ""));
+            return null;
+        }).when(rcfManager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
         when(rcfManager.getRcfModelId(any(String.class), anyInt())).thenReturn(rcfModelID);
 
         ColdStartRunner mockRunner = mock(ColdStartRunner.class);
@@ -395,9 +485,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, mockRunner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, mockRunner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -409,9 +499,12 @@ public class AnomalyResultTests extends AbstractADTest {
     public void testInsufficientCapacityExceptionDuringRestoringModel() {
 
         ModelManager rcfManager = mock(ModelManager.class);
-        doThrow(new NotSerializableExceptionWrapper(
-                new LimitExceededException(adID, CommonErrorMessages.MEMORY_LIMIT_EXCEEDED_ERR_MSG))).when(rcfManager)
-                        .getRcfResult(any(String.class), any(String.class), any(double[].class));
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new NotSerializableExceptionWrapper(
+                new LimitExceededException(adID, CommonErrorMessages.MEMORY_LIMIT_EXCEEDED_ERR_MSG)));
+            return null;
+        }).when(rcfManager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
 
         // These constructors register handler in transport service
         new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, rcfManager);
@@ -419,9 +512,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -433,8 +526,11 @@ public class AnomalyResultTests extends AbstractADTest {
     public void testThresholdException() {
 
         ModelManager exceptionThreadholdfManager = mock(ModelManager.class);
-        doThrow(NullPointerException.class).when(exceptionThreadholdfManager).getThresholdingResult(any(String.class),
-                any(String.class), anyDouble());
+        doAnswer(invocation -> {
+            ActionListener<ThresholdingResult> listener = invocation.getArgument(3);
+            listener.onFailure(new NullPointerException());
+            return null;
+        }).when(exceptionThreadholdfManager).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
 
         // These constructors register handler in transport service
         new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, normalModelManager);
@@ -442,9 +538,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 exceptionThreadholdfManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -491,9 +587,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), exceptionTransportService, client, settings, stateManager,
+                new ActionFilters(Collections.emptySet()), exceptionTransportService, resultWriter, settings, stateManager,
                 runner, anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, hackedClusterService,
-                indexNameResolver, threadPool);
+                indexNameResolver, threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -540,11 +636,11 @@ public class AnomalyResultTests extends AbstractADTest {
     public void testMute() {
         ADStateManager muteStateManager = mock(ADStateManager.class);
         when(muteStateManager.isMuted(any(String.class))).thenReturn(true);
-        when(muteStateManager.getAnomalyDetector(any(String.class))).thenReturn(Optional.of(detector));
+        setUpDetector(muteStateManager);
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, muteStateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, muteStateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
         action.doExecute(null, request, listener);
@@ -553,51 +649,26 @@ public class AnomalyResultTests extends AbstractADTest {
         assertThat(exception.getMessage(), containsString(AnomalyResultTransportAction.NODE_UNRESPONSIVE_ERR_MSG));
     }
 
-    public void testRCFLatchAwaitException() throws InterruptedException {
-
-        // These constructors register handler in transport service
-        new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, normalModelManager);
-        new ThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), transportService,
-                normalModelManager);
-
-        AnomalyResultTransportAction action = spy(
-                new AnomalyResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, client,
-                        settings, stateManager, runner, anomalyDetectionIndices, featureQuery, normalModelManager,
-                        hashRing, clusterService, indexNameResolver, threadPool));
-
-        CountDownLatch latch = mock(CountDownLatch.class);
-        doThrow(InterruptedException.class).when(latch).await(anyLong(), any(TimeUnit.class));
-        when(action.createCountDownLatch(anyInt())).thenReturn(latch);
-
-        AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
-        PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
-        action.doExecute(null, request, listener);
-
-        Throwable nestedCause = assertException(listener, AnomalyDetectionException.class);
-        assertEquals(CommonErrorMessages.WAIT_ERR_MSG, nestedCause.getMessage());
-    }
+    public void testNoRCFNodeAvailable() {
+        when(hashRing.getOwningNode(eq(rcfModelID))).thenReturn(Optional.empty());
 
-    public void testThresholdLatchAwaitException() throws InterruptedException {
         // These constructors register handler in transport service
         new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, normalModelManager);
         new ThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), transportService,
                 normalModelManager);
 
-        AnomalyResultTransportAction action = spy(
-                new AnomalyResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, client,
-                        settings, stateManager, new ColdStartRunner(), anomalyDetectionIndices, featureQuery,
-                        normalModelManager, hashRing, clusterService, indexNameResolver, threadPool));
-
-        CountDownLatch latch = mock(CountDownLatch.class);
-        doThrow(InterruptedException.class).when(latch).await(anyLong(), any(TimeUnit.class));
-        when(action.createCountDownLatch(eq(1))).thenReturn(latch);
+        AnomalyResultTransportAction action = new AnomalyResultTransportAction(
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
+                anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
         action.doExecute(null, request, listener);
 
-        Throwable nestedCause = assertException(listener, AnomalyDetectionException.class);
-        assertEquals(AnomalyResultTransportAction.WAIT_FOR_THRESHOLD_ERR_MSG, nestedCause.getMessage());
+        assertException(listener, AnomalyDetectionException.class, AnomalyResultTransportAction.NO_MODEL_ERR_MSG);
+        verify(normalModelManager, never()).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
+        assertEquals(1, adStats.counter(StatNames.AD_EXECUTE_FAILURE_COUNT).getCount());
     }
 
     public void alertingRequestTemplate(boolean anomalyResultIndexExists) throws IOException {
@@ -607,9 +678,9 @@ public class AnomalyResultTests extends AbstractADTest {
         new ThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), transportService,
                 normalModelManager);
 
-        new AnomalyResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, client, settings,
+        new AnomalyResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings,
                 stateManager, runner, anomalyDetectionIndices, featureQuery, normalModelManager, hashRing,
-                clusterService, indexNameResolver, threadPool);
+                clusterService, indexNameResolver, threadPool, adStats);
 
         TransportRequestOptions option = TransportRequestOptions.builder().withType(TransportRequestOptions.Type.STATE)
                 .withTimeout(6000).build();
@@ -735,9 +806,9 @@ public class AnomalyResultTests extends AbstractADTest {
     // no exception should be thrown
     public void testOnFailureNull() throws IOException {
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager,
-                new ColdStartRunner(), anomalyDetectionIndices, featureQuery, normalModelManager, hashRing,
-                clusterService, indexNameResolver, threadPool);
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager,
+                new ColdStartRunner(1, 1, new ADStats()), anomalyDetectionIndices, featureQuery, normalModelManager, hashRing,
+                clusterService, indexNameResolver, threadPool, adStats);
         AnomalyResultTransportAction.RCFActionListener listener = action.new RCFActionListener(null, null, null, null);
         listener.onFailure(null);
     }
@@ -746,9 +817,9 @@ public class AnomalyResultTests extends AbstractADTest {
         when(featureQuery.getColdStartData(any(AnomalyDetector.class))).thenReturn(Optional.empty());
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultTransportAction.ColdStartJob job = action.new ColdStartJob(detector);
         expectThrows(AnomalyDetectionException.class, () -> job.call());
@@ -761,115 +832,36 @@ public class AnomalyResultTests extends AbstractADTest {
                 any(double[][].class));
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultTransportAction.ColdStartJob job = action.new ColdStartJob(detector);
         expectThrows(ClientException.class, () -> job.call());
     }
 
-    /**
-     * Template to test exponential backoff retry during saving anomaly result.
-     *
-     * @param throwEsRejectedExecutionException whether to throw
-     *                                          EsRejectedExecutionException in the
-     *                                          client::index mock or not
-     * @param latchCount                        used for coordinating. Equal to
-     *                                          number of expected retries plus 1.
-     * @throws InterruptedException if thread execution is interrupted
-     * @throws IOException          if IO failures
-     */
-    @SuppressWarnings("unchecked")
-    public void savingFailureTemplate(boolean throwEsRejectedExecutionException, int latchCount)
-            throws InterruptedException, IOException {
-        setUpSavingAnomalyResultIndex(false);
-
-        final CountDownLatch backoffLatch = new CountDownLatch(latchCount);
-
-        Client badClient = mock(Client.class);
-        doAnswer(invocation -> {
-            Object[] args = invocation.getArguments();
-            assertTrue(String.format("The size of args is %d.  Its content is %s", args.length, Arrays.toString(args)),
-                    args.length >= 2);
-
-            IndexRequest request = null;
-            ActionListener<IndexResponse> listener = null;
-            if (args[0] instanceof IndexRequest) {
-                request = (IndexRequest) args[0];
-            }
-            if (args[1] instanceof ActionListener) {
-                listener = (ActionListener<IndexResponse>) args[1];
-            }
-
-            assertTrue(request != null && listener != null);
-            if (throwEsRejectedExecutionException) {
-                listener.onFailure(new EsRejectedExecutionException(""));
-            } else {
-                listener.onFailure(new IllegalArgumentException());
-            }
-
-            backoffLatch.countDown();
-            return null;
-        }).when(badClient).index(any(), any());
-
-        Settings backoffSettings = Settings.builder().put("ml.anomaly_detectors.max_retry_for_backoff", 2)
-                .put("ml.anomaly_detectors.backoff_initial_delay", TimeValue.timeValueMillis(1)).build();
-
-        // These constructors register handler in transport service
-        new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), transportService, normalModelManager);
-        new ThresholdResultTransportAction(new ActionFilters(Collections.emptySet()), transportService,
-                normalModelManager);
-
-        AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, badClient, backoffSettings, stateManager,
-                runner, anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService,
-                indexNameResolver, threadPool);
-
-        AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
-        PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
-        action.doExecute(null, request, listener);
-
-        backoffLatch.await();
-    }
-
-    public void testSavingFailureNotRetry() throws InterruptedException, IOException {
-        savingFailureTemplate(false, 1);
-
-        assertEquals(1, testAppender.countMessage((AnomalyResultTransportAction.FAIL_TO_SAVE_ERR_MSG)));
-        assertTrue(!testAppender.containsMessage(AnomalyResultTransportAction.SUCCESS_SAVING_MSG));
-        assertTrue(!testAppender.containsMessage(AnomalyResultTransportAction.RETRY_SAVING_ERR_MSG));
-    }
-
-    public void testSavingFailureRetry() throws InterruptedException, IOException {
-        savingFailureTemplate(true, 3);
-
-        assertEquals(2, testAppender.countMessage((AnomalyResultTransportAction.RETRY_SAVING_ERR_MSG)));
-        assertEquals(1, testAppender.countMessage((AnomalyResultTransportAction.FAIL_TO_SAVE_ERR_MSG)));
-        assertTrue(!testAppender.containsMessage(AnomalyResultTransportAction.SUCCESS_SAVING_MSG));
-    }
-
     enum FeatureTestMode {
         FEATURE_NOT_AVAILABLE, ILLEGAL_STATE, AD_EXCEPTION
     }
 
     public void featureTestTemplate(FeatureTestMode mode) {
-        if (mode == FeatureTestMode.FEATURE_NOT_AVAILABLE) {
-            when(featureQuery.getCurrentFeatures(any(AnomalyDetector.class), anyLong(), anyLong()))
-            .thenReturn(new SinglePointFeatures(Optional.empty(), Optional.empty()));
-        } else if (mode == FeatureTestMode.ILLEGAL_STATE) {
-            doThrow(IllegalArgumentException.class).when(featureQuery).getCurrentFeatures(any(AnomalyDetector.class),
-                    anyLong(), anyLong());
-        } else if (mode == FeatureTestMode.AD_EXCEPTION) {
-            doThrow(AnomalyDetectionException.class).when(featureQuery).getCurrentFeatures(any(AnomalyDetector.class),
-                    anyLong(), anyLong());
-        }
+        doAnswer(invocation -> {
+            ActionListener<SinglePointFeatures> listener = invocation.getArgument(3);
+            if (mode == FeatureTestMode.FEATURE_NOT_AVAILABLE) {
+                listener.onResponse(new SinglePointFeatures(Optional.empty(), Optional.empty()));
+            } else if (mode == FeatureTestMode.ILLEGAL_STATE) {
+                listener.onFailure(new IllegalArgumentException());
+            } else if (mode == FeatureTestMode.AD_EXCEPTION) {
+                listener.onFailure(new AnomalyDetectionException(adID, "feature query failure"));
+            }
+            return null;
+        }).when(featureQuery).getCurrentFeatures(any(AnomalyDetector.class), anyLong(), anyLong(), any(ActionListener.class));
 
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService, indexNameResolver,
-                threadPool);
+                threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -929,9 +921,9 @@ public class AnomalyResultTests extends AbstractADTest {
                 normalModelManager);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, hackedClusterService,
-                indexNameResolver, threadPool);
+                indexNameResolver, threadPool, adStats);
 
         AnomalyResultRequest request = new AnomalyResultRequest(adID, 100, 200);
         PlainActionFuture<AnomalyResultResponse> listener = new PlainActionFuture<>();
@@ -983,19 +975,32 @@ public class AnomalyResultTests extends AbstractADTest {
         when(hackedClusterService.state()).thenReturn(blockedClusterState);
 
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, hackedClusterService,
-                indexNameResolver, threadPool);
+                indexNameResolver, threadPool, adStats);
         action.indexAnomalyResult(TestHelpers.randomAnomalyDetectResult());
 
         assertTrue(testAppender.containsMessage(AnomalyResultTransportAction.CANNOT_SAVE_ERR_MSG));
+        verify(resultWriter, never()).write(any(IndexRequest.class), any(String.class));
+    }
+
+    public void testIndexAnomalyResult() throws IOException {
+        setUpSavingAnomalyResultIndex(true);
+        AnomalyResultTransportAction action = new AnomalyResultTransportAction(
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
+                anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService,
+                indexNameResolver, threadPool, adStats);
+
+        action.indexAnomalyResult(TestHelpers.randomAnomalyDetectResult());
+
+        verify(resultWriter, times(1)).write(any(IndexRequest.class), any(String.class));
     }
 
     public void testNullRCFResult() {
         AnomalyResultTransportAction action = new AnomalyResultTransportAction(
-                new ActionFilters(Collections.emptySet()), transportService, client, settings, stateManager, runner,
+                new ActionFilters(Collections.emptySet()), transportService, resultWriter, settings, stateManager, runner,
                 anomalyDetectionIndices, featureQuery, normalModelManager, hashRing, clusterService,
-                indexNameResolver, threadPool);
+                indexNameResolver, threadPool, adStats);
         AnomalyResultTransportAction.RCFActionListener listener = action.new RCFActionListener(null, "123-rcf-0", null, "123");
         listener.onResponse(null);
         assertTrue(testAppender.containsMessage(AnomalyResultTransportAction.NULL_RESPONSE));
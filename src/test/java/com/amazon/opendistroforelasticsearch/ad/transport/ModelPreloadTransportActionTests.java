@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.List;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+
+public class ModelPreloadTransportActionTests extends AbstractADTest {
+    private ModelPreloadTransportAction action;
+    private ModelManager modelManager;
+    private String localNodeID;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        ThreadPool threadPool = mock(ThreadPool.class);
+
+        ClusterService clusterService = mock(ClusterService.class);
+        localNodeID = "foo";
+        when(clusterService.localNode()).thenReturn(new DiscoveryNode(localNodeID, buildNewFakeTransportAddress(), Version.CURRENT));
+        when(clusterService.getClusterName()).thenReturn(new ClusterName("test"));
+
+        TransportService transportService = mock(TransportService.class);
+        ActionFilters actionFilters = mock(ActionFilters.class);
+        modelManager = mock(ModelManager.class);
+
+        action = new ModelPreloadTransportAction(threadPool, clusterService, transportService, actionFilters, modelManager);
+    }
+
+    public void testNormal() throws IOException {
+        Map<String, List<String>> modelIds = new HashMap<>();
+        modelIds.put("foo1", Arrays.asList("123_model_rcf_0", "123_model_threshold"));
+        modelIds.put("foo2", Collections.singletonList("456_model_rcf_1"));
+        ModelPreloadRequest request = new ModelPreloadRequest(modelIds);
+        when(modelManager.getDetectorIdForModelId("123_model_rcf_0")).thenReturn("123");
+        when(modelManager.getDetectorIdForModelId("123_model_threshold")).thenReturn("123");
+        when(modelManager.preloadModel("123", "123_model_rcf_0")).thenReturn(true);
+        when(modelManager.preloadModel("123", "123_model_threshold")).thenReturn(false);
+
+        ModelPreloadNodeRequest nodeRequest = new ModelPreloadNodeRequest("foo1", request);
+        BytesStreamOutput nodeRequestOut = new BytesStreamOutput();
+        nodeRequestOut.setVersion(Version.CURRENT);
+        nodeRequest.writeTo(nodeRequestOut);
+        StreamInput siNode = nodeRequestOut.bytes().streamInput();
+
+        ModelPreloadNodeRequest nodeRequestRead = new ModelPreloadNodeRequest();
+        nodeRequestRead.readFrom(siNode);
+        assertEquals(modelIds.get("foo1"), nodeRequestRead.getModelIds());
+
+        ModelPreloadNodeResponse nodeResponse = action.nodeOperation(nodeRequestRead);
+
+        assertEquals(localNodeID, nodeResponse.getNode().getId());
+        assertEquals(1, nodeResponse.getLoaded());
+        ModelPreloadResponse response = action.newResponse(request, Collections.singletonList(nodeResponse),
+                Collections.emptyList());
+        assertEquals(1, response.getNodes().size());
+        assertTrue(!response.hasFailures());
+    }
+
+    public void testFailedModelIsSkipped() {
+        Map<String, List<String>> modelIds = new HashMap<>();
+        modelIds.put("foo1", Arrays.asList("123_model_rcf_0", "123_model_rcf_1"));
+        when(modelManager.getDetectorIdForModelId("123_model_rcf_0")).thenReturn("123");
+        when(modelManager.getDetectorIdForModelId("123_model_rcf_1")).thenReturn("123");
+        when(modelManager.preloadModel("123", "123_model_rcf_0")).thenThrow(new ResourceNotFoundException("123", "no checkpoint"));
+        when(modelManager.preloadModel("123", "123_model_rcf_1")).thenReturn(true);
+
+        ModelPreloadNodeResponse nodeResponse = action.nodeOperation(
+            new ModelPreloadNodeRequest("foo1", new ModelPreloadRequest(modelIds)));
+
+        assertEquals(1, nodeResponse.getLoaded());
+        verify(modelManager).preloadModel("123", "123_model_rcf_1");
+    }
+
+    public void testRequestSerialization() throws IOException {
+        ModelPreloadRequest request = new ModelPreloadRequest(Collections.singletonMap("foo1",
+            Collections.singletonList("123_model_rcf_0")));
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        ModelPreloadRequest readRequest = new ModelPreloadRequest();
+        readRequest.readFrom(out.bytes().streamInput());
+
+        assertArrayEquals(new String[] { "foo1" }, readRequest.nodesIds());
+        assertEquals(Collections.singletonList("123_model_rcf_0"), readRequest.getModelIds("foo1"));
+        assertTrue(readRequest.getModelIds("foo2").isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+
+public class ModelTransferTransportActionTests extends AbstractADTest {
+    private ModelTransferTransportAction action;
+    private ModelManager modelManager;
+    private String localNodeID;
+    private String adID;
+    private String modelID;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        ThreadPool threadPool = mock(ThreadPool.class);
+
+        ClusterService clusterService = mock(ClusterService.class);
+        localNodeID = "foo";
+        when(clusterService.localNode()).thenReturn(new DiscoveryNode(localNodeID, buildNewFakeTransportAddress(), Version.CURRENT));
+        when(clusterService.getClusterName()).thenReturn(new ClusterName("test"));
+
+        TransportService transportService = mock(TransportService.class);
+        ActionFilters actionFilters = mock(ActionFilters.class);
+        modelManager = mock(ModelManager.class);
+
+        action = new ModelTransferTransportAction(threadPool, clusterService, transportService, actionFilters, modelManager);
+        adID = "123";
+        modelID = "123_model_rcf_0";
+    }
+
+    private ModelTransferNodeRequest chunk(int chunk, int totalChunks, byte[] data) {
+        return new ModelTransferNodeRequest(localNodeID, new ModelTransferRequest(localNodeID, adID, modelID, chunk, totalChunks, data));
+    }
+
+    public void testPassChunkToModelManager() {
+        byte[] data = new byte[] { 1, 2 };
+        when(modelManager.importModelChunk(adID, modelID, 0, 2, data)).thenReturn(false);
+
+        ModelTransferNodeResponse response = action.nodeOperation(chunk(0, 2, data));
+
+        assertFalse(response.isInstalled());
+        assertEquals(localNodeID, response.getNode().getId());
+        verify(modelManager).importModelChunk(adID, modelID, 0, 2, data);
+    }
+
+    public void testInstallAfterLastChunk() {
+        byte[] data = new byte[] { 3 };
+        when(modelManager.importModelChunk(adID, modelID, 1, 2, data)).thenReturn(true);
+
+        assertTrue(action.nodeOperation(chunk(1, 2, data)).isInstalled());
+    }
+
+    public void testSerialzationNodeRequest() throws IOException {
+        ModelTransferNodeRequest request = chunk(1, 2, new byte[] { 1, 2, 3 });
+        BytesStreamOutput output = new BytesStreamOutput();
+        request.writeTo(output);
+
+        ModelTransferNodeRequest readRequest = new ModelTransferNodeRequest();
+        readRequest.readFrom(output.bytes().streamInput());
+
+        assertEquals(adID, readRequest.getRequest().getAdID());
+        assertEquals(modelID, readRequest.getRequest().getModelID());
+        assertEquals(1, readRequest.getRequest().getChunk());
+        assertEquals(2, readRequest.getRequest().getTotalChunks());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, readRequest.getRequest().getData());
+    }
+}
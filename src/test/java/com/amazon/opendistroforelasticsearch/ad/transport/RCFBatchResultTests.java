@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportService;
+import org.hamcrest.Matchers;
+
+public class RCFBatchResultTests extends ESTestCase {
+
+    public void testNormal() {
+        TransportService transportService = new TransportService(Settings.EMPTY, mock(Transport.class), null,
+                TransportService.NOOP_TRANSPORT_INTERCEPTOR, x -> null, null, Collections.emptySet());
+
+        ModelManager manager = mock(ModelManager.class);
+        RCFBatchResultTransportAction action = new RCFBatchResultTransportAction(mock(ActionFilters.class), transportService, manager);
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0.5, 1, 25));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), eq("123-rcf-1"), any(double[].class), any());
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new NullPointerException());
+            return null;
+        }).when(manager).getRcfResult(any(String.class), eq("456-rcf-1"), any(double[].class), any());
+
+        PlainActionFuture<RCFBatchResultResponse> future = new PlainActionFuture<>();
+        action.doExecute(mock(Task.class), new RCFBatchResultRequest(Arrays.asList(
+                new RCFResultRequest("123", "123-rcf-1", new double[] {0}),
+                new RCFResultRequest("456", "456-rcf-1", new double[] {0}))), future);
+        RCFBatchResultResponse response = future.actionGet();
+
+        assertEquals(2, response.getItems().size());
+        assertFalse(response.getItems().get(0).isFailure());
+        assertEquals(0.5, response.getItems().get(0).getResponse().getRCFScore(), 0.001);
+        assertTrue(response.getItems().get(1).getFailure() instanceof NullPointerException);
+    }
+
+    public void testInvalidRequestFailsOnlyItsItem() {
+        TransportService transportService = new TransportService(Settings.EMPTY, mock(Transport.class), null,
+                TransportService.NOOP_TRANSPORT_INTERCEPTOR, x -> null, null, Collections.emptySet());
+
+        ModelManager manager = mock(ModelManager.class);
+        RCFBatchResultTransportAction action = new RCFBatchResultTransportAction(mock(ActionFilters.class), transportService, manager);
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0.5, 1, 25));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
+
+        PlainActionFuture<RCFBatchResultResponse> future = new PlainActionFuture<>();
+        action.doExecute(mock(Task.class), new RCFBatchResultRequest(Arrays.asList(
+                new RCFResultRequest(null, "123-rcf-1", new double[] {0}),
+                new RCFResultRequest("456", "456-rcf-1", new double[] {0}))), future);
+        RCFBatchResultResponse response = future.actionGet();
+
+        assertTrue(response.getItems().get(0).getFailure() instanceof ActionRequestValidationException);
+        assertEquals(0.5, response.getItems().get(1).getResponse().getRCFScore(), 0.001);
+    }
+
+    public void testSerialzationRequest() throws IOException {
+        RCFBatchResultRequest request = new RCFBatchResultRequest(Arrays.asList(
+                new RCFResultRequest("123", "123-rcf-1", new double[] {0}),
+                new RCFResultRequest("456", "456-rcf-1", new double[] {1, 2})));
+        BytesStreamOutput output = new BytesStreamOutput();
+        request.writeTo(output);
+
+        RCFBatchResultRequest readRequest = new RCFBatchResultRequest(output.bytes().streamInput());
+        assertEquals(2, readRequest.getRequests().size());
+        assertThat(readRequest.getRequests().get(1).getModelID(), equalTo("456-rcf-1"));
+        assertThat(readRequest.getRequests().get(1).getFeatures(), equalTo(new double[] {1, 2}));
+    }
+
+    public void testSerialzationResponse() throws IOException {
+        RCFBatchResultResponse response = new RCFBatchResultResponse(Arrays.asList(
+                new RCFBatchResultResponse.Item(new RCFResultResponse(0.3, 0, 26)),
+                new RCFBatchResultResponse.Item(new IllegalArgumentException("blah"))));
+        BytesStreamOutput output = new BytesStreamOutput();
+        response.writeTo(output);
+
+        RCFBatchResultResponse readResponse = new RCFBatchResultResponse(output.bytes().streamInput());
+        assertEquals(26, readResponse.getItems().get(0).getResponse().getForestSize());
+        assertTrue(readResponse.getItems().get(1).isFailure());
+        assertThat(readResponse.getItems().get(1).getFailure().getMessage(), Matchers.containsString("blah"));
+    }
+}
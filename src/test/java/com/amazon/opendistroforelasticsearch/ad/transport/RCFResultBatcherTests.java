@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+import com.amazon.opendistroforelasticsearch.ad.AbstractADTest;
+import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import test.com.amazon.opendistroforelasticsearch.ad.util.FakeNode;
+
+public class RCFResultBatcherTests extends AbstractADTest {
+
+    private FakeNode[] testNodes;
+    private ModelManager manager;
+    private ADStats adStats;
+    private TransportRequestOptions option;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        setUpThreadPool(RCFResultBatcherTests.class.getSimpleName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        tearDownThreadPool();
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        testNodes = new FakeNode[] { new FakeNode("node0", threadPool, Settings.EMPTY),
+                new FakeNode("node1", threadPool, Settings.EMPTY) };
+        FakeNode.connectNodes(testNodes);
+        manager = mock(ModelManager.class);
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0.5, 1, 25));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new ResourceNotFoundException("missing", "no checkpoint"));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), eq("missing-rcf-0"), any(double[].class), any());
+        for (FakeNode testNode : testNodes) {
+            new RCFResultTransportAction(new ActionFilters(Collections.emptySet()), testNode.transportService, manager);
+        }
+        adStats = new ADStats();
+        option = TransportRequestOptions.builder().withType(TransportRequestOptions.Type.REG)
+                .withTimeout(TimeValue.timeValueSeconds(10)).build();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        for (FakeNode testNode : testNodes) {
+            testNode.close();
+        }
+        testNodes = null;
+        super.tearDown();
+    }
+
+    public void testBatchRequestsToSameNode() {
+        RCFResultBatcher batcher = new RCFResultBatcher(testNodes[0].transportService, threadPool, option,
+                TimeValue.timeValueMillis(50), 100, adStats);
+        DiscoveryNode remoteNode = testNodes[1].discoveryNode();
+
+        PlainActionFuture<RCFResultResponse> first = new PlainActionFuture<>();
+        PlainActionFuture<RCFResultResponse> second = new PlainActionFuture<>();
+        PlainActionFuture<RCFResultResponse> missing = new PlainActionFuture<>();
+        batcher.send(remoteNode, new RCFResultRequest("123", "123-rcf-0", new double[] { 0 }), first);
+        batcher.send(remoteNode, new RCFResultRequest("456", "456-rcf-0", new double[] { 1 }), second);
+        batcher.send(remoteNode, new RCFResultRequest("missing", "missing-rcf-0", new double[] { 2 }), missing);
+
+        assertEquals(0.5, first.actionGet().getRCFScore(), 1e-6);
+        assertEquals(25, second.actionGet().getForestSize());
+        Exception e = expectThrows(Exception.class, () -> missing.actionGet());
+        assertTrue(e.getMessage().contains("no checkpoint"));
+        assertEquals(3, adStats.counter(StatNames.AD_RCF_REQUEST_COUNT).getCount());
+        assertEquals(1, adStats.counter(StatNames.AD_RCF_ROUND_TRIP_COUNT).getCount());
+    }
+
+    public void testSendFullBatchWithoutWaiting() {
+        RCFResultBatcher batcher = new RCFResultBatcher(testNodes[0].transportService, threadPool, option,
+                TimeValue.timeValueHours(1), 2, adStats);
+        DiscoveryNode localNode = testNodes[0].discoveryNode();
+
+        PlainActionFuture<RCFResultResponse> first = new PlainActionFuture<>();
+        PlainActionFuture<RCFResultResponse> second = new PlainActionFuture<>();
+        batcher.send(localNode, new RCFResultRequest("123", "123-rcf-0", new double[] { 0 }), first);
+        batcher.send(localNode, new RCFResultRequest("456", "456-rcf-0", new double[] { 1 }), second);
+
+        assertEquals(0.5, first.actionGet(TimeValue.timeValueSeconds(10)).getRCFScore(), 1e-6);
+        assertEquals(0.5, second.actionGet(TimeValue.timeValueSeconds(10)).getRCFScore(), 1e-6);
+        assertEquals(1, adStats.counter(StatNames.AD_RCF_ROUND_TRIP_COUNT).getCount());
+    }
+
+    public void testSendSingleRequestWithoutBatchWindow() {
+        RCFResultBatcher batcher = new RCFResultBatcher(testNodes[0].transportService, threadPool, option,
+                TimeValue.ZERO, 100, adStats);
+
+        PlainActionFuture<RCFResultResponse> future = new PlainActionFuture<>();
+        batcher.send(testNodes[1].discoveryNode(), new RCFResultRequest("123", "123-rcf-0", new double[] { 0 }), future);
+
+        assertEquals(25, future.actionGet().getForestSize());
+        assertEquals(1, adStats.counter(StatNames.AD_RCF_ROUND_TRIP_COUNT).getCount());
+    }
+}
@@ -19,9 +19,8 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -31,6 +30,7 @@ import com.amazon.opendistroforelasticsearch.ad.constant.CommonErrorMessages;
 import com.amazon.opendistroforelasticsearch.ad.constant.CommonMessageAttributes;
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
 import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.PlainActionFuture;
@@ -60,7 +60,11 @@ public class RCFResultTests extends ESTestCase {
 
         ModelManager manager = mock(ModelManager.class);
         RCFResultTransportAction action = new RCFResultTransportAction(mock(ActionFilters.class), transportService, manager);
-        when(manager.getRcfResult(any(String.class), any(String.class), any(double[].class))).thenReturn(new RcfResult(0, 0, 25));
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0, 0, 25));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
 
         final PlainActionFuture<RCFResultResponse> future = new PlainActionFuture<>();
         RCFResultRequest request = new RCFResultRequest("123", "123-rcf-1", new double[] {0});
@@ -77,7 +81,11 @@ public class RCFResultTests extends ESTestCase {
 
         ModelManager manager = mock(ModelManager.class);
         RCFResultTransportAction action = new RCFResultTransportAction(mock(ActionFilters.class), transportService, manager);
-        doThrow(NullPointerException.class).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class));
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new NullPointerException());
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
 
         final PlainActionFuture<RCFResultResponse> future = new PlainActionFuture<>();
         RCFResultRequest request = new RCFResultRequest("123", "123-rcf-1", new double[] {0});
@@ -145,4 +153,5 @@ public class RCFResultTests extends ESTestCase {
         assertArrayEquals(JsonDeserializer.getDoubleArrayValue(json, CommonMessageAttributes.FEATURE_JSON_KEY),
                 request.getFeatures(), 0.001);
     }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.ad.transport;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import com.amazon.opendistroforelasticsearch.ad.common.exception.ResourceNotFoundException;
+import com.amazon.opendistroforelasticsearch.ad.constant.CommonErrorMessages;
+import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
+import com.amazon.opendistroforelasticsearch.ad.ml.RcfResult;
+import com.amazon.opendistroforelasticsearch.ad.ml.ThresholdingResult;
+import com.amazon.opendistroforelasticsearch.ad.ml.rcf.CombinedRcfResult;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportService;
+
+import org.hamcrest.Matchers;
+
+public class RCFThresholdResultTests extends ESTestCase {
+
+    private TransportService createTransportService() {
+        return new TransportService(Settings.EMPTY, mock(Transport.class), null,
+                TransportService.NOOP_TRANSPORT_INTERCEPTOR, x -> null, null, Collections.emptySet());
+    }
+
+    public void testNormal() {
+        ModelManager manager = mock(ModelManager.class);
+        RCFThresholdResultTransportAction action = new RCFThresholdResultTransportAction(mock(ActionFilters.class),
+                createTransportService(), manager);
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onResponse(new RcfResult(0.5, 0.9, 100));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
+        when(manager.combineRcfResults(any())).thenReturn(new CombinedRcfResult(0.5, 0.9));
+        doAnswer(invocation -> {
+            ActionListener<ThresholdingResult> listener = invocation.getArgument(3);
+            listener.onResponse(new ThresholdingResult(0.3, 0.8));
+            return null;
+        }).when(manager).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
+
+        final PlainActionFuture<RCFThresholdResultResponse> future = new PlainActionFuture<>();
+        RCFThresholdResultRequest request = new RCFThresholdResultRequest("123", "123-rcf-0", "123-threshold",
+                new double[] { 0 });
+        action.doExecute(mock(Task.class), request, future);
+
+        RCFThresholdResultResponse response = future.actionGet();
+        assertEquals(0.5, response.getRCFScore(), 0.001);
+        assertEquals(0.9, response.getRCFConfidence(), 0.001);
+        assertEquals(100, response.getForestSize());
+        assertEquals(0.3, response.getAnomalyGrade(), 0.001);
+        assertEquals(0.8, response.getConfidence(), 0.001);
+        verify(manager).getThresholdingResult(eq("123"), eq("123-threshold"), eq(0.5), any());
+    }
+
+    public void testRcfModelNotFound() {
+        ModelManager manager = mock(ModelManager.class);
+        RCFThresholdResultTransportAction action = new RCFThresholdResultTransportAction(mock(ActionFilters.class),
+                createTransportService(), manager);
+        doAnswer(invocation -> {
+            ActionListener<RcfResult> listener = invocation.getArgument(3);
+            listener.onFailure(new ResourceNotFoundException("123", ""));
+            return null;
+        }).when(manager).getRcfResult(any(String.class), any(String.class), any(double[].class), any());
+
+        final PlainActionFuture<RCFThresholdResultResponse> future = new PlainActionFuture<>();
+        RCFThresholdResultRequest request = new RCFThresholdResultRequest("123", "123-rcf-0", "123-threshold",
+                new double[] { 0 });
+        action.doExecute(mock(Task.class), request, future);
+
+        expectThrows(ResourceNotFoundException.class, () -> future.actionGet());
+        verify(manager, never()).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
+    }
+
+    public void testSerialzationRequest() throws IOException {
+        RCFThresholdResultRequest request = new RCFThresholdResultRequest("123", "123-rcf-0", "123-threshold",
+                new double[] { 0, 1 });
+        BytesStreamOutput output = new BytesStreamOutput();
+        request.writeTo(output);
+
+        StreamInput streamInput = output.bytes().streamInput();
+        RCFThresholdResultRequest readRequest = new RCFThresholdResultRequest(streamInput);
+        assertThat(request.getAdID(), equalTo(readRequest.getAdID()));
+        assertThat(request.getRcfModelID(), equalTo(readRequest.getRcfModelID()));
+        assertThat(request.getThresholdModelID(), equalTo(readRequest.getThresholdModelID()));
+        assertArrayEquals(request.getFeatures(), readRequest.getFeatures(), 0.001);
+    }
+
+    public void testSerialzationResponse() throws IOException {
+        RCFThresholdResultResponse response = new RCFThresholdResultResponse(0.5, 0.9, 100, 0.3, 0.8);
+        BytesStreamOutput output = new BytesStreamOutput();
+        response.writeTo(output);
+
+        StreamInput streamInput = output.bytes().streamInput();
+        RCFThresholdResultResponse readResponse = RCFThresholdResultAction.INSTANCE.getResponseReader().read(streamInput);
+        assertThat(response.getRCFScore(), equalTo(readResponse.getRCFScore()));
+        assertThat(response.getRCFConfidence(), equalTo(readResponse.getRCFConfidence()));
+        assertThat(response.getForestSize(), equalTo(readResponse.getForestSize()));
+        assertThat(response.getAnomalyGrade(), equalTo(readResponse.getAnomalyGrade()));
+        assertThat(response.getConfidence(), equalTo(readResponse.getConfidence()));
+    }
+
+    public void testEmptyThresholdModelID() {
+        ActionRequestValidationException e = new RCFThresholdResultRequest("123", "123-rcf-0", null, new double[] { 0 })
+                .validate();
+        assertThat(e.validationErrors(), Matchers.hasItem(CommonErrorMessages.MODEL_ID_MISSING_MSG));
+    }
+}
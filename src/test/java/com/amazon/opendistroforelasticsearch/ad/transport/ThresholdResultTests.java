@@ -19,9 +19,8 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -31,6 +30,7 @@ import com.amazon.opendistroforelasticsearch.ad.constant.CommonErrorMessages;
 import com.amazon.opendistroforelasticsearch.ad.constant.CommonMessageAttributes;
 import com.amazon.opendistroforelasticsearch.ad.ml.ModelManager;
 import com.amazon.opendistroforelasticsearch.ad.ml.ThresholdingResult;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.PlainActionFuture;
@@ -57,8 +57,11 @@ public class ThresholdResultTests extends ESTestCase {
         ModelManager manager = mock(ModelManager.class);
         ThresholdResultTransportAction action = new ThresholdResultTransportAction(mock(ActionFilters.class),
                 transportService, manager);
-        when(manager.getThresholdingResult(any(String.class), any(String.class), anyDouble()))
-                .thenReturn(new ThresholdingResult(0, 1.0d));
+        doAnswer(invocation -> {
+            ActionListener<ThresholdingResult> listener = invocation.getArgument(3);
+            listener.onResponse(new ThresholdingResult(0, 1.0d));
+            return null;
+        }).when(manager).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
 
         final PlainActionFuture<ThresholdResultResponse> future = new PlainActionFuture<>();
         ThresholdResultRequest request = new ThresholdResultRequest("123", "123-threshold", 2);
@@ -75,8 +78,11 @@ public class ThresholdResultTests extends ESTestCase {
 
         ModelManager manager = mock(ModelManager.class);
         ThresholdResultTransportAction action = new ThresholdResultTransportAction(mock(ActionFilters.class), transportService, manager);
-        doThrow(NullPointerException.class).when(manager).getThresholdingResult(any(String.class),
-                any(String.class), anyDouble());
+        doAnswer(invocation -> {
+            ActionListener<ThresholdingResult> listener = invocation.getArgument(3);
+            listener.onFailure(new NullPointerException());
+            return null;
+        }).when(manager).getThresholdingResult(any(String.class), any(String.class), anyDouble(), any());
 
         final PlainActionFuture<ThresholdResultResponse> future = new PlainActionFuture<>();
         ThresholdResultRequest request = new ThresholdResultRequest("123", "123-threshold", 2);
@@ -19,10 +19,14 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.amazon.opendistroforelasticsearch.ad.common.exception.AnomalyDetectionException;
+import com.amazon.opendistroforelasticsearch.ad.stats.ADStats;
+import com.amazon.opendistroforelasticsearch.ad.stats.StatNames;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.test.ESTestCase;
@@ -32,12 +36,14 @@ import org.junit.Before;
 public class ColdStartRunnerTests extends ESTestCase {
     private static final Logger LOG = LogManager.getLogger(ColdStartRunnerTests.class);
     private ColdStartRunner runner;
+    private ADStats adStats;
 
     @Override
     @Before
     public void setUp() throws Exception {
         super.setUp();
-        runner = new ColdStartRunner();
+        adStats = new ADStats();
+        runner = new ColdStartRunner(2, 2, adStats);
     }
 
     @Override
@@ -87,4 +93,27 @@ public class ColdStartRunnerTests extends ESTestCase {
 
         assertEquals(adID, res.get().getAnomalyDetectorId());
     }
+
+    public void testRunColdStartsConcurrently() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> first = runner.compute(() -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        Future<Boolean> second = runner.compute(() -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        Future<Boolean> queued = runner.compute(() -> true);
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(2L, adStats.getStatValues().get(StatNames.AD_COLD_START_ACTIVE_COUNT));
+        assertEquals(1L, adStats.getStatValues().get(StatNames.AD_COLD_START_QUEUE_SIZE));
+
+        release.countDown();
+        assertTrue(first.get());
+        assertTrue(second.get());
+        assertTrue(queued.get());
+    }
 }